@@ -78,9 +78,12 @@ public final class App {
 
   private static void launchSubshell(Context context) {
     CommandExecutor commandExecutor =
-        new CommandExecutor(CommandMapFactory.createCommandMap(context));
+        new CommandExecutor(CommandMapFactory.createCommandMap(context),
+            context.getStopSignal(),
+            CommandExecutor.DEFAULT_STOP_GRACE_MILLIS);
     CommandLine commandLine =
-        new CommandLine(NAME_OF_THE_SHELL, commandExecutor.getCommandMap());
+        new CommandLine(NAME_OF_THE_SHELL, commandExecutor.getCommandMap(),
+            context.getStopSignal());
     Subshell subshell = new Subshell(commandLine, commandExecutor);
     try {
       subshell.init(context.getSearchIntent());
@@ -89,5 +92,9 @@ public final class App {
       System.exit(1);
     }
     subshell.run();
+    commandExecutor.close();
+    if (context.getSearchEngine() != null) {
+      context.getSearchEngine().close();
+    }
   }
 }
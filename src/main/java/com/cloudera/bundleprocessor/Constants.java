@@ -35,6 +35,9 @@ public final class Constants {
   public static final String NODEMANAGER = "NODEMANAGER";
   public static final int[] RANGE_OF_UNDISPLAYED_CHARS_IN_CONTAINERID = {2, 6};
   public static final int DEPTH_OF_FILTERING_SEARCH = 10;
+  public static final String ENTITY_INDEX_FILE_NAME = "entities.idx";
+  public static final String TRIGRAM_INDEX_FILE_NAME = "trigrams.idx";
+  public static final String TIME_INDEX_FILE_NAME = "times.idx";
   public static final String EMPTY_OUTPUT_MESSAGE = "Nothing to display\n";
   public static final String DEFAULT_CONFIG_PATH =
       "./src/main/resources/config.json";
@@ -23,21 +23,34 @@ import com.cloudera.bundleprocessor.console.ConsoleWriter;
 import com.cloudera.bundleprocessor.preprocessor.cliparser.CliParser;
 import com.cloudera.bundleprocessor.preprocessor.cliparser.InputParams;
 import com.cloudera.bundleprocessor.preprocessor.exception.WrongInputTypeException;
+import com.cloudera.bundleprocessor.preprocessor.fileprocessor.ArchiveFilter;
 import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileExtractor;
 import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileFilter;
 import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
 import com.cloudera.bundleprocessor.preprocessor.inputprocessor.InputProcessor;
 import com.cloudera.bundleprocessor.subshell.context.Config;
 import com.cloudera.bundleprocessor.subshell.context.Context;
+import com.cloudera.bundleprocessor.subshell.context.Search;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.EntityIndexBuilder;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TimeIndexBuilder;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TrigramIndexBuilder;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BlockCompressedLog;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.regex.Pattern;
 
 /**
  * PreProcessor is the main class for the preprocessing part of the application.
  * PreProcessor parses arguments from CLI and (if no error occurs) provides
  * a folder with filtered out log files,
  * which can be further analyzed.
+ * The entities mentioned in the logs and the timestamps of the logs
+ * are indexed as well, see {@link EntityIndexBuilder}
+ * and {@link TimeIndexBuilder}, and if it is configured,
+ * the trigrams of the logs too, see {@link TrigramIndexBuilder}.
+ * If it is configured, the logs are stored block-compressed,
+ * see {@link BlockCompressedLog}.
  */
 public class PreProcessor {
 
@@ -76,10 +89,19 @@ public class PreProcessor {
       // is provided
       File inputFile = getOrCreateOriginalArchive(inputProcessor, config);
       directoryForBundle = setDirectoryForBundle(inputFile);
-      File subDirectoryForExtractedFiles =
-          extractLogsIntoSubDirectory(directoryForBundle, inputFile);
-      filterOutLogsIntoSubDirectory(
-          directoryForBundle, subDirectoryForExtractedFiles);
+      if (inputParams.isInPlace()) {
+        filterOutLogsFromArchive(directoryForBundle, inputFile);
+      } else {
+        File subDirectoryForExtractedFiles =
+            extractLogsIntoSubDirectory(directoryForBundle, inputFile);
+        filterOutLogsIntoSubDirectory(
+            directoryForBundle, subDirectoryForExtractedFiles);
+      }
+      buildEntityIndex(directoryForBundle);
+      buildTimeIndex(directoryForBundle);
+      if (isBuildingTrigramIndex()) {
+        buildTrigramIndex(directoryForBundle);
+      }
       context.setupSearchEngine(returnSubDirectory());
     } else {
       // none of of the input types
@@ -149,7 +171,8 @@ public class PreProcessor {
           new FileFilter(subDirectoryForExtractedFiles,
               directoryOfFilteredFiles);
       fileFilter.filter(config.getRegexes().getLogFile(),
-          config.getDirs().getSubdirectoryNameForNodeLogs());
+          config.getDirs().getSubdirectoryNameForNodeLogs(),
+          isCompressingLogs());
       fileFilter.filter(config.getRegexes().getConfigFile(),
           config.getDirs().getSubdirectoryNameForConfigFiles());
     } catch (IOException e) {
@@ -158,6 +181,93 @@ public class PreProcessor {
     }
   }
 
+  /**
+   * Copies the logs and configuration files from the archive
+   * into the same directories as {@link #filterOutLogsIntoSubDirectory},
+   * without extracting the rest of the archive.
+   * The paths of the members are matched as if the archive was extracted.
+   */
+  private void filterOutLogsFromArchive(
+      File directoryForBundle, File originalArchive) {
+    try {
+      String directoryNameForYarnRelatedLogs =
+          config.getDirs().getDirectoryNameForYarnRelatedLogs();
+      File directoryOfFilteredFiles =
+          new File(directoryForBundle, directoryNameForYarnRelatedLogs);
+      File subDirectoryForExtractedFiles = new File(directoryForBundle,
+          FileUtils.cutExtension(
+              originalArchive.getName(), Constants.ZIP_EXTENSION));
+      ArchiveFilter archiveFilter = new ArchiveFilter(
+          subDirectoryForExtractedFiles, directoryOfFilteredFiles);
+      archiveFilter.addTarget(config.getRegexes().getLogFile(),
+          config.getDirs().getSubdirectoryNameForNodeLogs(),
+          isCompressingLogs());
+      archiveFilter.addTarget(config.getRegexes().getConfigFile(),
+          config.getDirs().getSubdirectoryNameForConfigFiles());
+      archiveFilter.filter(originalArchive);
+      if (!this.inputParams.getKeepOriginalFile()) {
+        FileUtils.deleteFile(originalArchive);
+      }
+    } catch (IOException | WrongInputTypeException e) {
+      throw new RuntimeException(
+          "An exception occurred during filtering the files of the archive.",
+          e);
+    }
+  }
+
+  private void buildEntityIndex(File directoryForBundle) {
+    try {
+      EntityIndexBuilder.build(config.getLogDir(directoryForBundle),
+          config.getEntityIndexFile(directoryForBundle));
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "An exception occurred during indexing the logs.", e);
+    }
+  }
+
+  private void buildTimeIndex(File directoryForBundle) {
+    try {
+      TimeIndexBuilder.build(config.getLogDir(directoryForBundle),
+          config.getTimeIndexFile(directoryForBundle),
+          Pattern.compile(config.getRegexes().getTimeStamp()));
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "An exception occurred during indexing the timestamps of the logs.",
+          e);
+    }
+  }
+
+  /**
+   * Reads from the configuration whether the trigrams of the logs
+   * have to be indexed. The trigram index is not built
+   * without a configured value.
+   */
+  private boolean isBuildingTrigramIndex() {
+    Search search = config.getSearch();
+    return search != null && Boolean.parseBoolean(search.getTrigramIndex());
+  }
+
+  /**
+   * Reads from the configuration whether the logs have to be stored
+   * block-compressed, see {@link BlockCompressedLog}.
+   * The logs are stored raw without a configured value.
+   */
+  private boolean isCompressingLogs() {
+    Search search = config.getSearch();
+    return search != null && Boolean.parseBoolean(search.getCompressedLogs());
+  }
+
+  private void buildTrigramIndex(File directoryForBundle) {
+    try {
+      TrigramIndexBuilder.build(config.getLogDir(directoryForBundle),
+          config.getTrigramIndexFile(directoryForBundle));
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "An exception occurred during indexing the trigrams of the logs.",
+          e);
+    }
+  }
+
   private File returnSubDirectory() {
     ConsoleWriter.CONSOLE.info("The preprocessing phase is finished, "
         + "and the subshell is also requested to be launched.\n"
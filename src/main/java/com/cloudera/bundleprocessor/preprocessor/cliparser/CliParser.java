@@ -61,6 +61,10 @@ public class CliParser {
     optionParserBuilder.addOption(
         "k", "keep", false,
         "whether to keep the original archive file", false);
+    optionParserBuilder.addOption(
+        "i", "inPlace", false,
+        "whether to read the logs from the archive without extracting it",
+        false);
     optionParserBuilder.addOption(
         "s", "shell", false,
         "whether we want to launch a subshell to analyze log data", false);
@@ -91,7 +95,9 @@ public class CliParser {
     }
     final boolean isKeepingOriginalFile = optionParser.checkParameter("keep");
     final boolean isWithShell = optionParser.checkParameter("shell");
+    final boolean isInPlace = optionParser.checkParameter("inPlace");
     return builder.withKeepOriginalFile(isKeepingOriginalFile)
+        .withInPlace(isInPlace)
         .withShell(isWithShell)
         .build();
   }
@@ -40,12 +40,14 @@ public final class InputParams {
   private final File mainDirectory;
   private final InputProcessor processor;
   private final boolean keepOriginalFile;
+  private final boolean inPlace;
   private final SearchIntent searchIntent;
 
   private InputParams(Builder builder) {
     this.mainDirectory = builder.mainDirectory;
     this.processor = createProcessor(builder);
     this.keepOriginalFile = builder.keepOriginalFile;
+    this.inPlace = builder.inPlace;
     this.searchIntent = builder.searchIntentBuilder.build();
   }
 
@@ -81,6 +83,16 @@ public final class InputParams {
     return keepOriginalFile;
   }
 
+  /**
+   * Tells whether the logs are read from the archive in place,
+   * instead of extracting the whole archive first.
+   *
+   * @return true if the archive is not extracted
+   */
+  public boolean isInPlace() {
+    return inPlace;
+  }
+
   public SearchIntent getSearchIntent() {
     return searchIntent;
   }
@@ -96,6 +108,7 @@ public final class InputParams {
     private File localFile;
     private URL directUrl;
     private boolean keepOriginalFile;
+    private boolean inPlace;
 
     public Builder() {
     }
@@ -134,6 +147,11 @@ public final class InputParams {
       return this;
     }
 
+    public Builder withInPlace(boolean inPlace) {
+      this.inPlace = inPlace;
+      return this;
+    }
+
     public Builder withShell(boolean withShell) {
       this.searchIntentBuilder.withLaunchingShell(withShell);
       return this;
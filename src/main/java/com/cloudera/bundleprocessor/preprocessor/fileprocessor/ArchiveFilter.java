@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.preprocessor.fileprocessor;
+
+import com.cloudera.bundleprocessor.Constants;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BlockCompressedLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * ArchiveFilter copies the files of a zip archive matching a path regex
+ * to a specified directory, without extracting the archive.
+ * It is the in-place counterpart of {@link FileExtractor} and
+ * {@link FileFilter}: the members of the archive are selected by the paths
+ * they would be extracted to, and only the selected ones are decompressed
+ * and written to the disk. The gz members and the zip members
+ * (zip-in-zip structures) are decompressed on the fly, in memory.
+ */
+public class ArchiveFilter {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(ArchiveFilter.class);
+
+  private final File sourceDir;
+  private final File workspace;
+  private final Map<Pattern, Target> targets = new LinkedHashMap<>();
+
+  /**
+   * The {@code ArchiveFilter()} function initializes the ArchiveFilter.
+   *
+   * @param sourceDir the directory the archive would be extracted into
+   *                  by {@link FileExtractor}, the path regexes are matched
+   *                  with the paths of the members under it
+   * @param workspace the directory to copy the matching members into
+   */
+  public ArchiveFilter(File sourceDir, File workspace) {
+    this.sourceDir = sourceDir;
+    this.workspace = workspace;
+  }
+
+  /**
+   * Adds a path regex selecting the members of the archive
+   * to copy into a subdirectory of the workspace.
+   * A member matching multiple regexes is copied by the first one.
+   *
+   * @param pathRegex     matching the filepath
+   * @param targetDirName the subdirectory under workspace to copy
+   *                      the files in
+   */
+  public void addTarget(String pathRegex, String targetDirName) {
+    addTarget(pathRegex, targetDirName, false);
+  }
+
+  /**
+   * Adds a path regex the same way as {@link #addTarget(String, String)},
+   * but if {@code compressing} is set, the selected members are stored
+   * as {@link BlockCompressedLog}s.
+   *
+   * @param pathRegex     matching the filepath
+   * @param targetDirName the subdirectory under workspace to copy
+   *                      the files in
+   * @param compressing   whether to store the files block-compressed
+   */
+  public void addTarget(String pathRegex, String targetDirName,
+                        boolean compressing) {
+    targets.put(Pattern.compile(pathRegex),
+        new Target(new File(workspace, targetDirName), compressing));
+  }
+
+  /**
+   * Copies the members of the archive matching one of the path regexes
+   * into their target directories.
+   *
+   * @param archive the zip archive
+   * @throws IOException if the archive can't be read
+   *                     or the files can't be written
+   */
+  public void filter(File archive) throws IOException {
+    LOG.info("Start filtering the members of {}", archive.getName());
+    for (Target target : targets.values()) {
+      FileUtils.findOrCreateDirectory(target.dir);
+    }
+    // the members are listed from the central directory
+    try (ZipFile zipFile = new ZipFile(archive)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        // the member is only decompressed if it is read
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          processEntry(entry, in, sourceDir);
+        }
+      }
+    }
+    LOG.info("Finished filtering the members of {}", archive.getName());
+  }
+
+  private void processNestedZip(InputStream in, File dir)
+      throws IOException {
+    try (ZipInputStream zipInput =
+             new ZipInputStream(new NonClosingInputStream(in))) {
+      for (ZipEntry entry = zipInput.getNextEntry(); entry != null;
+           entry = zipInput.getNextEntry()) {
+        processEntry(entry, zipInput, dir);
+      }
+    }
+  }
+
+  private void processEntry(ZipEntry entry, InputStream in, File dir)
+      throws IOException {
+    if (entry.isDirectory()) {
+      return;
+    }
+    File file = new File(dir, entry.getName());
+    String name = file.getName();
+    if (hasExtension(name, Constants.ZIP_EXTENSION)) {
+      // zip-in-zip structures are extracted next to the outer zip,
+      // see FileExtractor
+      LOG.debug("Reading nested archive: {}", entry.getName());
+      processNestedZip(in,
+          new File(dir, cutExtension(name, Constants.ZIP_EXTENSION)));
+    } else if (hasExtension(name, Constants.GZ_EXTENSION)) {
+      File gunzipped = new File(file.getParentFile(),
+          cutExtension(name, Constants.GZ_EXTENSION));
+      Target target = findTarget(gunzipped);
+      if (target != null) {
+        copyGz(in, gunzipped.getName(), target);
+      }
+    } else {
+      Target target = findTarget(file);
+      if (target != null) {
+        copy(in, name, target);
+      }
+    }
+  }
+
+  private Target findTarget(File file) {
+    String path = file.getAbsolutePath();
+    for (Map.Entry<Pattern, Target> target : targets.entrySet()) {
+      if (target.getKey().matcher(path).matches()) {
+        return target.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static void copyGz(InputStream in, String name, Target target)
+      throws IOException {
+    try {
+      copy(new GZIPInputStream(new NonClosingInputStream(in)), name, target);
+    } catch (EOFException e) {
+      LOG.debug("{} file couldn't be extracted. " +
+          "The file was either empty or corrupted. \n {}", name, e);
+    }
+  }
+
+  private static void copy(InputStream in, String name, Target target)
+      throws IOException {
+    LOG.debug("Copying {}", name);
+    if (target.compressing) {
+      BlockCompressedLog.write(in,
+          new File(target.dir, name + BlockCompressedLog.EXTENSION),
+          BlockCompressedLog.DEFAULT_BLOCK_SHIFT);
+      return;
+    }
+    try (OutputStream out = new BufferedOutputStream(
+        new FileOutputStream(new File(target.dir, name)))) {
+      FileUtils.copyInputStream(in, out);
+    }
+  }
+
+  private static boolean hasExtension(String name, String extension) {
+    return name.toLowerCase().endsWith(extension);
+  }
+
+  private static String cutExtension(String name, String extension) {
+    return name.substring(0, name.length() - extension.length());
+  }
+
+  /**
+   * A directory to copy the selected members into.
+   */
+  private static final class Target {
+
+    private final File dir;
+    private final boolean compressing;
+
+    private Target(File dir, boolean compressing) {
+      this.dir = dir;
+      this.compressing = compressing;
+    }
+  }
+
+  /**
+   * Lets a member of an archive be read by a decompressing stream
+   * which can be closed without closing the archive.
+   */
+  private static final class NonClosingInputStream extends FilterInputStream {
+
+    private NonClosingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
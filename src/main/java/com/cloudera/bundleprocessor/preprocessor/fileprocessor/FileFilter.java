@@ -19,6 +19,7 @@
 package com.cloudera.bundleprocessor.preprocessor.fileprocessor;
 
 import com.cloudera.bundleprocessor.Constants;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BlockCompressedLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +60,22 @@ public class FileFilter {
    */
   public void filter(String pathRegex, String targetDirName)
       throws IOException {
+    filter(pathRegex, targetDirName, false);
+  }
+
+  /**
+   * Filter function searches for file paths matching with a pathRegex and
+   * copies matches to a specified directory the same way as
+   * {@link #filter(String, String)}, but if {@code compressing} is set,
+   * the files are stored as {@link BlockCompressedLog}s.
+   *
+   * @param pathRegex     matching the filepath
+   * @param targetDirName the subdirectory under workspace to move the files in
+   * @param compressing   whether to store the files block-compressed
+   * @throws IOException exception can occur while writing on disk
+   */
+  public void filter(String pathRegex, String targetDirName,
+                     boolean compressing) throws IOException {
     LOG.info("Start filtering files into {}", targetDirName);
     File targetDir = new File(this.workspace, targetDirName);
     FileUtils.findOrCreateDirectory(targetDir);
@@ -73,7 +90,12 @@ public class FileFilter {
     List<Path> pathList = pathStream.collect(Collectors.toList());
     for (Path path : pathList) {
       File file = path.toFile();
-      FileUtils.copyFile(file, targetDir);
+      if (compressing) {
+        BlockCompressedLog.compress(file, new File(targetDir,
+            file.getName() + BlockCompressedLog.EXTENSION));
+      } else {
+        FileUtils.copyFile(file, targetDir);
+      }
     }
     LOG.info("Finished filtering files into {}", targetDirName);
   }
@@ -18,19 +18,83 @@
 
 package com.cloudera.bundleprocessor.subshell;
 
+import com.cloudera.bundleprocessor.console.ConsoleWriter;
 import com.cloudera.bundleprocessor.subshell.command.Command;
+import com.cloudera.bundleprocessor.subshell.context.StopSignal;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
-public class CommandExecutor {
+/**
+ * {@code CommandExecutor} executes the commands read from the CLI.
+ * The streaming commands run on a worker thread, so the CLI stays
+ * responsive: Ctrl-C raises the {@link StopSignal}, which the commands
+ * check cooperatively, also while a regex is being matched.
+ * A command has to stop at its deadline as well,
+ * see {@link StopSignal#setTimeBudget}.
+ * If a command doesn't stop within a grace period after the signal
+ * or the deadline, it is abandoned: its output is dropped,
+ * its thread is left to the command and the next command runs
+ * on a new worker thread.
+ * The commands searching the logs share the search engine and its cache,
+ * which are not safe for concurrent searches, so they don't start
+ * until an abandoned search exits. Waiting for it can be cancelled
+ * with Ctrl-C as well, then the command is not executed.
+ * The other commands (e.g. help) run right away.
+ */
+public class CommandExecutor implements Closeable {
+
+  public static final long DEFAULT_STOP_GRACE_MILLIS = 5000;
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(CommandExecutor.class);
+  private static final long POLL_INTERVAL_MILLIS = 100;
 
   private final Map<String, Command> commandMap;
+  private final StopSignal stopSignal;
+  private final long stopGraceMillis;
+  private ExecutorService worker;
+  private Future<?> abandonedSearch;
   private boolean readingMore = true;
 
   public CommandExecutor(Map<String, Command> commandMap) {
+    this(commandMap, new StopSignal(), DEFAULT_STOP_GRACE_MILLIS);
+  }
+
+  /**
+   * Creates an executor running the streaming commands on a worker thread.
+   *
+   * @param commandMap      the commands by their names
+   * @param stopSignal      the signal raised by Ctrl-C
+   * @param stopGraceMillis the time a command gets to stop
+   *                        after the signal was raised
+   */
+  public CommandExecutor(Map<String, Command> commandMap,
+                         StopSignal stopSignal, long stopGraceMillis) {
     this.commandMap = commandMap;
+    this.stopSignal = stopSignal;
+    this.stopGraceMillis = stopGraceMillis;
+    this.worker = createWorker();
+  }
+
+  private static ExecutorService createWorker() {
+    return Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "command-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
   }
 
   /**
@@ -49,6 +113,18 @@ public class CommandExecutor {
     if (command == null) {
       throw new UnknownCommandException();
     }
+    if (command.isUsingSearchEngine()) {
+      // Ctrl-C cancels the waiting instead of terminating the application
+      stopSignal.enter();
+      try {
+        if (!awaitAbandonedSearch()) {
+          LOG.info("The command was cancelled before it started");
+          return "";
+        }
+      } finally {
+        stopSignal.exit();
+      }
+    }
     Printable printable =
         command.generatePrintable(Arrays.copyOfRange(
             commands, 1, commands.length));
@@ -56,6 +132,146 @@ public class CommandExecutor {
     return printable.print();
   }
 
+  /**
+   * Executes the commandStr read from the CLI on the worker thread
+   * and writes the answer of the program to the output
+   * as soon as a part of it is available.
+   * The calling thread waits for the command to finish,
+   * or to be abandoned after the stop signal was raised.
+   *
+   * @param commandStr string read from CLI
+   * @param output     the consumer of the answer
+   * @throws UnknownCommandException if there is no command
+   * matching with commandStr
+   */
+  public void executeCommand(String commandStr, Consumer<String> output)
+      throws UnknownCommandException {
+    String[] commands = splitCommand(commandStr);
+    Command command = commandMap.get(commands[0]);
+    if (command == null) {
+      throw new UnknownCommandException();
+    }
+    String[] parameters = Arrays.copyOfRange(commands, 1, commands.length);
+    AtomicBoolean abandoned = new AtomicBoolean();
+    stopSignal.enter();
+    try {
+      if (command.isUsingSearchEngine() && !awaitAbandonedSearch()) {
+        LOG.info("The command was cancelled before it started");
+        return;
+      }
+      Future<?> result = worker.submit(() ->
+          command.writeOutput(parameters, part -> {
+            if (!abandoned.get()) {
+              output.accept(part);
+            }
+          }));
+      if (!await(result)) {
+        abandoned.set(true);
+        abandon(command, result);
+        return;
+      }
+    } finally {
+      stopSignal.exit();
+    }
+    this.readingMore = command.readMore();
+  }
+
+  /**
+   * Waits until the command finishes, or until the grace period
+   * after the stop signal or the deadline elapses.
+   *
+   * @return false if the command has to be abandoned
+   */
+  private boolean await(Future<?> result) {
+    long stopRaisedAt = -1;
+    while (true) {
+      try {
+        result.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return true;
+      } catch (TimeoutException e) {
+        if (!stopSignal.isRaised() && !stopSignal.isPastDeadline()) {
+          continue;
+        }
+        long now = System.nanoTime();
+        if (stopRaisedAt < 0) {
+          stopRaisedAt = now;
+        } else if (now - stopRaisedAt
+            >= TimeUnit.MILLISECONDS.toNanos(stopGraceMillis)) {
+          return false;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+  }
+
+  /**
+   * Leaves the command running on the current worker thread,
+   * the next commands run on a new one.
+   */
+  private void abandon(Command command, Future<?> result) {
+    LOG.warn("The command didn't stop, it was abandoned");
+    ConsoleWriter.CONSOLE.info("The command didn't stop in time, "
+        + "it is left running in the background without output, "
+        + "the next search starts when it exits");
+    worker.shutdown();
+    worker = createWorker();
+    if (command.isUsingSearchEngine()) {
+      abandonedSearch = result;
+    }
+  }
+
+  /**
+   * Waits until the abandoned search exits, if there is one,
+   * or until the stop signal is raised.
+   *
+   * @return false if the waiting was cancelled
+   */
+  private boolean awaitAbandonedSearch() {
+    if (abandonedSearch == null) {
+      return true;
+    }
+    if (!abandonedSearch.isDone()) {
+      ConsoleWriter.CONSOLE.info(
+          "Waiting for the abandoned search to exit...");
+    }
+    while (true) {
+      try {
+        abandonedSearch.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        break;
+      } catch (TimeoutException e) {
+        if (stopSignal.isRaised()) {
+          return false;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (ExecutionException e) {
+        LOG.debug("The abandoned search failed", e.getCause());
+        break;
+      }
+    }
+    abandonedSearch = null;
+    return true;
+  }
+
+  /**
+   * Stops the worker thread after the running command.
+   */
+  @Override
+  public void close() {
+    worker.shutdown();
+  }
+
   public boolean isReadingMore() {
     return readingMore;
   }
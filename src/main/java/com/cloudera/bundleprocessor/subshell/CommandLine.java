@@ -19,6 +19,7 @@
 package com.cloudera.bundleprocessor.subshell;
 
 import com.cloudera.bundleprocessor.subshell.command.Command;
+import com.cloudera.bundleprocessor.subshell.context.StopSignal;
 import org.jline.builtins.Completers;
 import org.jline.builtins.Widgets;
 import org.jline.reader.LineReader;
@@ -34,24 +35,36 @@ import java.util.stream.Collectors;
 
 public class CommandLine {
 
+  private static final int INTERRUPTED_EXIT_CODE = 130;
+
   private final String prompt;
   private final Map<String, Command> commandMap;
+  private final StopSignal stopSignal;
   private LineReader reader;
 
-  public CommandLine(String name, Map<String, Command> commandMap) {
+  public CommandLine(String name, Map<String, Command> commandMap,
+                     StopSignal stopSignal) {
     this.prompt = name + "> ";
     this.commandMap = commandMap;
+    this.stopSignal = stopSignal;
   }
 
   /**
    * Creates a LineReader object to autocomplete
    * and read commands written in CLI.
+   * Ctrl-C stops the running command if it can be stopped
+   * (see {@link StopSignal}), otherwise it terminates the application.
    *
    * @throws IOException if the terminal cant be launched
    */
   public void init() throws IOException {
     Terminal terminal;
     terminal = TerminalBuilder.terminal();
+    terminal.handle(Terminal.Signal.INT, signal -> {
+      if (!stopSignal.raise()) {
+        System.exit(INTERRUPTED_EXIT_CODE);
+      }
+    });
     Completers.TreeCompleter completer = createCompleter();
     DefaultParser parser = new DefaultParser();
     this.reader = LineReaderBuilder.builder()
@@ -79,11 +79,20 @@ public class Subshell {
     LOG.info("Subshell was closed");
   }
 
+  /**
+   * Writes a part of the output of a command to the console.
+   * The console appends a line break to every message,
+   * so the last line break of the part is removed.
+   */
+  private static void writeOutput(String output) {
+    ConsoleWriter.CONSOLE.info(output.endsWith("\n")
+        ? output.substring(0, output.length() - 1) : output);
+  }
+
   private void executeCommand(String command, String errorMessage) {
     // LOG.info("Executing command: " + command);
     try {
-      String commandOutput = commandExecutor.executeCommand(command);
-      ConsoleWriter.CONSOLE.info(commandOutput);
+      commandExecutor.executeCommand(command, Subshell::writeOutput);
     } catch (UnknownCommandException e) {
       // ConsoleWriter.error(e.getMessage());
       ConsoleWriter.CONSOLE.info(errorMessage);
@@ -21,6 +21,8 @@ package com.cloudera.bundleprocessor.subshell.command;
 import com.cloudera.bundleprocessor.subshell.command.util.AutoCompleterWrapper;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
 
+import java.util.function.Consumer;
+
 /**
  * Command is an interface for all {@link Command} class in the project.
  * This interface contains all the functions
@@ -32,6 +34,29 @@ public interface Command {
 
   Printable generatePrintable(String[] parameters);
 
+  /**
+   * Executes the command and writes its output as soon as it is available.
+   * By default the whole output is written at once.
+   *
+   * @param parameters user-defined parameters
+   * @param output     the consumer of the output
+   */
+  default void writeOutput(String[] parameters, Consumer<String> output) {
+    output.accept(generatePrintable(parameters).print());
+  }
+
+  /**
+   * Tells whether the command searches the logs. The search engine
+   * doesn't run several searches at once, so these commands wait
+   * for an abandoned search to exit, see
+   * {@link com.cloudera.bundleprocessor.subshell.CommandExecutor}.
+   *
+   * @return true if the command uses the search engine
+   */
+  default boolean isUsingSearchEngine() {
+    return false;
+  }
+
   AutoCompleterWrapper createAutoCompleterWrapper();
 
   String getName();
@@ -22,10 +22,37 @@ import com.cloudera.bundleprocessor.OptionParser;
 import com.cloudera.bundleprocessor.console.ConsoleWriter;
 import com.cloudera.bundleprocessor.subshell.command.util.AutoCompleterWrapper;
 import com.cloudera.bundleprocessor.subshell.context.Context;
+import com.cloudera.bundleprocessor.subshell.context.RegularExpressions;
+import com.cloudera.bundleprocessor.subshell.search.engine.TimeRange;
+import com.cloudera.bundleprocessor.subshell.search.request.Executable;
+import com.cloudera.bundleprocessor.subshell.search.request.FollowingExecutable;
+import com.cloudera.bundleprocessor.subshell.search.request.SingleExecutable;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.ParseException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * {@code ParsingSearchCommand} abstract class is a {@link SearchCommand}
+ * parsing its parameters with an {@link OptionParser}.
+ * Besides the options of the command, every ParsingSearchCommand
+ * accepts the --from and --to options, which restrict the search
+ * to a {@link TimeRange}, the --head (or --limit) and --tail options,
+ * which only show the first or the last matches, and the --follow option,
+ * which keeps searching the lines appended to the logs
+ * until Ctrl-C is pressed.
+ */
 public abstract class ParsingSearchCommand extends SearchCommand {
 
+  private static final String FROM = "from";
+  private static final String TO = "to";
+  private static final String FOLLOW = "follow";
+  private static final String HEAD = "head";
+  private static final String LIMIT = "limit";
+  private static final String TAIL = "tail";
+
   protected ParsingSearchCommand(Context context) {
     super(context);
   }
@@ -40,7 +67,7 @@ public abstract class ParsingSearchCommand extends SearchCommand {
    */
   protected OptionParser initializeOptionParser(String[] parameters)
       throws ParseException {
-    OptionParser optionParser = createOptionParser();
+    OptionParser optionParser = createOptionParserWithTimeRange();
     try {
       optionParser.parse(parameters);
     } catch (ParseException e) {
@@ -54,7 +81,135 @@ public abstract class ParsingSearchCommand extends SearchCommand {
 
   @Override
   public AutoCompleterWrapper createAutoCompleterWrapper() {
-    return new AutoCompleterWrapper(createOptionParser());
+    return new AutoCompleterWrapper(createOptionParserWithTimeRange());
+  }
+
+  private OptionParser createOptionParserWithTimeRange() {
+    OptionParser optionParser = createOptionParser();
+    optionParser.getOptionsObject()
+        .addOption(Option.builder().longOpt(FROM).hasArg().argName("time")
+            .desc("only search the lines logged at or after the time, "
+                + "e.g. 2020-03-24T10:00")
+            .build())
+        .addOption(Option.builder().longOpt(TO).hasArg().argName("time")
+            .desc("only search the lines logged at or before the time, "
+                + "e.g. 2020-03-24T10:10")
+            .build())
+        .addOption(Option.builder().longOpt(HEAD).hasArg().argName("n")
+            .desc("only show the first n matches, "
+                + "the logs are only read until they are found")
+            .build())
+        .addOption(Option.builder().longOpt(LIMIT).hasArg().argName("n")
+            .desc("the same as --head")
+            .build())
+        .addOption(Option.builder().longOpt(TAIL).hasArg().argName("n")
+            .desc("only show the last n matches, "
+                + "the logs are read backwards until they are found")
+            .build())
+        .addOption(Option.builder().longOpt(FOLLOW)
+            .desc("keep searching the lines appended to the logs "
+                + "until Ctrl-C is pressed")
+            .build());
+    return optionParser;
+  }
+
+  /**
+   * Restricts the search requests of the executable to the time range
+   * given by the --from and --to options.
+   *
+   * @param executable   the executable of the command
+   * @param optionParser contains the user defined parameters
+   * @return the executable
+   * @throws IllegalArgumentException if the time range is invalid
+   */
+  protected Executable restrictToTimeRange(Executable executable,
+                                           OptionParser optionParser) {
+    String from = optionParser.getParameter(FROM);
+    String to = optionParser.getParameter(TO);
+    if (executable == null || from == null && to == null) {
+      return executable;
+    }
+    TimeRange timeRange = new TimeRange(from, to, getTimeStampPattern());
+    List<SingleExecutable> singleExecutables = new ArrayList<>();
+    executable.collectSingleExecutables(singleExecutables);
+    for (SingleExecutable singleExecutable : singleExecutables) {
+      singleExecutable.restrictTo(timeRange);
+    }
+    return executable;
+  }
+
+  /**
+   * Returns the configured pattern of the timestamps of the logs,
+   * the bounds of the time ranges have to follow it.
+   */
+  private Pattern getTimeStampPattern() {
+    RegularExpressions regexes = getContext().getConfig().getRegexes();
+    return regexes == null || regexes.getTimeStamp() == null
+        ? TimeRange.DEFAULT_TIME_STAMP
+        : Pattern.compile(regexes.getTimeStamp());
+  }
+
+  /**
+   * Limits the search requests of the executable to their first
+   * or last matches given by the --head (or --limit) and --tail options.
+   *
+   * @param executable   the executable of the command
+   * @param optionParser contains the user defined parameters
+   * @return the executable
+   * @throws IllegalArgumentException if the limits are invalid
+   *                                  or combined with --follow
+   */
+  protected Executable limitResults(Executable executable,
+                                    OptionParser optionParser) {
+    int head = parseLimit(optionParser, HEAD);
+    int limit = parseLimit(optionParser, LIMIT);
+    int tail = parseLimit(optionParser, TAIL);
+    if (executable == null || head == 0 && limit == 0 && tail == 0) {
+      return executable;
+    }
+    if (head > 0 && limit > 0 && head != limit) {
+      throw new IllegalArgumentException(
+          "--head and --limit are given with different values");
+    } else if (optionParser.checkParameter(FOLLOW)) {
+      throw new IllegalArgumentException(
+          "The followed logs can't be limited");
+    }
+    List<SingleExecutable> singleExecutables = new ArrayList<>();
+    executable.collectSingleExecutables(singleExecutables);
+    for (SingleExecutable singleExecutable : singleExecutables) {
+      singleExecutable.limitTo(Math.max(head, limit), tail);
+    }
+    return executable;
+  }
+
+  private static int parseLimit(OptionParser optionParser, String option) {
+    String value = optionParser.getParameter(option);
+    if (value == null) {
+      return 0;
+    }
+    int limit = Integer.parseInt(value.trim());
+    if (limit < 1) {
+      throw new IllegalArgumentException(
+          "--" + option + " must be positive, but was " + limit);
+    }
+    return limit;
+  }
+
+  /**
+   * Makes the executable follow the logs
+   * if the --follow option was given.
+   *
+   * @param executable   the executable of the command
+   * @param optionParser contains the user defined parameters
+   * @return the executable following the logs or the executable itself
+   */
+  protected Executable followIfRequested(Executable executable,
+                                         OptionParser optionParser) {
+    if (executable == null || !optionParser.checkParameter(FOLLOW)) {
+      return executable;
+    }
+    return new FollowingExecutable(executable,
+        getContext().getStopSignal());
   }
 
   protected abstract OptionParser createOptionParser();
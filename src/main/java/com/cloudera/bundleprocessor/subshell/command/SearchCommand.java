@@ -21,13 +21,18 @@ package com.cloudera.bundleprocessor.subshell.command;
 import com.cloudera.bundleprocessor.OptionParser;
 import com.cloudera.bundleprocessor.console.ConsoleWriter;
 import com.cloudera.bundleprocessor.subshell.context.Context;
+import com.cloudera.bundleprocessor.subshell.context.Search;
 import com.cloudera.bundleprocessor.subshell.format.EmptyPrintable;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.search.format.Grepper;
 import com.cloudera.bundleprocessor.subshell.search.request.Executable;
+import com.cloudera.bundleprocessor.subshell.search.request.SingleExecutable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * {@code SearchCommand} abstract class is a {@link Command} class
@@ -43,6 +48,56 @@ public abstract class SearchCommand implements Command {
     this.context = context;
   }
 
+  @Override
+  public Printable generatePrintable(String[] parameters) {
+    Executable executable = prepareExecutable(parameters);
+    return executable == null ? new EmptyPrintable() : execute(executable);
+  }
+
+  /**
+   * Executes the command and streams the rows of the output
+   * as the search finds them.
+   * The search can be stopped by Ctrl-C, and every search request
+   * stops after the time budget of the configuration,
+   * see {@link SingleExecutable#makeCancellable}.
+   * The command has to stop once all of its requests could run out
+   * of their budgets, the deadline is set on the stop signal.
+   *
+   * @param parameters user-defined parameters
+   * @param output     the consumer of the output
+   */
+  @Override
+  public void writeOutput(String[] parameters, Consumer<String> output) {
+    Executable executable = prepareExecutable(parameters);
+    if (executable == null) {
+      return;
+    }
+    List<SingleExecutable> singleExecutables = new ArrayList<>();
+    executable.collectSingleExecutables(singleExecutables);
+    long timeoutMillis = getQueryTimeoutMillis();
+    for (SingleExecutable singleExecutable : singleExecutables) {
+      singleExecutable.makeCancellable(
+          this.context.getStopSignal(), timeoutMillis);
+    }
+    this.context.getStopSignal().setTimeBudget(
+        timeoutMillis * singleExecutables.size());
+    try {
+      executable.execute(this.context.getSearchEngine(), output);
+    } catch (IOException e) {
+      ConsoleWriter.CONSOLE.error("An exception occurred: ", e);
+    }
+  }
+
+  /**
+   * {@code prepareExecutable()} parses the parameters
+   * and creates the {@link Executable} of the command.
+   *
+   * @param parameters user-defined parameters
+   * @return the Executable or null if there is nothing to execute
+   * (e.g. help was requested or the parameters were invalid)
+   */
+  protected abstract Executable prepareExecutable(String[] parameters);
+
   protected Printable execute(Executable executable) {
     try {
       executable.execute(this.context.getSearchEngine());
@@ -53,6 +108,19 @@ public abstract class SearchCommand implements Command {
     }
   }
 
+  /**
+   * Returns the time budget of a search request from the configuration.
+   *
+   * @return the time budget in milliseconds, 0 if there is no limit
+   */
+  private long getQueryTimeoutMillis() {
+    Search search = this.context.getConfig().getSearch();
+    if (search == null || search.getQueryTimeoutSeconds() == null) {
+      return 0;
+    }
+    return Long.parseLong(search.getQueryTimeoutSeconds()) * 1000;
+  }
+
   protected Grepper evaluateFormatOptions(
       Map<String, Grepper> formatOptionMap, OptionParser optionParser) {
     Grepper grepper = formatOptionMap.get("default");
@@ -72,4 +140,9 @@ public abstract class SearchCommand implements Command {
   public boolean readMore() {
     return true;
   }
+
+  @Override
+  public boolean isUsingSearchEngine() {
+    return true;
+  }
 }
@@ -23,8 +23,6 @@ import com.cloudera.bundleprocessor.console.ConsoleWriter;
 import com.cloudera.bundleprocessor.subshell.command.Command;
 import com.cloudera.bundleprocessor.subshell.command.ParsingSearchCommand;
 import com.cloudera.bundleprocessor.subshell.context.Context;
-import com.cloudera.bundleprocessor.subshell.format.EmptyPrintable;
-import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.search.request.Executable;
 import org.apache.commons.cli.ParseException;
 
@@ -45,11 +43,11 @@ public abstract class HybridSearch extends ParsingSearchCommand {
   }
 
   @Override
-  public Printable generatePrintable(String[] parameters) {
+  protected Executable prepareExecutable(String[] parameters) {
     if (parameters.length < 1) {
       ConsoleWriter.CONSOLE.error(
           "No input parameter was provided for the Command");
-      return new EmptyPrintable();
+      return null;
     }
     String firstParameter = parameters[0];
     parameters = Arrays.copyOfRange(parameters, 1, parameters.length);
@@ -57,26 +55,27 @@ public abstract class HybridSearch extends ParsingSearchCommand {
     try {
       optionParser = initializeOptionParser(parameters);
     } catch (ParseException e) {
-      return new EmptyPrintable();
+      return null;
     }
     if (firstParameter.equals("--help") || firstParameter.equals("-h")) {
       optionParser.printHelp();
-      return new EmptyPrintable();
+      return null;
     } else {
-      return createAndExecute(firstParameter, optionParser);
+      return prepareExecutable(firstParameter, optionParser);
     }
   }
 
-  private Printable createAndExecute(
+  private Executable prepareExecutable(
       String firstParameter, OptionParser optionParser) {
     try {
-      Executable executable = createExecutable(firstParameter, optionParser);
-      return execute(executable);
+      return followIfRequested(limitResults(restrictToTimeRange(
+          createExecutable(firstParameter, optionParser), optionParser),
+          optionParser), optionParser);
     } catch (IllegalArgumentException e) {
       ConsoleWriter.CONSOLE.error(
           "The parameters specified for the command were invalid");
       optionParser.printHelp();
-      return new EmptyPrintable();
+      return null;
     }
   }
 
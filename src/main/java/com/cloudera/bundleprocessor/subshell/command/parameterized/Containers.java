@@ -128,10 +128,12 @@ public class Containers extends ParameterizedSearch {
       execBuilder.withFormatter(formatOptionMap.get("default"));
       return regexForKilledContainers;
     } else if (ceKilled) {
-      execBuilder.withFormatter(formatOptionMap.get("raw"));
+      execBuilder.withFormatter(formatOptionMap.get("raw"))
+          .isSpanningMultipleLines();
       return regexForExitingContainers;
     } else if (ceExitcode != null) {
-      execBuilder.withFormatter(formatOptionMap.get("raw"));
+      execBuilder.withFormatter(formatOptionMap.get("raw"))
+          .isSpanningMultipleLines();
       return modifyRegexForExitCode(regexForExitingContainers, ceExitcode);
     } else if (preempted) {
       execBuilder.withFormatter(
@@ -75,6 +75,7 @@ public class Exceptions extends ParameterizedSearch {
         evaluateFormatOptions(formatOptionMap, optionParser));
     return execBuilder
         .withPattern(EXCEPTION_PATTERN)
+        .isSpanningMultipleLines()
         .isCheckingRmLogs()
         .build();
   }
@@ -23,8 +23,6 @@ import com.cloudera.bundleprocessor.console.ConsoleWriter;
 import com.cloudera.bundleprocessor.subshell.command.Command;
 import com.cloudera.bundleprocessor.subshell.command.ParsingSearchCommand;
 import com.cloudera.bundleprocessor.subshell.context.Context;
-import com.cloudera.bundleprocessor.subshell.format.EmptyPrintable;
-import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.search.request.Executable;
 import org.apache.commons.cli.MissingOptionException;
 import org.apache.commons.cli.ParseException;
@@ -48,31 +46,32 @@ public abstract class ParameterizedSearch extends ParsingSearchCommand {
   }
 
   @Override
-  public Printable generatePrintable(String[] parameters) {
+  protected Executable prepareExecutable(String[] parameters) {
     OptionParser optionParser;
     try {
       optionParser = initializeOptionParser(parameters);
     } catch (ParseException e) {
-      return new EmptyPrintable();
+      return null;
     }
     if (optionParser.checkParameter("help")) {
       optionParser.printHelp();
-      return new EmptyPrintable();
+      return null;
     } else {
-      return execute(optionParser);
+      return prepareExecutable(optionParser);
     }
   }
 
-  private Printable execute(OptionParser optionParser) {
+  private Executable prepareExecutable(OptionParser optionParser) {
     try {
-      Executable executable = createExecutable(optionParser);
-      return execute(executable);
+      return followIfRequested(limitResults(
+          restrictToTimeRange(createExecutable(optionParser), optionParser),
+          optionParser), optionParser);
     } catch (MissingOptionException | IllegalArgumentException e) {
       ConsoleWriter.CONSOLE.error("The parameters specified " +
           "for the command were invalid", e);
       LOG.error("Error during processing", e);
       optionParser.printHelp();
-      return new EmptyPrintable();
+      return null;
     }
   }
 
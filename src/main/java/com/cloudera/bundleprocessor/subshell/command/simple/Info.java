@@ -22,6 +22,7 @@ import com.cloudera.bundleprocessor.Constants;
 import com.cloudera.bundleprocessor.subshell.command.Command;
 import com.cloudera.bundleprocessor.subshell.command.util.RegexElements;
 import com.cloudera.bundleprocessor.subshell.context.Context;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 import com.cloudera.bundleprocessor.subshell.search.format.Counter;
 import com.cloudera.bundleprocessor.subshell.search.format.CounterFunction;
 import com.cloudera.bundleprocessor.subshell.search.format.Grepper;
@@ -31,7 +32,6 @@ import com.cloudera.bundleprocessor.subshell.search.request.SingleExecutable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -57,10 +57,10 @@ public class Info extends SimpleSearch {
     super(context);
   }
 
-  private static Integer[] countRoles(Matcher matcher) {
+  private static Integer[] countRoles(LogMatch match) {
     Integer[] counterValues = new Integer[]{0, 0};
-    LOG.info(String.valueOf(matcher));
-    String role = matcher.group("role");
+    LOG.info(match.group());
+    String role = match.group("role");
     if (role.equals(Constants.RESOURCEMANAGER)) {
       counterValues[0]++;
     } else if (role.equals(Constants.NODEMANAGER)) {
@@ -76,10 +76,10 @@ public class Info extends SimpleSearch {
     };
   }
 
-  private static Integer[] countResources(Matcher matcher) {
+  private static Integer[] countResources(LogMatch match) {
     Integer[] counterValues = new Integer[]{0, 0};
-    counterValues[0] += Integer.parseInt(matcher.group("vCores"));
-    counterValues[1] += Integer.parseInt(matcher.group("memory"));
+    counterValues[0] += Integer.parseInt(match.group("vCores"));
+    counterValues[1] += Integer.parseInt(match.group("memory"));
     return counterValues;
   }
 
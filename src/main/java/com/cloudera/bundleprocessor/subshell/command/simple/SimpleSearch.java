@@ -22,7 +22,6 @@ import com.cloudera.bundleprocessor.subshell.command.Command;
 import com.cloudera.bundleprocessor.subshell.command.SearchCommand;
 import com.cloudera.bundleprocessor.subshell.command.util.AutoCompleterWrapper;
 import com.cloudera.bundleprocessor.subshell.context.Context;
-import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.search.request.Executable;
 
 /**
@@ -38,8 +37,8 @@ public abstract class SimpleSearch extends SearchCommand {
   }
 
   @Override
-  public Printable generatePrintable(String[] parameters) {
-    return execute(createExecutable());
+  protected Executable prepareExecutable(String[] parameters) {
+    return createExecutable();
   }
 
   @Override
@@ -23,6 +23,8 @@ public class Cache {
   private String cacheDirectory;
   private String cacheType;
   private String cacheItemCapacity;
+  private String cacheMaxBytes;
+  private String cacheCompression;
 
   public String getCacheDirectory() {
     return cacheDirectory;
@@ -48,5 +50,21 @@ public class Cache {
     this.cacheItemCapacity = cacheItemCapacity;
   }
 
+  public String getCacheMaxBytes() {
+    return cacheMaxBytes;
+  }
+
+  public void setCacheMaxBytes(String cacheMaxBytes) {
+    this.cacheMaxBytes = cacheMaxBytes;
+  }
+
+  public String getCacheCompression() {
+    return cacheCompression;
+  }
+
+  public void setCacheCompression(String cacheCompression) {
+    this.cacheCompression = cacheCompression;
+  }
+
 
 }
@@ -19,6 +19,9 @@
 package com.cloudera.bundleprocessor.subshell.context;
 
 import com.cloudera.bundleprocessor.Constants;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.EntityIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TimeIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TrigramIndex;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
@@ -32,6 +35,7 @@ public class Config {
   private RegularExpressions regularExpressions;
   private DirectoryNames directoryNames;
   private Cache cache;
+  private Search search;
 
   /**
    * {@code createConfig()} function creates a representation
@@ -81,9 +85,56 @@ public class Config {
     this.cache = cache;
   }
 
+  public Search getSearch() {
+    return search;
+  }
+
+  public void setSearch(Search search) {
+    this.search = search;
+  }
+
   public File getLogDir(File mainDir) {
     final File workspace =
         new File(mainDir, getDirs().getDirectoryNameForYarnRelatedLogs());
     return new File(workspace, getDirs().getSubdirectoryNameForNodeLogs());
   }
+
+  /**
+   * Returns the file of the {@link EntityIndex} of the logs,
+   * which is stored next to the directory of the logs.
+   *
+   * @param mainDir the directory of the bundle
+   * @return the index file
+   */
+  public File getEntityIndexFile(File mainDir) {
+    final File workspace =
+        new File(mainDir, getDirs().getDirectoryNameForYarnRelatedLogs());
+    return new File(workspace, Constants.ENTITY_INDEX_FILE_NAME);
+  }
+
+  /**
+   * Returns the file of the {@link TrigramIndex} of the logs,
+   * which is stored next to the directory of the logs.
+   *
+   * @param mainDir the directory of the bundle
+   * @return the index file
+   */
+  public File getTrigramIndexFile(File mainDir) {
+    final File workspace =
+        new File(mainDir, getDirs().getDirectoryNameForYarnRelatedLogs());
+    return new File(workspace, Constants.TRIGRAM_INDEX_FILE_NAME);
+  }
+
+  /**
+   * Returns the file of the {@link TimeIndex} of the logs,
+   * which is stored next to the directory of the logs.
+   *
+   * @param mainDir the directory of the bundle
+   * @return the index file
+   */
+  public File getTimeIndexFile(File mainDir) {
+    final File workspace =
+        new File(mainDir, getDirs().getDirectoryNameForYarnRelatedLogs());
+    return new File(workspace, Constants.TIME_INDEX_FILE_NAME);
+  }
 }
@@ -22,12 +22,16 @@ import com.cloudera.bundleprocessor.subshell.search.engine.Query;
 import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.Cache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.CacheIOExecutor;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.ConcurrentLRUCache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.FileBasedCacheIOExecutor;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.GeneralCache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.InMemoryLRUCache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.LinesOfLogs;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.TieredCache;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.WeightedLRUCache;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
+import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +46,7 @@ public class Context {
       LoggerFactory.getLogger(Context.class);
 
   private final Config config;
+  private final StopSignal stopSignal = new StopSignal();
   private SearchEngine searchEngine;
   private SearchIntent searchIntent;
 
@@ -60,21 +65,44 @@ public class Context {
 
   /**
    * This method sets the searchEngine depending on the targetDirectory.
+   * The previous searchEngine is closed to release its mapped logs.
    *
    * @param targetDirectory is the directory containing the log files
    */
   public void setupSearchEngine(File targetDirectory) {
+    if (this.searchEngine != null) {
+      this.searchEngine.close();
+    }
     this.searchEngine = createSearchEngine(targetDirectory);
     Cache<Query, LinesOfLogs> cache = null;
     if (config.getCache().getCacheType().equals("InMemoryLRUCache")) {
       int cacheCapacity =
           Integer.parseInt(config.getCache().getCacheItemCapacity());
       cache = new InMemoryLRUCache<>(cacheCapacity);
+    } else if (config.getCache().getCacheType()
+        .equals("ConcurrentLRUCache")) {
+      int cacheCapacity =
+          Integer.parseInt(config.getCache().getCacheItemCapacity());
+      cache = new ConcurrentLRUCache<>(cacheCapacity);
+    } else if (config.getCache().getCacheType().equals("TieredCache")) {
+      long cacheMaxBytes =
+          Long.parseLong(config.getCache().getCacheMaxBytes());
+      CacheIOExecutor cacheIOExecutor = createCacheIOExecutor(targetDirectory);
+      if (cacheIOExecutor != null) {
+        cache = new TieredCache<>(cacheMaxBytes,
+            LinesOfLogs::estimateRetainedSize,
+            new GeneralCache<>(cacheIOExecutor));
+      }
+    } else if (config.getCache().getCacheType().equals("WeightedLRUCache")) {
+      long cacheMaxBytes =
+          Long.parseLong(config.getCache().getCacheMaxBytes());
+      cache = new WeightedLRUCache<>(
+          cacheMaxBytes, LinesOfLogs::estimateRetainedSize);
     } else if (config.getCache().getCacheType().equals("GeneralCache")) {
-      File cacheDir = new File(config.getCache().getCacheDirectory());
-      CacheIOExecutor cacheIOExecutor =
-          new FileBasedCacheIOExecutor(cacheDir.getAbsolutePath());
-      cache = new GeneralCache<>(cacheIOExecutor);
+      CacheIOExecutor cacheIOExecutor = createCacheIOExecutor(targetDirectory);
+      if (cacheIOExecutor != null) {
+        cache = new GeneralCache<>(cacheIOExecutor);
+      }
     } else if (config.getCache().getCacheType() != null ||
         !config.getCache().getCacheType().equals("")) {
       LOG.error("CacheType couldn't be recognised.");
@@ -82,10 +110,33 @@ public class Context {
     this.searchEngine.init(config, cache);
   }
 
+  /**
+   * Creates the executor of the cache files found in a bundle.
+   * The files of every bundle are stored in their own folder,
+   * so the results found in another bundle are not shown.
+   *
+   * @param targetDirectory is the directory containing the log files
+   * @return the executor or null if the bundle couldn't be read
+   */
+  private CacheIOExecutor createCacheIOExecutor(File targetDirectory) {
+    try {
+      return FileBasedCacheIOExecutor.forBundle(
+          config.getCache().getCacheDirectory(), targetDirectory,
+          Boolean.parseBoolean(config.getCache().getCacheCompression()));
+    } catch (IOException e) {
+      LOG.error("The cache couldn't be created for the bundle", e);
+      return null;
+    }
+  }
+
   public SearchEngine getSearchEngine() {
     return searchEngine;
   }
 
+  public StopSignal getStopSignal() {
+    return stopSignal;
+  }
+
   public SearchIntent getSearchIntent() {
     return searchIntent;
   }
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.context;
+
+public class Search {
+
+  private String parallelism;
+  private String chunkSizeInMegabytes;
+  private String literalPrefilter;
+  private String trigramIndex;
+  private String maxMappedMegabytes;
+  private String maxMappedFiles;
+  private String compressedLogs;
+  private String blockCacheMegabytes;
+  private String queryTimeoutSeconds;
+  private String regexEngine;
+  private String scanWorkers;
+  private String scanWorkerAddresses;
+  private String scanWorkerSecret;
+  private String scanWorkerBindAddress;
+
+  public String getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(String parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public String getChunkSizeInMegabytes() {
+    return chunkSizeInMegabytes;
+  }
+
+  public void setChunkSizeInMegabytes(String chunkSizeInMegabytes) {
+    this.chunkSizeInMegabytes = chunkSizeInMegabytes;
+  }
+
+  public String getLiteralPrefilter() {
+    return literalPrefilter;
+  }
+
+  public void setLiteralPrefilter(String literalPrefilter) {
+    this.literalPrefilter = literalPrefilter;
+  }
+
+  public String getTrigramIndex() {
+    return trigramIndex;
+  }
+
+  public void setTrigramIndex(String trigramIndex) {
+    this.trigramIndex = trigramIndex;
+  }
+
+  public String getMaxMappedMegabytes() {
+    return maxMappedMegabytes;
+  }
+
+  public void setMaxMappedMegabytes(String maxMappedMegabytes) {
+    this.maxMappedMegabytes = maxMappedMegabytes;
+  }
+
+  public String getMaxMappedFiles() {
+    return maxMappedFiles;
+  }
+
+  public void setMaxMappedFiles(String maxMappedFiles) {
+    this.maxMappedFiles = maxMappedFiles;
+  }
+
+  public String getCompressedLogs() {
+    return compressedLogs;
+  }
+
+  public void setCompressedLogs(String compressedLogs) {
+    this.compressedLogs = compressedLogs;
+  }
+
+  public String getBlockCacheMegabytes() {
+    return blockCacheMegabytes;
+  }
+
+  public void setBlockCacheMegabytes(String blockCacheMegabytes) {
+    this.blockCacheMegabytes = blockCacheMegabytes;
+  }
+
+  public String getQueryTimeoutSeconds() {
+    return queryTimeoutSeconds;
+  }
+
+  public void setQueryTimeoutSeconds(String queryTimeoutSeconds) {
+    this.queryTimeoutSeconds = queryTimeoutSeconds;
+  }
+
+  public String getRegexEngine() {
+    return regexEngine;
+  }
+
+  public void setRegexEngine(String regexEngine) {
+    this.regexEngine = regexEngine;
+  }
+
+  public String getScanWorkers() {
+    return scanWorkers;
+  }
+
+  public void setScanWorkers(String scanWorkers) {
+    this.scanWorkers = scanWorkers;
+  }
+
+  public String getScanWorkerAddresses() {
+    return scanWorkerAddresses;
+  }
+
+  public void setScanWorkerAddresses(String scanWorkerAddresses) {
+    this.scanWorkerAddresses = scanWorkerAddresses;
+  }
+
+  public String getScanWorkerSecret() {
+    return scanWorkerSecret;
+  }
+
+  public void setScanWorkerSecret(String scanWorkerSecret) {
+    this.scanWorkerSecret = scanWorkerSecret;
+  }
+
+  public String getScanWorkerBindAddress() {
+    return scanWorkerBindAddress;
+  }
+
+  public void setScanWorkerBindAddress(String scanWorkerBindAddress) {
+    this.scanWorkerBindAddress = scanWorkerBindAddress;
+  }
+}
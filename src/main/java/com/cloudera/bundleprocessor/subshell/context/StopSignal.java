@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code StopSignal} lets the user stop the running commands
+ * (e.g. a long search or following the logs) by pressing Ctrl-C.
+ * The signal is raised by the terminal and polled by the command.
+ * It also holds the deadline of the running command,
+ * after which the command has to stop as if the signal was raised.
+ * The signal and the deadline are cleared when the next command starts,
+ * so a command exiting late still sees them.
+ */
+public class StopSignal {
+
+  private int stoppableCommands;
+  private volatile boolean raised;
+  private volatile long deadlineNanos;
+  private volatile boolean hasDeadline;
+
+  /**
+   * Marks the start of a command which can be stopped.
+   * The commands can be nested, e.g. following the logs
+   * is a part of a command, the outermost one clears the signal.
+   */
+  public synchronized void enter() {
+    if (stoppableCommands++ == 0) {
+      raised = false;
+      hasDeadline = false;
+    }
+  }
+
+  /**
+   * Marks the end of a command which can be stopped.
+   * The signal is kept, so the enclosing command sees it as well.
+   */
+  public synchronized void exit() {
+    stoppableCommands--;
+  }
+
+  /**
+   * Sets the time budget of the running command.
+   *
+   * @param budgetMillis the time budget from now in milliseconds,
+   *                     0 for no limit
+   */
+  public void setTimeBudget(long budgetMillis) {
+    deadlineNanos = System.nanoTime()
+        + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    hasDeadline = budgetMillis > 0;
+  }
+
+  /**
+   * Tells whether the running command ran out of its time budget.
+   *
+   * @return true if the deadline of the command has passed
+   */
+  public boolean isPastDeadline() {
+    return hasDeadline && System.nanoTime() - deadlineNanos >= 0;
+  }
+
+  /**
+   * Raises the signal to stop the running commands.
+   *
+   * @return false if there is no command to stop
+   */
+  public synchronized boolean raise() {
+    if (stoppableCommands == 0) {
+      return false;
+    }
+    raised = true;
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Tells whether the signal was raised. It doesn't block,
+   * so the commands can check it as often as they want.
+   *
+   * @return true if the running commands have to stop
+   */
+  public boolean isRaised() {
+    return raised;
+  }
+
+  /**
+   * Waits until the signal is raised or the timeout elapses.
+   *
+   * @param timeoutMillis the maximum time to wait in milliseconds
+   * @return true if the signal was raised
+   * @throws InterruptedException if the thread is interrupted
+   */
+  public synchronized boolean await(long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remaining = timeoutMillis;
+    while (!raised && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return raised;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.format;
+
+import com.cloudera.bundleprocessor.Constants;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ColumnStream is the streaming counterpart of {@link Column}.
+ */
+public class ColumnStream extends RowStream {
+
+  private boolean empty = true;
+
+  protected ColumnStream(String[] header, Consumer<String> output) {
+    super(header, output);
+  }
+
+  @Override
+  protected void formatBatch(List<String[]> rows, boolean first,
+                             boolean last, StringBuilder builder) {
+    if (empty && !rows.isEmpty()) {
+      builder.append(header[0]).append("\n");
+      empty = false;
+    }
+    for (String[] row : rows) {
+      builder.append(row[0]).append("\n");
+    }
+    if (last && empty) {
+      builder.append(Constants.EMPTY_OUTPUT_MESSAGE);
+    }
+  }
+}
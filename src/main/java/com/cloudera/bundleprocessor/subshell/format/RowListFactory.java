@@ -18,6 +18,7 @@
 
 package com.cloudera.bundleprocessor.subshell.format;
 
+import java.util.function.Consumer;
 
 /**
  * RowListFactory is creating Output objects.
@@ -45,4 +46,25 @@ public final class RowListFactory {
           "Empty headerNames was provided to define Output object");
     }
   }
+
+  /**
+   * {@code createRowStream} creates a streaming Output object depending
+   * on the number of headernames.
+   *
+   * @param output      the consumer of the formatted rows
+   * @param headerNames String array containing the name of the headers
+   * @return streaming Output object
+   */
+  public static RowStream createRowStream(
+      Consumer<String> output, String... headerNames) {
+    int size = headerNames.length;
+    if (size == 1) {
+      return new ColumnStream(headerNames, output);
+    } else if (size > 1) {
+      return new TableStream(headerNames, output);
+    } else {
+      throw new RuntimeException(
+          "Empty headerNames was provided to define Output object");
+    }
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.format;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * RowStream is the streaming counterpart of {@link RowList}.
+ * The rows are not kept until the end, they are written to the output
+ * in batches as soon as a batch is full or the previous batch
+ * was written long enough ago, so the user sees the first rows
+ * while the rest is still being searched.
+ * Every String written to the output consists of whole lines.
+ * {@code finish()} needs to be called after the last row.
+ */
+public abstract class RowStream {
+
+  static final int BATCH_SIZE = 100;
+  static final long MAX_BATCH_DELAY_MILLIS = 100;
+
+  protected final String[] header;
+  private final Consumer<String> output;
+  private final List<String[]> batch = new ArrayList<>();
+  private long lastWriteMillis = System.currentTimeMillis();
+  private boolean written;
+
+  protected RowStream(String[] header, Consumer<String> output) {
+    Preconditions.checkNotNull(header);
+    Preconditions.checkNotNull(output);
+    this.header = header;
+    this.output = output;
+  }
+
+  /**
+   * Adds a row to the stream if it was valid.
+   *
+   * @param rowElements String array representing a row
+   */
+  public void addRow(String[] rowElements) {
+    if (rowElements.length != header.length) {
+      throw new RuntimeException("The provided row is not matching " +
+          "with the size of the Output object");
+    }
+    batch.add(rowElements);
+    long now = System.currentTimeMillis();
+    if (batch.size() >= BATCH_SIZE
+        || now - lastWriteMillis >= MAX_BATCH_DELAY_MILLIS) {
+      write(false);
+    }
+  }
+
+  /**
+   * Writes the rows which are not written yet,
+   * without closing the output.
+   */
+  public void flush() {
+    if (!batch.isEmpty()) {
+      write(false);
+    }
+  }
+
+  /**
+   * Writes the rows which are not written yet and closes the output
+   * (e.g. the bottom line of a table).
+   */
+  public void finish() {
+    write(true);
+  }
+
+  private void write(boolean last) {
+    StringBuilder builder = new StringBuilder();
+    formatBatch(batch, !written, last, builder);
+    batch.clear();
+    lastWriteMillis = System.currentTimeMillis();
+    if (builder.length() > 0) {
+      written = true;
+      output.accept(builder.toString());
+    }
+  }
+
+  /**
+   * Formats a batch of rows.
+   *
+   * @param rows    the rows of the batch
+   * @param first   true if nothing was written before
+   * @param last    true if no more rows will follow
+   * @param builder the builder to append the output to
+   */
+  protected abstract void formatBatch(List<String[]> rows, boolean first,
+                                      boolean last, StringBuilder builder);
+}
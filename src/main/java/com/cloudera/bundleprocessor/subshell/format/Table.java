@@ -90,13 +90,13 @@ public class Table extends RowList {
     return maxWidths;
   }
 
-  private void computeMaxWidthsOnRow(int[] maxWidths, String[] cells) {
+  static void computeMaxWidthsOnRow(int[] maxWidths, String[] cells) {
     for (int i = 0; i < cells.length; i++) {
       maxWidths[i] = Math.max(maxWidths[i], cells[i].length());
     }
   }
 
-  private void printLine(int[] columnWidths, StringBuilder builder) {
+  static void printLine(int[] columnWidths, StringBuilder builder) {
     for (int i = 0; i < columnWidths.length; i++) {
       String line = String.join("", Collections.nCopies(columnWidths[i]
           + VERTICAL_SEP.length() + 1, HORIZONTAL_SEP));
@@ -106,8 +106,8 @@ public class Table extends RowList {
     builder.append("\n");
   }
 
-  private void printRow(String[] cells, int[] maxWidths,
-                        StringBuilder builder) {
+  static void printRow(String[] cells, int[] maxWidths,
+                       StringBuilder builder) {
     for (int i = 0; i < cells.length; i++) {
       String s = cells[i];
       String verStrTemp = i == cells.length - 1 ? VERTICAL_SEP : "";
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.format;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * TableStream is the streaming counterpart of {@link Table}.
+ * The width of the columns is computed from the header and the first batch.
+ * If a later batch contains longer cells, the columns get wider,
+ * and a separator line is written before the batch,
+ * because the rows before it can't be widened anymore.
+ */
+public class TableStream extends RowStream {
+
+  private final int[] maxWidths;
+
+  protected TableStream(String[] header, Consumer<String> output) {
+    super(header, output);
+    this.maxWidths = Arrays.stream(header).mapToInt(String::length).toArray();
+  }
+
+  @Override
+  protected void formatBatch(List<String[]> rows, boolean first,
+                             boolean last, StringBuilder builder) {
+    boolean widened = false;
+    for (String[] cells : rows) {
+      for (int i = 0; i < cells.length; i++) {
+        widened |= cells[i].length() > maxWidths[i];
+      }
+      Table.computeMaxWidthsOnRow(maxWidths, cells);
+    }
+    if (first) {
+      Table.printLine(maxWidths, builder);
+      Table.printRow(header, maxWidths, builder);
+      Table.printLine(maxWidths, builder);
+    } else if (widened) {
+      Table.printLine(maxWidths, builder);
+    }
+    for (String[] cells : rows) {
+      Table.printRow(cells, maxWidths, builder);
+    }
+    if (last) {
+      Table.printLine(maxWidths, builder);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.regex.RegexMatcher;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.ByteSequence;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.Utf8Decoder;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ChunkResult contains the matches found in a chunk of a file
+ * and the positions of the first and the last match in the file.
+ * Every match is recorded with the decoded text covering its groups
+ * and the offsets of the groups in that text, so it can be passed
+ * to a listener as a {@link RecordedMatch} without matching
+ * the pattern again, and with the position of that text in the file.
+ * The result also remembers the timestamp of the lines scanned so far,
+ * which the following lines without a timestamp inherit.
+ */
+final class ChunkResult {
+
+  private final int groupCount;
+  private final Map<String, Integer> groupNames;
+  private final List<String> texts = new ArrayList<>();
+  private final StringBuilder builder = new StringBuilder();
+  private final int[] bounds;
+  private final int[] points;
+  private final int[] pointOffsets;
+  private int[] offsets;
+  private long[] textPositions = new long[16];
+  private int[] textLengths = new int[16];
+  private long firstMatchStart = -1;
+  private long lastMatchEnd = -1;
+  private long timeStampEnd;
+  private String timeStamp;
+
+  /**
+   * Creates an empty result.
+   *
+   * @param groupCount the number of the groups of the pattern
+   * @param groupNames the numbers of the named groups of the pattern
+   */
+  ChunkResult(int groupCount, Map<String, Integer> groupNames) {
+    this.groupCount = groupCount;
+    this.groupNames = groupNames;
+    int width = 2 * (groupCount + 1);
+    this.bounds = new int[width];
+    this.points = new int[width];
+    this.pointOffsets = new int[width];
+    this.offsets = new int[16 * width];
+  }
+
+  /**
+   * Adds the current match of the matcher to the result.
+   * The bytes from the first group to the last one are decoded
+   * directly into the result, without an intermediate String.
+   *
+   * @param bytes   the matched bytes
+   * @param matcher the matcher positioned on the match
+   * @param base    the position of the bytes in the file
+   */
+  void addMatch(ByteSequence bytes, RegexMatcher matcher, long base) {
+    int pointCount = 0;
+    for (int group = 0; group <= groupCount; group++) {
+      int start = matcher.start(group);
+      int end = matcher.end(group);
+      bounds[2 * group] = start;
+      bounds[2 * group + 1] = end;
+      if (start >= 0) {
+        points[pointCount++] = start;
+        points[pointCount++] = end;
+      }
+    }
+    // the text is decoded piece by piece between the bounds of the groups,
+    // so the bounds can be converted to the offsets of the characters
+    Arrays.sort(points, 0, pointCount);
+    builder.setLength(0);
+    for (int i = 0; i < pointCount; i++) {
+      if (i > 0 && points[i] > points[i - 1]) {
+        Utf8Decoder.append(bytes, points[i - 1], points[i], builder);
+      }
+      pointOffsets[i] = builder.length();
+    }
+    int width = bounds.length;
+    int from = texts.size() * width;
+    if (from + width > offsets.length) {
+      offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+    }
+    for (int i = 0; i < width; i++) {
+      offsets[from + i] = bounds[i] < 0 ? -1
+          : pointOffsets[Arrays.binarySearch(points, 0, pointCount,
+              bounds[i])];
+    }
+    int index = texts.size();
+    if (index == textPositions.length) {
+      textPositions = Arrays.copyOf(textPositions, 2 * index);
+      textLengths = Arrays.copyOf(textLengths, 2 * index);
+    }
+    textPositions[index] = base + points[0];
+    textLengths[index] = points[pointCount - 1] - points[0];
+    texts.add(builder.toString());
+    if (firstMatchStart < 0) {
+      firstMatchStart = base + bounds[0];
+    }
+    lastMatchEnd = base + bounds[1];
+  }
+
+  int getMatchCount() {
+    return texts.size();
+  }
+
+  /**
+   * Returns a match of the result.
+   *
+   * @param index the index of the match in the chunk
+   * @param file  the file of the chunk
+   * @return the match
+   */
+  RecordedMatch getMatch(int index, File file) {
+    return new RecordedMatch(texts.get(index), offsets,
+        index * bounds.length, groupCount, groupNames, file,
+        textPositions[index], textLengths[index]);
+  }
+
+  /**
+   * Returns the position of the first match in the file.
+   *
+   * @return the position or -1 if there was no match
+   */
+  long getFirstMatchStart() {
+    return firstMatchStart;
+  }
+
+  /**
+   * Returns the end of the last match in the file.
+   *
+   * @return the position or -1 if there was no match
+   */
+  long getLastMatchEnd() {
+    return lastMatchEnd;
+  }
+
+  /**
+   * Remembers the timestamp of the line ending before the position.
+   *
+   * @param end       the position following the line in the file
+   * @param timeStamp the timestamp of the line, inherited if the line
+   *                  has none, or null if it is unknown
+   */
+  void setTimeStamp(long end, String timeStamp) {
+    this.timeStampEnd = end;
+    this.timeStamp = timeStamp;
+  }
+
+  /**
+   * Returns the position following the line
+   * whose timestamp is known, see {@link #getTimeStamp()}.
+   */
+  long getTimeStampEnd() {
+    return timeStampEnd;
+  }
+
+  String getTimeStamp() {
+    return timeStamp;
+  }
+}
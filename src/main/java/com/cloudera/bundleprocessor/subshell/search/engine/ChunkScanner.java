@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.index.EntityIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.LineRanges;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TrigramIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.regex.RegexEngine;
+import com.cloudera.bundleprocessor.subshell.search.engine.regex.RegexMatcher;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.HorspoolSearcher;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.SegmentedCharSequence;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ChunkScanner collects the matches of a {@link Query} in chunks of files.
+ * If the query is line-scoped (see {@link QueryPlan#isLineScoped()}),
+ * the pattern is applied to one line at a time, so a failed attempt
+ * can't backtrack over the rest of the chunk. If the pattern contains a literal
+ * (see {@link PatternAnalyzer}), the chunk is searched for the literal
+ * with {@link HorspoolSearcher} first, and the pattern is only applied
+ * to the lines containing it.
+ * The other queries are matched on the whole chunk.
+ * If the query is restricted to a {@link TimeRange}, the matches
+ * in the lines logged out of the range are dropped: a line is logged
+ * at its timestamp, or at the timestamp of the preceding line with one.
+ * The pattern is matched by the configured {@link RegexEngine}.
+ * ChunkScanner can be shared between threads,
+ * every thread reuses its own {@link RegexMatcher}.
+ */
+final class ChunkScanner {
+
+  /**
+   * Shorter literals are not selective enough to be worth a prefilter.
+   */
+  private static final int MIN_LITERAL_LENGTH = 2;
+  private static final int MAX_ASCII_CHAR = 0x7F;
+  /**
+   * The lines without a timestamp are searched back this far
+   * for the line they inherit the timestamp from.
+   */
+  private static final int MAX_TIME_STAMP_LOOKBACK = 1 << 20;
+
+  private final boolean lineScoped;
+  private final HorspoolSearcher literalSearcher;
+  private final ThreadLocal<RegexMatcher> matchers;
+  private final TimeRange timeRange;
+  private final ThreadLocal<Matcher> timeStampMatchers;
+  private final int groupCount;
+  private final Map<String, Integer> groupNames;
+
+  /**
+   * Analyzes the query.
+   *
+   * @param query                 the query to execute
+   * @param analysis              the analysis of the pattern of the query
+   * @param lineScoped            whether the pattern can be applied
+   *                              to one line at a time
+   * @param usingLiteralPrefilter whether the literal prefilter can be used
+   * @param regexEngine           the engine matching the pattern
+   * @param timeStamp             the pattern of the timestamps of the lines
+   */
+  ChunkScanner(Query query, PatternAnalysis analysis, boolean lineScoped,
+               boolean usingLiteralPrefilter, RegexEngine regexEngine,
+               Pattern timeStamp) {
+    Pattern pattern = query.getPattern();
+    this.lineScoped = lineScoped;
+    this.literalSearcher = lineScoped && usingLiteralPrefilter
+        ? createLiteralSearcher(analysis) : null;
+    this.matchers = ThreadLocal.withInitial(regexEngine.compile(pattern));
+    this.timeRange = query.getTimeRange();
+    this.timeStampMatchers = ThreadLocal.withInitial(
+        () -> timeStamp.matcher(""));
+    this.groupCount = pattern.matcher("").groupCount();
+    this.groupNames = GroupNames.of(pattern);
+  }
+
+  /**
+   * Creates an empty result for the matches of the query.
+   *
+   * @return the result to add the matches to
+   */
+  ChunkResult createResult() {
+    return new ChunkResult(groupCount, groupNames);
+  }
+
+  /**
+   * Tells whether the lines have to be checked against a time range,
+   * so the result needs the timestamp preceding the chunk,
+   * see {@link ChunkResult#setTimeStamp}.
+   *
+   * @return true if the query is restricted to a time range
+   */
+  boolean hasTimeRange() {
+    return timeRange != null;
+  }
+
+  private static HorspoolSearcher createLiteralSearcher(
+      PatternAnalysis analysis) {
+    String literal = analysis.getLongestLiteral();
+    if (literal == null || literal.length() < MIN_LITERAL_LENGTH) {
+      return null;
+    }
+    for (int i = 0; i < literal.length(); i++) {
+      // the other characters may be encoded in several ways:
+      // as UTF-8 or as the ISO-8859-1 bytes decoded as themselves
+      if (literal.charAt(i) > MAX_ASCII_CHAR) {
+        return null;
+      }
+    }
+    return new HorspoolSearcher(
+        literal.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Collects the matches starting in [start, startLimit).
+   * The bounds of the searched region are transparent, so anchors
+   * and lookarounds can see the text around the region.
+   * The scanner doesn't release the windows of the sequence,
+   * it is up to the caller, which may scan the same part
+   * with other scanners as well.
+   *
+   * @param sequence   the mapped part of the file
+   * @param base       the position of the sequence in the file
+   * @param start      the matches have to start at or after this index
+   * @param startLimit the matches have to start before this index
+   * @param matchLimit the matches spanning multiple lines
+   *                   have to end before this index
+   * @param result     the result to add the matches to
+   * @param stopped    the condition stopping the scan
+   *                   in the middle of a match,
+   *                   see {@link RegexMatcher#stopWhen}
+   */
+  void scan(SegmentedCharSequence sequence, long base, int start,
+            int startLimit, int matchLimit, ChunkResult result,
+            BooleanSupplier stopped) {
+    RegexMatcher matcher = prepareMatcher(sequence, stopped);
+    try {
+      if (literalSearcher != null) {
+        scanCandidateLines(sequence, base, start, startLimit, startLimit,
+            matcher, result);
+      } else if (lineScoped) {
+        scanLines(sequence, base, start, startLimit, startLimit, matcher,
+            result);
+      } else {
+        matcher.region(start, Math.min(matchLimit, sequence.length()));
+        while (matcher.find() && matcher.start() < startLimit) {
+          if (isInTimeRange(sequence, base, matcher.start(), result)) {
+            result.addMatch(sequence, matcher, base);
+          }
+        }
+      }
+    } finally {
+      // the mapped sequence must not be reachable after the scan
+      release(matcher);
+    }
+  }
+
+  /**
+   * Collects the matches in the lines of the given ranges
+   * starting in [start, startLimit), e.g. in the lines found
+   * by an {@link EntityIndex} or in the blocks found by a
+   * {@link TrigramIndex}.
+   * If start is in the middle of a line, the rest of that line
+   * is scanned as well.
+   * The scanner has to be line-scoped.
+   *
+   * @param sequence   the mapped part of the file
+   * @param base       the position of the sequence in the file
+   * @param ranges     the ranges of the lines to scan
+   * @param start      the matches have to start at or after this index
+   * @param startLimit the matches have to start before this index
+   * @param result     the result to add the matches to
+   * @param stopped    the condition stopping the scan
+   *                   in the middle of a match
+   */
+  void scanLines(SegmentedCharSequence sequence, long base, LineRanges ranges,
+                 int start, int startLimit, ChunkResult result,
+                 BooleanSupplier stopped) {
+    if (!lineScoped) {
+      throw new IllegalStateException(
+          "Only line-scoped queries can be matched line by line");
+    }
+    RegexMatcher matcher = prepareMatcher(sequence, stopped);
+    try {
+      int position = start;
+      if (start > 0 && sequence.byteAt(start - 1) != '\n') {
+        // the rest of a line, which may be indexed, is scanned
+        // the same way as the lines are scanned without an index
+        int lineEnd = findLineEnd(sequence, start);
+        if (!scanLine(sequence, matcher, base, start, lineEnd,
+            startLimit, result)) {
+          return;
+        }
+        position = lineEnd + 1;
+      }
+      int index = ranges.findFirst(base + position);
+      for (; index < ranges.size(); index++) {
+        long rangeStart = Math.max(ranges.getStart(index) - base, position);
+        if (rangeStart >= startLimit) {
+          return;
+        }
+        int lineLimit =
+            (int) Math.min(ranges.getEnd(index) - base, startLimit);
+        boolean scanning = literalSearcher != null
+            ? scanCandidateLines(sequence, base, (int) rangeStart, lineLimit,
+                startLimit, matcher, result)
+            : scanLines(sequence, base, (int) rangeStart, lineLimit,
+                startLimit, matcher, result);
+        if (!scanning) {
+          return;
+        }
+      }
+    } finally {
+      release(matcher);
+    }
+  }
+
+  private RegexMatcher prepareMatcher(SegmentedCharSequence sequence,
+                                      BooleanSupplier stopped) {
+    if (timeRange != null) {
+      timeStampMatchers.get().reset(sequence);
+    }
+    RegexMatcher matcher = matchers.get();
+    matcher.stopWhen(stopped);
+    matcher.reset(sequence);
+    return matcher;
+  }
+
+  private void release(RegexMatcher matcher) {
+    matcher.release();
+    if (timeRange != null) {
+      timeStampMatchers.get().reset("");
+    }
+  }
+
+  /**
+   * Tells whether the line is logged in the time range of the query.
+   * The lines whose timestamp is unknown are in the range.
+   */
+  private boolean isInTimeRange(SegmentedCharSequence sequence, long base,
+                                int lineStart, int lineEnd,
+                                ChunkResult result) {
+    if (timeRange == null) {
+      return true;
+    }
+    String timeStamp =
+        findTimeStamp(sequence, base, lineStart, lineEnd, result);
+    return timeStamp == null || timeRange.contains(timeStamp);
+  }
+
+  /**
+   * Tells whether the line of the position is logged in the time range
+   * of the query.
+   */
+  private boolean isInTimeRange(SegmentedCharSequence sequence, long base,
+                                int position, ChunkResult result) {
+    if (timeRange == null) {
+      return true;
+    }
+    int lineStart = findLineStart(sequence, position);
+    return isInTimeRange(sequence, base, lineStart,
+        findLineEnd(sequence, lineStart), result);
+  }
+
+  /**
+   * Finds the timestamp of a line: its own one, or the one of the
+   * preceding line with a timestamp. The lines are searched back
+   * until the line whose timestamp the result remembers,
+   * and the result remembers the timestamp of this line then,
+   * so the lines of a long stack trace are not searched again.
+   *
+   * @return the timestamp or null if it is unknown
+   */
+  private String findTimeStamp(SegmentedCharSequence sequence, long base,
+                               int lineStart, int lineEnd,
+                               ChunkResult result) {
+    Matcher timeStampMatcher = timeStampMatchers.get();
+    long known = result.getTimeStampEnd() - base;
+    int position = lineStart;
+    int end = lineEnd;
+    String timeStamp;
+    while (true) {
+      timeStampMatcher.region(position, end);
+      if (timeStampMatcher.lookingAt()) {
+        timeStamp = timeStampMatcher.group();
+        break;
+      }
+      if (position <= known) {
+        timeStamp = result.getTimeStamp();
+        break;
+      }
+      if (position == 0 || lineStart - position > MAX_TIME_STAMP_LOOKBACK) {
+        timeStamp = null;
+        break;
+      }
+      end = position - 1;
+      position = findLineStart(sequence, end);
+    }
+    if (base + lineEnd + 1 > result.getTimeStampEnd()) {
+      result.setTimeStamp(base + lineEnd + 1, timeStamp);
+    }
+    return timeStamp;
+  }
+
+  /**
+   * Applies the pattern to every line starting before lineLimit.
+   *
+   * @return false if a match starting at or after startLimit was found
+   */
+  private boolean scanLines(SegmentedCharSequence sequence, long base,
+                            int start, int lineLimit, int startLimit,
+                            RegexMatcher matcher, ChunkResult result) {
+    int position = start;
+    while (position < lineLimit) {
+      int lineEnd = findLineEnd(sequence, position);
+      if (!scanLine(sequence, matcher, base, position, lineEnd,
+          startLimit, result)) {
+        return false;
+      }
+      position = lineEnd + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Applies the pattern only to the lines starting before lineLimit
+   * and containing the literal.
+   *
+   * @return false if a match starting at or after startLimit was found
+   */
+  private boolean scanCandidateLines(SegmentedCharSequence sequence,
+                                     long base, int start, int lineLimit,
+                                     int startLimit, RegexMatcher matcher,
+                                     ChunkResult result) {
+    if (start >= lineLimit) {
+      return true;
+    }
+    // the literal can't be found in a line starting at or after lineLimit
+    int searchLimit = findLineEnd(sequence, lineLimit - 1);
+    int position = start;
+    while (position < lineLimit) {
+      int hit = literalSearcher.indexOf(sequence, position, searchLimit);
+      if (hit < 0) {
+        return true;
+      }
+      int lineStart = hit;
+      while (lineStart > position && sequence.byteAt(lineStart - 1) != '\n') {
+        lineStart--;
+      }
+      int lineEnd = findLineEnd(sequence, hit + literalSearcher.getLength());
+      if (!scanLine(sequence, matcher, base, lineStart, lineEnd,
+          startLimit, result)) {
+        return false;
+      }
+      position = lineEnd + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Collects the matches in a line.
+   *
+   * @return false if the line starts at or after startLimit
+   */
+  private boolean scanLine(SegmentedCharSequence sequence,
+                           RegexMatcher matcher,
+                           long base, int lineStart, int lineEnd,
+                           int startLimit, ChunkResult result) {
+    if (lineStart >= startLimit) {
+      return false;
+    }
+    matcher.region(lineStart, lineEnd);
+    boolean checkedTime = false;
+    while (matcher.find()) {
+      if (matcher.start() >= startLimit) {
+        return false;
+      }
+      if (!checkedTime) {
+        if (!isInTimeRange(sequence, base, lineStart, lineEnd, result)) {
+          // every match of the line is out of the range
+          return true;
+        }
+        checkedTime = true;
+      }
+      result.addMatch(sequence, matcher, base);
+    }
+    return true;
+  }
+
+  private static int findLineStart(SegmentedCharSequence sequence,
+                                   int position) {
+    int lineStart = position;
+    while (lineStart > 0 && sequence.byteAt(lineStart - 1) != '\n') {
+      lineStart--;
+    }
+    return lineStart;
+  }
+
+  private static int findLineEnd(SegmentedCharSequence sequence, int from) {
+    int length = sequence.length();
+    int index = from;
+    while (index < length && sequence.byteAt(index) != '\n') {
+      index++;
+    }
+    return index;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * GroupNames finds the numbers of the named groups of a {@link Pattern},
+ * so the groups of a {@link RecordedMatch} can be looked up by their names
+ * without a {@link java.util.regex.Matcher}.
+ * The groups are numbered by their opening parentheses,
+ * the same way as {@link Pattern} numbers them.
+ */
+public final class GroupNames {
+
+  private GroupNames() {
+  }
+
+  /**
+   * Finds the named groups of the pattern.
+   *
+   * @param pattern the pattern
+   * @return the numbers of the groups by their names, empty if
+   *         the groups can't be counted, e.g. in a pattern with comments
+   */
+  public static Map<String, Integer> of(Pattern pattern) {
+    if ((pattern.flags() & Pattern.LITERAL) != 0) {
+      return Collections.emptyMap();
+    }
+    String regex = pattern.pattern();
+    Map<String, Integer> names = new HashMap<>();
+    int group = 0;
+    int classDepth = 0;
+    int index = 0;
+    while (index < regex.length()) {
+      char c = regex.charAt(index++);
+      if (c == '\\') {
+        if (index < regex.length() && regex.charAt(index) == 'Q') {
+          int end = regex.indexOf("\\E", index);
+          index = end < 0 ? regex.length() : end + 2;
+        } else {
+          index++;
+        }
+      } else if (c == '[') {
+        classDepth++;
+      } else if (c == ']' && classDepth > 0) {
+        classDepth--;
+      } else if (c == '(' && classDepth == 0) {
+        if (!regex.startsWith("?", index)) {
+          group++;
+        } else if (regex.startsWith("?<", index) && index + 2 < regex.length()
+            && Character.isLetter(regex.charAt(index + 2))) {
+          group++;
+          int end = regex.indexOf('>', index);
+          names.put(regex.substring(index + 2, end), group);
+        }
+      }
+    }
+    // a wrong number would be worse than no name at all
+    return group == pattern.matcher("").groupCount()
+        ? names : Collections.emptyMap();
+  }
+}
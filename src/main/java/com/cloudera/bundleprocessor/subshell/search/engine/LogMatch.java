@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+/**
+ * LogMatch is a match of the pattern of a {@link Query},
+ * passed to a {@link MatchListener}. Its groups can be read
+ * by their numbers and by their names.
+ * The matches found in the logs are {@link RecordedMatch}es,
+ * whose groups were recorded when the logs were scanned,
+ * so they are read without matching the pattern again.
+ */
+public interface LogMatch extends MatchResult {
+
+  /**
+   * Returns the text matched by a named group.
+   *
+   * @param name the name of the group
+   * @return the matched text, or null if the group didn't take part
+   *         in the match
+   * @throws IllegalArgumentException if the pattern has no such group
+   */
+  String group(String name);
+
+  /**
+   * Returns a view of the current match of the matcher.
+   * The view follows the matcher, so it is only valid
+   * until the matcher moves.
+   *
+   * @param matcher the matcher positioned on a match
+   * @return the view of the match
+   */
+  static LogMatch of(Matcher matcher) {
+    return new MatcherMatch(matcher);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LogTracker records how far the logs were searched by the queries
+ * following them, see {@link SearchEngine#follow(List, List, LogTracker)}.
+ * Only the complete lines are searched: the last line of a log is searched
+ * after its line break was written, and the last record is held back
+ * for the queries spanning multiple lines, until the next one starts.
+ * If a log gets shorter (e.g. it was truncated or replaced by rotation),
+ * it is searched again from the beginning.
+ */
+public class LogTracker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogTracker.class);
+
+  private final Map<File, Long> offsets = new HashMap<>();
+
+  /**
+   * Returns the position where the next search of the file starts.
+   *
+   * @param file the log file
+   * @return the end of the part searched so far, 0 for a new file
+   */
+  public long getOffset(File file) {
+    return offsets.getOrDefault(file, 0L);
+  }
+
+  /**
+   * Finds the part of the file which was appended since the last search.
+   *
+   * @param file          the log file
+   * @param recordAligned whether the part has to end on a record boundary
+   * @return the appended part or null if there is nothing new to search
+   * @throws IOException if the file couldn't be read
+   */
+  FileRegion findAppendedPart(File file, boolean recordAligned)
+      throws IOException {
+    long offset = getOffset(file);
+    if (LogManipulator.getLength(file) < offset) {
+      LOG.info("{} got shorter, it is searched from the beginning",
+          file.getName());
+      offset = 0;
+      offsets.remove(file);
+    }
+    long end = LogManipulator.findLastBoundary(file, offset, recordAligned);
+    if (end <= offset) {
+      return null;
+    }
+    return new FileRegion(file, offset, end - offset);
+  }
+
+  /**
+   * Records that the part of the file was searched.
+   *
+   * @param part the searched part
+   */
+  void advance(FileRegion part) {
+    offsets.put(part.getFile(), part.getEnd());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.MatchSpans;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MatchCollector is a {@link MatchListener} collecting the matches
+ * of every source the same way as they are stored in the cache,
+ * see {@link MatchSpans}: the matches found in a log by their positions,
+ * the other ones by their texts.
+ * Without a listener to forward the matches to, it also collects
+ * the matched texts of every source, to create matchers over them.
+ * It stops collecting if the matched texts get longer than a limit.
+ */
+final class MatchCollector implements MatchListener {
+
+  private final Pattern pattern;
+  private final File logDir;
+  private final long maxLength;
+  private final MatchListener downstream;
+  private MatchSpans.Builder builder;
+  private List<String> matchedTexts = new ArrayList<>();
+  private StringBuilder currentText = new StringBuilder();
+  private long length;
+  private boolean complete = true;
+
+  /**
+   * Creates a collector.
+   *
+   * @param pattern    the pattern of the query
+   * @param logDir     the folder of the logs, the logs are cached
+   *                   by their names relative to it
+   * @param maxLength  the maximal number of characters to collect
+   * @param downstream the listener to forward the matches to, can be null
+   */
+  MatchCollector(Pattern pattern, File logDir, long maxLength,
+                 MatchListener downstream) {
+    this.pattern = pattern;
+    this.logDir = logDir;
+    this.maxLength = maxLength;
+    this.downstream = downstream;
+    this.builder = new MatchSpans.Builder(pattern.matcher("").groupCount());
+  }
+
+  @Override
+  public void onMatch(LogMatch match) {
+    if (complete) {
+      length += match.end() - match.start() + 1;
+      if (length > maxLength) {
+        complete = false;
+        builder = null;
+        matchedTexts = null;
+        currentText = null;
+      } else {
+        collect(match);
+      }
+    }
+    if (downstream != null) {
+      downstream.onMatch(match);
+    }
+  }
+
+  private void collect(LogMatch match) {
+    RecordedMatch recorded = match instanceof RecordedMatch
+        ? (RecordedMatch) match : RecordedMatch.copyOf(match);
+    int[] offsets = recorded.getOffsets();
+    File file = recorded.getFile();
+    if (file == null) {
+      builder.addMatch(recorded.getText(), offsets);
+    } else {
+      builder.addMatch(
+          logDir.toPath().relativize(file.toPath()).toString(),
+          recorded.getPosition(), recorded.getByteLength(), offsets);
+    }
+    if (downstream == null) {
+      currentText.append(match.group()).append('\n');
+    }
+  }
+
+  @Override
+  public void onEndOfSource() {
+    if (complete) {
+      builder.endSource();
+      if (downstream == null) {
+        matchedTexts.add(currentText.toString());
+        currentText.setLength(0);
+      }
+    }
+    if (downstream != null) {
+      downstream.onEndOfSource();
+    }
+  }
+
+  @Override
+  public boolean isSatisfied() {
+    return downstream != null && downstream.isSatisfied();
+  }
+
+  /**
+   * Tells whether every match was collected.
+   *
+   * @return false if the limit was exceeded
+   */
+  boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Returns the matches of the sources with at least one match,
+   * to be cached.
+   */
+  MatchSpans getMatchSpans() {
+    if (!complete) {
+      throw new IllegalStateException("The matches exceeded the limit");
+    }
+    return builder.build();
+  }
+
+  /**
+   * Creates a matcher for the matched text of every source.
+   *
+   * @return the matchers in the order of the sources
+   */
+  List<Matcher> getMatchers() {
+    if (!complete) {
+      throw new IllegalStateException("The matches exceeded the limit");
+    }
+    if (downstream != null) {
+      throw new IllegalStateException(
+          "The matched texts are only collected without a listener");
+    }
+    List<Matcher> matchers = new ArrayList<>();
+    for (String matchedText : matchedTexts) {
+      matchers.add(pattern.matcher(matchedText));
+    }
+    return matchers;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+/**
+ * MatchLimiter is a {@link MatchListener} passing only a window
+ * of the matches to another listener: it skips the first matches,
+ * then it passes at most a given number of matches.
+ * The sources ending before the window or starting after it
+ * are not passed to the listener either.
+ */
+final class MatchLimiter implements MatchListener {
+
+  private final MatchListener downstream;
+  private long skipped;
+  private volatile long remaining;
+  private boolean passingSource;
+
+  /**
+   * Creates a limiter.
+   *
+   * @param downstream the listener receiving the matches in the window
+   * @param skipped    the number of matches to skip
+   * @param limit      the maximal number of matches to pass
+   */
+  MatchLimiter(MatchListener downstream, long skipped, long limit) {
+    this.downstream = downstream;
+    this.skipped = skipped;
+    this.remaining = limit;
+    this.passingSource = skipped == 0 && limit > 0;
+  }
+
+  @Override
+  public void onMatch(LogMatch match) {
+    if (skipped > 0) {
+      skipped--;
+    } else if (remaining > 0) {
+      remaining--;
+      passingSource = true;
+      downstream.onMatch(match);
+    }
+  }
+
+  @Override
+  public void onEndOfSource() {
+    if (passingSource) {
+      downstream.onEndOfSource();
+    }
+    passingSource = skipped == 0 && remaining > 0;
+  }
+
+  @Override
+  public boolean isSatisfied() {
+    return remaining == 0 || downstream.isSatisfied();
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+/**
+ * MatchListener receives the matches of a {@link Query}
+ * from {@link SearchEngine} as soon as they are found.
+ * The matches arrive on the thread which started the search,
+ * in the same order as {@link SearchEngine#createMatchers(Query)}
+ * would return them.
+ */
+public interface MatchListener {
+
+  /**
+   * Receives a match.
+   * The match is only valid during the call, it must not be stored,
+   * unless it is a {@link RecordedMatch}.
+   *
+   * @param match the match with its groups
+   */
+  void onMatch(LogMatch match);
+
+  /**
+   * Called after the matches of a source
+   * (a log file or a file name) were passed to the listener.
+   */
+  void onEndOfSource();
+
+  /**
+   * Tells whether the listener needs no more matches.
+   * The search stops passing matches to a satisfied listener,
+   * and it stops reading the logs once every listener is satisfied.
+   * It can be called from the threads scanning the logs as well.
+   *
+   * @return true if the listener ignores the following matches
+   */
+  default boolean isSatisfied() {
+    return false;
+  }
+}
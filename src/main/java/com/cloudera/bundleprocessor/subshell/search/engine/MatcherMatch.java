@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import java.util.regex.Matcher;
+
+/**
+ * MatcherMatch is a {@link LogMatch} reading the groups
+ * of the current match of a {@link Matcher}.
+ */
+final class MatcherMatch implements LogMatch {
+
+  private final Matcher matcher;
+
+  MatcherMatch(Matcher matcher) {
+    this.matcher = matcher;
+  }
+
+  @Override
+  public String group(String name) {
+    return matcher.group(name);
+  }
+
+  @Override
+  public int start() {
+    return matcher.start();
+  }
+
+  @Override
+  public int start(int group) {
+    return matcher.start(group);
+  }
+
+  @Override
+  public int end() {
+    return matcher.end();
+  }
+
+  @Override
+  public int end(int group) {
+    return matcher.end(group);
+  }
+
+  @Override
+  public String group() {
+    return matcher.group();
+  }
+
+  @Override
+  public String group(int group) {
+    return matcher.group(group);
+  }
+
+  @Override
+  public int groupCount() {
+    return matcher.groupCount();
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@code ParallelScanner} scans a list of file regions on the workers
+ * of a {@link ForkJoinPool}.
+ * Only a few regions per worker are scanned ahead of the consumer:
+ * the next region is started when the consumer takes a result,
+ * so a slow consumer holds a bounded number of results in memory
+ * however many regions are left.
+ * The results are handed over in the order of the given regions,
+ * independently of the order the tasks were finished in,
+ * each of them as soon as the results of the preceding regions are.
+ */
+class ParallelScanner implements Closeable {
+
+  /**
+   * The number of regions per worker scanned ahead of the consumer,
+   * more than one, so a worker finishing a small region
+   * finds the next one already waiting.
+   */
+  private static final int REGIONS_IN_FLIGHT_PER_WORKER = 2;
+
+  private final int parallelism;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates a scanner with the given number of workers.
+   * With a parallelism of 1 every region is scanned on the calling thread.
+   *
+   * @param parallelism the number of workers
+   */
+  ParallelScanner(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException(
+          "Parallelism must be at least 1, but was " + parallelism);
+    }
+    this.parallelism = parallelism;
+    this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+  }
+
+  int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Scans every region with the given function.
+   *
+   * @param regions    the regions to scan
+   * @param regionScan the function scanning one region
+   * @param <T>        the type of the result of a region
+   * @return the results in the order of {@code regions}
+   * @throws IOException if any of the regions couldn't be scanned
+   */
+  <T> List<T> scan(List<FileRegion> regions, RegionScan<T> regionScan)
+      throws IOException {
+    List<T> results = new ArrayList<>();
+    scanInOrder(regions, regionScan, results::add);
+    return results;
+  }
+
+  /**
+   * Scans every region with the given function and passes the results
+   * to the consumer on the calling thread in the order of the regions.
+   * The consumer receives the result of a region while the workers
+   * are still scanning the following ones, at most
+   * {@value #REGIONS_IN_FLIGHT_PER_WORKER} regions per worker.
+   * If the consumer or a scan fails, or the consumer is done,
+   * the regions not started yet are skipped.
+   *
+   * @param regions    the regions to scan
+   * @param regionScan the function scanning one region
+   * @param consumer   the function processing the result of one region
+   * @param <T>        the type of the result of a region
+   * @throws IOException if any of the regions couldn't be scanned
+   *                     or the consumer failed
+   */
+  <T> void scanInOrder(List<FileRegion> regions, RegionScan<T> regionScan,
+                       ResultConsumer<T> consumer) throws IOException {
+    if (pool == null || regions.size() < 2) {
+      for (FileRegion region : regions) {
+        if (consumer.isDone()) {
+          return;
+        }
+        consumer.accept(regionScan.scan(region));
+      }
+      return;
+    }
+    int window = parallelism * REGIONS_IN_FLIGHT_PER_WORKER;
+    Deque<CompletableFuture<T>> inFlight = new ArrayDeque<>(window);
+    AtomicBoolean cancelled = new AtomicBoolean();
+    int next = 0;
+    try {
+      while (next < regions.size() && inFlight.size() < window) {
+        inFlight.add(start(regions.get(next++), regionScan, cancelled));
+      }
+      while (!inFlight.isEmpty()) {
+        if (consumer.isDone()) {
+          return;
+        }
+        T result = join(inFlight.poll());
+        if (next < regions.size()) {
+          inFlight.add(start(regions.get(next++), regionScan, cancelled));
+        }
+        consumer.accept(result);
+      }
+    } finally {
+      cancelled.set(true);
+    }
+  }
+
+  /**
+   * Starts the scan of a region on a worker. If the pool was already
+   * shut down by a new configuration, the region is scanned
+   * on the calling thread, so the running search can still finish.
+   */
+  private <T> CompletableFuture<T> start(FileRegion region,
+                                         RegionScan<T> regionScan,
+                                         AtomicBoolean cancelled) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable task = () -> {
+      if (cancelled.get()) {
+        result.cancel(false);
+        return;
+      }
+      try {
+        result.complete(regionScan.scan(region));
+      } catch (Throwable e) {
+        // the calling thread is waiting for the result, even if it failed
+        result.completeExceptionally(e);
+      }
+    };
+    try {
+      pool.execute(task);
+    } catch (RejectedExecutionException e) {
+      task.run();
+    }
+    return result;
+  }
+
+  private static <T> T join(CompletableFuture<T> result) throws IOException {
+    try {
+      return result.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Stops the workers when the running scans are finished.
+   * The scans started later run on the calling thread.
+   */
+  @Override
+  public void close() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * {@code RegionScan} is the work done on a single region.
+   *
+   * @param <T> the type of the result
+   */
+  @FunctionalInterface
+  interface RegionScan<T> {
+    T scan(FileRegion region) throws IOException;
+  }
+
+  /**
+   * {@code ResultConsumer} processes the result of a single region.
+   *
+   * @param <T> the type of the result
+   */
+  @FunctionalInterface
+  interface ResultConsumer<T> {
+    void accept(T result) throws IOException;
+
+    /**
+     * Tells whether the consumer needs no more results,
+     * so the following regions don't have to be scanned.
+     *
+     * @return true if the scan can be stopped
+     */
+    default boolean isDone() {
+      return false;
+    }
+  }
+}
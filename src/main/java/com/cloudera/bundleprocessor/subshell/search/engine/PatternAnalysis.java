@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PatternAnalysis is the result of {@link PatternAnalyzer}:
+ * the literals every match of a pattern contains,
+ * the alternative sets of literals one of which every match contains,
+ * and whether a match can contain a line break.
+ * PatternAnalysis is an immutable object.
+ */
+final class PatternAnalysis {
+
+  /**
+   * The analysis of a pattern nothing is known about.
+   */
+  static final PatternAnalysis UNKNOWN = new PatternAnalysis(
+      Collections.emptyList(),
+      Collections.singletonList(Collections.emptyList()), true);
+
+  private final List<String> requiredLiterals;
+  private final List<List<String>> requiredAlternatives;
+  private final boolean matchingLineBreaks;
+
+  PatternAnalysis(List<String> requiredLiterals,
+                  List<List<String>> requiredAlternatives,
+                  boolean matchingLineBreaks) {
+    this.requiredLiterals = Collections.unmodifiableList(requiredLiterals);
+    this.requiredAlternatives =
+        Collections.unmodifiableList(requiredAlternatives);
+    this.matchingLineBreaks = matchingLineBreaks;
+  }
+
+  /**
+   * Returns the literals which are part of every match.
+   *
+   * @return the required literals in the order of the pattern
+   */
+  List<String> getRequiredLiterals() {
+    return requiredLiterals;
+  }
+
+  /**
+   * Returns the alternative sets of literals: every match contains
+   * all the literals of at least one of the sets,
+   * e.g. [[ab, c], [de, c]] for (ab|de)c.
+   * A set without literals means that nothing is known about the matches.
+   *
+   * @return the sets of the literals
+   */
+  List<List<String>> getRequiredAlternatives() {
+    return requiredAlternatives;
+  }
+
+  /**
+   * Returns the longest required literal, which is likely to be
+   * the rarest one in the logs.
+   *
+   * @return the longest literal or null if there is no required literal
+   */
+  String getLongestLiteral() {
+    String longest = null;
+    for (String literal : requiredLiterals) {
+      if (longest == null || literal.length() > longest.length()) {
+        longest = literal;
+      }
+    }
+    return longest;
+  }
+
+  /**
+   * Tells whether a match of the pattern can contain a line break.
+   * The analysis is conservative: true is returned
+   * if it couldn't be proven that a line break can't be matched.
+   *
+   * @return false if every match is in a single line
+   */
+  boolean isMatchingLineBreaks() {
+    return matchingLineBreaks;
+  }
+}
@@ -0,0 +1,526 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * PatternAnalyzer collects the literals from a regular expression
+ * which has to be present in every match of it,
+ * e.g. "OPERATION=Start Container Request" in
+ * {@code TIME_STAMP.*USER.*OPERATION=Start Container Request.*}.
+ * It also checks whether a match of the expression can contain a line break.
+ * The analysis is conservative: anything that is not understood
+ * (e.g. inline flags) results in {@link PatternAnalysis#UNKNOWN}.
+ */
+final class PatternAnalyzer {
+
+  private static final int UNSUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE
+      | Pattern.COMMENTS | Pattern.LITERAL | Pattern.DOTALL
+      | Pattern.CANON_EQ | Pattern.UNICODE_CASE
+      | Pattern.UNICODE_CHARACTER_CLASS;
+  private static final char NEW_LINE = '\n';
+  private static final int EXACTLY_ONCE = -1;
+  /**
+   * The alternative sets of literals are dropped
+   * if there would be more of them (e.g. after several alternations).
+   */
+  private static final int MAX_ALTERNATIVES = 16;
+  private static final List<List<String>> NO_ALTERNATIVES =
+      Collections.singletonList(Collections.emptyList());
+
+  private final String regex;
+  private int position;
+  private boolean matchingLineBreaks;
+
+  private PatternAnalyzer(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * Analyzes the pattern.
+   *
+   * @param pattern the compiled pattern
+   * @return the result of the analysis
+   */
+  static PatternAnalysis analyze(Pattern pattern) {
+    if ((pattern.flags() & UNSUPPORTED_FLAGS) != 0) {
+      return PatternAnalysis.UNKNOWN;
+    }
+    PatternAnalyzer analyzer = new PatternAnalyzer(pattern.pattern());
+    try {
+      Requirements requirements = analyzer.parseAlternatives();
+      if (analyzer.position < analyzer.regex.length()) {
+        return PatternAnalysis.UNKNOWN;
+      }
+      return new PatternAnalysis(requirements.literals,
+          requirements.alternatives, analyzer.matchingLineBreaks);
+    } catch (UnsupportedSyntaxException | IndexOutOfBoundsException e) {
+      return PatternAnalysis.UNKNOWN;
+    }
+  }
+
+  /**
+   * Parses alternatives until the end of the group.
+   * Only the literals of a single alternative are required,
+   * but every alternative contributes its own sets of literals.
+   */
+  private Requirements parseAlternatives() {
+    Requirements requirements = parseSequence();
+    List<String> literals = requirements.literals;
+    List<List<String>> alternatives = new ArrayList<>(
+        requirements.alternatives);
+    boolean alternation = false;
+    while (position < regex.length() && regex.charAt(position) == '|') {
+      position++;
+      alternation = true;
+      alternatives.addAll(parseSequence().alternatives);
+    }
+    boolean unconstrained = alternatives.size() > MAX_ALTERNATIVES
+        || alternatives.stream().anyMatch(List::isEmpty);
+    return new Requirements(
+        alternation ? Collections.emptyList() : literals,
+        unconstrained ? NO_ALTERNATIVES : alternatives);
+  }
+
+  private Requirements parseSequence() {
+    List<String> literals = new ArrayList<>();
+    List<List<String>> alternatives = new ArrayList<>();
+    alternatives.add(new ArrayList<>());
+    StringBuilder run = new StringBuilder();
+    while (position < regex.length()) {
+      char c = regex.charAt(position);
+      if (c == '|' || c == ')') {
+        break;
+      }
+      Atom atom = parseAtom();
+      int minimum = parseQuantifier();
+      if (atom.text != null) {
+        if (minimum == 0) {
+          // the last character is optional
+          run.append(atom.text, 0, atom.text.length() - 1);
+          flush(run, literals, alternatives);
+        } else {
+          run.append(atom.text);
+          if (minimum != EXACTLY_ONCE) {
+            flush(run, literals, alternatives);
+          }
+        }
+      } else {
+        flush(run, literals, alternatives);
+        if (minimum != 0) {
+          literals.addAll(atom.requirements.literals);
+          alternatives = combine(alternatives, atom.requirements.alternatives);
+        }
+      }
+    }
+    flush(run, literals, alternatives);
+    return new Requirements(literals, alternatives);
+  }
+
+  private static void flush(StringBuilder run, List<String> literals,
+                            List<List<String>> alternatives) {
+    if (run.length() > 0) {
+      literals.add(run.toString());
+      for (List<String> alternative : alternatives) {
+        alternative.add(run.toString());
+      }
+      run.setLength(0);
+    }
+  }
+
+  /**
+   * Combines the sets of literals of a sequence with the sets of a group
+   * following it. If there would be too many combinations,
+   * the sets of the group are ignored.
+   */
+  private static List<List<String>> combine(List<List<String>> alternatives,
+                                            List<List<String>> following) {
+    if (alternatives.size() * following.size() > MAX_ALTERNATIVES) {
+      return alternatives;
+    }
+    List<List<String>> combinations = new ArrayList<>();
+    for (List<String> alternative : alternatives) {
+      for (List<String> next : following) {
+        List<String> combination = new ArrayList<>(alternative);
+        combination.addAll(next);
+        combinations.add(combination);
+      }
+    }
+    return combinations;
+  }
+
+  private Atom parseAtom() {
+    char c = regex.charAt(position++);
+    switch (c) {
+      case '(':
+        return parseGroup();
+      case '[':
+        matchingLineBreaks |= parseClass();
+        return Atom.OTHER;
+      case '.':
+      case '^':
+      case '$':
+        return Atom.OTHER;
+      case '\\':
+        return parseEscape();
+      case '*':
+      case '+':
+      case '?':
+      case '{':
+        throw new UnsupportedSyntaxException();
+      default:
+        if (c == NEW_LINE) {
+          matchingLineBreaks = true;
+        }
+        return Atom.literal(c);
+    }
+  }
+
+  private Atom parseGroup() {
+    boolean lookaround = false;
+    if (regex.charAt(position) == '?') {
+      char type = regex.charAt(position + 1);
+      if (type == ':' || type == '>' || type == '=' || type == '!') {
+        lookaround = type == '=' || type == '!';
+        position += 2;
+      } else if (type == '<') {
+        char next = regex.charAt(position + 2);
+        if (next == '=' || next == '!') {
+          lookaround = true;
+          position += 3;
+        } else {
+          // named group
+          position = regex.indexOf('>', position) + 1;
+          if (position == 0) {
+            throw new UnsupportedSyntaxException();
+          }
+        }
+      } else {
+        // inline flags change the meaning of the expression
+        throw new UnsupportedSyntaxException();
+      }
+    }
+    Requirements requirements = parseAlternatives();
+    if (position >= regex.length() || regex.charAt(position) != ')') {
+      throw new UnsupportedSyntaxException();
+    }
+    position++;
+    // the text checked by lookarounds is not part of the match
+    return lookaround ? Atom.OTHER : Atom.group(requirements);
+  }
+
+  /**
+   * Skips a character class and tells whether it can match a line break.
+   */
+  private boolean parseClass() {
+    boolean negated = false;
+    if (regex.charAt(position) == '^') {
+      negated = true;
+      position++;
+    }
+    boolean containsNewLine = false;
+    boolean unknown = false;
+    boolean first = true;
+    while (regex.charAt(position) != ']' || first) {
+      first = false;
+      char c = regex.charAt(position++);
+      int single;
+      if (c == '[' || (c == '&' && regex.charAt(position) == '&')) {
+        unknown = true;
+        if (c == '[') {
+          parseClass();
+        } else {
+          position++;
+        }
+        continue;
+      } else if (c == '\\') {
+        char escaped = regex.charAt(position++);
+        single = parseEscapedChar(escaped);
+        if (single < 0) {
+          Boolean newLine = escapedClassContainsNewLine(escaped);
+          if (newLine == null) {
+            unknown = true;
+          } else {
+            containsNewLine |= newLine;
+          }
+          continue;
+        }
+      } else {
+        single = c;
+      }
+      int rangeEnd = single;
+      if (regex.charAt(position) == '-' && regex.charAt(position + 1) != ']') {
+        position++;
+        char end = regex.charAt(position++);
+        rangeEnd = end == '\\'
+            ? parseEscapedChar(regex.charAt(position++)) : end;
+        if (rangeEnd < 0) {
+          unknown = true;
+          continue;
+        }
+      }
+      containsNewLine |= single <= NEW_LINE && NEW_LINE <= rangeEnd;
+    }
+    position++;
+    return unknown || (negated != containsNewLine);
+  }
+
+  private Atom parseEscape() {
+    char escaped = regex.charAt(position++);
+    if (escaped == 'Q') {
+      int end = regex.indexOf("\\E", position);
+      String quoted =
+          regex.substring(position, end < 0 ? regex.length() : end);
+      position = end < 0 ? regex.length() : end + 2;
+      if (quoted.indexOf(NEW_LINE) >= 0) {
+        matchingLineBreaks = true;
+      }
+      return quoted.isEmpty() ? Atom.OTHER : Atom.literal(quoted);
+    }
+    int single = parseEscapedChar(escaped);
+    if (single >= 0) {
+      if (single == NEW_LINE) {
+        matchingLineBreaks = true;
+      }
+      return Atom.literal((char) single);
+    }
+    switch (escaped) {
+      case 'b':
+      case 'B':
+      case 'A':
+      case 'G':
+      case 'z':
+      case 'Z':
+        if (position < regex.length() && regex.charAt(position) == '{') {
+          throw new UnsupportedSyntaxException();
+        }
+        return Atom.OTHER;
+      case 'k':
+        // named back reference, the referenced text is unknown
+        position = regex.indexOf('>', position) + 1;
+        matchingLineBreaks = true;
+        return Atom.OTHER;
+      default:
+        if (escaped >= '1' && escaped <= '9') {
+          while (position < regex.length()
+              && Character.isDigit(regex.charAt(position))) {
+            position++;
+          }
+          matchingLineBreaks = true;
+          return Atom.OTHER;
+        }
+        Boolean newLine = escapedClassContainsNewLine(escaped);
+        matchingLineBreaks |= newLine == null || newLine;
+        return Atom.OTHER;
+    }
+  }
+
+  /**
+   * Parses an escaped character, e.g. \t or \x41.
+   *
+   * @return the character or -1 if the escape sequence is not a character
+   */
+  private int parseEscapedChar(char escaped) {
+    switch (escaped) {
+      case 't':
+        return '\t';
+      case 'n':
+        return NEW_LINE;
+      case 'r':
+        return '\r';
+      case 'f':
+        return '\f';
+      case 'a':
+        return 7;
+      case 'e':
+        return 27;
+      case '0':
+        return parseNumber(8, 3);
+      case 'x':
+        if (regex.charAt(position) == '{') {
+          int end = regex.indexOf('}', position);
+          int value = Integer.parseInt(
+              regex.substring(position + 1, end), 16);
+          position = end + 1;
+          if (value > Character.MAX_VALUE) {
+            throw new UnsupportedSyntaxException();
+          }
+          return value;
+        }
+        return parseNumber(16, 2);
+      case 'u':
+        return parseNumber(16, 4);
+      case 'c':
+        return regex.charAt(position++) ^ 64;
+      default:
+        if (Character.isLetterOrDigit(escaped)) {
+          return -1;
+        }
+        return escaped;
+    }
+  }
+
+  private int parseNumber(int radix, int maxDigits) {
+    int value = 0;
+    int digits = 0;
+    while (digits < maxDigits && position < regex.length()
+        && Character.digit(regex.charAt(position), radix) >= 0) {
+      value = value * radix + Character.digit(regex.charAt(position), radix);
+      position++;
+      digits++;
+    }
+    if (digits == 0) {
+      throw new UnsupportedSyntaxException();
+    }
+    return value;
+  }
+
+  /**
+   * Tells whether a predefined character class (e.g. \s) contains
+   * the new line character.
+   *
+   * @return null if it is unknown
+   */
+  private Boolean escapedClassContainsNewLine(char escaped) {
+    switch (escaped) {
+      case 'd':
+      case 'w':
+      case 'S':
+      case 'h':
+      case 'V':
+        return false;
+      case 'D':
+      case 'W':
+      case 's':
+      case 'H':
+      case 'v':
+      case 'R':
+      case 'X':
+        return true;
+      case 'p':
+      case 'P':
+        if (regex.charAt(position) == '{') {
+          position = regex.indexOf('}', position) + 1;
+        } else {
+          position++;
+        }
+        return null;
+      default:
+        throw new UnsupportedSyntaxException();
+    }
+  }
+
+  /**
+   * Parses the quantifier after an atom.
+   *
+   * @return the minimal number of repetitions,
+   *     or {@link #EXACTLY_ONCE} if there is no quantifier
+   */
+  private int parseQuantifier() {
+    if (position >= regex.length()) {
+      return EXACTLY_ONCE;
+    }
+    int minimum;
+    switch (regex.charAt(position)) {
+      case '*':
+      case '?':
+        minimum = 0;
+        position++;
+        break;
+      case '+':
+        minimum = 1;
+        position++;
+        break;
+      case '{':
+        int end = regex.indexOf('}', position);
+        String bounds = regex.substring(position + 1, end);
+        int comma = bounds.indexOf(',');
+        try {
+          minimum = Integer.parseInt(
+              comma < 0 ? bounds : bounds.substring(0, comma));
+        } catch (NumberFormatException e) {
+          throw new UnsupportedSyntaxException();
+        }
+        position = end + 1;
+        break;
+      default:
+        return EXACTLY_ONCE;
+    }
+    if (position < regex.length()
+        && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+      position++;
+    }
+    return minimum;
+  }
+
+  /**
+   * Requirements are the literals required by a part of the expression:
+   * the literals required by every match of it and the alternative sets
+   * of the literals (see {@link PatternAnalysis#getRequiredAlternatives()}).
+   */
+  private static final class Requirements {
+
+    private final List<String> literals;
+    private final List<List<String>> alternatives;
+
+    private Requirements(List<String> literals,
+                         List<List<String>> alternatives) {
+      this.literals = literals;
+      this.alternatives = alternatives;
+    }
+  }
+
+  /**
+   * Atom is a single unit of the expression, which can be quantified.
+   */
+  private static final class Atom {
+
+    private static final Atom OTHER = new Atom(null,
+        new Requirements(Collections.emptyList(), NO_ALTERNATIVES));
+
+    private final String text;
+    private final Requirements requirements;
+
+    private Atom(String text, Requirements requirements) {
+      this.text = text;
+      this.requirements = requirements;
+    }
+
+    private static Atom literal(char c) {
+      return literal(String.valueOf(c));
+    }
+
+    private static Atom literal(String text) {
+      return new Atom(text,
+          new Requirements(Collections.emptyList(), NO_ALTERNATIVES));
+    }
+
+    private static Atom group(Requirements requirements) {
+      return new Atom(null, requirements);
+    }
+  }
+
+  private static final class UnsupportedSyntaxException
+      extends RuntimeException {
+  }
+}
@@ -31,12 +31,69 @@ public final class Query {
   private final boolean checkingRmLogs;
   private final boolean checkingNmLogs;
   private final boolean checkingFileNames;
+  private final boolean spanningMultipleLines;
+  private final TimeRange timeRange;
+  private final int head;
+  private final int tail;
 
   private Query(Builder builder) {
     this.pattern = builder.pattern;
     this.checkingRmLogs = builder.checkingRmLogs;
     this.checkingNmLogs = builder.checkingNmLogs;
     this.checkingFileNames = builder.checkingFileNames;
+    this.spanningMultipleLines = builder.spanningMultipleLines;
+    this.timeRange = builder.timeRange;
+    this.head = builder.head;
+    this.tail = builder.tail;
+  }
+
+  /**
+   * Creates a copy of the query which only finds the matches
+   * logged in the time range.
+   *
+   * @param timeRange the time range of the matches
+   * @return the restricted query
+   */
+  public Query restrictTo(TimeRange timeRange) {
+    return toBuilder().withTimeRange(timeRange).build();
+  }
+
+  /**
+   * Creates a copy of the query which only finds the first {@code head}
+   * or the last {@code tail} matches in the order of the sources.
+   * A limit of 0 means no limit, but at most one of them can be set.
+   *
+   * @param head the number of the first matches to find
+   * @param tail the number of the last matches to find
+   * @return the limited query
+   */
+  public Query limitTo(int head, int tail) {
+    return toBuilder().withHead(head).withTail(tail).build();
+  }
+
+  /**
+   * Creates a copy of the query finding every match.
+   * The matches of a limited query are the first or the last
+   * matches of this query, so it is the key of the limited query
+   * in the cache.
+   *
+   * @return the query without the limits or this query if it has none
+   */
+  public Query withoutLimits() {
+    return isLimited() ? limitTo(0, 0) : this;
+  }
+
+  private Builder toBuilder() {
+    Builder builder = new Builder()
+        .withPattern(pattern)
+        .withTimeRange(timeRange)
+        .withHead(head)
+        .withTail(tail);
+    builder.checkingRmLogs = checkingRmLogs;
+    builder.checkingNmLogs = checkingNmLogs;
+    builder.checkingFileNames = checkingFileNames;
+    builder.spanningMultipleLines = spanningMultipleLines;
+    return builder;
   }
 
   @Override
@@ -51,13 +108,37 @@ public final class Query {
     return checkingRmLogs == query.checkingRmLogs
         && checkingNmLogs == query.checkingNmLogs
         && checkingFileNames == query.checkingFileNames
-        && pattern.pattern().equals(query.pattern.pattern());
+        && spanningMultipleLines == query.spanningMultipleLines
+        && pattern.pattern().equals(query.pattern.pattern())
+        && Objects.equals(timeRange, query.timeRange)
+        && head == query.head
+        && tail == query.tail;
   }
 
   @Override
   public int hashCode() {
     return Objects.hash(pattern.pattern(), checkingRmLogs,
-        checkingNmLogs, checkingFileNames);
+        checkingNmLogs, checkingFileNames, spanningMultipleLines, timeRange,
+        head, tail);
+  }
+
+  /**
+   * Describes every property the queries are compared by, so equal
+   * queries have the same description and different queries have
+   * different ones. The pattern is the last, so it can hold anything.
+   *
+   * @return the description of the query
+   */
+  @Override
+  public String toString() {
+    return "Query{rm: " + checkingRmLogs
+        + ", nm: " + checkingNmLogs
+        + ", file names: " + checkingFileNames
+        + ", multiple lines: " + spanningMultipleLines
+        + ", time range: " + (timeRange == null ? "none" : timeRange)
+        + ", head: " + head
+        + ", tail: " + tail
+        + ", pattern: " + pattern.pattern() + "}";
   }
 
   public Pattern getPattern() {
@@ -76,12 +157,61 @@ public final class Query {
     return checkingFileNames;
   }
 
+  /**
+   * Tells whether a match of the pattern can contain line breaks.
+   * The pattern of other queries is applied to one line at a time,
+   * so their matches never contain a line break.
+   *
+   * @return true if the pattern can match on multiple lines
+   */
+  public boolean spansMultipleLines() {
+    return spanningMultipleLines;
+  }
+
+  /**
+   * Returns the time range of the matches.
+   * A match is in the range if its line starts with a timestamp
+   * in the range, the matches in the lines without a timestamp
+   * are not filtered by their time.
+   *
+   * @return the time range or null if the query is not restricted
+   */
+  public TimeRange getTimeRange() {
+    return timeRange;
+  }
+
+  /**
+   * Returns the number of the first matches the query finds.
+   *
+   * @return the number of matches or 0 if there is no such limit
+   */
+  public int getHead() {
+    return head;
+  }
+
+  /**
+   * Returns the number of the last matches the query finds.
+   *
+   * @return the number of matches or 0 if there is no such limit
+   */
+  public int getTail() {
+    return tail;
+  }
+
+  public boolean isLimited() {
+    return head > 0 || tail > 0;
+  }
+
   public static class Builder {
 
     private Pattern pattern;
     private boolean checkingRmLogs;
     private boolean checkingNmLogs;
     private boolean checkingFileNames;
+    private boolean spanningMultipleLines;
+    private TimeRange timeRange;
+    private int head;
+    private int tail;
 
     public Builder() {
     }
@@ -106,7 +236,34 @@ public final class Query {
       return this;
     }
 
+    public Builder isSpanningMultipleLines() {
+      this.spanningMultipleLines = true;
+      return this;
+    }
+
+    public Builder withTimeRange(TimeRange timeRange) {
+      this.timeRange = timeRange;
+      return this;
+    }
+
+    public Builder withHead(int head) {
+      this.head = head;
+      return this;
+    }
+
+    public Builder withTail(int tail) {
+      this.tail = tail;
+      return this;
+    }
+
     public Query build() {
+      if (head < 0 || tail < 0) {
+        throw new IllegalArgumentException(
+            "The limits of a query can't be negative");
+      } else if (head > 0 && tail > 0) {
+        throw new IllegalArgumentException(
+            "A query can't be limited to both the first and the last matches");
+      }
       return new Query(this);
     }
   }
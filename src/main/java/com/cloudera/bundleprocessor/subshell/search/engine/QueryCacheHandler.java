@@ -19,14 +19,19 @@
 package com.cloudera.bundleprocessor.subshell.search.engine;
 
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.Cache;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.CacheLoader;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.LinesOfLogs;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.MatchSpans;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class QueryCacheHandler implements CacheHandler<Query, List<Matcher>> {
+public class QueryCacheHandler
+    implements CacheHandler<Query, List<Matcher>>, Closeable {
 
   private final Cache<Query, LinesOfLogs> cache;
 
@@ -36,6 +41,8 @@ public class QueryCacheHandler implements CacheHandler<Query, List<Matcher>> {
 
   /**
    * {code writeToCache} writes a Query and its output into the cache.
+   * The matches are stored with their spans, see {@link MatchSpans},
+   * they are kept as texts, because the matchers don't know the logs.
    *
    * @param query    the key in the cache
    * @param matchers the output of the query, the value in the cache
@@ -45,43 +52,147 @@ public class QueryCacheHandler implements CacheHandler<Query, List<Matcher>> {
     if (cache == null) {
       return;
     }
-    List<String> matchedLines = new ArrayList<>();
+    MatchSpans.Builder builder = new MatchSpans.Builder(
+        query.getPattern().matcher("").groupCount());
     for (Matcher matcher : matchers) {
-      StringBuilder stringBuilder = new StringBuilder();
       while (matcher.find()) {
-        stringBuilder.append(matcher.group()).append("\n");
-      }
-      if (stringBuilder.length() != 0) {
-        matchedLines.add(stringBuilder.toString());
+        RecordedMatch match = RecordedMatch.copyOf(matcher);
+        builder.addMatch(match.getText(), match.getOffsets());
       }
+      builder.endSource();
       matcher.reset();
     }
-    cache.set(query, new LinesOfLogs(matchedLines));
+    cache.set(query, builder.build());
   }
 
+  /**
+   * Writes the matches of a query collected during its search,
+   * so they don't have to be matched again.
+   *
+   * @param query the key in the cache
+   * @param spans the matches of the query
+   */
+  public void writeMatchSpans(Query query, MatchSpans spans) {
+    if (cache != null) {
+      cache.set(query, spans);
+    }
+  }
+
+  /**
+   * Reads the cached matches of the query, or computes them
+   * with the loader. The identical queries computed at the same time
+   * may only be computed once, see {@link Cache#load}.
+   *
+   * @param query  search request
+   * @param loader searches the matches of the query,
+   *               returns null if they can't be cached
+   * @return the cached or the computed matches, or null
+   */
+  public LinesOfLogs load(Query query,
+                          CacheLoader<Query, ? extends LinesOfLogs> loader)
+      throws IOException {
+    if (cache == null) {
+      return loader.load(query);
+    }
+    return cache.load(query, loader);
+  }
 
   /**
    * Reads the value for the specified query from cache.
+   * The matches cached by their positions in the logs
+   * can only be read by the {@link SearchEngine}, they are not returned.
    *
    * @param query search request
    * @return List of Matchers containing the output of the query
    */
   @Override
   public List<Matcher> readFromCache(Query query) {
-    if (cache == null || cache.get(query) == null) {
+    LinesOfLogs value = readValue(query);
+    if (value == null || isReadFromLogs(value)) {
+      return null;
+    }
+    return createMatchers(query.getPattern(), value);
+  }
+
+  private static boolean isReadFromLogs(LinesOfLogs value) {
+    if (value instanceof MatchSpans) {
+      MatchSpans spans = (MatchSpans) value;
+      for (int source = 0; source < spans.getSourceCount(); source++) {
+        if (spans.getFileName(source) != null) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the cached matches of the query. The values cached by
+   * older versions are {@link LinesOfLogs} without the spans.
+   *
+   * @param query search request
+   * @return the cached matches or null
+   */
+  public LinesOfLogs readValue(Query query) {
+    if (cache == null) {
       return null;
     }
-    List<String> allMatchedLines = cache.get(query).getLines();
-    if (allMatchedLines == null) {
+    LinesOfLogs value = cache.get(query);
+    if (value == null || value.getLines() == null) {
       return null;
-    } else {
-      List<Matcher> matchers = new ArrayList<>();
-      for (String matchedLinesFromOneFile : allMatchedLines) {
-        Pattern pattern = query.getPattern();
-        Matcher matcher = pattern.matcher(matchedLinesFromOneFile);
-        matchers.add(matcher);
+    }
+    return value;
+  }
+
+  /**
+   * Closes the cache, if it holds resources,
+   * e.g. a {@link com.cloudera.bundleprocessor.subshell.search.engine.cache
+   * .TieredCache} writes the values kept in the memory to the disk.
+   */
+  @Override
+  public void close() throws IOException {
+    if (cache instanceof Closeable) {
+      ((Closeable) cache).close();
+    }
+  }
+
+  /**
+   * Creates a matcher for the matched text of every source,
+   * the value must not hold matches cached by their positions in the logs.
+   *
+   * @param pattern the pattern of the query
+   * @param value   the cached matches of the query
+   * @return the matchers in the order of the sources
+   */
+  public static List<Matcher> createMatchers(Pattern pattern,
+                                             LinesOfLogs value) {
+    List<Matcher> matchers = new ArrayList<>();
+    if (value instanceof MatchSpans) {
+      MatchSpans spans = (MatchSpans) value;
+      for (int source = 0; source < spans.getSourceCount(); source++) {
+        matchers.add(pattern.matcher(getMatchedText(spans, source)));
       }
       return matchers;
     }
+    for (String matchedLinesFromOneFile : value.getLines()) {
+      matchers.add(pattern.matcher(matchedLinesFromOneFile));
+    }
+    return matchers;
+  }
+
+  /**
+   * Joins the matched texts of a source kept as a text,
+   * every match is followed by a newline.
+   */
+  private static String getMatchedText(MatchSpans spans, int source) {
+    String text = spans.getText(source);
+    StringBuilder builder = new StringBuilder();
+    for (int match = 0; match < spans.getMatchCount(source); match++) {
+      int start = (int) spans.getStart(source, match);
+      int[] offsets = spans.getOffsets(source, match);
+      builder.append(text, start + offsets[0], start + offsets[1])
+          .append('\n');
+    }
+    return builder.toString();
   }
 }
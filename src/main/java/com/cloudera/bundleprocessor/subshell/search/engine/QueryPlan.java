@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.index.EntityIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.LineRanges;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TrigramIndex;
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * QueryPlan is the compiled form of a {@link Query}, created by
+ * {@link QueryPlanner}: the logs it targets, the literals
+ * every match contains, its time bounds, whether it can be matched
+ * line by line, the index serving it with the lines it looked up,
+ * and the {@link ChunkScanner} matching its pattern.
+ * QueryPlan is an immutable object, so it can be shared between searches.
+ */
+final class QueryPlan {
+
+  /**
+   * The index narrowing down the lines the query has to scan.
+   */
+  enum ServingIndex {
+    /** The {@link EntityIndex} knows the lines of an entity of the query. */
+    ENTITY,
+    /** The {@link TrigramIndex} knows the blocks containing the literals. */
+    TRIGRAM,
+    /** The targeted logs are scanned in full. */
+    NONE
+  }
+
+  private final Query query;
+  private final Set<File> targetFiles;
+  private final PatternAnalysis analysis;
+  private final boolean lineScoped;
+  private final ServingIndex servingIndex;
+  private final Map<File, LineRanges> indexedLines;
+  private final ChunkScanner scanner;
+
+  QueryPlan(Query query, List<File> targetFiles, PatternAnalysis analysis,
+            boolean lineScoped, ServingIndex servingIndex,
+            Map<File, LineRanges> indexedLines, ChunkScanner scanner) {
+    this.query = query;
+    this.targetFiles =
+        Collections.unmodifiableSet(new LinkedHashSet<>(targetFiles));
+    this.analysis = analysis;
+    this.lineScoped = lineScoped;
+    this.servingIndex = servingIndex;
+    this.indexedLines = indexedLines == null
+        ? null : Collections.unmodifiableMap(indexedLines);
+    this.scanner = scanner;
+  }
+
+  /**
+   * Returns the query without its limits, the limits don't change the plan.
+   *
+   * @return the planned query
+   */
+  Query getQuery() {
+    return query;
+  }
+
+  /**
+   * Returns the logs targeted by the query, in the order of the search.
+   *
+   * @return the targeted logs
+   */
+  Set<File> getTargetFiles() {
+    return targetFiles;
+  }
+
+  List<String> getRequiredLiterals() {
+    return analysis.getRequiredLiterals();
+  }
+
+  /**
+   * Returns the time bounds of the matches.
+   *
+   * @return the time range or null if the query is not restricted
+   */
+  TimeRange getTimeRange() {
+    return query.getTimeRange();
+  }
+
+  /**
+   * Tells whether the pattern is applied to one line at a time.
+   * A query is line-scoped if it doesn't span multiple lines,
+   * and its pattern can't match a line break either
+   * (see {@link PatternAnalysis#isMatchingLineBreaks()}).
+   * Only the line-scoped queries can be served by the indexes.
+   *
+   * @return true if every match is in a single line
+   */
+  boolean isLineScoped() {
+    return lineScoped;
+  }
+
+  ServingIndex getServingIndex() {
+    return servingIndex;
+  }
+
+  /**
+   * Returns the lines of the indexed logs which can contain the matches.
+   *
+   * @return the lines of the indexed logs or null if no index serves
+   *         the query
+   */
+  Map<File, LineRanges> getIndexedLines() {
+    return indexedLines;
+  }
+
+  ChunkScanner getScanner() {
+    return scanner;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.Cache;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.InMemoryLRUCache;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * QueryPlanner turns the {@link Query}s into {@link QueryPlan}s,
+ * and keeps the recently used plans, so repeated commands
+ * don't analyze their patterns and look up the indexes again.
+ * The plans don't depend on the limits of the queries.
+ * The plans have to be dropped with {@link #clear()}
+ * when the logs or the settings they were compiled for change.
+ * QueryPlanner is thread-safe.
+ */
+final class QueryPlanner {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(QueryPlanner.class);
+  static final int DEFAULT_CAPACITY = 64;
+
+  private final Cache<Query, QueryPlan> plans;
+  private final Function<Query, QueryPlan> compiler;
+
+  /**
+   * Creates a planner.
+   *
+   * @param capacity the number of the plans kept
+   * @param compiler compiles the plan of a query without limits
+   */
+  QueryPlanner(int capacity, Function<Query, QueryPlan> compiler) {
+    this.plans = new InMemoryLRUCache<>(capacity);
+    this.compiler = compiler;
+  }
+
+  /**
+   * Returns the plan of the query, compiling it if it isn't kept.
+   *
+   * @param query the query to plan
+   * @return the plan of the query
+   */
+  synchronized QueryPlan plan(Query query) {
+    Query key = query.withoutLimits();
+    QueryPlan plan = plans.get(key);
+    if (plan == null) {
+      LOG.debug("Compiling the plan of {}", key.getPattern());
+      plan = compiler.apply(key);
+      plans.set(key, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Drops every plan.
+   */
+  synchronized void clear() {
+    plans.reset();
+  }
+}
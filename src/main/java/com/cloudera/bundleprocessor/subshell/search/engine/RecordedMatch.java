@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+
+/**
+ * RecordedMatch is a {@link LogMatch} whose groups were recorded
+ * as offsets in a text, e.g. when the logs were scanned,
+ * so its groups are read without matching the pattern again.
+ * The text covers every group, also the ones outside the match
+ * (e.g. in a lookahead), and the offsets of the groups are
+ * indexes in the text. RecordedMatch is immutable,
+ * so it can be kept after it was passed to a listener.
+ * The matches found in a log also know where their text is in the log,
+ * so they can be cached by their positions instead of their texts.
+ */
+public final class RecordedMatch implements LogMatch {
+
+  private final String text;
+  private final int[] offsets;
+  private final int from;
+  private final int groupCount;
+  private final Map<String, Integer> groupNames;
+  private final File file;
+  private final long position;
+  private final int byteLength;
+
+  /**
+   * Creates a match.
+   *
+   * @param text       the text containing the groups
+   * @param offsets    the start and the end of every group in the text,
+   *                   -1 for the groups not taking part in the match
+   * @param groupNames the numbers of the named groups,
+   *                   see {@link GroupNames#of}
+   */
+  public RecordedMatch(String text, int[] offsets,
+                       Map<String, Integer> groupNames) {
+    this(text, offsets, 0, offsets.length / 2 - 1, groupNames);
+  }
+
+  /**
+   * Creates a match, whose offsets are stored in a part of an array
+   * shared with other matches.
+   *
+   * @param text       the text containing the groups
+   * @param offsets    the array containing the offsets of the groups
+   * @param from       the index of the start of the match in the array
+   * @param groupCount the number of the groups of the pattern
+   * @param groupNames the numbers of the named groups
+   */
+  RecordedMatch(String text, int[] offsets, int from, int groupCount,
+                Map<String, Integer> groupNames) {
+    this(text, offsets, from, groupCount, groupNames, null, -1, -1);
+  }
+
+  /**
+   * Creates a match found in a log.
+   *
+   * @param text       the text containing the groups
+   * @param offsets    the array containing the offsets of the groups
+   * @param from       the index of the start of the match in the array
+   * @param groupCount the number of the groups of the pattern
+   * @param groupNames the numbers of the named groups
+   * @param file       the log the text was read from
+   * @param position   the position of the text in the log
+   * @param byteLength the number of the bytes of the text in the log
+   */
+  RecordedMatch(String text, int[] offsets, int from, int groupCount,
+                Map<String, Integer> groupNames, File file, long position,
+                int byteLength) {
+    this.text = text;
+    this.offsets = offsets;
+    this.from = from;
+    this.groupCount = groupCount;
+    this.groupNames = groupNames;
+    this.file = file;
+    this.position = position;
+    this.byteLength = byteLength;
+  }
+
+  /**
+   * Records the groups of the current match of the matcher.
+   *
+   * @param matcher    the matcher positioned on a match
+   * @param text       the text searched by the matcher
+   * @param groupNames the numbers of the named groups of the pattern
+   * @return the recorded match
+   */
+  static RecordedMatch of(Matcher matcher, String text,
+                          Map<String, Integer> groupNames) {
+    int[] offsets = new int[2 * (matcher.groupCount() + 1)];
+    for (int group = 0; group <= matcher.groupCount(); group++) {
+      offsets[2 * group] = matcher.start(group);
+      offsets[2 * group + 1] = matcher.end(group);
+    }
+    return new RecordedMatch(text, offsets, groupNames);
+  }
+
+  /**
+   * Records the groups of a match of a pattern without names.
+   * The groups outside the match (e.g. in a lookahead) are lost.
+   *
+   * @param match the match to copy
+   * @return the copy of the match
+   */
+  public static RecordedMatch copyOf(MatchResult match) {
+    int[] offsets = new int[2 * (match.groupCount() + 1)];
+    int start = match.start();
+    int end = match.end();
+    for (int group = 0; group <= match.groupCount(); group++) {
+      int groupStart = match.start(group);
+      int groupEnd = match.end(group);
+      boolean inside = groupStart >= start && groupEnd <= end;
+      offsets[2 * group] = inside ? groupStart - start : -1;
+      offsets[2 * group + 1] = inside ? groupEnd - start : -1;
+    }
+    return new RecordedMatch(match.group(), offsets,
+        Collections.emptyMap());
+  }
+
+  /**
+   * Returns the text the offsets of the groups refer to.
+   *
+   * @return the text containing every group
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Returns the start and the end of every group in the text.
+   *
+   * @return a new array of the offsets, -1 for the groups
+   *         not taking part in the match
+   */
+  int[] getOffsets() {
+    return Arrays.copyOfRange(offsets, from, from + 2 * (groupCount + 1));
+  }
+
+  /**
+   * Returns the log the text was read from.
+   *
+   * @return the log or null if the text wasn't read from a log,
+   *         e.g. it is the name of a file
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the position of the text in the log, see {@link #getFile()}.
+   */
+  long getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns the number of the bytes of the text in the log,
+   * see {@link #getFile()}.
+   */
+  int getByteLength() {
+    return byteLength;
+  }
+
+  @Override
+  public String group(String name) {
+    Integer group = groupNames.get(name);
+    if (group == null) {
+      throw new IllegalArgumentException(
+          "No group with name <" + name + ">");
+    }
+    return group(group);
+  }
+
+  @Override
+  public int start() {
+    return start(0);
+  }
+
+  @Override
+  public int start(int group) {
+    checkGroup(group);
+    return offsets[from + 2 * group];
+  }
+
+  @Override
+  public int end() {
+    return end(0);
+  }
+
+  @Override
+  public int end(int group) {
+    checkGroup(group);
+    return offsets[from + 2 * group + 1];
+  }
+
+  @Override
+  public String group() {
+    return group(0);
+  }
+
+  @Override
+  public String group(int group) {
+    int start = start(group);
+    if (start < 0) {
+      return null;
+    }
+    int end = end(group);
+    // the whole text is shared instead of copied
+    return start == 0 && end == text.length()
+        ? text : text.substring(start, end);
+  }
+
+  @Override
+  public int groupCount() {
+    return groupCount;
+  }
+
+  private void checkGroup(int group) {
+    if (group < 0 || group > groupCount) {
+      throw new IndexOutOfBoundsException("No group " + group);
+    }
+  }
+}
@@ -19,35 +19,114 @@
 package com.cloudera.bundleprocessor.subshell.search.engine;
 
 import com.cloudera.bundleprocessor.subshell.context.Config;
+import com.cloudera.bundleprocessor.subshell.context.Search;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.Cache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.LinesOfLogs;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.MatchSpans;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.EntityIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.LineRanges;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TimeIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TrigramIndex;
+import com.cloudera.bundleprocessor.subshell.search.engine.regex.RegexEngine;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BlockCache;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BlockCompressedLog;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
 import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.MappedFilePool;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.SegmentedCharSequence;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.Utf8Decoder;
+import com.cloudera.bundleprocessor.subshell.search.engine.worker.ScanCoordinator;
 import com.cloudera.bundleprocessor.subshell.search.request.Executable;
+import com.google.common.annotations.VisibleForTesting;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * SearchEngine executes all {@link Executable} (~search requests) in the logs.
+ * The mappings of the logs are shared between the searches,
+ * they are released by {@link #close()}.
  */
-public class SearchEngine {
+public class SearchEngine implements Closeable {
 
   private static final Logger LOG =
       LoggerFactory.getLogger(SearchEngine.class);
+  /**
+   * A match starting in a chunk may run into the next chunk
+   * at most by this many bytes.
+   */
+  private static final int MATCH_OVERHANG = 1 << 20;
+  /**
+   * The bytes before a chunk which are visible to anchors and lookbehinds.
+   */
+  private static final int LOOKBEHIND_CONTEXT = 1 << 10;
+  /**
+   * The timestamp preceding a chunk is searched back this far,
+   * in steps of {@link #TIME_STAMP_STEP} bytes.
+   */
+  private static final int MAX_TIME_STAMP_LOOKBACK = 1 << 20;
+  private static final int TIME_STAMP_STEP = 1 << 16;
+  /**
+   * The beginning of a line kept when the timestamp preceding a chunk
+   * is searched in the previous step, it has to contain a timestamp.
+   */
+  private static final int LINE_PREFIX_LENGTH = 256;
+  /**
+   * The matches of a search are only cached,
+   * if they are shorter than this many characters.
+   */
+  private static final long MAX_CACHED_MATCH_LENGTH = 1L << 26;
+  /**
+   * The length of the slices a chunk is processed in,
+   * see {@link #searchInChunk}.
+   */
+  private static final int SLICE_SHIFT =
+      SegmentedCharSequence.DEFAULT_WINDOW_SHIFT;
+  private static final int SLICE_LENGTH = 1 << SLICE_SHIFT;
+  private static final long MAX_CHUNK_SIZE = LogManipulator.MAX_REGION_LENGTH
+      - MATCH_OVERHANG - LOOKBEHIND_CONTEXT;
 
   private final File logFolder;
+  private File logDir;
   private QueryCacheHandler queryCacheHandler;
+  private ParallelScanner parallelScanner = new ParallelScanner(1);
+  private long chunkSize = MAX_CHUNK_SIZE;
+  private boolean usingLiteralPrefilter = true;
+  private RegexEngine regexEngine = RegexEngine.DFA;
+  private int sliceLength = SLICE_LENGTH;
+  private EntityIndex entityIndex;
+  private TrigramIndex trigramIndex;
+  private TimeIndex timeIndex;
+  private Pattern timeStampPattern = TimeRange.DEFAULT_TIME_STAMP;
+  private MappedFilePool mappedFilePool = new MappedFilePool(
+      MappedFilePool.DEFAULT_MAX_MAPPED_BYTES,
+      MappedFilePool.DEFAULT_MAX_MAPPED_FILES, SLICE_SHIFT);
+  private BlockCache blockCache =
+      new BlockCache(BlockCache.DEFAULT_MAX_CACHED_BYTES);
   private List<File> files = new ArrayList<>();
   private List<File> rmFiles = new ArrayList<>();
   private List<File> nmFiles = new ArrayList<>();
+  private final QueryPlanner planner =
+      new QueryPlanner(QueryPlanner.DEFAULT_CAPACITY, this::compilePlan);
+  private ScanCoordinator scanCoordinator;
 
   /**
    * SearchEngine constructor needs to locate the folder
@@ -64,17 +143,56 @@ public class SearchEngine {
   /**
    * The {@code init} function searches for relevant files in the log folder.
    * These files will be stored in lists, so SearchEngine later can use them.
+   * The files are sorted by name to keep the order of the results stable.
    *
    * @param config user configurations
    * @param cache  cache to save already found lines
    */
   public void init(@NotNull Config config, Cache<Query, LinesOfLogs> cache) {
-    final File logDir = config.getLogDir(logFolder);
+    this.logDir = config.getLogDir(logFolder);
     if (!logDir.exists()) {
       throw new RuntimeException("The provided log folder doesn't exist");
     }
+    listFiles();
+    this.queryCacheHandler = new QueryCacheHandler(cache);
+    this.parallelScanner.close();
+    this.parallelScanner = new ParallelScanner(getParallelism(config));
+    this.chunkSize = getChunkSize(config);
+    this.usingLiteralPrefilter = isUsingLiteralPrefilter(config);
+    this.regexEngine = getRegexEngine(config);
+    this.mappedFilePool.close();
+    this.mappedFilePool = createMappedFilePool(config);
+    this.blockCache.close();
+    this.blockCache = createBlockCache(config);
+    this.entityIndex = openEntityIndex(config.getEntityIndexFile(logFolder));
+    this.trigramIndex =
+        openTrigramIndex(config.getTrigramIndexFile(logFolder));
+    this.timeIndex = openTimeIndex(config.getTimeIndexFile(logFolder));
+    if (config.getRegexes() != null
+        && config.getRegexes().getTimeStamp() != null) {
+      this.timeStampPattern =
+          Pattern.compile(config.getRegexes().getTimeStamp());
+    }
+    planner.clear();
+    if (scanCoordinator != null) {
+      scanCoordinator.close();
+    }
+    this.scanCoordinator = openScanCoordinator(config);
+  }
+
+  /**
+   * Lists the files of the log folder.
+   * It is called again by {@link #follow(List, List, LogTracker)},
+   * so the logs created since the previous call are searched as well.
+   * The plans of the queries are dropped if the files changed.
+   */
+  private void listFiles() {
     File[] filesArr = logDir.listFiles();
     if (filesArr != null) {
+      Arrays.sort(filesArr);
+      if (!files.equals(Arrays.asList(filesArr))) {
+        planner.clear();
+      }
       files = Arrays.asList(filesArr);
       rmFiles = files.stream().filter(
           LogManipulator::isRMlog).collect(Collectors.toList());
@@ -83,7 +201,256 @@ public class SearchEngine {
     } else {
       throw new RuntimeException("The provided log folder was empty");
     }
-    this.queryCacheHandler = new QueryCacheHandler(cache);
+  }
+
+  /**
+   * Opens the index of the entities, if the logs were indexed
+   * during preprocessing. Without an index every log is scanned.
+   */
+  private static EntityIndex openEntityIndex(File indexFile) {
+    if (!indexFile.exists()) {
+      LOG.debug("The logs are not indexed");
+      return null;
+    }
+    try {
+      return EntityIndex.open(indexFile);
+    } catch (IOException e) {
+      LOG.warn("The entity index couldn't be opened", e);
+      return null;
+    }
+  }
+
+  /**
+   * Opens the index of the trigrams, if it was built during preprocessing
+   * (it is optional, see {@link Search#getTrigramIndex()}).
+   */
+  private static TrigramIndex openTrigramIndex(File indexFile) {
+    if (!indexFile.exists()) {
+      LOG.debug("The trigrams of the logs are not indexed");
+      return null;
+    }
+    try {
+      return TrigramIndex.open(indexFile);
+    } catch (IOException e) {
+      LOG.warn("The trigram index couldn't be opened", e);
+      return null;
+    }
+  }
+
+  /**
+   * Opens the index of the timestamps, if the logs were indexed
+   * during preprocessing. Without an index the queries restricted
+   * to a time range scan the whole logs.
+   */
+  private static TimeIndex openTimeIndex(File indexFile) {
+    if (!indexFile.exists()) {
+      LOG.debug("The timestamps of the logs are not indexed");
+      return null;
+    }
+    try {
+      return TimeIndex.open(indexFile);
+    } catch (IOException e) {
+      LOG.warn("The time index couldn't be opened", e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads the number of workers scanning the logs from the configuration.
+   * Without a configured value the logs are scanned on the calling thread,
+   * a value below 1 means one worker per available processor.
+   */
+  private static int getParallelism(Config config) {
+    Search search = config.getSearch();
+    if (search == null || search.getParallelism() == null) {
+      return 1;
+    }
+    int parallelism = Integer.parseInt(search.getParallelism());
+    return parallelism < 1
+        ? Runtime.getRuntime().availableProcessors() : parallelism;
+  }
+
+  /**
+   * Reads the size of the chunks, which are scanned independently
+   * of each other, from the configuration.
+   * Without a configured value the files are not split into chunks
+   * (unless they are longer than a CharSequence can be).
+   */
+  private static long getChunkSize(Config config) {
+    Search search = config.getSearch();
+    if (search == null || search.getChunkSizeInMegabytes() == null) {
+      return MAX_CHUNK_SIZE;
+    }
+    long chunkSize =
+        Long.parseLong(search.getChunkSizeInMegabytes()) * 1024 * 1024;
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException(
+          "The size of the chunks must be positive");
+    }
+    return Math.min(chunkSize, MAX_CHUNK_SIZE);
+  }
+
+  /**
+   * Reads from the configuration whether the files can be searched
+   * for the literals of the patterns before applying the patterns.
+   * The prefilter is turned on without a configured value.
+   */
+  private static boolean isUsingLiteralPrefilter(Config config) {
+    Search search = config.getSearch();
+    if (search == null || search.getLiteralPrefilter() == null) {
+      return true;
+    }
+    return Boolean.parseBoolean(search.getLiteralPrefilter());
+  }
+
+  /**
+   * Reads from the configuration which engine matches the patterns
+   * of the queries. The automata are used without a configured value.
+   */
+  private static RegexEngine getRegexEngine(Config config) {
+    Search search = config.getSearch();
+    if (search == null || search.getRegexEngine() == null) {
+      return RegexEngine.DFA;
+    }
+    return RegexEngine.valueOf(
+        search.getRegexEngine().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Starts the workers scanning the logs, or connects to them,
+   * if the configuration asks for them.
+   * Without workers, or if they can't be reached or they refuse
+   * the secret, the logs are scanned by this engine.
+   */
+  private ScanCoordinator openScanCoordinator(Config config) {
+    Search search = config.getSearch();
+    if (search == null) {
+      return null;
+    }
+    try {
+      String addresses = search.getScanWorkerAddresses();
+      if (addresses != null && !addresses.trim().isEmpty()) {
+        return ScanCoordinator.connect(Arrays.asList(addresses.split(",")),
+            search.getScanWorkerSecret());
+      }
+      if (search.getScanWorkers() != null
+          && Integer.parseInt(search.getScanWorkers()) > 0) {
+        return ScanCoordinator.launch(logFolder, config,
+            Integer.parseInt(search.getScanWorkers()));
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.warn("The scan workers couldn't be used", e);
+    }
+    return null;
+  }
+
+  /**
+   * Creates the pool of the mapped logs with the limits
+   * of the configuration, or with the default limits of the pool.
+   */
+  private static MappedFilePool createMappedFilePool(Config config) {
+    Search search = config.getSearch();
+    long maxMappedBytes = MappedFilePool.DEFAULT_MAX_MAPPED_BYTES;
+    int maxMappedFiles = MappedFilePool.DEFAULT_MAX_MAPPED_FILES;
+    if (search != null && search.getMaxMappedMegabytes() != null) {
+      maxMappedBytes =
+          Long.parseLong(search.getMaxMappedMegabytes()) * 1024 * 1024;
+    }
+    if (search != null && search.getMaxMappedFiles() != null) {
+      maxMappedFiles = Integer.parseInt(search.getMaxMappedFiles());
+    }
+    return new MappedFilePool(maxMappedBytes, maxMappedFiles, SLICE_SHIFT);
+  }
+
+  /**
+   * Creates the cache of the decompressed blocks of the
+   * {@link BlockCompressedLog}s with the limit of the configuration,
+   * or with the default limit of the cache.
+   */
+  private static BlockCache createBlockCache(Config config) {
+    Search search = config.getSearch();
+    if (search == null || search.getBlockCacheMegabytes() == null) {
+      return new BlockCache(BlockCache.DEFAULT_MAX_CACHED_BYTES);
+    }
+    return new BlockCache(
+        Long.parseLong(search.getBlockCacheMegabytes()) * 1024 * 1024);
+  }
+
+  /**
+   * Unmaps the logs, drops the decompressed blocks, closes the files
+   * and the cache, and stops the scanning threads and the scan workers.
+   * The logs read by a running search are unmapped when it finishes.
+   * The engine can't search after it was closed.
+   */
+  @Override
+  public void close() {
+    parallelScanner.close();
+    mappedFilePool.close();
+    blockCache.close();
+    if (scanCoordinator != null) {
+      scanCoordinator.close();
+    }
+    if (queryCacheHandler != null) {
+      try {
+        queryCacheHandler.close();
+      } catch (IOException e) {
+        LOG.warn("The cache couldn't be closed", e);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  MappedFilePool getMappedFilePool() {
+    return mappedFilePool;
+  }
+
+  @VisibleForTesting
+  BlockCache getBlockCache() {
+    return blockCache;
+  }
+
+  @VisibleForTesting
+  QueryPlan plan(Query query) {
+    return planner.plan(query);
+  }
+
+  @VisibleForTesting
+  void setChunkSize(long chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  @VisibleForTesting
+  void setUsingLiteralPrefilter(boolean usingLiteralPrefilter) {
+    this.usingLiteralPrefilter = usingLiteralPrefilter;
+    planner.clear();
+  }
+
+  @VisibleForTesting
+  void setRegexEngine(RegexEngine regexEngine) {
+    this.regexEngine = regexEngine;
+    planner.clear();
+  }
+
+  @VisibleForTesting
+  void setSliceLength(int sliceLength) {
+    this.sliceLength = sliceLength;
+  }
+
+  @VisibleForTesting
+  void setEntityIndex(EntityIndex entityIndex) {
+    this.entityIndex = entityIndex;
+    planner.clear();
+  }
+
+  @VisibleForTesting
+  void setTrigramIndex(TrigramIndex trigramIndex) {
+    this.trigramIndex = trigramIndex;
+    planner.clear();
+  }
+
+  @VisibleForTesting
+  void setTimeIndex(TimeIndex timeIndex) {
+    this.timeIndex = timeIndex;
   }
 
   /**
@@ -93,59 +460,1168 @@ public class SearchEngine {
    * @return matchers with the matches found in logs
    */
   public List<Matcher> createMatchers(Query query) throws IOException {
-    final List<Matcher> cacheMatchers = queryCacheHandler.readFromCache(query);
-    if (cacheMatchers == null) {
-      LOG.debug("Query is not present in the Cache");
-      final List<Matcher> newMatchers = createMatchersForNewQuery(query);
-      queryCacheHandler.writeToCache(query, newMatchers);
-      return newMatchers;
+    return createMatchersOfQueries(
+        Collections.singletonList(query)).get(0);
+  }
+
+  /**
+   * The {@code createMatchersOfQueries} executes several {@link Query}s
+   * together.
+   * The queries which are not present in the cache are evaluated
+   * in a single pass over the logs, so every file is read only once.
+   *
+   * @param queries {@link Query}s containing the patterns to match in logs
+   * @return matchers with the matches of every query, in the same order
+   */
+  public List<List<Matcher>> createMatchersOfQueries(List<Query> queries)
+      throws IOException {
+    List<List<Matcher>> matchers = new ArrayList<>();
+    List<Query> missingQueries = new ArrayList<>();
+    List<MatchCollector> collectors = new ArrayList<>();
+    for (Query query : queries) {
+      final LinesOfLogs cachedMatches =
+          queryCacheHandler.readValue(query.withoutLimits());
+      if (cachedMatches == null) {
+        LOG.debug("Query is not present in the Cache");
+        matchers.add(null);
+        missingQueries.add(query);
+        collectors.add(new MatchCollector(
+            query.getPattern(), logDir, Long.MAX_VALUE, null));
+      } else {
+        LOG.debug("Query is present in the Cache");
+        matchers.add(createCachedMatchers(query, cachedMatches));
+      }
+    }
+    LinesOfLogs searchedMatches = null;
+    if (missingQueries.size() == 1) {
+      searchedMatches = searchOnce(missingQueries.get(0), collectors.get(0));
+    } else {
+      searchAndCache(missingQueries, collectors);
+    }
+    int missingIndex = 0;
+    for (int i = 0; i < matchers.size(); i++) {
+      if (matchers.get(i) == null) {
+        matchers.set(i, searchedMatches != null
+            ? createCachedMatchers(queries.get(i), searchedMatches)
+            : collectors.get(missingIndex).getMatchers());
+        missingIndex++;
+      }
+    }
+    return matchers;
+  }
+
+  /**
+   * Creates the matchers of the cached matches within the limits
+   * of the query.
+   */
+  private List<Matcher> createCachedMatchers(Query query,
+                                             LinesOfLogs cached)
+      throws IOException {
+    if (!query.isLimited() && !(cached instanceof MatchSpans)) {
+      return QueryCacheHandler.createMatchers(query.getPattern(), cached);
+    }
+    MatchCollector collector = new MatchCollector(
+        query.getPattern(), logDir, Long.MAX_VALUE, null);
+    passCachedMatches(query, cached, collector);
+    return collector.getMatchers();
+  }
+
+  /**
+   * The {@code search} executes a {@link Query} and passes the matches
+   * to the listener as soon as they are found,
+   * so the caller doesn't have to wait for the whole search to finish.
+   * The matches are written into the cache as well,
+   * unless they are too long to be kept in the memory.
+   *
+   * @param query    {@link Query} containing the pattern to match in logs
+   * @param listener the listener receiving the matches
+   */
+  public void search(Query query, MatchListener listener) throws IOException {
+    searchQueries(Collections.singletonList(query),
+        Collections.singletonList(listener));
+  }
+
+  /**
+   * The {@code searchQueries} executes several {@link Query}s together
+   * in a single pass over the logs, and passes the matches of every query
+   * to its own listener. The matches of a query arrive in the same order
+   * as if it was executed alone, but the matches of different queries
+   * are interleaved.
+   * The matches of the queries limited to their first matches are
+   * passed as soon as they are found, and the logs are only read
+   * until every query has enough of them. The matches of the queries
+   * limited to their last matches are passed after their search.
+   * The matches of a limited query are only cached if they turn out
+   * to be every match of the query.
+   *
+   * @param queries   {@link Query}s containing the patterns to match in logs
+   * @param listeners the listeners receiving the matches of the queries
+   */
+  public void searchQueries(List<Query> queries,
+                            List<? extends MatchListener> listeners)
+      throws IOException {
+    if (queries.size() != listeners.size()) {
+      throw new IllegalArgumentException(
+          "Every query needs exactly one listener");
+    }
+    List<Query> missingQueries = new ArrayList<>();
+    List<MatchCollector> collectors = new ArrayList<>();
+    List<MatchListener> missingListeners = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      Query query = queries.get(i);
+      final LinesOfLogs cachedMatches =
+          queryCacheHandler.readValue(query.withoutLimits());
+      if (cachedMatches == null) {
+        LOG.debug("Query is not present in the Cache");
+        missingQueries.add(query);
+        collectors.add(new MatchCollector(query.getPattern(), logDir,
+            MAX_CACHED_MATCH_LENGTH, listeners.get(i)));
+        missingListeners.add(listeners.get(i));
+      } else {
+        LOG.debug("Query is present in the Cache");
+        passCachedMatches(query, cachedMatches, listeners.get(i));
+      }
+    }
+    if (missingQueries.size() == 1) {
+      LinesOfLogs searchedMatches =
+          searchOnce(missingQueries.get(0), collectors.get(0));
+      if (searchedMatches != null) {
+        passCachedMatches(missingQueries.get(0), searchedMatches,
+            missingListeners.get(0));
+      }
     } else {
-      LOG.debug("Query is present in the Cache");
-      return cacheMatchers;
+      searchAndCache(missingQueries, collectors);
+    }
+  }
+
+  /**
+   * Searches a query missing from the cache, unless an identical search
+   * is running at the same time: then its matches are read
+   * from the cache after it ended (if the cache deduplicates
+   * the searches, see {@link Cache#load}).
+   *
+   * @return the matches of the identical search,
+   *         or null if the query was searched by this call
+   */
+  private LinesOfLogs searchOnce(Query query, MatchCollector collector)
+      throws IOException {
+    List<Query> queries = Collections.singletonList(query);
+    List<MatchCollector> collectors = Collections.singletonList(collector);
+    boolean[] searched = new boolean[1];
+    LinesOfLogs matches = queryCacheHandler.load(query.withoutLimits(),
+        key -> {
+          searched[0] = true;
+          return searchForCache(queries, collectors).get(0);
+        });
+    if (searched[0]) {
+      return null;
+    }
+    if (matches == null) {
+      LOG.debug("The identical search didn't cache its matches");
+      searchAndCache(queries, collectors);
+    }
+    return matches;
+  }
+
+  private void searchAndCache(List<Query> queries,
+                              List<MatchCollector> collectors)
+      throws IOException {
+    List<MatchSpans> matches = searchForCache(queries, collectors);
+    for (int i = 0; i < queries.size(); i++) {
+      if (matches.get(i) != null) {
+        queryCacheHandler.writeMatchSpans(
+            queries.get(i).withoutLimits(), matches.get(i));
+      }
+    }
+  }
+
+  /**
+   * Searches the queries, and returns the matches of every query
+   * which can be cached: the ones found without the limits
+   * of the query, unless they are too long.
+   *
+   * @return the matches to cache, null for a query if they can't be cached
+   */
+  private List<MatchSpans> searchForCache(List<Query> queries,
+                                          List<MatchCollector> collectors)
+      throws IOException {
+    boolean[] complete = searchInSources(queries, collectors);
+    List<MatchSpans> matches = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      MatchCollector collector = collectors.get(i);
+      if (!complete[i]) {
+        LOG.debug("The matches are limited, they are not cached");
+        matches.add(null);
+      } else if (collector.isComplete()) {
+        matches.add(collector.getMatchSpans());
+      } else {
+        LOG.debug("The matches are too long to be cached");
+        matches.add(null);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * The {@code follow} evaluates standing {@link Query}s over logs
+   * which are still being written. Every call searches only the lines
+   * appended to the logs since the previous call with the same tracker
+   * (the first call searches the whole logs), including the logs
+   * created in the meantime. The matches are passed to the listeners
+   * in file order. They are not cached, because the logs keep changing.
+   * The file names are not searched, and the limits of the queries
+   * are ignored.
+   *
+   * @param queries   {@link Query}s containing the patterns to match in logs
+   * @param listeners the listeners receiving the matches of the queries
+   * @param tracker   records how far the logs were searched
+   */
+  public void follow(List<Query> queries,
+                     List<? extends MatchListener> listeners,
+                     LogTracker tracker) throws IOException {
+    if (queries.size() != listeners.size()) {
+      throw new IllegalArgumentException(
+          "Every query needs exactly one listener");
+    }
+    listFiles();
+    List<QueryPlan> plans = planAll(queries);
+    List<FileRegion> appendedParts = new ArrayList<>();
+    List<FileRegion> parts = new ArrayList<>();
+    for (File file : findLogFiles(plans)) {
+      FileRegion appended = tracker.findAppendedPart(file,
+          isRecordAligned(plans, file));
+      if (appended == null) {
+        continue;
+      }
+      appendedParts.add(appended);
+      // the time index still narrows down the logs not changed since
+      // preprocessing, when they are searched for the first time
+      FileRegion searched = findSearchedPart(plans, file);
+      long start = Math.max(searched.getOffset(), appended.getOffset());
+      long end = Math.min(searched.getEnd(), appended.getEnd());
+      if (start < end) {
+        parts.add(new FileRegion(file, start, end - start));
+      }
+    }
+    searchInParts(queries, listeners, parts);
+    for (FileRegion appended : appendedParts) {
+      tracker.advance(appended);
     }
   }
 
-  private List<Matcher> createMatchersForNewQuery(Query query)
+  /**
+   * Evaluates the queries in a single pass over the logs,
+   * except the queries limited to their last matches,
+   * which are evaluated one by one, see {@link #searchTail}.
+   * The single pass is split across the scan workers, if there are any.
+   * The listeners only receive the matches within the limits
+   * of their queries.
+   *
+   * @return for every query, whether its listener received
+   *         every match of the query without its limits
+   */
+  private boolean[] searchInSources(List<Query> queries,
+                                    List<? extends MatchListener> listeners)
       throws IOException {
-    List<Matcher> matchers = new ArrayList<>();
+    boolean[] complete = new boolean[queries.size()];
+    List<Query> scannedQueries = new ArrayList<>();
+    List<MatchListener> limiters = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      Query query = queries.get(i);
+      if (query.getTail() > 0) {
+        complete[i] = searchTail(query, listeners.get(i));
+      } else {
+        scannedQueries.add(query);
+        limiters.add(new MatchLimiter(listeners.get(i), 0, getLimit(query)));
+      }
+    }
+    if (scannedQueries.isEmpty()) {
+      return complete;
+    }
+    List<QueryPlan> plans = planAll(scannedQueries);
+    if (scanCoordinator != null) {
+      scanCoordinator.search(scannedQueries, limiters, findLogFiles(plans));
+    } else {
+      List<FileRegion> parts = new ArrayList<>();
+      for (File file : findLogFiles(plans)) {
+        parts.add(findSearchedPart(plans, file));
+      }
+      searchInParts(scannedQueries, limiters, parts);
+    }
+    int scannedIndex = 0;
+    for (int i = 0; i < queries.size(); i++) {
+      Query query = queries.get(i);
+      if (query.getTail() > 0) {
+        continue;
+      }
+      MatchListener limiter = limiters.get(scannedIndex++);
+      if (query.searchInFileNames() && !limiter.isSatisfied()) {
+        searchInFileNames(query, limiter);
+      }
+      // the search stops at the limit, so the matches are not known
+      // to be complete even if the limit is exactly their number
+      complete[i] = !limiter.isSatisfied();
+    }
+    return complete;
+  }
+
+  /**
+   * Evaluates the queries in a shard of the logs for a
+   * {@link ScanCoordinator}. Only the logs are searched,
+   * without the cache and the file names.
+   *
+   * @param queries   the queries without a tail limit
+   * @param listeners the listeners of the queries
+   * @param fileNames the names of the logs of the shard
+   * @throws IOException if a log isn't in the bundle or can't be read
+   */
+  public void searchShard(List<Query> queries,
+                          List<? extends MatchListener> listeners,
+                          List<String> fileNames) throws IOException {
+    List<MatchListener> limiters = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      Query query = queries.get(i);
+      if (query.getTail() > 0) {
+        throw new IllegalArgumentException(
+            "The last matches can't be searched in a shard");
+      }
+      limiters.add(new MatchLimiter(listeners.get(i), 0, getLimit(query)));
+    }
+    List<QueryPlan> plans = planAll(queries);
+    List<FileRegion> parts = new ArrayList<>();
+    for (String fileName : fileNames) {
+      File file = new File(logDir, fileName);
+      if (!files.contains(file)) {
+        throw new IOException("The log is not in the bundle: " + fileName);
+      }
+      parts.add(findSearchedPart(plans, file));
+    }
+    searchInParts(queries, limiters, parts);
+  }
+
+  /**
+   * Evaluates a query limited to its last matches.
+   * The file names are searched first, as their matches come last.
+   * Then the chunks of the logs are scanned backwards,
+   * a batch of them at a time, until the chunks scanned so far
+   * contain enough matches. One more chunk is scanned before them,
+   * and the scanned chunks are merged in file order,
+   * so the matches running over the end of a chunk are handled
+   * the same way as in a forward scan.
+   *
+   * @return whether the listener received every match of the query
+   *         without its limit
+   */
+  private boolean searchTail(Query query, MatchListener listener)
+      throws IOException {
+    List<Query> queries = Collections.singletonList(query);
+    MatchBuffer fileNameMatches = new MatchBuffer();
+    if (query.searchInFileNames()) {
+      searchInFileNames(query, fileNameMatches);
+    }
+    long needed = query.getTail() - fileNameMatches.getMatchCount();
+
+    QueryPlan plan = planner.plan(query);
+    List<QueryPlan> plans = Collections.singletonList(plan);
+    List<FileRegion> chunks = new ArrayList<>();
+    for (File file : plan.getTargetFiles()) {
+      chunks.addAll(LogManipulator.splitIntoRegions(
+          findSearchedPart(plans, file), chunkSize,
+          isRecordAligned(plans, file)));
+    }
+    ChunkScanner[] scanners = {plan.getScanner()};
+    List<Map<File, LineRanges>> indexedLines =
+        Collections.singletonList(plan.getIndexedLines());
+    ParallelScanner.RegionScan<ChunkResult[]> regionScan =
+        chunk -> searchInChunk(Collections.singletonList(listener), scanners,
+            selectLines(indexedLines, chunk.getFile()),
+            chunk, chunk.getOffset());
+    ChunkResult[][] results = new ChunkResult[chunks.size()][];
+    int first = chunks.size();
+    long found = 0;
+    while (first > 0 && found < needed && !listener.isSatisfied()) {
+      int batchStart =
+          Math.max(0, first - parallelScanner.getParallelism());
+      List<ChunkResult[]> batch =
+          parallelScanner.scan(chunks.subList(batchStart, first), regionScan);
+      for (int i = batchStart; i < first; i++) {
+        results[i] = batch.get(i - batchStart);
+      }
+      while (first > batchStart && found < needed) {
+        first--;
+        found += results[first][0].getMatchCount();
+      }
+    }
+    if (first > 0 && first < chunks.size()) {
+      first--;
+      if (results[first] == null) {
+        results[first] = regionScan.scan(chunks.get(first));
+      }
+    }
+
+    MatchBuffer logMatches = new MatchBuffer();
+    ChunkMerger merger = new ChunkMerger(queries, scanners, indexedLines,
+        chunks.subList(first, chunks.size()),
+        Collections.singletonList(logMatches));
+    for (int i = first; i < chunks.size(); i++) {
+      merger.accept(results[i]);
+    }
+    long matchCount =
+        logMatches.getMatchCount() + fileNameMatches.getMatchCount();
+    boolean cancelled = listener.isSatisfied();
+    MatchListener limiter = new MatchLimiter(listener,
+        Math.max(0, matchCount - query.getTail()), getLimit(query));
+    logMatches.passTo(limiter);
+    fileNameMatches.passTo(limiter);
+    return first == 0 && matchCount <= query.getTail() && !cancelled;
+  }
+
+  private List<QueryPlan> planAll(List<Query> queries) {
+    List<QueryPlan> plans = new ArrayList<>(queries.size());
+    for (Query query : queries) {
+      plans.add(planner.plan(query));
+    }
+    return plans;
+  }
+
+  /**
+   * Returns the logs targeted by the query, the ResourceManager logs first.
+   */
+  private List<File> findTargetFiles(Query query) {
+    List<File> logFiles = new ArrayList<>();
     if (query.searchInRmLogs()) {
-      searchInRmLogs(query, matchers);
+      logFiles.addAll(rmFiles);
     }
     if (query.searchInNmLogs()) {
-      searchInNmLogs(query, matchers);
+      logFiles.addAll(nmFiles);
     }
-    if (query.searchInFileNames()) {
-      searchInFileNames(query, matchers);
+    return logFiles;
+  }
+
+  /**
+   * Returns the logs targeted by at least one of the plans,
+   * in the order of the search.
+   */
+  private List<File> findLogFiles(List<QueryPlan> plans) {
+    List<File> logFiles = new ArrayList<>();
+    for (List<File> candidates : Arrays.asList(rmFiles, nmFiles)) {
+      for (File file : candidates) {
+        if (plans.stream().anyMatch(
+            plan -> plan.getTargetFiles().contains(file))) {
+          logFiles.add(file);
+        }
+      }
+    }
+    return logFiles;
+  }
+
+  /**
+   * Tells whether the file has to be split at the records
+   * instead of the lines, because a query which is not line-scoped
+   * targets it.
+   */
+  private static boolean isRecordAligned(List<QueryPlan> plans, File file) {
+    return plans.stream().anyMatch(plan ->
+        plan.getTargetFiles().contains(file) && !plan.isLineScoped());
+  }
+
+  /**
+   * Evaluates the queries in a single pass over the parts of the logs.
+   * Every part is split into chunks, and every chunk is mapped only once
+   * for all the queries targeting its file.
+   */
+  private void searchInParts(List<Query> queries,
+                             List<? extends MatchListener> listeners,
+                             List<FileRegion> parts) throws IOException {
+    if (parts.isEmpty()) {
+      return;
+    }
+    List<QueryPlan> plans = planAll(queries);
+    List<FileRegion> chunks = new ArrayList<>();
+    for (FileRegion part : parts) {
+      chunks.addAll(LogManipulator.splitIntoRegions(part, chunkSize,
+          isRecordAligned(plans, part.getFile())));
+    }
+    ChunkScanner[] scanners = new ChunkScanner[queries.size()];
+    List<Map<File, LineRanges>> indexedLines = new ArrayList<>();
+    for (int i = 0; i < scanners.length; i++) {
+      scanners[i] = plans.get(i).getScanner();
+      indexedLines.add(plans.get(i).getIndexedLines());
+    }
+    parallelScanner.scanInOrder(chunks,
+        chunk -> searchInChunk(listeners,
+            selectScanners(plans, scanners, listeners, chunk.getFile()),
+            selectLines(indexedLines, chunk.getFile()),
+            chunk, chunk.getOffset()),
+        new ChunkMerger(queries, scanners, indexedLines, chunks, listeners));
+  }
+
+  /**
+   * Finds the part of the file which has to be searched:
+   * the whole file, unless every query targeting it is restricted
+   * to a time range, and the {@link TimeIndex} narrows the file down.
+   */
+  private FileRegion findSearchedPart(List<QueryPlan> plans, File file)
+      throws IOException {
+    long length = getLength(file);
+    FileRegion wholeFile = new FileRegion(file, 0, length);
+    long start = length;
+    long end = 0;
+    for (QueryPlan plan : plans) {
+      if (!plan.getTargetFiles().contains(file)) {
+        continue;
+      }
+      if (plan.getTimeRange() == null || timeIndex == null) {
+        return wholeFile;
+      }
+      FileRegion region = timeIndex.findRegion(file, plan.getTimeRange());
+      if (region == null) {
+        return wholeFile;
+      }
+      start = Math.min(start, region.getOffset());
+      end = Math.max(end, region.getEnd());
+    }
+    LOG.debug("Searching {} in [{}, {})", file.getName(), start, end);
+    return new FileRegion(file, start, Math.max(0, end - start));
+  }
+
+  /**
+   * Compiles the plan of a query, see {@link QueryPlanner}.
+   * The indexes can serve the query if it is line-scoped,
+   * see {@link QueryPlan#isLineScoped()}.
+   * The {@link EntityIndex} is used if the pattern requires a literal
+   * containing an entity token (e.g. the ID of an application),
+   * otherwise the {@link TrigramIndex} is used if the trigrams
+   * of the required literals narrow down the blocks of the logs.
+   */
+  private QueryPlan compilePlan(Query query) {
+    List<File> targetFiles = findTargetFiles(query);
+    PatternAnalysis analysis = PatternAnalyzer.analyze(query.getPattern());
+    QueryPlan.ServingIndex servingIndex = QueryPlan.ServingIndex.NONE;
+    Map<File, LineRanges> indexedLines = null;
+    boolean lineScoped =
+        !query.spansMultipleLines() && !analysis.isMatchingLineBreaks();
+    if (lineScoped) {
+      indexedLines = findEntityLines(analysis, targetFiles);
+      if (indexedLines != null) {
+        servingIndex = QueryPlan.ServingIndex.ENTITY;
+      } else {
+        indexedLines = findTrigramBlocks(analysis, targetFiles);
+        if (indexedLines != null) {
+          servingIndex = QueryPlan.ServingIndex.TRIGRAM;
+        }
+      }
+    }
+    ChunkScanner scanner = new ChunkScanner(query, analysis, lineScoped,
+        usingLiteralPrefilter, regexEngine, timeStampPattern);
+    return new QueryPlan(query, targetFiles, analysis, lineScoped,
+        servingIndex, indexedLines, scanner);
+  }
+
+  /**
+   * Looks up the lines of the first entity token
+   * of the required literals in the {@link EntityIndex}.
+   *
+   * @return the lines of the indexed files or null if the index
+   *         can't be used
+   */
+  private Map<File, LineRanges> findEntityLines(PatternAnalysis analysis,
+                                                List<File> logFiles) {
+    if (entityIndex == null) {
+      return null;
+    }
+    for (String literal : analysis.getRequiredLiterals()) {
+      String token = EntityIndex.findEntityToken(literal);
+      if (token != null) {
+        LOG.debug("Looking up the lines of {} in the entity index", token);
+        Map<String, long[]> lines = entityIndex.findLines(token);
+        Map<File, LineRanges> indexedLines = new HashMap<>();
+        for (File file : logFiles) {
+          if (entityIndex.isIndexed(file)) {
+            long[] lineStarts = lines.get(file.getName());
+            indexedLines.put(file, lineStarts == null
+                ? LineRanges.EMPTY : LineRanges.ofLines(lineStarts));
+          }
+        }
+        return indexedLines;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Looks up the blocks containing the trigrams of the required literals
+   * in the {@link TrigramIndex}.
+   *
+   * @return the blocks of the indexed files or null if the index
+   *         can't narrow them down
+   */
+  private Map<File, LineRanges> findTrigramBlocks(PatternAnalysis analysis,
+                                                  List<File> logFiles) {
+    if (trigramIndex == null) {
+      return null;
+    }
+    Map<String, LineRanges> blocks =
+        trigramIndex.findBlocks(analysis.getRequiredAlternatives());
+    if (blocks == null) {
+      return null;
+    }
+    LOG.debug("Found the candidate blocks in the trigram index");
+    Map<File, LineRanges> indexedLines = new HashMap<>();
+    for (File file : logFiles) {
+      if (trigramIndex.isIndexed(file)) {
+        indexedLines.put(file,
+            blocks.getOrDefault(file.getName(), LineRanges.EMPTY));
+      }
+    }
+    return indexedLines;
+  }
+
+  /**
+   * Returns the indexed lines of the file for every query,
+   * null for the queries which have to scan the file.
+   */
+  private static LineRanges[] selectLines(
+      List<Map<File, LineRanges>> indexedLines, File file) {
+    LineRanges[] selectedLines = new LineRanges[indexedLines.size()];
+    for (int i = 0; i < selectedLines.length; i++) {
+      if (indexedLines.get(i) != null) {
+        selectedLines[i] = indexedLines.get(i).get(file);
+      }
+    }
+    return selectedLines;
+  }
+
+  /**
+   * Returns the scanners of the queries targeting the file,
+   * the scanners of the other queries and of the queries
+   * whose listener is already satisfied are replaced by null.
+   */
+  private static ChunkScanner[] selectScanners(
+      List<QueryPlan> plans, ChunkScanner[] scanners,
+      List<? extends MatchListener> listeners, File file) {
+    ChunkScanner[] selectedScanners = new ChunkScanner[scanners.length];
+    for (int i = 0; i < scanners.length; i++) {
+      if (plans.get(i).getTargetFiles().contains(file)
+          && !listeners.get(i).isSatisfied()) {
+        selectedScanners[i] = scanners[i];
+      }
+    }
+    return selectedScanners;
+  }
+
+  /**
+   * Passes the matches within the limits of the query to the listener.
+   */
+  private static void passMatches(Query query, List<Matcher> matchers,
+                                  MatchListener listener) {
+    long skipped = 0;
+    if (query.getTail() > 0) {
+      skipped = Math.max(0, countMatches(matchers) - query.getTail());
+    }
+    MatchListener limiter =
+        new MatchLimiter(listener, skipped, getLimit(query));
+    for (Matcher matcher : matchers) {
+      if (limiter.isSatisfied()) {
+        break;
+      }
+      passMatches(matcher, limiter);
+    }
+  }
+
+  /**
+   * Passes the cached matches within the limits of the query
+   * to the listener. With the spans of the matches, the pattern
+   * is not matched at all: the text of every passed match is read
+   * from its log (or from the cached text of its source),
+   * and its groups are taken from the cached offsets.
+   * The skipped matches are not read.
+   */
+  private void passCachedMatches(Query query, LinesOfLogs cached,
+                                 MatchListener listener) throws IOException {
+    if (!(cached instanceof MatchSpans)) {
+      passMatches(query,
+          QueryCacheHandler.createMatchers(query.getPattern(), cached),
+          listener);
+      return;
+    }
+    MatchSpans spans = (MatchSpans) cached;
+    Map<String, Integer> groupNames = GroupNames.of(query.getPattern());
+    long skipped = 0;
+    if (query.getTail() > 0) {
+      skipped = Math.max(0, spans.getMatchCount() - query.getTail());
+    }
+    MatchListener limiter = new MatchLimiter(listener, 0, getLimit(query));
+    for (int source = 0; source < spans.getSourceCount()
+        && !limiter.isSatisfied(); source++) {
+      int matchCount = spans.getMatchCount(source);
+      if (skipped >= matchCount) {
+        skipped -= matchCount;
+        continue;
+      }
+      if (spans.getFileName(source) == null) {
+        passCachedTexts(spans, source, (int) skipped, groupNames, limiter);
+      } else {
+        passCachedPositions(spans, source, (int) skipped, groupNames,
+            limiter);
+      }
+      skipped = 0;
+      limiter.onEndOfSource();
+    }
+  }
+
+  private static void passCachedTexts(MatchSpans spans, int source,
+                                      int first,
+                                      Map<String, Integer> groupNames,
+                                      MatchListener listener) {
+    String text = spans.getText(source);
+    for (int match = first; match < spans.getMatchCount(source)
+        && !listener.isSatisfied(); match++) {
+      int start = (int) spans.getStart(source, match);
+      listener.onMatch(new RecordedMatch(
+          text.substring(start, start + spans.getLength(source, match)),
+          spans.getOffsets(source, match), groupNames));
     }
-    return matchers;
   }
 
-  private void searchInRmLogs(Query query, List<Matcher> matchers)
+  /**
+   * Reads the texts of the cached matches of a source from its log.
+   * The matches are read through a region reaching from the first one
+   * to the end of the log, a new region is only read
+   * if a match runs past it.
+   */
+  private void passCachedPositions(MatchSpans spans, int source, int first,
+                                   Map<String, Integer> groupNames,
+                                   MatchListener listener)
       throws IOException {
-    for (File file : rmFiles) {
-      searchInFile(query, file, matchers);
+    File file = new File(logDir, spans.getFileName(source));
+    long fileLength = getLength(file);
+    SegmentedCharSequence sequence = null;
+    long sequenceStart = 0;
+    try {
+      for (int match = first; match < spans.getMatchCount(source)
+          && !listener.isSatisfied(); match++) {
+        long start = spans.getStart(source, match);
+        int length = spans.getLength(source, match);
+        if (start + length > fileLength) {
+          throw new IOException("The cached match at " + start
+              + " is outside of " + file);
+        }
+        if (sequence == null
+            || start + length > sequenceStart + sequence.length()) {
+          if (sequence != null) {
+            sequence.close();
+          }
+          sequenceStart = start;
+          sequence = LogManipulator.readRegion(new FileRegion(file, start,
+                  Math.min(fileLength - start,
+                      LogManipulator.MAX_REGION_LENGTH)),
+              mappedFilePool, blockCache);
+        }
+        int from = (int) (start - sequenceStart);
+        listener.onMatch(new RecordedMatch(
+            Utf8Decoder.decode(sequence, from, from + length),
+            spans.getOffsets(source, match), groupNames));
+      }
+    } finally {
+      if (sequence != null) {
+        sequence.close();
+      }
+    }
+  }
+
+  private static long countMatches(List<Matcher> matchers) {
+    long count = 0;
+    for (Matcher matcher : matchers) {
+      while (matcher.find()) {
+        count++;
+      }
+      matcher.reset();
+    }
+    return count;
+  }
+
+  private static long getLimit(Query query) {
+    if (query.getHead() > 0) {
+      return query.getHead();
+    } else if (query.getTail() > 0) {
+      return query.getTail();
+    }
+    return Long.MAX_VALUE;
+  }
+
+  private static void passMatches(Matcher matcher, MatchListener listener) {
+    LogMatch view = LogMatch.of(matcher);
+    while (matcher.find() && !listener.isSatisfied()) {
+      listener.onMatch(view);
     }
+    listener.onEndOfSource();
   }
 
-  private void searchInNmLogs(Query query, List<Matcher> matchers)
+  /**
+   * Collects the matches of the queries starting in the chunk
+   * at or after {@code from}.
+   * A few bytes before {@code from} are mapped as well,
+   * so anchors and lookbehinds see the same text
+   * as if the whole file was matched.
+   * The chunk is processed slice by slice: every scanner goes through
+   * a slice before the next one is read, so the chunk is read
+   * from the disk only once, however many queries are evaluated.
+   * The windows of the chunk are unmapped as soon as
+   * every scanner has passed them.
+   * The scanners having the indexed lines of the chunk only read
+   * those lines, and the chunk is not mapped at all,
+   * if none of the scanners has to read anything from it.
+   * A scanner stops after the slice its listener got satisfied in
+   * (e.g. the search was cancelled), or in the middle of the match
+   * it was searching for, and its result is left incomplete.
+   *
+   * @param listeners the listeners of the queries
+   * @param scanners  the scanners of the queries,
+   *                  null for the queries not targeting the chunk
+   * @param lines     the indexed lines of the file for every query,
+   *                  null for the queries scanning the whole chunk
+   * @return the results of the scanners, null for the missing scanners
+   */
+  private ChunkResult[] searchInChunk(List<? extends MatchListener> listeners,
+                                      ChunkScanner[] scanners,
+                                      LineRanges[] lines, FileRegion chunk,
+                                      long from) throws IOException {
+    LOG.debug("Checking chunk: " + chunk);
+    ChunkResult[] results = new ChunkResult[scanners.length];
+    for (int i = 0; i < scanners.length; i++) {
+      if (scanners[i] != null) {
+        results[i] = scanners[i].createResult();
+      }
+    }
+    if (chunk.getEnd() <= from
+        || !isReadingChunk(scanners, lines, chunk, from)) {
+      return results;
+    }
+    seedTimeStamps(scanners, results, chunk.getFile(), from);
+    int context = (int) Math.min(from, LOOKBEHIND_CONTEXT);
+    long viewStart = from - context;
+    long viewLength = Math.min(getLength(chunk.getFile()) - viewStart,
+        chunk.getEnd() - viewStart + MATCH_OVERHANG);
+    FileRegion view = new FileRegion(chunk.getFile(), viewStart,
+        Math.min(viewLength, LogManipulator.MAX_REGION_LENGTH));
+    try (SegmentedCharSequence sequence =
+             LogManipulator.readRegion(view, mappedFilePool, blockCache)) {
+      int startLimit = (int) (chunk.getEnd() - viewStart);
+      int[] positions = new int[scanners.length];
+      Arrays.fill(positions, context);
+      int sliceStart = context;
+      while (sliceStart < startLimit) {
+        int sliceEnd = findSliceEnd(sequence, sliceStart, startLimit);
+        int matchLimit = (int) Math.min(
+            (long) sliceEnd + MATCH_OVERHANG, sequence.length());
+        int firstPosition = sliceEnd;
+        boolean scanning = false;
+        for (int i = 0; i < scanners.length; i++) {
+          if (scanners[i] == null || listeners.get(i).isSatisfied()) {
+            continue;
+          }
+          scanning = true;
+          if (positions[i] < sliceEnd) {
+            MatchListener listener = listeners.get(i);
+            try {
+              if (lines[i] == null) {
+                scanners[i].scan(sequence, viewStart, positions[i],
+                    sliceEnd, matchLimit, results[i], listener::isSatisfied);
+              } else {
+                scanners[i].scanLines(sequence, viewStart, lines[i],
+                    positions[i], sliceEnd, results[i],
+                    listener::isSatisfied);
+              }
+            } catch (CancellationException e) {
+              // the listener got satisfied in the middle of a match
+              continue;
+            }
+            positions[i] = (int) Math.max(sliceEnd,
+                results[i].getLastMatchEnd() - viewStart);
+          }
+          firstPosition = Math.min(firstPosition, positions[i]);
+        }
+        if (!scanning) {
+          break;
+        }
+        sequence.releaseBefore(firstPosition);
+        sliceStart = sliceEnd;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Tells whether any of the scanners has to read from [from, end)
+   * of the file: either it scans the whole chunk,
+   * or some of its indexed lines start there,
+   * or an indexed line may run into the chunk from an earlier one.
+   */
+  private static boolean isReadingChunk(ChunkScanner[] scanners,
+                                        LineRanges[] lines, FileRegion chunk,
+                                        long from) throws IOException {
+    Boolean startingLine = null;
+    for (int i = 0; i < scanners.length; i++) {
+      if (scanners[i] == null) {
+        continue;
+      }
+      if (lines[i] == null) {
+        return true;
+      }
+      if (lines[i].intersects(from, chunk.getEnd())) {
+        return true;
+      }
+      if (lines[i].startsBefore(from)) {
+        if (startingLine == null) {
+          startingLine = isStartingLine(chunk.getFile(), from);
+        }
+        if (!startingLine) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isStartingLine(File file, long position)
       throws IOException {
-    for (File file : nmFiles) {
-      searchInFile(query, file, matchers);
+    if (position == 0) {
+      return true;
+    }
+    try (SeekableByteChannel channel = LogManipulator.openChannel(file)) {
+      ByteBuffer previous = ByteBuffer.allocate(1);
+      return channel.position(position - 1).read(previous) == 1
+          && previous.get(0) == '\n';
+    }
+  }
+
+  /**
+   * Returns the length of the log, the length of the decompressed log
+   * for a {@link BlockCompressedLog}.
+   */
+  private long getLength(File file) throws IOException {
+    if (BlockCompressedLog.isCompressed(file)) {
+      return blockCache.getLog(file).size();
+    }
+    return file.length();
+  }
+
+  /**
+   * Returns the end of the slice starting at sliceStart.
+   * The slices end on line boundaries, so the scanners applying
+   * their patterns line by line never have to go back to a previous slice.
+   */
+  private int findSliceEnd(SegmentedCharSequence sequence, int sliceStart,
+                           int startLimit) {
+    if (startLimit - sliceStart <= sliceLength) {
+      return startLimit;
+    }
+    for (int i = sliceStart + sliceLength - 1; i < startLimit - 1; i++) {
+      if (sequence.byteAt(i) == '\n') {
+        return i + 1;
+      }
     }
+    return startLimit;
   }
 
-  private void searchInFile(Query query, File file, List<Matcher> matchers)
+  /**
+   * Passes the timestamp preceding the chunk to the results
+   * of the scanners restricted to a time range, so the lines
+   * at the beginning of the chunk without a timestamp can inherit it.
+   */
+  private void seedTimeStamps(ChunkScanner[] scanners, ChunkResult[] results,
+                              File file, long from) throws IOException {
+    String timeStamp = null;
+    boolean found = false;
+    for (int i = 0; i < scanners.length; i++) {
+      if (scanners[i] != null && scanners[i].hasTimeRange()) {
+        if (!found) {
+          timeStamp = findTimeStampBefore(file, from);
+          found = true;
+        }
+        results[i].setTimeStamp(from, timeStamp);
+      }
+    }
+  }
+
+  /**
+   * Finds the timestamp of the last line starting before the position
+   * and having a timestamp.
+   *
+   * @return the timestamp or null if there is none
+   *         in the {@link #MAX_TIME_STAMP_LOOKBACK} bytes before
+   */
+  private String findTimeStampBefore(File file, long position)
       throws IOException {
-    LOG.debug("Checking file: " + file.getName());
-    matchers.add(query.getPattern().matcher(LogManipulator.readFile(file)));
+    Matcher matcher = timeStampPattern.matcher("");
+    long end = position;
+    while (end > 0 && position - end < MAX_TIME_STAMP_LOOKBACK) {
+      long start = Math.max(0, end - TIME_STAMP_STEP);
+      FileRegion region = new FileRegion(file, start, end - start);
+      try (SegmentedCharSequence sequence =
+               LogManipulator.readRegion(region, mappedFilePool, blockCache)) {
+        matcher.reset(sequence);
+        int lineEnd = sequence.length();
+        for (int i = sequence.length() - 1; i >= 0; i--) {
+          if (sequence.byteAt(i) == '\n') {
+            matcher.region(i + 1, lineEnd);
+            if (matcher.lookingAt()) {
+              return matcher.group();
+            }
+            lineEnd = i;
+          }
+        }
+        if (start == 0) {
+          matcher.region(0, lineEnd);
+          return matcher.lookingAt() ? matcher.group() : null;
+        }
+        // the first line may start in the previous step
+        end = start + Math.min(lineEnd, LINE_PREFIX_LENGTH);
+      } finally {
+        matcher.reset("");
+      }
+    }
+    return null;
   }
 
-  private void searchInFileNames(Query query, List<Matcher> matchers) {
+  /**
+   * Passes the matches in the names of the files to the listener,
+   * every file name is a source.
+   */
+  private void searchInFileNames(Query query, MatchListener listener) {
+    Map<String, Integer> groupNames = GroupNames.of(query.getPattern());
     for (File file : files) {
       LOG.debug("Check filename: " + file.getName());
-      matchers.add(query.getPattern().matcher(file.getName()));
+      Matcher matcher = query.getPattern().matcher(file.getName());
+      while (matcher.find() && !listener.isSatisfied()) {
+        listener.onMatch(
+            RecordedMatch.of(matcher, file.getName(), groupNames));
+      }
+      listener.onEndOfSource();
     }
   }
-}
 
+  /**
+   * MatchBuffer keeps the matches of every source,
+   * so the last ones can be selected after the search.
+   */
+  private static final class MatchBuffer implements MatchListener {
+
+    private final List<List<RecordedMatch>> sources = new ArrayList<>();
+    private List<RecordedMatch> current = new ArrayList<>();
+    private long matchCount;
+
+    @Override
+    public void onMatch(LogMatch match) {
+      current.add(match instanceof RecordedMatch
+          ? (RecordedMatch) match : RecordedMatch.copyOf(match));
+      matchCount++;
+    }
+
+    @Override
+    public void onEndOfSource() {
+      sources.add(current);
+      current = new ArrayList<>();
+    }
+
+    long getMatchCount() {
+      return matchCount;
+    }
+
+    /**
+     * Passes the kept matches to the listener, source by source.
+     */
+    void passTo(MatchListener listener) {
+      for (List<RecordedMatch> source : sources) {
+        for (RecordedMatch match : source) {
+          if (listener.isSatisfied()) {
+            break;
+          }
+          listener.onMatch(match);
+        }
+        listener.onEndOfSource();
+      }
+    }
+  }
+
+  /**
+   * ChunkMerger passes the results of the chunks to the listeners
+   * of the queries in file order.
+   * If the last match of a chunk ran into the next chunk,
+   * and the next chunk found a match starting before the end of it,
+   * the next chunk is scanned again from the end of the overlapping match,
+   * just like a single matcher going through the whole file would do.
+   * The results of a query are dropped once its listener is satisfied,
+   * and the merger is done when every listener is.
+   */
+  private final class ChunkMerger
+      implements ParallelScanner.ResultConsumer<ChunkResult[]> {
 
+    private final List<Query> queries;
+    private final ChunkScanner[] scanners;
+    private final List<Map<File, LineRanges>> indexedLines;
+    private final List<FileRegion> chunks;
+    private final List<? extends MatchListener> listeners;
+    private final long[] positions;
+    private int index;
+
+    private ChunkMerger(List<Query> queries, ChunkScanner[] scanners,
+                        List<Map<File, LineRanges>> indexedLines,
+                        List<FileRegion> chunks,
+                        List<? extends MatchListener> listeners) {
+      this.queries = queries;
+      this.scanners = scanners;
+      this.indexedLines = indexedLines;
+      this.chunks = chunks;
+      this.listeners = listeners;
+      this.positions = new long[queries.size()];
+    }
+
+    @Override
+    public void accept(ChunkResult[] results) throws IOException {
+      FileRegion chunk = chunks.get(index++);
+      boolean firstChunkOfFile = index == 1
+          || !chunks.get(index - 2).getFile().equals(chunk.getFile());
+      boolean lastChunkOfFile = index == chunks.size()
+          || !chunks.get(index).getFile().equals(chunk.getFile());
+      for (int i = 0; i < results.length; i++) {
+        if (results[i] != null && !listeners.get(i).isSatisfied()) {
+          accept(i, chunk, results[i], firstChunkOfFile, lastChunkOfFile);
+        }
+      }
+    }
+
+    @Override
+    public boolean isDone() {
+      return listeners.stream().allMatch(MatchListener::isSatisfied);
+    }
+
+    private void accept(int query, FileRegion chunk, ChunkResult result,
+                        boolean firstChunkOfFile, boolean lastChunkOfFile)
+        throws IOException {
+      if (firstChunkOfFile) {
+        positions[query] = 0;
+      }
+      long firstMatchStart = result.getFirstMatchStart();
+      if (firstMatchStart >= 0 && firstMatchStart < positions[query]) {
+        LOG.debug("Rescanning overlapped chunk " + chunk);
+        ChunkScanner[] rescanners = new ChunkScanner[scanners.length];
+        rescanners[query] = scanners[query];
+        result = searchInChunk(listeners, rescanners,
+            selectLines(indexedLines, chunk.getFile()), chunk,
+            positions[query])[query];
+      }
+      positions[query] = Math.max(positions[query], result.getLastMatchEnd());
+      MatchListener listener = listeners.get(query);
+      for (int i = 0; i < result.getMatchCount() && !listener.isSatisfied();
+           i++) {
+        listener.onMatch(result.getMatch(i, chunk.getFile()));
+      }
+      if (lastChunkOfFile || listener.isSatisfied()) {
+        // the rest of the file is not searched for a satisfied listener
+        listener.onEndOfSource();
+      }
+    }
+  }
+}
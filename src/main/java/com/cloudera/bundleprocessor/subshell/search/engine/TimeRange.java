@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TimeRange restricts a {@link Query} to the lines logged in a time window.
+ * The bounds are timestamps in the format of the logs
+ * (e.g. 2020-03-24 10:00:00), or a prefix of it (e.g. 2020-03-24 10),
+ * so they are compared as text, and the timestamps of the format
+ * have to sort as text (e.g. the year comes first).
+ * The upper bound is inclusive up to its precision:
+ * the range to 2020-03-24 10 contains 10:59:59 too.
+ * The lines without a timestamp belong to the time
+ * of the preceding line with one.
+ * TimeRange is an immutable object.
+ */
+public final class TimeRange {
+
+  /**
+   * The timestamps of the lines, unless another format is configured.
+   */
+  public static final Pattern DEFAULT_TIME_STAMP =
+      Pattern.compile("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}");
+
+  private final String from;
+  private final String to;
+  private final Pattern timeStamp;
+
+  /**
+   * Creates a range of the timestamps of the default format,
+   * see {@link #TimeRange(String, String, Pattern)}.
+   *
+   * @param from the first timestamp of the range or null
+   * @param to   the last timestamp of the range or null
+   * @throws IllegalArgumentException if the bounds are invalid
+   */
+  public TimeRange(String from, String to) {
+    this(from, to, DEFAULT_TIME_STAMP);
+  }
+
+  /**
+   * Creates a range, one of the bounds may be missing.
+   * A bound has to be a timestamp of the given format or a prefix of one.
+   * The date and the time of a bound can also be separated by a 'T'
+   * (e.g. 2020-03-24T10:00), so it can be typed as a single parameter.
+   *
+   * @param from      the first timestamp of the range or null
+   * @param to        the last timestamp of the range or null
+   * @param timeStamp the pattern of the timestamps of the logs
+   * @throws IllegalArgumentException if the bounds are invalid
+   */
+  public TimeRange(String from, String to, Pattern timeStamp) {
+    this.timeStamp = timeStamp;
+    this.from = normalize(from, timeStamp);
+    this.to = normalize(to, timeStamp);
+    if (this.from == null && this.to == null) {
+      throw new IllegalArgumentException("The time range has no bounds");
+    }
+    if (this.from != null && this.to != null
+        && compare(this.from, this.to, this.to.length()) > 0) {
+      throw new IllegalArgumentException(
+          "The time range ends before it starts: " + this);
+    }
+  }
+
+  private static String normalize(String bound, Pattern timeStamp) {
+    if (bound == null) {
+      return null;
+    }
+    if (isTimeStampPrefix(bound, timeStamp)) {
+      return bound;
+    }
+    String normalized = bound.replace('T', ' ');
+    if (!isTimeStampPrefix(normalized, timeStamp)) {
+      throw new IllegalArgumentException("Invalid timestamp: " + bound
+          + ", the timestamps of the logs look like " + timeStamp);
+    }
+    return normalized;
+  }
+
+  /**
+   * Tells whether the text is a timestamp or the beginning of one:
+   * if the text ran out before the pattern failed,
+   * a longer text could have matched.
+   */
+  private static boolean isTimeStampPrefix(String text, Pattern timeStamp) {
+    if (text.isEmpty()) {
+      return false;
+    }
+    Matcher matcher = timeStamp.matcher(text);
+    return matcher.matches() || matcher.hitEnd();
+  }
+
+  public String getFrom() {
+    return from;
+  }
+
+  public String getTo() {
+    return to;
+  }
+
+  public Pattern getTimeStamp() {
+    return timeStamp;
+  }
+
+  /**
+   * Tells whether the timestamp is in the range.
+   *
+   * @param timestamp the timestamp of a line
+   * @return true if it is not before the start and not after the end
+   */
+  public boolean contains(CharSequence timestamp) {
+    return !isBeforeStart(timestamp) && !isAfterEnd(timestamp);
+  }
+
+  /**
+   * Tells whether the timestamp is before the start of the range.
+   */
+  public boolean isBeforeStart(CharSequence timestamp) {
+    return from != null
+        && compare(timestamp, from, timestamp.length()) < 0;
+  }
+
+  /**
+   * Tells whether the timestamp is after the end of the range,
+   * only the precision of the end is compared.
+   */
+  public boolean isAfterEnd(CharSequence timestamp) {
+    return to != null && compare(timestamp, to, to.length()) > 0;
+  }
+
+  /**
+   * Compares the first {@code length} characters of the timestamp
+   * to the bound.
+   */
+  private static int compare(CharSequence timestamp, String bound,
+                             int length) {
+    int limit = Math.min(Math.min(timestamp.length(), length),
+        bound.length());
+    for (int i = 0; i < limit; i++) {
+      int difference = timestamp.charAt(i) - bound.charAt(i);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return Math.min(timestamp.length(), length) - bound.length();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TimeRange timeRange = (TimeRange) o;
+    return Objects.equals(from, timeRange.from)
+        && Objects.equals(to, timeRange.to)
+        && timeStamp.pattern().equals(timeRange.timeStamp.pattern());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(from, to, timeStamp.pattern());
+  }
+
+  @Override
+  public String toString() {
+    return "[" + (from == null ? "" : from) + ", "
+        + (to == null ? "" : to) + "]";
+  }
+}
@@ -18,6 +18,8 @@
 
 package com.cloudera.bundleprocessor.subshell.search.engine.cache;
 
+import java.io.IOException;
+
 public interface Cache<K, V> {
 
   V get(K key);
@@ -27,4 +29,27 @@ public interface Cache<K, V> {
   void remove(K key);
 
   void reset();
+
+  /**
+   * Returns the value of the key, and computes it with the loader
+   * if it's missing. The computed value is cached unless it's null.
+   * A concurrent cache may compute the value only once
+   * for the threads asking for the same key at the same time,
+   * see {@link ConcurrentLRUCache}.
+   *
+   * @param key    the key of the value
+   * @param loader computes the missing value
+   * @return the cached or the computed value
+   */
+  default V load(K key, CacheLoader<? super K, ? extends V> loader)
+      throws IOException {
+    V value = get(key);
+    if (value == null) {
+      value = loader.load(key);
+      if (value != null) {
+        set(key, value);
+      }
+    }
+    return value;
+  }
 }
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import java.io.IOException;
+
+/**
+ * CacheLoader computes a value missing from a {@link Cache},
+ * see {@link Cache#load(Object, CacheLoader)}.
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+
+  /**
+   * Computes the value of the key.
+   *
+   * @param key the missing key
+   * @return the value to cache, or null if it can't be cached
+   */
+  V load(K key) throws IOException;
+}
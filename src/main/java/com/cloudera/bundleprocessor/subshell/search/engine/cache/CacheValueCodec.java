@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * CacheValueCodec writes the {@link LinesOfLogs} and the {@link MatchSpans}
+ * to the disk in a compact binary format, and reads them without
+ * deserializing every line: the lines of a value read from the disk are
+ * {@link EncodedLines}, decoded when they're needed. Large files are
+ * mapped to the memory, so their lines are not even copied to the heap
+ * until they're decoded. Other values are written with Java serialization
+ * in the same kind of file. The file consists of a fixed-size header
+ * and the payload. The header holds a magic number, the version
+ * of the format, the type of the value, the flags, the length
+ * of the payload before and after the compression and the CRC32 checksum
+ * of the payload before the compression. The payload starts with the key
+ * of the value as its length in bytes and its UTF-8 bytes, so a file
+ * found for another key is not mistaken for the value of the key.
+ * The payload of the serialized values holds the serialized value after
+ * the key. The payload of the logs holds the number of the lines and
+ * every line as its length in bytes and its UTF-8 bytes. For the
+ * {@link MatchSpans} they are the texts of the sources not found in a log,
+ * followed by the number of the groups, the names of the logs
+ * (their number and every name like a line), the number of the sources,
+ * then for every source its file id plus one (0 for a text), the number
+ * of its matches and every match as the distance from the start
+ * of the previous match, its length and the offsets of its groups plus one.
+ * The numbers are written in 7-bit groups, the distances zigzag-encoded.
+ * Version 2 of the format stored the matched texts of every source
+ * and the spans of the matches in them, its {@link MatchSpans}
+ * are read as {@link LinesOfLogs}, which are searched again
+ * when they are passed. Version 1 files (without the key in the payload)
+ * are not read, they are left in the cache directory by the earlier
+ * releases, see {@link FileBasedCacheIOExecutor#forBundle}.
+ * The payload can be deflate-compressed as a single block, which makes
+ * the files smaller, but the payload is inflated to the heap
+ * when it's read.
+ */
+public final class CacheValueCodec {
+
+  static final int MAGIC = 0x594c5043;
+  static final int VERSION = 3;
+  private static final int OLDEST_VERSION = 2;
+  static final int HEADER_LENGTH = 4 + 1 + 1 + 1 + 1 + 4 + 4 + 4;
+  /**
+   * Smaller files are read to the heap, as mapping them costs more.
+   */
+  static final int MAPPING_THRESHOLD = 1 << 16;
+  private static final int LINES = 1;
+  private static final int MATCH_SPANS = 2;
+  private static final int JAVA_OBJECT = 3;
+  private static final int COMPRESSED = 1;
+
+  private CacheValueCodec() {
+  }
+
+  /**
+   * Writes a value to a file, replacing the file atomically,
+   * so the earlier value can still be read from where it's mapped.
+   *
+   * @param file     the file to write
+   * @param value    the value to write
+   * @param key      the key of the value, checked when it's read
+   * @param compress whether to compress the payload
+   * @throws IOException if the file can't be written
+   */
+  public static void write(File file, Serializable value, String key,
+                           boolean compress) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+    FileUtils.findOrCreateDirectory(directory);
+    Path temporary = Files.createTempFile(
+        directory.toPath(), file.getName(), ".tmp");
+    try {
+      writeValue(temporary, value, key, compress);
+      Files.move(temporary, file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static void writeValue(Path path, Serializable value, String key,
+                                 boolean compress) throws IOException {
+    int type = value instanceof MatchSpans ? MATCH_SPANS
+        : value instanceof LinesOfLogs ? LINES : JAVA_OBJECT;
+    Deflater deflater = compress ? new Deflater() : null;
+    CRC32 checksum = new CRC32();
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      channel.position(HEADER_LENGTH);
+      BufferedOutputStream stored = new BufferedOutputStream(
+          Channels.newOutputStream(channel));
+      OutputStream payload = compress
+          ? new DeflaterOutputStream(stored, deflater) : stored;
+      DataOutputStream out = new DataOutputStream(
+          new CheckedOutputStream(payload, checksum));
+      writeBytes(out, key.getBytes(StandardCharsets.UTF_8));
+      if (type == JAVA_OBJECT) {
+        ObjectOutputStream objects = new ObjectOutputStream(out);
+        objects.writeObject(value);
+        objects.flush();
+      } else {
+        writePayload(out, (LinesOfLogs) value);
+      }
+      out.flush();
+      if (payload instanceof DeflaterOutputStream) {
+        ((DeflaterOutputStream) payload).finish();
+      }
+      stored.flush();
+      long storedLength = channel.position() - HEADER_LENGTH;
+      // the size saturates at the largest int
+      if (out.size() == Integer.MAX_VALUE
+          || storedLength >= Integer.MAX_VALUE) {
+        throw new IOException("The value is too large to be cached");
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      header.putInt(MAGIC)
+          .put((byte) VERSION)
+          .put((byte) type)
+          .put((byte) (compress ? COMPRESSED : 0))
+          .put((byte) 0)
+          .putInt(out.size())
+          .putInt((int) storedLength)
+          .putInt((int) checksum.getValue());
+      header.flip();
+      channel.write(header, 0);
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+
+  private static void writePayload(DataOutputStream out, LinesOfLogs value)
+      throws IOException {
+    List<String> lines = value.getLines();
+    writeNumber(out, lines.size());
+    for (String line : lines) {
+      writeBytes(out, line.getBytes(StandardCharsets.UTF_8));
+    }
+    if (value instanceof MatchSpans) {
+      writeSpans(out, (MatchSpans) value);
+    }
+  }
+
+  private static void writeSpans(DataOutputStream out, MatchSpans spans)
+      throws IOException {
+    writeNumber(out, spans.getGroupCount());
+    String[] fileNames = spans.getFileNames();
+    writeNumber(out, fileNames.length);
+    for (String fileName : fileNames) {
+      writeBytes(out, fileName.getBytes(StandardCharsets.UTF_8));
+    }
+    writeNumber(out, spans.getSourceCount());
+    for (int source = 0; source < spans.getSourceCount(); source++) {
+      writeNumber(out, spans.getFileId(source) + 1);
+      int count = spans.getMatchCount(source);
+      writeNumber(out, count);
+      long previousStart = 0;
+      for (int match = 0; match < count; match++) {
+        long start = spans.getStart(source, match);
+        long distance = start - previousStart;
+        writeLong(out, distance << 1 ^ distance >> 63);
+        writeNumber(out, spans.getLength(source, match));
+        for (int offset : spans.getOffsets(source, match)) {
+          writeNumber(out, offset + 1);
+        }
+        previousStart = start;
+      }
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes)
+      throws IOException {
+    writeNumber(out, bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a value from a file.
+   *
+   * @param file        the file to read
+   * @param expectedKey the key of the value
+   * @return the value read from the file or null if the file holds
+   *         the value of another key
+   * @throws IOException            if the file can't be read or it's corrupt
+   * @throws ClassNotFoundException if the class of a value written
+   *                                with Java serialization is unknown
+   */
+  public static Serializable read(File file, String expectedKey)
+      throws IOException, ClassNotFoundException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file.toPath(),
+        StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_LENGTH) {
+        throw new IOException("Truncated cache file: " + file);
+      }
+      if (size > MAPPING_THRESHOLD) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+          // reading the whole file
+        }
+        buffer.flip();
+      }
+    }
+    return decode(buffer, expectedKey, file);
+  }
+
+  private static Serializable decode(ByteBuffer buffer, String expectedKey,
+                                     File file)
+      throws IOException, ClassNotFoundException {
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a cache file: " + file);
+    }
+    int version = buffer.get(4);
+    if (version < OLDEST_VERSION || version > VERSION) {
+      throw new IOException(
+          "Unsupported version " + version + " of cache file: " + file);
+    }
+    int type = buffer.get(5);
+    boolean compressed = (buffer.get(6) & COMPRESSED) != 0;
+    int length = buffer.getInt(8);
+    int storedLength = buffer.getInt(12);
+    int expectedChecksum = buffer.getInt(16);
+    if (length < 0 || storedLength < 0
+        || storedLength > buffer.limit() - HEADER_LENGTH) {
+      throw new IOException("Truncated cache file: " + file);
+    }
+    buffer.position(HEADER_LENGTH);
+    buffer.limit(HEADER_LENGTH + storedLength);
+    ByteBuffer payload = buffer.slice();
+    if (compressed) {
+      payload = inflate(payload, length, file);
+    } else if (storedLength != length) {
+      throw new IOException("Truncated cache file: " + file);
+    }
+    CRC32 checksum = new CRC32();
+    checksum.update(payload.duplicate());
+    if ((int) checksum.getValue() != expectedChecksum) {
+      throw new IOException("Corrupt cache file: " + file);
+    }
+    try {
+      String key = new String(readBytes(payload), StandardCharsets.UTF_8);
+      if (!key.equals(expectedKey)) {
+        return null;
+      }
+      if (type == JAVA_OBJECT) {
+        byte[] serialized = readBytes(payload, payload.remaining());
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(serialized))) {
+          return (Serializable) in.readObject();
+        }
+      }
+      return decodePayload(payload, type, version, file);
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupt cache file: " + file, e);
+    }
+  }
+
+  private static ByteBuffer inflate(ByteBuffer stored, int length, File file)
+      throws IOException {
+    byte[] input = new byte[stored.remaining()];
+    stored.get(input);
+    byte[] output = new byte[length];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input);
+      int inflated = 0;
+      while (inflated < length && !inflater.finished()) {
+        int count = inflater.inflate(output, inflated, length - inflated);
+        if (count == 0 && (inflater.needsInput()
+            || inflater.needsDictionary())) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != length) {
+        throw new IOException("Truncated cache file: " + file);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt cache file: " + file, e);
+    } finally {
+      inflater.end();
+    }
+    return ByteBuffer.wrap(output);
+  }
+
+  private static LinesOfLogs decodePayload(ByteBuffer payload, int type,
+                                           int version, File file)
+      throws IOException {
+    int count = readNumber(payload);
+    int[] bounds = new int[2 * count];
+    for (int i = 0; i < count; i++) {
+      int length = readNumber(payload);
+      bounds[2 * i] = payload.position();
+      bounds[2 * i + 1] = payload.position() + length;
+      payload.position(bounds[2 * i + 1]);
+    }
+    EncodedLines lines = new EncodedLines(payload, bounds);
+    if (type == LINES) {
+      return new LinesOfLogs(lines);
+    }
+    if (type != MATCH_SPANS) {
+      throw new IOException("Unknown type " + type + " in cache file: " + file);
+    }
+    if (version < VERSION) {
+      // the spans of the old format are skipped,
+      // its matched texts are searched again
+      return new LinesOfLogs(lines);
+    }
+    return decodeSpans(payload, lines);
+  }
+
+  private static MatchSpans decodeSpans(ByteBuffer payload,
+                                        List<String> lines) {
+    int groupCount = readNumber(payload);
+    String[] fileNames = new String[readNumber(payload)];
+    for (int i = 0; i < fileNames.length; i++) {
+      fileNames[i] = new String(readBytes(payload), StandardCharsets.UTF_8);
+    }
+    int sourceCount = readNumber(payload);
+    int[] sourceFiles = new int[sourceCount];
+    long[][] starts = new long[sourceCount][];
+    int[][] spans = new int[sourceCount][];
+    int width = 2 * groupCount + 3;
+    for (int source = 0; source < sourceCount; source++) {
+      sourceFiles[source] = readNumber(payload) - 1;
+      int count = readNumber(payload);
+      long[] sourceStarts = new long[count];
+      int[] sourceSpans = new int[count * width];
+      long previousStart = 0;
+      for (int match = 0; match < count; match++) {
+        long distance = readLong(payload);
+        sourceStarts[match] =
+            previousStart + (distance >>> 1 ^ -(distance & 1));
+        previousStart = sourceStarts[match];
+        sourceSpans[match * width] = readNumber(payload);
+        for (int i = 1; i < width; i++) {
+          sourceSpans[match * width + i] = readNumber(payload) - 1;
+        }
+      }
+      starts[source] = sourceStarts;
+      spans[source] = sourceSpans;
+    }
+    return new MatchSpans(lines, groupCount, fileNames, sourceFiles, starts,
+        spans);
+  }
+
+  private static byte[] readBytes(ByteBuffer in) {
+    return readBytes(in, readNumber(in));
+  }
+
+  private static byte[] readBytes(ByteBuffer in, int length) {
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Writes a non-negative number in 7-bit groups,
+   * the lowest group first.
+   */
+  private static void writeNumber(DataOutputStream out, int number)
+      throws IOException {
+    if (number < 0) {
+      throw new IllegalArgumentException("Negative number: " + number);
+    }
+    int rest = number;
+    while (rest >= 0x80) {
+      out.writeByte(rest & 0x7F | 0x80);
+      rest >>>= 7;
+    }
+    out.writeByte(rest);
+  }
+
+  private static void writeLong(DataOutputStream out, long number)
+      throws IOException {
+    long rest = number;
+    while ((rest & ~0x7FL) != 0) {
+      out.writeByte((int) (rest & 0x7F | 0x80));
+      rest >>>= 7;
+    }
+    out.writeByte((int) rest);
+  }
+
+  private static long readLong(ByteBuffer in) {
+    long number = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.get() & 0xFF;
+      number |= (long) (b & 0x7F) << shift;
+      if (b < 0x80) {
+        return number;
+      }
+    }
+    throw new IllegalStateException("Malformed number");
+  }
+
+  private static int readNumber(ByteBuffer in) {
+    int number = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.get() & 0xFF;
+      number |= (b & 0x7F) << shift;
+      if (b < 0x80) {
+        return number;
+      }
+    }
+    throw new IllegalStateException("Malformed number");
+  }
+}
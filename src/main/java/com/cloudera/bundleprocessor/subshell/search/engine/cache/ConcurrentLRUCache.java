@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentLRUCache is an in-memory cache which can be shared
+ * by concurrent searches.
+ * <ul>
+ *   <li>Reading the cache takes no lock: a hit only marks its entry
+ *   as referenced.</li>
+ *   <li>The least recently used entries are approximated
+ *   by the clock algorithm: the marks are collected by the writes,
+ *   when an entry has to be evicted. An entry marked since the clock
+ *   passed it gets a second chance.</li>
+ *   <li>The threads loading the same missing key at the same time wait
+ *   for the first one, see {@link #load(Object, CacheLoader)},
+ *   so identical searches arriving together scan the logs once.</li>
+ * </ul>
+ */
+public class ConcurrentLRUCache<K, V> implements Cache<K, V> {
+
+  private final ConcurrentHashMap<K, Node<K, V>> map =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<K, CompletableFuture<V>> loads =
+      new ConcurrentHashMap<>();
+  private final ReentrantLock clockLock = new ReentrantLock();
+  /**
+   * The entries in the order the clock passes them, guarded by the lock.
+   */
+  private final ArrayDeque<Node<K, V>> clock = new ArrayDeque<>();
+  private final int capacity;
+
+  /**
+   * Constructor for ConcurrentLRUCache.
+   *
+   * @param capacity capacity of the cache
+   */
+  public ConcurrentLRUCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException(
+          "Cache cannot be created with zero or negative capacity");
+    }
+    this.capacity = capacity;
+  }
+
+  @Override
+  public V get(K key) {
+    Node<K, V> node = map.get(key);
+    if (node == null) {
+      return null;
+    }
+    // only written if needed, so the hits don't contend on the entry
+    if (!node.referenced) {
+      node.referenced = true;
+    }
+    return node.value;
+  }
+
+  @Override
+  public void set(K key, V value) {
+    clockLock.lock();
+    try {
+      Node<K, V> node = map.get(key);
+      if (node != null) {
+        node.value = value;
+        node.referenced = true;
+        return;
+      }
+      node = new Node<>(key, value);
+      map.put(key, node);
+      clock.add(node);
+      while (map.size() > capacity) {
+        evict();
+      }
+    } finally {
+      clockLock.unlock();
+    }
+  }
+
+  private void evict() {
+    while (true) {
+      Node<K, V> node = clock.poll();
+      if (node.referenced) {
+        node.referenced = false;
+        clock.add(node);
+      } else {
+        map.remove(node.key, node);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void remove(K key) {
+    clockLock.lock();
+    try {
+      Node<K, V> node = map.remove(key);
+      if (node != null) {
+        clock.remove(node);
+      }
+    } finally {
+      clockLock.unlock();
+    }
+  }
+
+  @Override
+  public void reset() {
+    clockLock.lock();
+    try {
+      map.clear();
+      clock.clear();
+    } finally {
+      clockLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the value of the key, and computes it with the loader
+   * if it's missing. If another thread is computing the same key,
+   * the value of that thread is returned instead.
+   * If that thread fails, or its value can't be cached (it's null),
+   * the waiting threads get null as well.
+   *
+   * @param key    the key of the value
+   * @param loader computes the missing value
+   * @return the cached or the computed value
+   */
+  @Override
+  public V load(K key, CacheLoader<? super K, ? extends V> loader)
+      throws IOException {
+    V value = get(key);
+    if (value != null) {
+      return value;
+    }
+    CompletableFuture<V> load = new CompletableFuture<>();
+    CompletableFuture<V> runningLoad = loads.putIfAbsent(key, load);
+    if (runningLoad != null) {
+      return await(runningLoad);
+    }
+    try {
+      // the previous load may have ended since the first check
+      value = get(key);
+      if (value == null) {
+        value = loader.load(key);
+        if (value != null) {
+          set(key, value);
+        }
+      }
+      return value;
+    } finally {
+      loads.remove(key, load);
+      load.complete(value);
+    }
+  }
+
+  private static <V> V await(CompletableFuture<V> load) throws IOException {
+    try {
+      return load.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while loading the cache");
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  private static final class Node<K, V> {
+    private final K key;
+    private volatile V value;
+    private volatile boolean referenced;
+
+    Node(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
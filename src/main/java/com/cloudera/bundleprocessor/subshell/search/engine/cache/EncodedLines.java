@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * EncodedLines are the lines of a cached value, kept as UTF-8 bytes
+ * in the buffer read by {@link CacheValueCodec}, which can be
+ * a mapped file. A line is only decoded when it's first needed,
+ * and the decoded line is kept for the next time.
+ */
+final class EncodedLines extends AbstractList<String>
+    implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1283366810;
+
+  private final transient ByteBuffer buffer;
+  /**
+   * The start and the end of every line in the buffer.
+   */
+  private final transient int[] bounds;
+  private final transient String[] decoded;
+
+  EncodedLines(ByteBuffer buffer, int[] bounds) {
+    this.buffer = buffer;
+    this.bounds = bounds;
+    this.decoded = new String[bounds.length / 2];
+  }
+
+  @Override
+  public String get(int index) {
+    String line = decoded[index];
+    if (line == null) {
+      int start = bounds[2 * index];
+      byte[] bytes = new byte[bounds[2 * index + 1] - start];
+      ByteBuffer view = buffer.duplicate();
+      view.position(start);
+      view.get(bytes);
+      // strings are immutable, so a racing thread decodes it again at worst
+      line = new String(bytes, StandardCharsets.UTF_8);
+      decoded[index] = line;
+    }
+    return line;
+  }
+
+  @Override
+  public int size() {
+    return decoded.length;
+  }
+
+  /**
+   * Estimates the memory retained by the lines once they're decoded
+   * the same way as {@link LinesOfLogs#estimateRetainedSize()},
+   * without decoding them: a line has no more characters than bytes.
+   *
+   * @return the estimated size of the lines in bytes
+   */
+  long estimateRetainedSize() {
+    long size = 0;
+    for (int i = 0; i < decoded.length; i++) {
+      size += 24 + 16 + 2L * (bounds[2 * i + 1] - bounds[2 * i]);
+    }
+    return size;
+  }
+
+  /**
+   * Serializes the lines as an ordinary list,
+   * because the buffer can't be serialized.
+   */
+  private Object writeReplace() {
+    return new ArrayList<>(this);
+  }
+}
@@ -19,24 +19,138 @@
 package com.cloudera.bundleprocessor.subshell.search.engine.cache;
 
 import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * FileBasedCacheIOExecutor stores every item in its own file,
+ * written by the {@link CacheValueCodec}. The file holds the key
+ * of the item as well, so an item is only read for its own key,
+ * even if the file names of two keys are the same.
+ */
 public class FileBasedCacheIOExecutor implements CacheIOExecutor {
 
+  private static final Logger LOG =
+      LoggerFactory.getLogger(FileBasedCacheIOExecutor.class);
+
+  /**
+   * The number of the bytes of the digest in the name of the directory.
+   */
+  private static final int FINGERPRINT_LENGTH = 8;
+
   private final String targetDirectoryPath;
+  private final boolean compressing;
 
   public FileBasedCacheIOExecutor(String targetDirectoryPath) {
+    this(targetDirectoryPath, false);
+  }
+
+  /**
+   * Constructor for FileBasedCacheIOExecutor.
+   *
+   * @param targetDirectoryPath the directory of the cache files
+   * @param compressing         whether to compress the logs in the files
+   */
+  public FileBasedCacheIOExecutor(String targetDirectoryPath,
+                                  boolean compressing) {
     this.targetDirectoryPath = targetDirectoryPath;
+    this.compressing = compressing;
+  }
+
+  /**
+   * Creates an executor for the items found in a bundle.
+   * The items are stored in a subdirectory of the cache directory,
+   * named after the fingerprint of the bundle: the digest of the names,
+   * the sizes and the modification times of its files. The items found
+   * in another bundle, or in the bundle before it changed, are not read.
+   * Neither are the files the earlier releases wrote directly
+   * into the cache directory in version 1 of the format,
+   * the results in them are searched again.
+   *
+   * @param cacheDirectoryPath the directory of the cache
+   * @param bundle             the directory of the bundle
+   * @param compressing        whether to compress the logs in the files
+   * @return the executor
+   * @throws IOException if the files of the bundle can't be listed
+   */
+  public static FileBasedCacheIOExecutor forBundle(String cacheDirectoryPath,
+                                                   File bundle,
+                                                   boolean compressing)
+      throws IOException {
+    Path cacheDirectory = new File(cacheDirectoryPath).getAbsoluteFile()
+        .toPath().normalize();
+    String fingerprint = createFingerprint(bundle, cacheDirectory);
+    warnAboutOldFiles(cacheDirectory);
+    return new FileBasedCacheIOExecutor(
+        cacheDirectory.resolve(fingerprint).toString(), compressing);
+  }
+
+  private static String createFingerprint(File bundle, Path cacheDirectory)
+      throws IOException {
+    Path root = bundle.getAbsoluteFile().toPath().normalize();
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(root)) {
+      // the cache may be stored in the bundle, but it's not part of it
+      files = paths.filter(path -> !path.startsWith(cacheDirectory))
+          .filter(Files::isRegularFile)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    MessageDigest digest = createDigest();
+    for (Path file : files) {
+      String entry = root.relativize(file) + "\0" + Files.size(file)
+          + "\0" + Files.getLastModifiedTime(file).toMillis() + "\n";
+      digest.update(entry.getBytes(StandardCharsets.UTF_8));
+    }
+    byte[] hash = digest.digest();
+    StringBuilder fingerprint = new StringBuilder();
+    for (int i = 0; i < FINGERPRINT_LENGTH; i++) {
+      fingerprint.append(String.format("%02x", hash[i]));
+    }
+    return fingerprint.toString();
+  }
+
+  private static void warnAboutOldFiles(Path cacheDirectory)
+      throws IOException {
+    if (!Files.isDirectory(cacheDirectory)) {
+      return;
+    }
+    long count;
+    try (Stream<Path> paths = Files.list(cacheDirectory)) {
+      count = paths.filter(Files::isRegularFile).count();
+    }
+    if (count > 0) {
+      LOG.warn(count + " files of an earlier cache format are not read"
+          + " from " + cacheDirectory + ", they can be deleted");
+    }
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
   }
 
   @Override
   public Serializable readItem(Object key) throws IOException {
     String path = createPath(getFileName(key));
     try {
-      return FileUtils.deserialize(path);
+      return CacheValueCodec.read(new File(path), String.valueOf(key));
     } catch (ClassNotFoundException e) {
       throw new IOException(e);
     }
@@ -45,7 +159,8 @@ public class FileBasedCacheIOExecutor implements CacheIOExecutor {
   @Override
   public void writeItem(Object key, Serializable value) throws IOException {
     String path = createPath(getFileName(key));
-    FileUtils.serialize(path, value);
+    CacheValueCodec.write(new File(path), value, String.valueOf(key),
+        compressing);
   }
 
   @Override
@@ -20,8 +20,8 @@ package com.cloudera.bundleprocessor.subshell.search.engine.cache;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class GeneralCache<K, V extends Serializable> implements Cache<K, V> {
 
@@ -35,7 +35,7 @@ public class GeneralCache<K, V extends Serializable> implements Cache<K, V> {
    */
   public GeneralCache(CacheIOExecutor cacheIOExecutor) {
     this.cacheIOExecutor = cacheIOExecutor;
-    this.checkedKeys = new HashMap<>();
+    this.checkedKeys = new ConcurrentHashMap<>();
   }
 
   @Override
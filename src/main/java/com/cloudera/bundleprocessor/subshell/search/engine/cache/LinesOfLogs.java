@@ -37,6 +37,26 @@ public class LinesOfLogs implements Serializable {
     return lines;
   }
 
+  /**
+   * Estimates the memory retained by the lines, counting two bytes
+   * per character, so the estimate is an upper bound for the text.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateRetainedSize() {
+    // the object, the list and its array
+    long size = 16 + 24 + 16 + 8L * lines.size();
+    if (lines instanceof EncodedLines) {
+      // the lines read from the disk are not decoded to be weighed
+      return size + ((EncodedLines) lines).estimateRetainedSize();
+    }
+    for (String line : lines) {
+      // the string and its array
+      size += 24 + 16 + 2L * line.length();
+    }
+    return size;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * MatchSpans are {@link LinesOfLogs} which record every match by where it
+ * is, instead of by its text: the matches found in a log by their
+ * positions in the log, and the groups of every match by their offsets.
+ * A cached search reads the matches from the logs again,
+ * without matching the pattern, and the skipped matches
+ * of a limited query are not read at all.
+ * Only the matches not found in a log (e.g. the ones in the file names)
+ * are kept as texts, the lines hold the texts of those sources.
+ */
+public class MatchSpans extends LinesOfLogs {
+
+  private static final long serialVersionUID = 1964117053;
+
+  private final int groupCount;
+  /**
+   * The names of the logs relative to the log folder, indexed by file id.
+   */
+  private final String[] fileNames;
+  /**
+   * The file id of every source, -1 for the sources kept as texts.
+   */
+  private final int[] sourceFiles;
+  /**
+   * The index of the line holding the text of every source,
+   * -1 for the sources found in a log.
+   */
+  private final int[] sourceLines;
+  /**
+   * The start of every match, one array per source: a byte position
+   * in the log, or an index in the text of the source.
+   */
+  private final long[][] starts;
+  /**
+   * The length of every match (in bytes in a log, in characters
+   * in a text) followed by the start and the end of every group,
+   * as offsets in the decoded text of the match, one array per source.
+   */
+  private final int[][] spans;
+
+  /**
+   * Creates the spans of the matches, see {@link Builder}.
+   *
+   * @param lines       the texts of the sources not found in a log
+   * @param groupCount  the number of the groups of the pattern
+   * @param fileNames   the names of the logs relative to the log folder
+   * @param sourceFiles the file id of every source, -1 if it is a text
+   * @param starts      the starts of the matches, one array per source
+   * @param spans       the lengths and the group offsets of the matches,
+   *                    one array per source
+   */
+  public MatchSpans(List<String> lines, int groupCount, String[] fileNames,
+                    int[] sourceFiles, long[][] starts, int[][] spans) {
+    super(lines);
+    if (sourceFiles.length != starts.length
+        || sourceFiles.length != spans.length) {
+      throw new IllegalArgumentException(
+          "Every source needs the spans of its matches");
+    }
+    this.groupCount = groupCount;
+    this.fileNames = fileNames;
+    this.sourceFiles = sourceFiles;
+    this.starts = starts;
+    this.spans = spans;
+    this.sourceLines = new int[sourceFiles.length];
+    int lineCount = 0;
+    int width = getWidth();
+    for (int source = 0; source < sourceFiles.length; source++) {
+      if (sourceFiles[source] >= fileNames.length) {
+        throw new IllegalArgumentException(
+            "Unknown file id " + sourceFiles[source]);
+      }
+      if (spans[source].length != starts[source].length * width) {
+        throw new IllegalArgumentException(
+            "Every match needs its length and the offsets of its groups");
+      }
+      sourceLines[source] = sourceFiles[source] < 0 ? lineCount++ : -1;
+    }
+    if (lineCount != this.lines.size()) {
+      throw new IllegalArgumentException(
+          "Every source kept as a text needs its line");
+    }
+  }
+
+  public int getGroupCount() {
+    return groupCount;
+  }
+
+  public int getSourceCount() {
+    return starts.length;
+  }
+
+  public int getMatchCount(int source) {
+    return starts[source].length;
+  }
+
+  /**
+   * Counts the matches of every source.
+   *
+   * @return the number of matches
+   */
+  public long getMatchCount() {
+    long count = 0;
+    for (long[] sourceStarts : starts) {
+      count += sourceStarts.length;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the log a source was found in.
+   *
+   * @param source the index of the source
+   * @return the name relative to the log folder,
+   *         or null if the source is kept as a text
+   */
+  public String getFileName(int source) {
+    return sourceFiles[source] < 0 ? null : fileNames[sourceFiles[source]];
+  }
+
+  /**
+   * Returns the text of a source not found in a log.
+   *
+   * @param source the index of the source
+   * @return the text or null if the source was found in a log
+   */
+  public String getText(int source) {
+    return sourceLines[source] < 0 ? null : lines.get(sourceLines[source]);
+  }
+
+  /**
+   * Returns the start of the text of a match: its byte position
+   * in the log, or its index in the text of the source.
+   */
+  public long getStart(int source, int match) {
+    return starts[source][match];
+  }
+
+  /**
+   * Returns the length of the text of a match: the number of its bytes
+   * in the log, or the number of its characters in the text of the source.
+   */
+  public int getLength(int source, int match) {
+    return spans[source][match * getWidth()];
+  }
+
+  /**
+   * Returns the start and the end of every group of a match,
+   * as offsets in the text of the match, -1 for the groups
+   * not taking part in the match.
+   *
+   * @param source the index of the source
+   * @param match  the index of the match in the source
+   * @return a new array of the offsets
+   */
+  public int[] getOffsets(int source, int match) {
+    int from = match * getWidth() + 1;
+    return Arrays.copyOfRange(spans[source], from, from + getWidth() - 1);
+  }
+
+  String[] getFileNames() {
+    return fileNames;
+  }
+
+  int getFileId(int source) {
+    return sourceFiles[source];
+  }
+
+  private int getWidth() {
+    return 2 * groupCount + 3;
+  }
+
+  @Override
+  public long estimateRetainedSize() {
+    long size = super.estimateRetainedSize() + 16
+        + 16 + 8L * fileNames.length
+        + 2 * (16 + 4L * sourceFiles.length)
+        + 2 * (16 + 8L * starts.length);
+    for (String fileName : fileNames) {
+      size += 24 + 16 + 2L * fileName.length();
+    }
+    for (int source = 0; source < starts.length; source++) {
+      size += 16 + 8L * starts[source].length
+          + 16 + 4L * spans[source].length;
+    }
+    return size;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    MatchSpans that = (MatchSpans) o;
+    return groupCount == that.groupCount
+        && Arrays.equals(fileNames, that.fileNames)
+        && Arrays.equals(sourceFiles, that.sourceFiles)
+        && Arrays.deepEquals(starts, that.starts)
+        && Arrays.deepEquals(spans, that.spans);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * super.hashCode() + Arrays.hashCode(sourceFiles))
+        + Arrays.deepHashCode(starts);
+  }
+
+  /**
+   * Builder collects the matches source by source.
+   * The sources without matches are left out.
+   */
+  public static final class Builder {
+
+    private final int groupCount;
+    private final List<String> lines = new ArrayList<>();
+    private final List<String> fileNames = new ArrayList<>();
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final List<Integer> sourceFiles = new ArrayList<>();
+    private final List<long[]> starts = new ArrayList<>();
+    private final List<int[]> spans = new ArrayList<>();
+    private final StringBuilder text = new StringBuilder();
+    private String fileName;
+    private long[] currentStarts = new long[16];
+    private int[] currentSpans;
+    private int matchCount;
+
+    /**
+     * Creates an empty builder.
+     *
+     * @param groupCount the number of the groups of the pattern
+     */
+    public Builder(int groupCount) {
+      this.groupCount = groupCount;
+      this.currentSpans = new int[16 * (2 * groupCount + 3)];
+    }
+
+    /**
+     * Adds a match found in a log to the current source.
+     *
+     * @param fileName   the name of the log relative to the log folder
+     * @param position   the position of the text of the match in the log
+     * @param byteLength the number of the bytes of the text
+     * @param offsets    the start and the end of every group
+     *                   in the decoded text
+     * @return this builder
+     */
+    public Builder addMatch(String fileName, long position, int byteLength,
+                            int[] offsets) {
+      checkSource(fileName);
+      add(position, byteLength, offsets);
+      return this;
+    }
+
+    /**
+     * Adds a match not found in a log to the current source,
+     * whose text is kept.
+     *
+     * @param matchText the text containing the groups of the match
+     * @param offsets   the start and the end of every group in the text
+     * @return this builder
+     */
+    public Builder addMatch(String matchText, int[] offsets) {
+      checkSource(null);
+      add(text.length(), matchText.length(), offsets);
+      text.append(matchText).append('\n');
+      return this;
+    }
+
+    /**
+     * Ends the current source.
+     *
+     * @return this builder
+     */
+    public Builder endSource() {
+      if (matchCount > 0) {
+        if (fileName == null) {
+          lines.add(text.toString());
+          sourceFiles.add(-1);
+        } else {
+          sourceFiles.add(fileIds.computeIfAbsent(fileName, name -> {
+            fileNames.add(name);
+            return fileNames.size() - 1;
+          }));
+        }
+        int width = 2 * groupCount + 3;
+        starts.add(Arrays.copyOf(currentStarts, matchCount));
+        spans.add(Arrays.copyOf(currentSpans, matchCount * width));
+      }
+      text.setLength(0);
+      fileName = null;
+      matchCount = 0;
+      return this;
+    }
+
+    /**
+     * Creates the spans of the ended sources.
+     *
+     * @return the spans
+     */
+    public MatchSpans build() {
+      int[] files = new int[sourceFiles.size()];
+      for (int i = 0; i < files.length; i++) {
+        files[i] = sourceFiles.get(i);
+      }
+      return new MatchSpans(new ArrayList<>(lines), groupCount,
+          fileNames.toArray(new String[0]), files,
+          starts.toArray(new long[0][]), spans.toArray(new int[0][]));
+    }
+
+    private void checkSource(String matchFileName) {
+      if (matchCount == 0) {
+        fileName = matchFileName;
+      } else if (!Objects.equals(fileName, matchFileName)) {
+        throw new IllegalArgumentException(
+            "The matches of a source have to be in the same place");
+      }
+    }
+
+    private void add(long start, int length, int[] offsets) {
+      int width = 2 * groupCount + 3;
+      if (offsets.length != width - 1) {
+        throw new IllegalArgumentException(
+            "Every group needs its offsets");
+      }
+      if (matchCount == currentStarts.length) {
+        currentStarts = Arrays.copyOf(currentStarts, 2 * matchCount);
+        currentSpans = Arrays.copyOf(currentSpans, 2 * matchCount * width);
+      }
+      currentStarts[matchCount] = start;
+      currentSpans[matchCount * width] = length;
+      System.arraycopy(offsets, 0, currentSpans, matchCount * width + 1,
+          offsets.length);
+      matchCount++;
+    }
+  }
+}
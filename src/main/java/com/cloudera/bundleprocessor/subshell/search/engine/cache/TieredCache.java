@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * TieredCache keeps the recently used values in the memory,
+ * limited by their estimated size (see {@link WeightedLRUCache}),
+ * and every value in a cache on the disk, e.g. a {@link GeneralCache},
+ * so the values survive a restart.
+ * The values are written to the disk by a background thread,
+ * in the order they were set or removed, so a search doesn't wait
+ * for the disk. The changes not written yet are looked up in the memory,
+ * so a value removed from the memory is not read from the disk either.
+ * A value read from the disk is kept in the memory again,
+ * so a repeated search doesn't deserialize its matches every time.
+ * The disk is never accessed while holding the lock of the cache,
+ * so a lookup doesn't wait for the disk accesses of the other threads.
+ * The values still being written are written before the JVM exits,
+ * even if it's stopped by Ctrl-C, see {@link #close()}.
+ * The hits and the misses of both tiers are counted.
+ */
+public class TieredCache<K, V> implements Cache<K, V>, Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TieredCache.class);
+  /**
+   * The time the values still being written get, when the cache is closed.
+   */
+  private static final long FLUSH_TIMEOUT_SECONDS = 30;
+
+  private final WeightedLRUCache<K, V> memoryCache;
+  private final Cache<K, V> diskCache;
+  /**
+   * The values set or removed, which are not written to the disk yet.
+   */
+  private final Map<K, Change<V>> pendingChanges = new ConcurrentHashMap<>();
+  /**
+   * The number of the resets not done on the disk yet. The disk
+   * is not read until then, as it still holds the values reset.
+   */
+  private final AtomicInteger pendingResets = new AtomicInteger();
+  private final ExecutorService writer;
+  private final Thread shutdownHook;
+  /**
+   * Counts the changes, so a value read from the disk is not kept
+   * in the memory if it was replaced or removed during the read.
+   */
+  private final AtomicLong changes = new AtomicLong();
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong memoryMisses = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong diskMisses = new AtomicLong();
+
+  /**
+   * Constructor for TieredCache.
+   *
+   * @param maxMemoryWeight the budget of the memory tier in bytes
+   * @param weigher         estimates the size of a value in bytes
+   * @param diskCache       the tier on the disk, which has to be
+   *                        thread-safe
+   */
+  public TieredCache(long maxMemoryWeight, ToLongFunction<? super V> weigher,
+                     Cache<K, V> diskCache) {
+    this.memoryCache = new WeightedLRUCache<>(maxMemoryWeight, weigher);
+    this.diskCache = diskCache;
+    this.writer = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "tiered-cache-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.shutdownHook = new Thread(this::flushAndStop, "tiered-cache-flush");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  @Override
+  public V get(K key) {
+    V value = memoryCache.get(key);
+    Change<V> change = value == null ? pendingChanges.get(key) : null;
+    if (change != null) {
+      value = change.value;
+    }
+    if (value != null) {
+      memoryHits.incrementAndGet();
+      return value;
+    }
+    memoryMisses.incrementAndGet();
+    long changesBeforeRead = changes.get();
+    if (change == null && pendingResets.get() == 0) {
+      value = diskCache.get(key);
+    }
+    if (value == null) {
+      diskMisses.incrementAndGet();
+      return null;
+    }
+    diskHits.incrementAndGet();
+    synchronized (this) {
+      if (changes.get() == changesBeforeRead) {
+        memoryCache.set(key, value);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public synchronized void set(K key, V value) {
+    changes.incrementAndGet();
+    memoryCache.set(key, value);
+    Change<V> change = new Change<>(value);
+    pendingChanges.put(key, change);
+    write(() -> {
+      try {
+        diskCache.set(key, value);
+      } finally {
+        pendingChanges.remove(key, change);
+      }
+    });
+  }
+
+  @Override
+  public synchronized void remove(K key) {
+    changes.incrementAndGet();
+    memoryCache.remove(key);
+    Change<V> change = new Change<>(null);
+    pendingChanges.put(key, change);
+    write(() -> {
+      try {
+        diskCache.remove(key);
+      } finally {
+        pendingChanges.remove(key, change);
+      }
+    });
+  }
+
+  @Override
+  public synchronized void reset() {
+    changes.incrementAndGet();
+    memoryCache.reset();
+    pendingChanges.clear();
+    pendingResets.incrementAndGet();
+    write(() -> {
+      try {
+        diskCache.reset();
+      } finally {
+        pendingResets.decrementAndGet();
+      }
+    });
+  }
+
+  private void write(Runnable diskAccess) {
+    writer.execute(() -> {
+      try {
+        diskAccess.run();
+      } catch (RuntimeException e) {
+        LOG.warn("The cache on the disk couldn't be changed", e);
+      }
+    });
+  }
+
+  /**
+   * Waits until the values set so far are written to the disk.
+   */
+  void flush() throws InterruptedException {
+    try {
+      writer.submit(() -> {
+      }).get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Writes the values still being written to the disk,
+   * and stops the writing thread. The cache can't be used after it.
+   */
+  @Override
+  public void close() {
+    flushAndStop();
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException e) {
+      // the JVM is already exiting, the hook is running
+    }
+  }
+
+  private void flushAndStop() {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Not every cached value could be written to the disk");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public long getMemoryHits() {
+    return memoryHits.get();
+  }
+
+  public long getMemoryMisses() {
+    return memoryMisses.get();
+  }
+
+  public long getDiskHits() {
+    return diskHits.get();
+  }
+
+  public long getDiskMisses() {
+    return diskMisses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "TieredCache{memory hits: " + memoryHits
+        + ", memory misses: " + memoryMisses
+        + ", disk hits: " + diskHits
+        + ", disk misses: " + diskMisses + "}";
+  }
+
+  /**
+   * A change of a value, which is not written to the disk yet.
+   * The value is null if it was removed.
+   */
+  private static final class Change<V> {
+
+    private final V value;
+
+    private Change(V value) {
+      this.value = value;
+    }
+  }
+}
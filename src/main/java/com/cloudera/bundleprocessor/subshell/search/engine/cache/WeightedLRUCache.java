@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * WeightedLRUCache is an in-memory cache limited by the estimated size
+ * of its values instead of their number: a single search may match
+ * gigabytes of the logs, while another one matches a few bytes.
+ * The least recently used values are evicted when the cache
+ * gets heavier than its budget, and a value heavier than the whole
+ * budget is not cached at all.
+ */
+public class WeightedLRUCache<K, V> implements Cache<K, V> {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(WeightedLRUCache.class);
+  /**
+   * The estimated size of an entry without its value: the key
+   * and the node of the map.
+   */
+  static final long ENTRY_OVERHEAD = 256;
+
+  private final LinkedHashMap<K, Entry<V>> map =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final long maxWeight;
+  private final ToLongFunction<? super V> weigher;
+  private long weight;
+
+  /**
+   * Constructor for WeightedLRUCache.
+   *
+   * @param maxWeight the budget of the cache in bytes
+   * @param weigher   estimates the size of a value in bytes
+   */
+  public WeightedLRUCache(long maxWeight, ToLongFunction<? super V> weigher) {
+    if (maxWeight < 1) {
+      throw new IllegalArgumentException(
+          "Cache cannot be created with zero or negative budget");
+    }
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  @Override
+  public synchronized V get(K key) {
+    Entry<V> entry = map.get(key);
+    return entry == null ? null : entry.value;
+  }
+
+  @Override
+  public synchronized void set(K key, V value) {
+    long entryWeight = ENTRY_OVERHEAD + weigher.applyAsLong(value);
+    remove(key);
+    if (entryWeight > maxWeight) {
+      LOG.debug("The value of {} is too large to be cached: {} bytes",
+          key, entryWeight);
+      return;
+    }
+    map.put(key, new Entry<>(value, entryWeight));
+    weight += entryWeight;
+    Iterator<Entry<V>> iterator = map.values().iterator();
+    while (weight > maxWeight) {
+      weight -= iterator.next().weight;
+      iterator.remove();
+    }
+  }
+
+  @Override
+  public synchronized void remove(K key) {
+    Entry<V> entry = map.remove(key);
+    if (entry != null) {
+      weight -= entry.weight;
+    }
+  }
+
+  @Override
+  public synchronized void reset() {
+    map.clear();
+    weight = 0;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Returns the estimated size of the cached entries.
+   *
+   * @return the weight of the cache in bytes
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private final long weight;
+
+    Entry(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * EntityIndex maps the YARN entities (applications, application attempts
+ * and containers) to the lines of the logs mentioning them.
+ * Every ID of an entity contains the number of its application,
+ * e.g. 1585041342561_0001 in application_1585041342561_0001,
+ * appattempt_1585041342561_0001_000001 and
+ * container_e05_1585041342561_0001_01_000001,
+ * so the index maps these numbers (the entity tokens)
+ * to the positions of the lines containing them.
+ * The index is written by {@link EntityIndexBuilder} during preprocessing,
+ * and it is read through a memory-mapped buffer.
+ * The index is immutable, and it can be shared between threads.
+ */
+public final class EntityIndex {
+
+  static final int MAGIC = 0x59454958;
+  static final int VERSION = 1;
+  /**
+   * A token is the cluster timestamp (13 digits), an underscore
+   * and the sequence number of the application (at least 4 digits,
+   * only the first 4 digits are part of the token).
+   */
+  static final int TIMESTAMP_LENGTH = 13;
+  static final int SEQUENCE_LENGTH = 4;
+  static final int TOKEN_LENGTH = TIMESTAMP_LENGTH + 1 + SEQUENCE_LENGTH;
+  /**
+   * A token entry contains the token, the position and the length
+   * of its postings and the number of lines in the postings.
+   */
+  static final int TOKEN_ENTRY_LENGTH = TOKEN_LENGTH + 3 * Integer.BYTES;
+  private static final long[] NO_LINES = new long[0];
+
+  private final ByteBuffer buffer;
+  private final Map<String, Integer> fileIndexes = new HashMap<>();
+  private final String[] fileNames;
+  private final long[] fileLengths;
+  private final long[] fileModificationTimes;
+  private final int tokenCount;
+  private final int tokenTableStart;
+  private final int postingsStart;
+
+  private EntityIndex(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Unknown format of the entity index");
+    }
+    int fileCount = buffer.getInt();
+    fileNames = new String[fileCount];
+    fileLengths = new long[fileCount];
+    fileModificationTimes = new long[fileCount];
+    for (int i = 0; i < fileCount; i++) {
+      byte[] name = new byte[buffer.getInt()];
+      buffer.get(name);
+      fileNames[i] = new String(name, StandardCharsets.UTF_8);
+      fileLengths[i] = buffer.getLong();
+      fileModificationTimes[i] = buffer.getLong();
+      fileIndexes.put(fileNames[i], i);
+    }
+    tokenCount = buffer.getInt();
+    tokenTableStart = buffer.position();
+    postingsStart = tokenTableStart + tokenCount * TOKEN_ENTRY_LENGTH;
+  }
+
+  /**
+   * Maps the index file into the memory.
+   *
+   * @param indexFile the file written by {@link EntityIndexBuilder}
+   * @return the index
+   * @throws IOException if the file couldn't be read or it is not an index
+   */
+  public static EntityIndex open(File indexFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(
+        indexFile.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("The entity index is too long");
+      }
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new EntityIndex(buffer);
+    } catch (RuntimeException e) {
+      throw new IOException("The entity index is corrupted", e);
+    }
+  }
+
+  /**
+   * Finds the first entity token in the text,
+   * e.g. in a literal of a search pattern.
+   * Every text containing the returned token
+   * is indexed under the same token.
+   *
+   * @param text the text to search in
+   * @return the token or null if the text doesn't contain any
+   */
+  public static String findEntityToken(CharSequence text) {
+    for (int i = TIMESTAMP_LENGTH; i < text.length(); i++) {
+      if (isTokenAt(text, i)) {
+        return text.subSequence(i - TIMESTAMP_LENGTH,
+            i - TIMESTAMP_LENGTH + TOKEN_LENGTH).toString();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Tells whether the underscore of a token is at the given index.
+   */
+  static boolean isTokenAt(CharSequence text, int index) {
+    if (text.charAt(index) != '_' || index < TIMESTAMP_LENGTH
+        || index + SEQUENCE_LENGTH >= text.length()) {
+      return false;
+    }
+    for (int i = index - TIMESTAMP_LENGTH; i < index; i++) {
+      if (!isDigit(text.charAt(i))) {
+        return false;
+      }
+    }
+    for (int i = index + 1; i <= index + SEQUENCE_LENGTH; i++) {
+      if (!isDigit(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigit(char character) {
+    return character >= '0' && character <= '9';
+  }
+
+  /**
+   * Tells whether the file was indexed, and it hasn't changed since then.
+   * The lines of the files which are not indexed have to be scanned.
+   *
+   * @param file the log file
+   * @return true if the index is up to date for the file
+   */
+  public boolean isIndexed(File file) {
+    Integer index = fileIndexes.get(file.getName());
+    return index != null && fileLengths[index] == file.length()
+        && fileModificationTimes[index] == file.lastModified();
+  }
+
+  /**
+   * Finds the lines containing the token.
+   *
+   * @param token an entity token, see {@link #findEntityToken(CharSequence)}
+   * @return the positions of the lines in ascending order,
+   *     grouped by the name of the file
+   */
+  public Map<String, long[]> findLines(String token) {
+    Map<String, long[]> lines = new HashMap<>();
+    int entry = findTokenEntry(token);
+    if (entry < 0) {
+      return lines;
+    }
+    ByteBuffer postings = buffer.duplicate();
+    postings.position(postingsStart + buffer.getInt(entry + TOKEN_LENGTH));
+    int count = buffer.getInt(entry + TOKEN_LENGTH + 2 * Integer.BYTES);
+    long[] positions = new long[count];
+    int fileIndex = -1;
+    int fileStart = 0;
+    for (int i = 0; i < count; i++) {
+      int fileDelta = readVarInt(postings);
+      long value = readVarLong(postings);
+      if (fileDelta > 0) {
+        addLines(lines, fileIndex, positions, fileStart, i);
+        fileIndex += fileDelta;
+        fileStart = i;
+        positions[i] = value;
+      } else {
+        positions[i] = positions[i - 1] + value;
+      }
+    }
+    addLines(lines, fileIndex, positions, fileStart, count);
+    return lines;
+  }
+
+  private void addLines(Map<String, long[]> lines, int fileIndex,
+                        long[] positions, int from, int to) {
+    if (fileIndex >= 0) {
+      lines.put(fileNames[fileIndex], from == to
+          ? NO_LINES : Arrays.copyOfRange(positions, from, to));
+    }
+  }
+
+  /**
+   * Finds the token in the sorted token table with binary search.
+   *
+   * @return the position of the entry of the token or -1
+   */
+  private int findTokenEntry(String token) {
+    if (token.length() != TOKEN_LENGTH) {
+      return -1;
+    }
+    int low = 0;
+    int high = tokenCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = tokenTableStart + middle * TOKEN_ENTRY_LENGTH;
+      int comparison = compareToken(entry, token);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  private int compareToken(int entry, String token) {
+    for (int i = 0; i < TOKEN_LENGTH; i++) {
+      int difference = (buffer.get(entry + i) & 0xFF) - token.charAt(i);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return 0;
+  }
+
+  private static int readVarInt(ByteBuffer buffer) {
+    return (int) readVarLong(buffer);
+  }
+
+  private static long readVarLong(ByteBuffer buffer) {
+    long value = 0;
+    int shift = 0;
+    byte current;
+    do {
+      current = buffer.get();
+      value |= (long) (current & 0x7F) << shift;
+      shift += 7;
+    } while (current < 0);
+    return value;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.SegmentedCharSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * EntityIndexBuilder scans the logs for entity tokens
+ * and writes the {@link EntityIndex} of them.
+ * The index file contains the list of the indexed files
+ * (with their lengths and modification times to detect changes),
+ * the sorted table of the tokens, and the postings of the tokens:
+ * the positions of the lines containing them, delta encoded as varints.
+ */
+public final class EntityIndexBuilder {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(EntityIndexBuilder.class);
+
+  private final File[] files;
+  private final Map<String, Postings> postingsByToken = new TreeMap<>();
+
+  private EntityIndexBuilder(File[] files) {
+    this.files = files;
+  }
+
+  /**
+   * Indexes every file in the log directory.
+   *
+   * @param logDir    the directory of the logs
+   * @param indexFile the file to write the index into
+   * @throws IOException if the logs couldn't be read
+   *                     or the index couldn't be written
+   */
+  public static void build(File logDir, File indexFile) throws IOException {
+    LOG.info("Start indexing the entities of {}", logDir);
+    File[] files = logDir.listFiles(File::isFile);
+    if (files == null) {
+      throw new IOException("The log directory couldn't be listed");
+    }
+    Arrays.sort(files);
+    EntityIndexBuilder builder = new EntityIndexBuilder(files);
+    for (int i = 0; i < files.length; i++) {
+      builder.indexFile(i);
+    }
+    builder.write(indexFile);
+    LOG.info("Finished indexing the entities of {}", logDir);
+  }
+
+  private void indexFile(int fileIndex) throws IOException {
+    File file = files[fileIndex];
+    LOG.debug("Indexing file: " + file.getName());
+    for (FileRegion region : LogManipulator.splitIntoRegions(
+        file, LogManipulator.MAX_REGION_LENGTH, false)) {
+      try (SegmentedCharSequence sequence =
+               LogManipulator.readRegion(region)) {
+        indexRegion(fileIndex, region.getOffset(), sequence);
+      }
+    }
+  }
+
+  private void indexRegion(int fileIndex, long offset,
+                           SegmentedCharSequence sequence) {
+    int lineStart = 0;
+    for (int i = 0; i < sequence.length(); i++) {
+      byte current = sequence.byteAt(i);
+      if (current == '\n') {
+        lineStart = i + 1;
+        sequence.releaseBefore(lineStart);
+      } else if (current == '_' && EntityIndex.isTokenAt(sequence, i)) {
+        String token = sequence.subSequence(
+            i - EntityIndex.TIMESTAMP_LENGTH,
+            i - EntityIndex.TIMESTAMP_LENGTH + EntityIndex.TOKEN_LENGTH)
+            .toString();
+        postingsByToken.computeIfAbsent(token, key -> new Postings())
+            .add(fileIndex, offset + lineStart);
+      }
+    }
+  }
+
+  private void write(File indexFile) throws IOException {
+    long postingsLength = 0;
+    for (Postings postings : postingsByToken.values()) {
+      postingsLength += postings.length;
+    }
+    if (postingsLength > Integer.MAX_VALUE) {
+      throw new IOException("The entity index would be too long");
+    }
+    // the index is renamed only when it is complete,
+    // so an interrupted build can't leave a corrupted index behind
+    File temporaryFile =
+        new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      output.writeInt(EntityIndex.MAGIC);
+      output.writeInt(EntityIndex.VERSION);
+      output.writeInt(files.length);
+      for (File file : files) {
+        byte[] name = file.getName().getBytes(StandardCharsets.UTF_8);
+        output.writeInt(name.length);
+        output.write(name);
+        output.writeLong(file.length());
+        output.writeLong(file.lastModified());
+      }
+      output.writeInt(postingsByToken.size());
+      int postingsOffset = 0;
+      for (Map.Entry<String, Postings> entry : postingsByToken.entrySet()) {
+        output.write(entry.getKey().getBytes(StandardCharsets.ISO_8859_1));
+        output.writeInt(postingsOffset);
+        output.writeInt(entry.getValue().length);
+        output.writeInt(entry.getValue().count);
+        postingsOffset += entry.getValue().length;
+      }
+      for (Postings postings : postingsByToken.values()) {
+        output.write(postings.bytes, 0, postings.length);
+      }
+    }
+    Files.move(temporaryFile.toPath(), indexFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Postings collects the positions of the lines containing a token.
+   * Every line is added once, the file index is stored as a difference
+   * from the previous one, and the position as a difference
+   * from the previous line of the same file.
+   */
+  private static final class Postings {
+
+    private byte[] bytes = new byte[16];
+    private int length;
+    private int count;
+    private int lastFileIndex = -1;
+    private long lastLineStart;
+
+    private void add(int fileIndex, long lineStart) {
+      if (fileIndex == lastFileIndex) {
+        if (lineStart == lastLineStart) {
+          return;
+        }
+        writeVarLong(0);
+        writeVarLong(lineStart - lastLineStart);
+      } else {
+        writeVarLong(fileIndex - lastFileIndex);
+        writeVarLong(lineStart);
+      }
+      lastFileIndex = fileIndex;
+      lastLineStart = lineStart;
+      count++;
+    }
+
+    private void writeVarLong(long value) {
+      if (length + 10 > bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      long remaining = value;
+      while ((remaining & ~0x7FL) != 0) {
+        bytes[length++] = (byte) ((remaining & 0x7F) | 0x80);
+        remaining >>>= 7;
+      }
+      bytes[length++] = (byte) remaining;
+    }
+  }
+}
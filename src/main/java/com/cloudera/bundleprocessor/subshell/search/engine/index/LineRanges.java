@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import java.util.Arrays;
+
+/**
+ * LineRanges are the parts of a file which have to be scanned
+ * for the matches of a line-scoped query, as found by an index.
+ * Every range is given by its start and end position in the file,
+ * and it stands for the lines starting in the range.
+ * The ranges are sorted, and they don't overlap.
+ */
+public final class LineRanges {
+
+  public static final LineRanges EMPTY =
+      new LineRanges(new long[0], new long[0]);
+
+  private final long[] starts;
+  private final long[] ends;
+
+  /**
+   * Creates the ranges from their bounds.
+   *
+   * @param starts the starts of the ranges in ascending order
+   * @param ends   the ends of the ranges (exclusive)
+   */
+  public LineRanges(long[] starts, long[] ends) {
+    if (starts.length != ends.length) {
+      throw new IllegalArgumentException(
+          "Every range needs a start and an end");
+    }
+    this.starts = starts;
+    this.ends = ends;
+  }
+
+  /**
+   * Creates a range for every line.
+   *
+   * @param lineStarts the positions of the lines in ascending order
+   * @return the ranges containing exactly the given lines
+   */
+  public static LineRanges ofLines(long[] lineStarts) {
+    long[] ends = new long[lineStarts.length];
+    for (int i = 0; i < lineStarts.length; i++) {
+      ends[i] = lineStarts[i] + 1;
+    }
+    return new LineRanges(lineStarts, ends);
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  public long getStart(int index) {
+    return starts[index];
+  }
+
+  public long getEnd(int index) {
+    return ends[index];
+  }
+
+  /**
+   * Finds the first range ending after the position.
+   *
+   * @return the index of the range or the number of the ranges
+   *     if there is none
+   */
+  public int findFirst(long position) {
+    int index = Arrays.binarySearch(ends, position);
+    return index < 0 ? -index - 1 : index + 1;
+  }
+
+  /**
+   * Tells whether any of the ranges overlaps [from, to).
+   */
+  public boolean intersects(long from, long to) {
+    int first = findFirst(from);
+    return first < starts.length && starts[first] < to;
+  }
+
+  /**
+   * Tells whether any of the ranges starts before the position.
+   */
+  public boolean startsBefore(long position) {
+    return starts.length > 0 && starts[0] < position;
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.TimeRange;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * TimeIndex is a sparse index of the timestamps of the logs:
+ * the logs are split into blocks of lines, and the index contains
+ * the earliest and the latest timestamp of every block.
+ * The blocks logged in a {@link TimeRange} are found with binary search,
+ * so only that part of a file has to be read.
+ * The index is written by {@link TimeIndexBuilder} during preprocessing,
+ * and it is read into the memory when it is opened.
+ * The indexes of an older version are not read,
+ * the logs are scanned without them until they are indexed again.
+ * The index is immutable, and it can be shared between threads.
+ */
+public final class TimeIndex {
+
+  static final int MAGIC = 0x594D4958;
+  static final int VERSION = 2;
+
+  private final Map<String, FileEntry> files = new HashMap<>();
+
+  private TimeIndex(ByteBuffer buffer) throws IOException {
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Unknown format of the time index");
+    }
+    int fileCount = buffer.getInt();
+    for (int i = 0; i < fileCount; i++) {
+      byte[] name = new byte[buffer.getInt()];
+      buffer.get(name);
+      FileEntry entry = new FileEntry(buffer.getLong(), buffer.getLong(),
+          buffer.getInt());
+      for (int block = 0; block < entry.starts.length; block++) {
+        entry.starts[block] = buffer.getLong();
+        entry.earliest[block] = readTimeStamp(buffer);
+        entry.latest[block] = readTimeStamp(buffer);
+      }
+      entry.accumulate();
+      files.put(new String(name, StandardCharsets.UTF_8), entry);
+    }
+  }
+
+  /**
+   * Reads the index file.
+   *
+   * @param indexFile the file written by {@link TimeIndexBuilder}
+   * @return the index
+   * @throws IOException if the file couldn't be read or it is not an index
+   */
+  public static TimeIndex open(File indexFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(
+        indexFile.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("The time index is too long");
+      }
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new TimeIndex(buffer);
+    } catch (RuntimeException e) {
+      throw new IOException("The time index is corrupted", e);
+    }
+  }
+
+  private static String readTimeStamp(ByteBuffer buffer) {
+    byte[] timeStamp = new byte[buffer.getShort()];
+    buffer.get(timeStamp);
+    return timeStamp.length == 0
+        ? null : new String(timeStamp, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Tells whether the file was indexed, and it hasn't changed since then.
+   *
+   * @param file the log file
+   * @return true if the index is up to date for the file
+   */
+  public boolean isIndexed(File file) {
+    FileEntry entry = files.get(file.getName());
+    return entry != null && entry.length == file.length()
+        && entry.lastModified == file.lastModified();
+  }
+
+  /**
+   * Finds the part of the file containing the lines logged
+   * in the time range: the blocks before the part contain only
+   * earlier timestamps, and the blocks after it contain only later ones.
+   * The lines without a timestamp belong to the preceding line with one,
+   * the ones before the first timestamp of the file may be left out.
+   *
+   * @param file      the log file
+   * @param timeRange the time range
+   * @return the region of the file or null if the file is not indexed
+   */
+  public FileRegion findRegion(File file, TimeRange timeRange) {
+    if (!isIndexed(file)) {
+      return null;
+    }
+    FileEntry entry = files.get(file.getName());
+    int first = 0;
+    int end = entry.starts.length;
+    if (timeRange.getFrom() != null) {
+      // the first block having a timestamp after the start before it
+      first = search(entry.latestBefore, 0, end,
+          block -> block != null && !timeRange.isBeforeStart(block));
+    }
+    if (timeRange.getTo() != null) {
+      // the first block having only timestamps after the end after it
+      end = search(entry.earliestAfter, first, end,
+          block -> block == null || timeRange.isAfterEnd(block));
+    }
+    long start = first < entry.starts.length
+        ? entry.starts[first] : entry.length;
+    long regionEnd = end < entry.starts.length
+        ? entry.starts[end] : entry.length;
+    return new FileRegion(file, start, Math.max(0, regionEnd - start));
+  }
+
+  /**
+   * Finds the first index in [from, to) where the predicate holds,
+   * the predicate has to be monotonic over the array.
+   *
+   * @return the index or {@code to} if there is none
+   */
+  private static int search(String[] timeStamps, int from, int to,
+                            Predicate<String> predicate) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (predicate.test(timeStamps[middle])) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * FileEntry contains the blocks of an indexed file.
+   * The latest timestamps up to every block and the earliest timestamps
+   * from every block are accumulated, so they are ordered
+   * even if the timestamps of the file are not.
+   */
+  private static final class FileEntry {
+
+    private final long length;
+    private final long lastModified;
+    private final long[] starts;
+    private final String[] earliest;
+    private final String[] latest;
+    private final String[] latestBefore;
+    private final String[] earliestAfter;
+
+    private FileEntry(long length, long lastModified, int blockCount) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.starts = new long[blockCount];
+      this.earliest = new String[blockCount];
+      this.latest = new String[blockCount];
+      this.latestBefore = new String[blockCount];
+      this.earliestAfter = new String[blockCount];
+    }
+
+    private void accumulate() {
+      String maximum = null;
+      for (int i = 0; i < starts.length; i++) {
+        if (latest[i] != null
+            && (maximum == null || latest[i].compareTo(maximum) > 0)) {
+          maximum = latest[i];
+        }
+        latestBefore[i] = maximum;
+      }
+      String minimum = null;
+      for (int i = starts.length - 1; i >= 0; i--) {
+        if (earliest[i] != null
+            && (minimum == null || earliest[i].compareTo(minimum) < 0)) {
+          minimum = earliest[i];
+        }
+        earliestAfter[i] = minimum;
+      }
+    }
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.SegmentedCharSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TimeIndexBuilder splits the logs into blocks of lines
+ * and writes the {@link TimeIndex} of them.
+ * The index file contains the list of the indexed files
+ * (with their lengths and modification times to detect changes),
+ * and for every file the position, the earliest and the latest timestamp
+ * of its blocks. The timestamps are read from the beginning of the lines,
+ * and the lines without a timestamp at the beginning of a block
+ * are logged at the timestamp of the preceding line with one,
+ * so a stack trace running into the next block is found with its line.
+ */
+public final class TimeIndexBuilder {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TimeIndexBuilder.class);
+  /**
+   * The blocks are at least this long, they end at the end of a line.
+   */
+  private static final int DEFAULT_BLOCK_LENGTH = 1 << 16;
+
+  private final Matcher timeStampMatcher;
+  private final int blockLength;
+
+  private TimeIndexBuilder(Pattern timeStamp, int blockLength) {
+    this.timeStampMatcher = timeStamp.matcher("");
+    this.blockLength = blockLength;
+  }
+
+  /**
+   * Indexes every file in the log directory.
+   *
+   * @param logDir    the directory of the logs
+   * @param indexFile the file to write the index into
+   * @param timeStamp the pattern of the timestamps of the lines
+   * @throws IOException if the logs couldn't be read
+   *                     or the index couldn't be written
+   */
+  public static void build(File logDir, File indexFile, Pattern timeStamp)
+      throws IOException {
+    build(logDir, indexFile, timeStamp, DEFAULT_BLOCK_LENGTH);
+  }
+
+  /**
+   * Indexes every file in the log directory with the given length
+   * of the blocks. Shorter blocks make the index more precise,
+   * but they make it longer as well.
+   *
+   * @param logDir      the directory of the logs
+   * @param indexFile   the file to write the index into
+   * @param timeStamp   the pattern of the timestamps of the lines
+   * @param blockLength the minimal length of the blocks
+   * @throws IOException if the logs couldn't be read
+   *                     or the index couldn't be written
+   */
+  public static void build(File logDir, File indexFile, Pattern timeStamp,
+                           int blockLength) throws IOException {
+    if (blockLength < 1) {
+      throw new IllegalArgumentException(
+          "The length of the blocks must be positive");
+    }
+    LOG.info("Start indexing the timestamps of {}", logDir);
+    File[] files = logDir.listFiles(File::isFile);
+    if (files == null) {
+      throw new IOException("The log directory couldn't be listed");
+    }
+    Arrays.sort(files);
+    TimeIndexBuilder builder = new TimeIndexBuilder(timeStamp, blockLength);
+    List<Blocks> blocksOfFiles = new ArrayList<>();
+    for (File file : files) {
+      blocksOfFiles.add(builder.indexFile(file));
+    }
+    write(files, blocksOfFiles, indexFile);
+    LOG.info("Finished indexing the timestamps of {}", logDir);
+  }
+
+  private Blocks indexFile(File file) throws IOException {
+    LOG.debug("Indexing the timestamps of file: " + file.getName());
+    Blocks blocks = new Blocks();
+    for (FileRegion region : LogManipulator.splitIntoRegions(
+        file, LogManipulator.MAX_REGION_LENGTH, false)) {
+      try (SegmentedCharSequence sequence =
+               LogManipulator.readRegion(region)) {
+        indexRegion(blocks, region.getOffset(), sequence);
+      } finally {
+        timeStampMatcher.reset("");
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Reads the timestamps of the lines of a region.
+   * The regions are split on line boundaries.
+   */
+  private void indexRegion(Blocks blocks, long offset,
+                           SegmentedCharSequence sequence) {
+    timeStampMatcher.reset(sequence);
+    int lineStart = 0;
+    while (lineStart < sequence.length()) {
+      boolean starting = blocks.isClosed(offset + lineStart, blockLength);
+      if (starting) {
+        blocks.startBlock(offset + lineStart);
+        sequence.releaseBefore(lineStart);
+      }
+      timeStampMatcher.region(lineStart, sequence.length());
+      if (timeStampMatcher.lookingAt()) {
+        blocks.addTimeStamp(timeStampMatcher.group());
+      } else if (starting) {
+        blocks.inheritTimeStamp();
+      }
+      int lineEnd = lineStart;
+      while (lineEnd < sequence.length() && sequence.byteAt(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      lineStart = lineEnd + 1;
+    }
+  }
+
+  private static void write(File[] files, List<Blocks> blocksOfFiles,
+                            File indexFile) throws IOException {
+    // the index is renamed only when it is complete,
+    // so an interrupted build can't leave a corrupted index behind
+    File temporaryFile =
+        new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      output.writeInt(TimeIndex.MAGIC);
+      output.writeInt(TimeIndex.VERSION);
+      output.writeInt(files.length);
+      for (int i = 0; i < files.length; i++) {
+        byte[] name = files[i].getName().getBytes(StandardCharsets.UTF_8);
+        output.writeInt(name.length);
+        output.write(name);
+        output.writeLong(files[i].length());
+        output.writeLong(files[i].lastModified());
+        Blocks blocks = blocksOfFiles.get(i);
+        output.writeInt(blocks.starts.size());
+        for (int block = 0; block < blocks.starts.size(); block++) {
+          output.writeLong(blocks.starts.get(block));
+          writeTimeStamp(output, blocks.earliest.get(block));
+          writeTimeStamp(output, blocks.latest.get(block));
+        }
+      }
+    }
+    Files.move(temporaryFile.toPath(), indexFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Writes the length and the characters of the timestamp,
+   * the missing timestamps are written as empty ones.
+   */
+  private static void writeTimeStamp(DataOutputStream output,
+                                     String timeStamp) throws IOException {
+    byte[] bytes = timeStamp == null
+        ? new byte[0] : timeStamp.getBytes(StandardCharsets.ISO_8859_1);
+    output.writeShort(bytes.length);
+    output.write(bytes);
+  }
+
+  /**
+   * Blocks collects the positions of the blocks of a file
+   * and the earliest and the latest timestamps in them
+   * (null if there is no timestamp in the block).
+   */
+  private static final class Blocks {
+
+    private final List<Long> starts = new ArrayList<>();
+    private final List<String> earliest = new ArrayList<>();
+    private final List<String> latest = new ArrayList<>();
+    private String lastTimeStamp;
+
+    private boolean isClosed(long position, int blockLength) {
+      return starts.isEmpty()
+          || position - starts.get(starts.size() - 1) >= blockLength;
+    }
+
+    private void startBlock(long position) {
+      starts.add(position);
+      earliest.add(null);
+      latest.add(null);
+    }
+
+    private void addTimeStamp(String timeStamp) {
+      include(timeStamp);
+      lastTimeStamp = timeStamp;
+    }
+
+    /**
+     * Adds the timestamp of the preceding line with one to the block,
+     * if there was such a line.
+     */
+    private void inheritTimeStamp() {
+      if (lastTimeStamp != null) {
+        include(lastTimeStamp);
+      }
+    }
+
+    private void include(String timeStamp) {
+      int last = starts.size() - 1;
+      if (earliest.get(last) == null
+          || timeStamp.compareTo(earliest.get(last)) < 0) {
+        earliest.set(last, timeStamp);
+      }
+      if (latest.get(last) == null
+          || timeStamp.compareTo(latest.get(last)) > 0) {
+        latest.set(last, timeStamp);
+      }
+    }
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TrigramIndex maps the trigrams (three consecutive bytes of a line)
+ * to the blocks of the logs containing them.
+ * A line-scoped pattern can only match in the blocks
+ * containing every trigram of its required literals,
+ * so only these blocks have to be scanned.
+ * Patterns with alternatives are looked up as a union
+ * of intersections, see {@link #findBlocks(List)}.
+ * The index is written by {@link TrigramIndexBuilder} during preprocessing
+ * (if it is configured), and it is read through a memory-mapped buffer.
+ * The index is immutable, and it can be shared between threads.
+ */
+public final class TrigramIndex {
+
+  static final int MAGIC = 0x59544958;
+  static final int VERSION = 1;
+  /**
+   * The number of blocks of the trigrams found in most of the blocks.
+   * Their postings are not stored, they don't narrow down the search.
+   */
+  static final int FREQUENT = -1;
+  /**
+   * A trigram entry contains the trigram, the position and the length
+   * of its postings and the number of blocks in the postings.
+   */
+  static final int TRIGRAM_ENTRY_LENGTH = 4 * Integer.BYTES;
+  private static final int TRIGRAM_LENGTH = 3;
+  private static final int MAX_ASCII_CHAR = 0x7F;
+
+  private final ByteBuffer buffer;
+  private final Map<String, Integer> fileIndexes = new HashMap<>();
+  private final String[] fileNames;
+  private final long[] fileLengths;
+  private final long[] fileModificationTimes;
+  private final int[] firstBlocks;
+  private final int[] blockCounts;
+  private final int blockCount;
+  private final int blockTableStart;
+  private final int trigramCount;
+  private final int trigramTableStart;
+  private final int postingsStart;
+
+  private TrigramIndex(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Unknown format of the trigram index");
+    }
+    int fileCount = buffer.getInt();
+    fileNames = new String[fileCount];
+    fileLengths = new long[fileCount];
+    fileModificationTimes = new long[fileCount];
+    firstBlocks = new int[fileCount];
+    blockCounts = new int[fileCount];
+    for (int i = 0; i < fileCount; i++) {
+      byte[] name = new byte[buffer.getInt()];
+      buffer.get(name);
+      fileNames[i] = new String(name, StandardCharsets.UTF_8);
+      fileLengths[i] = buffer.getLong();
+      fileModificationTimes[i] = buffer.getLong();
+      firstBlocks[i] = buffer.getInt();
+      blockCounts[i] = buffer.getInt();
+      fileIndexes.put(fileNames[i], i);
+    }
+    blockCount = buffer.getInt();
+    blockTableStart = buffer.position();
+    buffer.position(blockTableStart + blockCount * Long.BYTES);
+    trigramCount = buffer.getInt();
+    trigramTableStart = buffer.position();
+    postingsStart = trigramTableStart + trigramCount * TRIGRAM_ENTRY_LENGTH;
+  }
+
+  /**
+   * Maps the index file into the memory.
+   *
+   * @param indexFile the file written by {@link TrigramIndexBuilder}
+   * @return the index
+   * @throws IOException if the file couldn't be read or it is not an index
+   */
+  public static TrigramIndex open(File indexFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(
+        indexFile.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("The trigram index is too long");
+      }
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new TrigramIndex(buffer);
+    } catch (RuntimeException e) {
+      throw new IOException("The trigram index is corrupted", e);
+    }
+  }
+
+  /**
+   * Tells whether the file was indexed, and it hasn't changed since then.
+   * The lines of the files which are not indexed have to be scanned.
+   *
+   * @param file the log file
+   * @return true if the index is up to date for the file
+   */
+  public boolean isIndexed(File file) {
+    Integer index = fileIndexes.get(file.getName());
+    return index != null && fileLengths[index] == file.length()
+        && fileModificationTimes[index] == file.lastModified();
+  }
+
+  /**
+   * Finds the blocks which can contain a match of a pattern.
+   * A match contains every literal of at least one of the alternatives,
+   * so the blocks are the union of the blocks containing
+   * every trigram of an alternative.
+   * Literals shorter than a trigram don't narrow down the blocks.
+   *
+   * @param alternatives the alternative sets of the required literals
+   * @return the ranges of the blocks grouped by the name of the file,
+   *     or null if the index doesn't narrow down the blocks
+   */
+  public Map<String, LineRanges> findBlocks(List<List<String>> alternatives) {
+    if (alternatives.isEmpty()) {
+      return null;
+    }
+    BitSet candidates = new BitSet(blockCount);
+    for (List<String> literals : alternatives) {
+      BitSet blocks = findBlocksOfLiterals(literals);
+      if (blocks == null) {
+        return null;
+      }
+      candidates.or(blocks);
+    }
+    Map<String, LineRanges> ranges = new HashMap<>();
+    for (int i = 0; i < fileNames.length; i++) {
+      ranges.put(fileNames[i], createRanges(i, candidates));
+    }
+    return ranges;
+  }
+
+  /**
+   * Intersects the blocks of the trigrams of the literals.
+   *
+   * @return the blocks or null if none of the trigrams narrow them down
+   */
+  private BitSet findBlocksOfLiterals(List<String> literals) {
+    BitSet blocks = null;
+    for (String literal : literals) {
+      for (int i = 0; i + TRIGRAM_LENGTH <= literal.length(); i++) {
+        int trigram = toTrigram(literal, i);
+        if (trigram < 0) {
+          continue;
+        }
+        int entry = findTrigramEntry(trigram);
+        if (entry < 0) {
+          return new BitSet();
+        }
+        BitSet trigramBlocks = readPostings(entry);
+        if (trigramBlocks == null) {
+          continue;
+        }
+        if (blocks == null) {
+          blocks = trigramBlocks;
+        } else {
+          blocks.and(trigramBlocks);
+        }
+        if (blocks.isEmpty()) {
+          return blocks;
+        }
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Returns the trigram starting at the index of the literal,
+   * or -1 if it can't be looked up, because it spans multiple lines
+   * or it contains a character which isn't encoded in a single byte.
+   */
+  private static int toTrigram(String literal, int index) {
+    int trigram = 0;
+    for (int i = index; i < index + TRIGRAM_LENGTH; i++) {
+      char character = literal.charAt(i);
+      if (character == '\n' || character > MAX_ASCII_CHAR) {
+        return -1;
+      }
+      trigram = (trigram << 8) | character;
+    }
+    return trigram;
+  }
+
+  /**
+   * Reads the blocks of a trigram.
+   *
+   * @return the blocks or null if the trigram is frequent
+   */
+  private BitSet readPostings(int entry) {
+    int count = buffer.getInt(entry + 3 * Integer.BYTES);
+    if (count == FREQUENT) {
+      return null;
+    }
+    ByteBuffer postings = buffer.duplicate();
+    postings.position(postingsStart + buffer.getInt(entry + Integer.BYTES));
+    BitSet blocks = new BitSet(blockCount);
+    int block = -1;
+    for (int i = 0; i < count; i++) {
+      block += readVarInt(postings);
+      blocks.set(block);
+    }
+    return blocks;
+  }
+
+  /**
+   * Converts the candidate blocks of a file into ranges,
+   * the adjacent blocks are merged into a single range.
+   */
+  private LineRanges createRanges(int fileIndex, BitSet candidates) {
+    int first = firstBlocks[fileIndex];
+    int end = first + blockCounts[fileIndex];
+    long[] starts = new long[blockCounts[fileIndex]];
+    long[] ends = new long[blockCounts[fileIndex]];
+    int size = 0;
+    for (int block = candidates.nextSetBit(first);
+         block >= 0 && block < end; block = candidates.nextSetBit(block + 1)) {
+      long start = getBlockStart(block);
+      long blockEnd =
+          block + 1 < end ? getBlockStart(block + 1) : fileLengths[fileIndex];
+      if (size > 0 && ends[size - 1] == start) {
+        ends[size - 1] = blockEnd;
+      } else {
+        starts[size] = start;
+        ends[size] = blockEnd;
+        size++;
+      }
+    }
+    return size == 0 ? LineRanges.EMPTY : new LineRanges(
+        Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+  }
+
+  private long getBlockStart(int block) {
+    return buffer.getLong(blockTableStart + block * Long.BYTES);
+  }
+
+  /**
+   * Finds the trigram in the sorted trigram table with binary search.
+   *
+   * @return the position of the entry of the trigram or -1
+   */
+  private int findTrigramEntry(int trigram) {
+    int low = 0;
+    int high = trigramCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = trigramTableStart + middle * TRIGRAM_ENTRY_LENGTH;
+      int current = buffer.getInt(entry);
+      if (current < trigram) {
+        low = middle + 1;
+      } else if (current > trigram) {
+        high = middle - 1;
+      } else {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  private static int readVarInt(ByteBuffer buffer) {
+    int value = 0;
+    int shift = 0;
+    byte current;
+    do {
+      current = buffer.get();
+      value |= (current & 0x7F) << shift;
+      shift += 7;
+    } while (current < 0);
+    return value;
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.SegmentedCharSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * TrigramIndexBuilder splits the logs into blocks of lines
+ * and writes the {@link TrigramIndex} of the trigrams in them.
+ * The index file contains the list of the indexed files
+ * (with their lengths and modification times to detect changes,
+ * and the range of their blocks), the positions of the blocks,
+ * the sorted table of the trigrams, and the postings of the trigrams:
+ * the numbers of the blocks containing them, delta encoded as varints.
+ * The trigrams found in most of the blocks are not worth
+ * looking up, so their postings are not written.
+ */
+public final class TrigramIndexBuilder {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TrigramIndexBuilder.class);
+  /**
+   * The blocks are at least this long, they end at the end of a line.
+   */
+  private static final int DEFAULT_BLOCK_LENGTH = 1 << 16;
+
+  private final File[] files;
+  private final int blockLength;
+  private final int[] firstBlocks;
+  private final int[] blockCounts;
+  private long[] blockStarts = new long[1024];
+  private int blockCount;
+  /**
+   * The postings of the trigrams, addressed by the first byte
+   * of the trigram and the other two bytes.
+   * The second level is allocated when the first trigram
+   * starting with the byte is found.
+   */
+  private final Postings[][] postingsByTrigram = new Postings[256][];
+
+  private TrigramIndexBuilder(File[] files, int blockLength) {
+    this.files = files;
+    this.blockLength = blockLength;
+    this.firstBlocks = new int[files.length];
+    this.blockCounts = new int[files.length];
+  }
+
+  /**
+   * Indexes every file in the log directory.
+   *
+   * @param logDir    the directory of the logs
+   * @param indexFile the file to write the index into
+   * @throws IOException if the logs couldn't be read
+   *                     or the index couldn't be written
+   */
+  public static void build(File logDir, File indexFile) throws IOException {
+    build(logDir, indexFile, DEFAULT_BLOCK_LENGTH);
+  }
+
+  /**
+   * Indexes every file in the log directory with the given length
+   * of the blocks. Shorter blocks make the index more selective,
+   * but they make it longer as well.
+   *
+   * @param logDir      the directory of the logs
+   * @param indexFile   the file to write the index into
+   * @param blockLength the minimal length of the blocks
+   * @throws IOException if the logs couldn't be read
+   *                     or the index couldn't be written
+   */
+  public static void build(File logDir, File indexFile, int blockLength)
+      throws IOException {
+    if (blockLength < 1) {
+      throw new IllegalArgumentException(
+          "The length of the blocks must be positive");
+    }
+    LOG.info("Start indexing the trigrams of {}", logDir);
+    File[] files = logDir.listFiles(File::isFile);
+    if (files == null) {
+      throw new IOException("The log directory couldn't be listed");
+    }
+    Arrays.sort(files);
+    TrigramIndexBuilder builder = new TrigramIndexBuilder(files, blockLength);
+    for (int i = 0; i < files.length; i++) {
+      builder.indexFile(i);
+    }
+    builder.write(indexFile);
+    LOG.info("Finished indexing the trigrams of {}", logDir);
+  }
+
+  private void indexFile(int fileIndex) throws IOException {
+    File file = files[fileIndex];
+    LOG.debug("Indexing the trigrams of file: " + file.getName());
+    firstBlocks[fileIndex] = blockCount;
+    FileScan scan = new FileScan();
+    for (FileRegion region : LogManipulator.splitIntoRegions(
+        file, LogManipulator.MAX_REGION_LENGTH, false)) {
+      try (SegmentedCharSequence sequence =
+               LogManipulator.readRegion(region)) {
+        indexRegion(scan, region.getOffset(), sequence);
+      }
+    }
+    blockCounts[fileIndex] = blockCount - firstBlocks[fileIndex];
+  }
+
+  /**
+   * Adds the trigrams of a region to the postings of the current block.
+   * The state of the scan is kept between the regions of a file.
+   */
+  private void indexRegion(FileScan scan, long offset,
+                           SegmentedCharSequence sequence) {
+    for (int i = 0; i < sequence.length(); i++) {
+      byte current = sequence.byteAt(i);
+      if (scan.block < 0) {
+        startBlock(scan, offset + i);
+      }
+      if (current == '\n') {
+        // the trigrams spanning multiple lines are not indexed,
+        // since the line-scoped queries can't match them
+        scan.length = 0;
+        if (offset + i + 1 - blockStarts[scan.block] >= blockLength) {
+          scan.block = -1;
+          sequence.releaseBefore(i + 1);
+        }
+        continue;
+      }
+      scan.trigram = ((scan.trigram << 8) | (current & 0xFF)) & 0xFFFFFF;
+      if (++scan.length >= 3) {
+        addTrigram(scan.trigram, scan.block);
+      }
+    }
+  }
+
+  private void startBlock(FileScan scan, long position) {
+    if (blockCount == blockStarts.length) {
+      blockStarts = Arrays.copyOf(blockStarts, blockCount * 2);
+    }
+    blockStarts[blockCount] = position;
+    scan.block = blockCount++;
+  }
+
+  private void addTrigram(int trigram, int block) {
+    Postings[] postings = postingsByTrigram[trigram >>> 16];
+    if (postings == null) {
+      postings = new Postings[1 << 16];
+      postingsByTrigram[trigram >>> 16] = postings;
+    }
+    Postings current = postings[trigram & 0xFFFF];
+    if (current == null) {
+      current = new Postings();
+      postings[trigram & 0xFFFF] = current;
+    }
+    current.add(block);
+  }
+
+  private boolean isFrequent(Postings postings) {
+    return postings.count > blockCount / 2;
+  }
+
+  private void write(File indexFile) throws IOException {
+    long postingsLength = 0;
+    int trigramCount = 0;
+    for (Postings[] postings : postingsByTrigram) {
+      if (postings == null) {
+        continue;
+      }
+      for (Postings current : postings) {
+        if (current != null) {
+          trigramCount++;
+          postingsLength += isFrequent(current) ? 0 : current.length;
+        }
+      }
+    }
+    if (postingsLength > Integer.MAX_VALUE) {
+      throw new IOException("The trigram index would be too long");
+    }
+    // the index is renamed only when it is complete,
+    // so an interrupted build can't leave a corrupted index behind
+    File temporaryFile =
+        new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+      output.writeInt(TrigramIndex.MAGIC);
+      output.writeInt(TrigramIndex.VERSION);
+      output.writeInt(files.length);
+      for (int i = 0; i < files.length; i++) {
+        byte[] name = files[i].getName().getBytes(StandardCharsets.UTF_8);
+        output.writeInt(name.length);
+        output.write(name);
+        output.writeLong(files[i].length());
+        output.writeLong(files[i].lastModified());
+        output.writeInt(firstBlocks[i]);
+        output.writeInt(blockCounts[i]);
+      }
+      output.writeInt(blockCount);
+      for (int i = 0; i < blockCount; i++) {
+        output.writeLong(blockStarts[i]);
+      }
+      output.writeInt(trigramCount);
+      int postingsOffset = 0;
+      for (int trigram = 0; trigram < 1 << 24; trigram++) {
+        Postings current = getPostings(trigram);
+        if (current == null) {
+          continue;
+        }
+        output.writeInt(trigram);
+        output.writeInt(postingsOffset);
+        if (isFrequent(current)) {
+          output.writeInt(0);
+          output.writeInt(TrigramIndex.FREQUENT);
+        } else {
+          output.writeInt(current.length);
+          output.writeInt(current.count);
+          postingsOffset += current.length;
+        }
+      }
+      for (int trigram = 0; trigram < 1 << 24; trigram++) {
+        Postings current = getPostings(trigram);
+        if (current != null && !isFrequent(current)) {
+          output.write(current.bytes, 0, current.length);
+        }
+      }
+    }
+    Files.move(temporaryFile.toPath(), indexFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private Postings getPostings(int trigram) {
+    Postings[] postings = postingsByTrigram[trigram >>> 16];
+    return postings == null ? null : postings[trigram & 0xFFFF];
+  }
+
+  /**
+   * FileScan is the state of indexing a file: the current block
+   * and the last bytes of the current line.
+   */
+  private static final class FileScan {
+
+    private int block = -1;
+    private int trigram;
+    private int length;
+  }
+
+  /**
+   * Postings collects the numbers of the blocks containing a trigram.
+   * Every block is added once, and it is stored as a difference
+   * from the previous block.
+   */
+  private static final class Postings {
+
+    private byte[] bytes = new byte[4];
+    private int length;
+    private int count;
+    private int lastBlock = -1;
+
+    private void add(int block) {
+      if (block == lastBlock) {
+        return;
+      }
+      if (length + 5 > bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      int remaining = block - lastBlock;
+      while ((remaining & ~0x7F) != 0) {
+        bytes[length++] = (byte) ((remaining & 0x7F) | 0x80);
+        remaining >>>= 7;
+      }
+      bytes[length++] = (byte) remaining;
+      lastBlock = block;
+      count++;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * CodePointSet is an immutable set of Unicode code points,
+ * stored as sorted, disjoint ranges.
+ * It is compiled to the alternatives of the UTF-8 encoded byte sequences
+ * of its code points, so the automata match the same characters
+ * as {@link java.util.regex} does on the decoded text.
+ * The surrogates are never in a complement, they can't be decoded.
+ */
+final class CodePointSet {
+
+  private static final int MAX_ASCII = 0x7F;
+  private static final int BYTE_VALUES = 256;
+  private static final int CONTINUATION_BITS = 6;
+  private static final int[] MAX_ENCODED = {0x7F, 0x7FF, 0xFFFF};
+  private static final CodePointSet SURROGATES =
+      range(Character.MIN_SURROGATE, Character.MAX_SURROGATE);
+
+  /**
+   * The first and the last code point of every range.
+   */
+  private final int[] ranges;
+
+  private CodePointSet(int[] ranges) {
+    this.ranges = ranges;
+  }
+
+  static CodePointSet of(int... codePoints) {
+    int[] ranges = new int[codePoints.length * 2];
+    for (int i = 0; i < codePoints.length; i++) {
+      ranges[2 * i] = codePoints[i];
+      ranges[2 * i + 1] = codePoints[i];
+    }
+    return union(new CodePointSet(ranges));
+  }
+
+  static CodePointSet range(int first, int last) {
+    return new CodePointSet(new int[] {first, last});
+  }
+
+  static CodePointSet union(CodePointSet... sets) {
+    List<int[]> all = new ArrayList<>();
+    for (CodePointSet set : sets) {
+      for (int i = 0; i < set.ranges.length; i += 2) {
+        all.add(new int[] {set.ranges[i], set.ranges[i + 1]});
+      }
+    }
+    all.sort((a, b) -> Integer.compare(a[0], b[0]));
+    int[] merged = new int[all.size() * 2];
+    int size = 0;
+    for (int[] range : all) {
+      if (size > 0 && range[0] <= merged[size - 1] + 1) {
+        merged[size - 1] = Math.max(merged[size - 1], range[1]);
+      } else {
+        merged[size++] = range[0];
+        merged[size++] = range[1];
+      }
+    }
+    return new CodePointSet(Arrays.copyOf(merged, size));
+  }
+
+  CodePointSet complement() {
+    int[] excluded = union(this, SURROGATES).ranges;
+    int[] complement = new int[excluded.length + 2];
+    int size = 0;
+    int next = 0;
+    for (int i = 0; i < excluded.length; i += 2) {
+      if (excluded[i] > next) {
+        complement[size++] = next;
+        complement[size++] = excluded[i] - 1;
+      }
+      next = excluded[i + 1] + 1;
+    }
+    if (next <= Character.MAX_CODE_POINT) {
+      complement[size++] = next;
+      complement[size++] = Character.MAX_CODE_POINT;
+    }
+    return new CodePointSet(Arrays.copyOf(complement, size));
+  }
+
+  /**
+   * Returns the only code point of the set.
+   *
+   * @return the code point, or -1 if the set has more or less of them
+   */
+  int getSingle() {
+    return ranges.length == 2 && ranges[0] == ranges[1] ? ranges[0] : -1;
+  }
+
+  /**
+   * Compiles the set to the alternatives of the byte sequences
+   * of its code points. The surrogates are left out. The ASCII code points
+   * are a single set of bytes, the other ranges are split until every byte
+   * of their encoded sequences is a range as well.
+   *
+   * @return the node matching the encoded code points
+   */
+  RegexNode toNode() {
+    BitSet ascii = new BitSet(BYTE_VALUES);
+    List<RegexNode> alternatives = new ArrayList<>();
+    int[] encodable = complement().complement().ranges;
+    for (int i = 0; i < encodable.length; i += 2) {
+      int first = encodable[i];
+      int last = encodable[i + 1];
+      if (first <= MAX_ASCII) {
+        ascii.set(first, Math.min(last, MAX_ASCII) + 1);
+        first = MAX_ASCII + 1;
+      }
+      for (int max : MAX_ENCODED) {
+        if (first <= max && last > max) {
+          addSequences(first, max, alternatives);
+          first = max + 1;
+        }
+      }
+      if (first <= last) {
+        addSequences(first, last, alternatives);
+      }
+    }
+    if (!ascii.isEmpty() || alternatives.isEmpty()) {
+      alternatives.add(0, RegexNode.bytes(ascii));
+    }
+    return RegexNode.alternation(alternatives);
+  }
+
+  /**
+   * Adds the sequences of a range of code points
+   * which are encoded to the same number of bytes.
+   */
+  private static void addSequences(int first, int last,
+                                   List<RegexNode> alternatives) {
+    byte[] firstBytes = encode(first);
+    for (int i = 1; i < firstBytes.length; i++) {
+      int mask = (1 << (CONTINUATION_BITS * i)) - 1;
+      if ((first & ~mask) != (last & ~mask)) {
+        if ((first & mask) != 0) {
+          addSequences(first, first | mask, alternatives);
+          addSequences((first | mask) + 1, last, alternatives);
+          return;
+        }
+        if ((last & mask) != mask) {
+          addSequences(first, (last & ~mask) - 1, alternatives);
+          addSequences(last & ~mask, last, alternatives);
+          return;
+        }
+      }
+    }
+    byte[] lastBytes = encode(last);
+    List<RegexNode> sequence = new ArrayList<>();
+    for (int i = 0; i < firstBytes.length; i++) {
+      BitSet bytes = new BitSet(BYTE_VALUES);
+      bytes.set(firstBytes[i] & 0xFF, (lastBytes[i] & 0xFF) + 1);
+      sequence.add(RegexNode.bytes(bytes));
+    }
+    alternatives.add(RegexNode.concatenation(sequence));
+  }
+
+  private static byte[] encode(int codePoint) {
+    return new String(Character.toChars(codePoint))
+        .getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.ByteSequence;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.HorspoolSearcher;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.Utf8Decoder;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * DfaRegexMatcher finds the matches with two {@link LazyDfa}s,
+ * in time linear in the length of the searched text.
+ * The forward automaton finds the end of the match
+ * {@link java.util.regex.Matcher#find()} would find,
+ * then the reversed automaton walks back from the end
+ * to the earliest start of a match ending there,
+ * which is the start of the same match.
+ * If every match starts with a literal, the automata are only run
+ * from the occurrences of the literal found by {@link HorspoolSearcher}.
+ * The groups of a match are resolved by a {@link PikeVm}
+ * when they are first asked for.
+ * The automata match the UTF-8 encoded characters. A region with bytes
+ * which are not valid UTF-8 is decoded to other characters
+ * (see {@link Utf8Decoder}), so it is matched by a {@link JdkRegexMatcher}.
+ * A search can't backtrack, so the stop condition
+ * is only checked before every search.
+ */
+final class DfaRegexMatcher implements RegexMatcher {
+
+  private final LazyDfa forward;
+  private final LazyDfa backward;
+  private final HorspoolSearcher prefixSearcher;
+  private final int groupCount;
+  private final PikeVm pikeVm;
+  private final JdkRegexMatcher fallback;
+  private ByteSequence sequence;
+  private int regionStart;
+  private int regionEnd;
+  private boolean regionChecked;
+  private RegexMatcher delegate;
+  private int searchFrom;
+  private int matchStart = -1;
+  private int matchEnd = -1;
+  private int[] groups;
+  private BooleanSupplier stopped;
+
+  /**
+   * Creates the automata of the programs.
+   *
+   * @param forwardProgram  the program finding the ends of the matches
+   * @param reversedProgram the program finding the starts of the matches
+   * @param prefixSearcher  the searcher of the literal every match
+   *                        starts with, or null
+   * @param pattern         the pattern of the programs, matching
+   *                        the regions which are not valid UTF-8
+   */
+  DfaRegexMatcher(Program forwardProgram, Program reversedProgram,
+                  HorspoolSearcher prefixSearcher, Pattern pattern) {
+    this.forward = new LazyDfa(forwardProgram, true);
+    this.backward = new LazyDfa(reversedProgram, false);
+    this.prefixSearcher = prefixSearcher;
+    this.fallback = new JdkRegexMatcher(pattern);
+    this.groupCount = fallback.groupCount();
+    this.pikeVm = groupCount == 0 ? null
+        : new PikeVm(forwardProgram, groupCount);
+  }
+
+  @Override
+  public <T extends CharSequence & ByteSequence> void reset(T sequence) {
+    this.sequence = sequence;
+    fallback.stopWhen(stopped);
+    fallback.reset(sequence);
+    region(0, sequence.length());
+  }
+
+  @Override
+  public void region(int start, int end) {
+    if (start < 0 || start > end || end > sequence.length()) {
+      throw new IndexOutOfBoundsException(
+          "Invalid region [" + start + ", " + end + ")");
+    }
+    this.regionStart = start;
+    this.regionEnd = end;
+    this.regionChecked = false;
+    this.delegate = null;
+    this.searchFrom = start;
+    this.matchStart = -1;
+    this.matchEnd = -1;
+  }
+
+  @Override
+  public boolean find() {
+    matchStart = -1;
+    matchEnd = -1;
+    groups = null;
+    if (!regionChecked) {
+      // the region is checked once, at its first search
+      regionChecked = true;
+      if (Utf8Decoder.findInvalid(sequence, regionStart, regionEnd) >= 0) {
+        delegate = fallback;
+        delegate.region(regionStart, regionEnd);
+      }
+    }
+    if (delegate != null) {
+      return delegate.find();
+    }
+    if (stopped != null && stopped.getAsBoolean()) {
+      throw new CancellationException("The matching was stopped");
+    }
+    int from = searchFrom;
+    if (from > regionEnd) {
+      return false;
+    }
+    if (prefixSearcher != null) {
+      from = prefixSearcher.indexOf(sequence, from, regionEnd);
+    }
+    int end = from < 0 ? -1 : forward.findEnd(sequence, from, regionEnd);
+    if (end < 0) {
+      searchFrom = regionEnd + 1;
+      return false;
+    }
+    matchStart = backward.findStart(sequence, end, from);
+    matchEnd = end;
+    // the next search starts after an empty match, like in Matcher,
+    // at the next character
+    searchFrom = end == matchStart ? nextCharacter(end) : end;
+    return true;
+  }
+
+  private int nextCharacter(int index) {
+    int next = index + 1;
+    while (next < regionEnd && (sequence.byteAt(next) & 0xC0) == 0x80) {
+      next++;
+    }
+    return next;
+  }
+
+  @Override
+  public int start() {
+    if (delegate != null) {
+      return delegate.start();
+    }
+    checkMatch();
+    return matchStart;
+  }
+
+  @Override
+  public int end() {
+    if (delegate != null) {
+      return delegate.end();
+    }
+    checkMatch();
+    return matchEnd;
+  }
+
+  @Override
+  public int groupCount() {
+    return groupCount;
+  }
+
+  @Override
+  public int start(int group) {
+    if (delegate != null) {
+      return delegate.start(group);
+    }
+    return resolveGroups(group)[2 * group];
+  }
+
+  @Override
+  public int end(int group) {
+    if (delegate != null) {
+      return delegate.end(group);
+    }
+    return resolveGroups(group)[2 * group + 1];
+  }
+
+  private int[] resolveGroups(int group) {
+    if (group < 0 || group > groupCount) {
+      throw new IndexOutOfBoundsException("No group " + group);
+    }
+    checkMatch();
+    if (groups == null) {
+      groups = pikeVm == null ? new int[] {matchStart, matchEnd}
+          : pikeVm.resolve(sequence, matchStart, matchEnd);
+    }
+    return groups;
+  }
+
+  @Override
+  public void stopWhen(BooleanSupplier stopped) {
+    this.stopped = stopped;
+  }
+
+  @Override
+  public void release() {
+    fallback.release();
+    sequence = null;
+    delegate = null;
+    stopped = null;
+  }
+
+  private void checkMatch() {
+    if (matchStart < 0) {
+      throw new IllegalStateException("No match available");
+    }
+  }
+}
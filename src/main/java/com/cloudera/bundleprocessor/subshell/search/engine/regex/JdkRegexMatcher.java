@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.ByteSequence;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.Utf8CharSequence;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JdkRegexMatcher matches the pattern with {@link java.util.regex}.
+ * It supports every feature of the patterns,
+ * but it may backtrack a lot on some patterns.
+ * The ASCII regions are matched directly on the bytes,
+ * the other ones on their UTF-8 decoded text,
+ * so the pattern sees the same characters as the text of the matches.
+ * A region is ASCII if the characters next to it (seen by the anchors
+ * and the boundaries) and, for the patterns with lookarounds,
+ * the whole context around it are ASCII as well.
+ * The decoded text includes {@link #CONTEXT} bytes around the region
+ * for the lookarounds, and it is reused by the following regions
+ * of the same part of the sequence (e.g. by the following lines).
+ * The indexes of the matches are the indexes of the bytes either way.
+ * The matcher can be stopped in the middle of a match,
+ * see {@link StoppableCharSequence}.
+ */
+final class JdkRegexMatcher implements RegexMatcher {
+
+  /**
+   * The lookarounds can see this many bytes around a decoded region.
+   */
+  static final int CONTEXT = 1 << 10;
+  /**
+   * The decoded text is at least this long, so it can be reused.
+   */
+  private static final int MIN_DECODED_LENGTH = 1 << 16;
+  private static final Pattern LOOKAROUND = Pattern.compile("\\(\\?<?[=!]");
+
+  private final Matcher matcher;
+  private final int checkedContext;
+  private CharSequence text;
+  private ByteSequence bytes;
+  private Utf8CharSequence decoded;
+  private boolean hasRegion;
+  private BooleanSupplier stopped;
+
+  JdkRegexMatcher(Pattern pattern) {
+    this.matcher = pattern.matcher("");
+    this.checkedContext =
+        LOOKAROUND.matcher(pattern.pattern()).find() ? CONTEXT : 1;
+  }
+
+  @Override
+  public <T extends CharSequence & ByteSequence> void reset(T sequence) {
+    matcher.reset(checked(sequence)).useTransparentBounds(true)
+        .useAnchoringBounds(false);
+    text = sequence;
+    bytes = sequence;
+    decoded = null;
+    hasRegion = false;
+  }
+
+  @Override
+  public void region(int start, int end) {
+    hasRegion = true;
+    if (isAscii(Math.max(0, start - checkedContext),
+        Math.min(bytes.length(), end + checkedContext))) {
+      if (decoded != null) {
+        decoded = null;
+        matcher.reset(checked(text));
+      }
+      matcher.region(start, end);
+      return;
+    }
+    int decodedStart = Math.max(0, start - CONTEXT);
+    int decodedEnd = Math.min(bytes.length(), end + CONTEXT);
+    if (decoded == null || decoded.getStart() > decodedStart
+        || decoded.getEnd() < decodedEnd) {
+      decodedEnd = Math.min(bytes.length(),
+          Math.max(decodedEnd, decodedStart + MIN_DECODED_LENGTH));
+      decoded = new Utf8CharSequence(bytes,
+          Utf8CharSequence.alignStart(bytes, decodedStart),
+          Utf8CharSequence.alignEnd(bytes, decodedEnd));
+      matcher.reset(checked(decoded));
+    }
+    matcher.region(decoded.toCharIndex(start), decoded.toCharIndex(end));
+  }
+
+  private CharSequence checked(CharSequence sequence) {
+    return stopped == null
+        ? sequence : new StoppableCharSequence(sequence, stopped);
+  }
+
+  private boolean isAscii(int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (bytes.byteAt(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean find() {
+    if (!hasRegion) {
+      region(0, bytes.length());
+    }
+    while (matcher.find()) {
+      // the byte index of a match can't be inside a character
+      if (decoded == null || !isInsidePair(matcher.start())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isInsidePair(int charIndex) {
+    return charIndex > 0 && charIndex < decoded.length()
+        && Character.isHighSurrogate(decoded.charAt(charIndex - 1))
+        && Character.isLowSurrogate(decoded.charAt(charIndex));
+  }
+
+  @Override
+  public int start() {
+    return toByteIndex(matcher.start());
+  }
+
+  @Override
+  public int end() {
+    return toByteIndex(matcher.end());
+  }
+
+  @Override
+  public int groupCount() {
+    return matcher.groupCount();
+  }
+
+  @Override
+  public int start(int group) {
+    return toByteIndex(matcher.start(group));
+  }
+
+  @Override
+  public int end(int group) {
+    return toByteIndex(matcher.end(group));
+  }
+
+  private int toByteIndex(int charIndex) {
+    return decoded == null ? charIndex : decoded.toByteIndex(charIndex);
+  }
+
+  @Override
+  public void stopWhen(BooleanSupplier stopped) {
+    this.stopped = stopped;
+  }
+
+  @Override
+  public void release() {
+    matcher.reset("");
+    stopped = null;
+    text = null;
+    bytes = null;
+    decoded = null;
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.ByteSequence;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LazyDfa runs a {@link Program} as a deterministic automaton,
+ * whose states are built when they are first reached.
+ * A state is the ordered list of the instructions the threads
+ * of the Pike VM are waiting at, so every byte is looked at once,
+ * and the time of a search is linear in the length of the text.
+ * If there would be too many states, the built states are dropped
+ * and built again on demand.
+ * LazyDfa is not thread-safe.
+ */
+final class LazyDfa {
+
+  private static final int MAX_STATES = 4096;
+  private static final int UNKNOWN = Integer.MIN_VALUE;
+  private static final int DEAD = 0;
+
+  private final Program program;
+  private final boolean firstMatch;
+  private final Map<State, Integer> states = new HashMap<>();
+  private final List<State> stateList = new ArrayList<>();
+  /**
+   * The transitions of the states, indexed by the state and the class
+   * of the byte. The index of a matching state is stored negated,
+   * shifted by one, to keep the tables small and the loop tight.
+   */
+  private final int[][] transitions = new int[MAX_STATES][];
+  private final int[] threads;
+  private final int[] stack;
+  private final int[] visited;
+  private int visitMark;
+  private boolean reachedMatch;
+  private int startState;
+
+  /**
+   * Prepares the automaton.
+   *
+   * @param program    the program to run
+   * @param firstMatch whether the threads with a lower priority
+   *                   than a matching thread are dropped,
+   *                   like in the forward search for the first match
+   */
+  LazyDfa(Program program, boolean firstMatch) {
+    this.program = program;
+    this.firstMatch = firstMatch;
+    int size = program.getOperationCount();
+    this.threads = new int[size];
+    this.stack = new int[size * 2 + 1];
+    this.visited = new int[size];
+    flush();
+  }
+
+  /**
+   * Finds the end of the match of a forward program
+   * {@link java.util.regex.Matcher#find()} would find starting at from:
+   * the earliest starting one, and among those the preferred one.
+   *
+   * @param sequence the searched sequence
+   * @param from     the index to start the search at
+   * @param to       the end of the searched region (exclusive)
+   * @return the end of the match, or -1 if there is no match
+   */
+  int findEnd(ByteSequence sequence, int from, int to) {
+    int state = startState;
+    int end = stateList.get(state).matching ? from : -1;
+    for (int i = from; i < to && state != DEAD; i++) {
+      state = next(state, sequence.byteAt(i));
+      if (state < 0) {
+        state = -state - 1;
+        end = i + 1;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Finds the earliest start of a match ending at end
+   * with a reversed program.
+   *
+   * @param sequence the searched sequence
+   * @param end      the end of the match
+   * @param limit    the match has to start at or after this index
+   * @return the start of the match, or -1 if there is no match
+   */
+  int findStart(ByteSequence sequence, int end, int limit) {
+    int state = startState;
+    int start = stateList.get(state).matching ? end : -1;
+    for (int i = end - 1; i >= limit && state != DEAD; i--) {
+      state = next(state, sequence.byteAt(i));
+      if (state < 0) {
+        state = -state - 1;
+        start = i;
+      }
+    }
+    return start;
+  }
+
+  int getStateCount() {
+    return stateList.size();
+  }
+
+  /**
+   * Returns the next state, negated and shifted by one if it is matching.
+   */
+  private int next(int state, byte b) {
+    int byteClass = program.getClass(b);
+    int target = transitions[state][byteClass];
+    return target != UNKNOWN ? target : computeTransition(state, byteClass);
+  }
+
+  private int computeTransition(int source, int byteClass) {
+    State sourceState = stateList.get(source);
+    int count = 0;
+    boolean matching = false;
+    visitMark++;
+    for (int instruction : sourceState.instructions) {
+      if (program.matchesClass(instruction, byteClass)) {
+        count = addClosure(program.getFirstTarget(instruction), count);
+        if (reachedMatch) {
+          matching = true;
+          if (firstMatch) {
+            // the threads with a lower priority can't win anymore
+            break;
+          }
+        }
+      }
+    }
+    State target = new State(Arrays.copyOf(threads, count), matching);
+    Integer index = states.get(target);
+    if (index == null) {
+      if (stateList.size() >= MAX_STATES) {
+        // the source is dropped as well, the transition isn't recorded
+        flush();
+        return encode(add(target), matching);
+      }
+      index = add(target);
+    }
+    int encoded = encode(index, matching);
+    transitions[source][byteClass] = encoded;
+    return encoded;
+  }
+
+  private static int encode(int state, boolean matching) {
+    return matching ? -state - 1 : state;
+  }
+
+  /**
+   * Drops every state, and builds the dead and the start states again.
+   */
+  private void flush() {
+    states.clear();
+    stateList.clear();
+    add(new State(new int[0], false));
+    visitMark++;
+    int count = addClosure(program.getStart(), 0);
+    startState = add(new State(Arrays.copyOf(threads, count), reachedMatch));
+  }
+
+  private int add(State state) {
+    Integer index = states.get(state);
+    if (index != null) {
+      return index;
+    }
+    int[] row = new int[program.getClassCount()];
+    Arrays.fill(row, UNKNOWN);
+    transitions[stateList.size()] = row;
+    states.put(state, stateList.size());
+    stateList.add(state);
+    return stateList.size() - 1;
+  }
+
+  /**
+   * Adds the instructions consuming a byte, which are reachable
+   * from the instruction without consuming one, to the threads
+   * in the order of their priority. Sets reachedMatch
+   * if a match was reached.
+   *
+   * @return the new number of threads
+   */
+  private int addClosure(int instruction, int count) {
+    int size = count;
+    int top = 0;
+    reachedMatch = false;
+    stack[top++] = instruction;
+    while (top > 0) {
+      int current = stack[--top];
+      if (visited[current] == visitMark) {
+        continue;
+      }
+      visited[current] = visitMark;
+      switch (program.getOperation(current)) {
+        case Program.BYTES:
+          threads[size++] = current;
+          break;
+        case Program.SPLIT:
+          stack[top++] = program.getSecondTarget(current);
+          stack[top++] = program.getFirstTarget(current);
+          break;
+        case Program.SAVE:
+          stack[top++] = program.getFirstTarget(current);
+          break;
+        default:
+          reachedMatch = true;
+          if (firstMatch) {
+            top = 0;
+          }
+          break;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * State is a state of the automaton, identified by the waiting threads
+   * and by whether a match was reached before them.
+   */
+  private static final class State {
+
+    private final int[] instructions;
+    private final boolean matching;
+
+    State(int[] instructions, boolean matching) {
+      this.instructions = instructions;
+      this.matching = matching;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof State)) {
+        return false;
+      }
+      State state = (State) o;
+      return matching == state.matching
+          && Arrays.equals(instructions, state.instructions);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Arrays.hashCode(instructions) + (matching ? 1 : 0);
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.ByteSequence;
+import java.util.Arrays;
+
+/**
+ * PikeVm resolves the groups of a match found by the {@link LazyDfa}s.
+ * It runs the threads of a forward {@link Program} from the start
+ * of the match, in the order of their priority, and every thread
+ * carries its own slots of the groups. The first thread reaching the end
+ * of the match has the groups {@link java.util.regex} would report,
+ * without backtracking: every byte is looked at once by every instruction,
+ * so the time is linear in the length of the match.
+ * PikeVm is not thread-safe.
+ */
+final class PikeVm {
+
+  private final Program program;
+  private final int slotCount;
+  private int[] threads;
+  private int[][] threadSlots;
+  private int[] nextThreads;
+  private int[][] nextThreadSlots;
+  private final int[] stack;
+  private final int[][] stackSlots;
+  private final int[] visited;
+  private int visitMark;
+
+  /**
+   * Prepares the threads.
+   *
+   * @param program    the forward program of the pattern
+   * @param groupCount the number of the capturing groups
+   */
+  PikeVm(Program program, int groupCount) {
+    this.program = program;
+    this.slotCount = 2 * (groupCount + 1);
+    int size = program.getOperationCount();
+    this.threads = new int[size];
+    this.threadSlots = new int[size][];
+    this.nextThreads = new int[size];
+    this.nextThreadSlots = new int[size][];
+    this.stack = new int[size * 2 + 1];
+    this.stackSlots = new int[size * 2 + 1][];
+    this.visited = new int[size];
+  }
+
+  /**
+   * Resolves the groups of a match.
+   *
+   * @param sequence the matched sequence
+   * @param start    the start of the match
+   * @param end      the end of the match
+   * @return the start of every group at 2 * group and its end
+   *         at 2 * group + 1, -1 if the group didn't take part in the match
+   * @throws IllegalStateException if the program doesn't match
+   *                               between start and end
+   */
+  int[] resolve(ByteSequence sequence, int start, int end) {
+    int[] initial = new int[slotCount];
+    Arrays.fill(initial, -1);
+    visitMark++;
+    int count = addThread(threads, threadSlots, 0,
+        program.getEntry(), initial, start);
+    for (int i = start; count > 0; i++) {
+      int nextCount = 0;
+      visitMark++;
+      for (int t = 0; t < count; t++) {
+        int instruction = threads[t];
+        if (program.getOperation(instruction) == Program.MATCH) {
+          if (i == end) {
+            int[] slots = threadSlots[t].clone();
+            slots[0] = start;
+            slots[1] = end;
+            return slots;
+          }
+          // the threads with a lower priority can't win anymore
+          break;
+        }
+        if (i < end && program.matchesByte(instruction, sequence.byteAt(i))) {
+          nextCount = addThread(nextThreads, nextThreadSlots, nextCount,
+              program.getFirstTarget(instruction), threadSlots[t], i + 1);
+        }
+      }
+      if (i == end) {
+        break;
+      }
+      int[] swappedThreads = threads;
+      threads = nextThreads;
+      nextThreads = swappedThreads;
+      int[][] swappedSlots = threadSlots;
+      threadSlots = nextThreadSlots;
+      nextThreadSlots = swappedSlots;
+      count = nextCount;
+    }
+    throw new IllegalStateException(
+        "No match between " + start + " and " + end);
+  }
+
+  /**
+   * Adds the instructions consuming a byte or reporting a match,
+   * which are reachable from the instruction without consuming one,
+   * in the order of their priority. The slots are copied
+   * when a group records the index.
+   *
+   * @return the new number of threads
+   */
+  private int addThread(int[] list, int[][] slotLists, int count,
+                        int instruction, int[] slots, int index) {
+    int size = count;
+    int top = 0;
+    stack[top] = instruction;
+    stackSlots[top++] = slots;
+    while (top > 0) {
+      top--;
+      int current = stack[top];
+      int[] currentSlots = stackSlots[top];
+      if (visited[current] == visitMark) {
+        continue;
+      }
+      visited[current] = visitMark;
+      switch (program.getOperation(current)) {
+        case Program.SPLIT:
+          stack[top] = program.getSecondTarget(current);
+          stackSlots[top++] = currentSlots;
+          stack[top] = program.getFirstTarget(current);
+          stackSlots[top++] = currentSlots;
+          break;
+        case Program.SAVE:
+          int[] saved = currentSlots.clone();
+          saved[program.getSecondTarget(current)] = index;
+          stack[top] = program.getFirstTarget(current);
+          stackSlots[top++] = saved;
+          break;
+        default:
+          list[size] = current;
+          slotLists[size++] = currentSlots;
+          break;
+      }
+    }
+    return size;
+  }
+}
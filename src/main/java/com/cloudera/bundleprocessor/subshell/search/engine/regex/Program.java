@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Program is a nondeterministic automaton compiled from a {@link RegexNode},
+ * with the instructions of a Pike VM. The alternatives of a split
+ * are ordered by priority, so the automaton can tell
+ * which match {@link java.util.regex} would prefer.
+ * The capturing groups record their bounds in the slots
+ * {@code 2 * group} and {@code 2 * group + 1}, see {@link PikeVm}.
+ * The bytes are mapped to classes of bytes which are matched
+ * by the same instructions, to keep the tables of the {@link LazyDfa} small.
+ * Program is immutable, so it can be shared between threads.
+ */
+final class Program {
+
+  /** Consumes a byte of a set, then continues at the next instruction. */
+  static final int BYTES = 0;
+  /** Continues at the first target, then at the second one. */
+  static final int SPLIT = 1;
+  /** Reports a match. */
+  static final int MATCH = 2;
+  /**
+   * Records the index in the slot of the second target,
+   * then continues at the first target. The automata ignore it.
+   */
+  static final int SAVE = 3;
+
+  /**
+   * Larger programs would make the states of the DFA too expensive.
+   */
+  private static final int MAX_INSTRUCTIONS = 10000;
+  private static final int BYTE_VALUES = 256;
+
+  private final int[] operations;
+  private final int[] firstTargets;
+  private final int[] secondTargets;
+  private final BitSet[] sets;
+  private final int start;
+  private final int entry;
+  private final int[] byteClasses;
+  private final int[] representatives;
+
+  private Program(Builder builder, int start, int entry) {
+    int size = builder.operations.size();
+    this.operations = new int[size];
+    this.firstTargets = new int[size];
+    this.secondTargets = new int[size];
+    this.sets = builder.sets.toArray(new BitSet[0]);
+    for (int i = 0; i < size; i++) {
+      operations[i] = builder.operations.get(i);
+      firstTargets[i] = builder.firstTargets.get(i);
+      secondTargets[i] = builder.secondTargets.get(i);
+    }
+    this.start = start;
+    this.entry = entry;
+    this.byteClasses = new int[BYTE_VALUES];
+    List<Integer> classStarts = new ArrayList<>();
+    classStarts.add(0);
+    for (int b = 1; b < BYTE_VALUES; b++) {
+      for (BitSet set : sets) {
+        if (set != null && set.get(b) != set.get(b - 1)) {
+          classStarts.add(b);
+          break;
+        }
+      }
+      byteClasses[b] = classStarts.size() - 1;
+    }
+    this.representatives = classStarts.stream()
+        .mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Compiles the syntax tree.
+   * The forward program finds the matches anywhere after the start
+   * of the search, preferring the earlier ones.
+   * The reversed program matches the reversed strings of the tree,
+   * starting at the end of a match, without recording the groups.
+   *
+   * @param node     the syntax tree
+   * @param reversed whether the program has to match backwards
+   * @return the compiled program
+   * @throws RegexParser.UnsupportedRegexException if the program
+   *                                               would be too large
+   */
+  static Program compile(RegexNode node, boolean reversed) {
+    Builder builder = new Builder(reversed);
+    int match = builder.add(MATCH, -1, -1, null);
+    int entry = builder.emit(node, match);
+    if (reversed) {
+      return new Program(builder, entry, entry);
+    }
+    // a lazy loop over any byte, so every position can start a match
+    // with a lower priority than the earlier positions
+    int loop = builder.add(SPLIT, entry, -1, null);
+    int skip = builder.add(BYTES, loop, -1, allBytes());
+    builder.secondTargets.set(loop, skip);
+    return new Program(builder, loop, entry);
+  }
+
+  int getOperationCount() {
+    return operations.length;
+  }
+
+  int getStart() {
+    return start;
+  }
+
+  /**
+   * Returns the first instruction of the tree,
+   * which matches only at the start of the search.
+   *
+   * @return the anchored start of the program
+   */
+  int getEntry() {
+    return entry;
+  }
+
+  int getOperation(int instruction) {
+    return operations[instruction];
+  }
+
+  int getFirstTarget(int instruction) {
+    return firstTargets[instruction];
+  }
+
+  int getSecondTarget(int instruction) {
+    return secondTargets[instruction];
+  }
+
+  /**
+   * Tells whether a {@link #BYTES} instruction consumes
+   * the bytes of a class.
+   */
+  boolean matchesClass(int instruction, int byteClass) {
+    return sets[instruction].get(representatives[byteClass]);
+  }
+
+  boolean matchesByte(int instruction, byte b) {
+    return sets[instruction].get(b & 0xFF);
+  }
+
+  int getClassCount() {
+    return representatives.length;
+  }
+
+  /**
+   * Returns the class of the byte.
+   *
+   * @param b the byte
+   * @return the class of the byte
+   */
+  int getClass(byte b) {
+    return byteClasses[b & 0xFF];
+  }
+
+  private static BitSet allBytes() {
+    BitSet bytes = new BitSet(BYTE_VALUES);
+    bytes.set(0, BYTE_VALUES);
+    return bytes;
+  }
+
+  /**
+   * Builder emits the instructions of the nodes backwards,
+   * every node is compiled knowing where to continue after it.
+   */
+  private static final class Builder {
+
+    private final boolean reversed;
+    private final List<Integer> operations = new ArrayList<>();
+    private final List<Integer> firstTargets = new ArrayList<>();
+    private final List<Integer> secondTargets = new ArrayList<>();
+    private final List<BitSet> sets = new ArrayList<>();
+
+    Builder(boolean reversed) {
+      this.reversed = reversed;
+    }
+
+    int add(int operation, int firstTarget, int secondTarget, BitSet set) {
+      if (operations.size() >= MAX_INSTRUCTIONS) {
+        throw new RegexParser.UnsupportedRegexException("size");
+      }
+      operations.add(operation);
+      firstTargets.add(firstTarget);
+      secondTargets.add(secondTarget);
+      sets.add(set);
+      return operations.size() - 1;
+    }
+
+    /**
+     * Emits the instructions of the node.
+     *
+     * @param node the node to compile
+     * @param next the instruction to continue at after the node
+     * @return the first instruction of the node
+     */
+    int emit(RegexNode node, int next) {
+      List<RegexNode> children = node.getChildren();
+      switch (node.getKind()) {
+        case EMPTY:
+          return next;
+        case BYTES:
+          return add(BYTES, next, -1, node.getBytes());
+        case CONCATENATION:
+          int entry = next;
+          for (int i = 0; i < children.size(); i++) {
+            entry = emit(children.get(reversed ? i : children.size() - 1 - i),
+                entry);
+          }
+          return entry;
+        case GROUP:
+          if (reversed) {
+            return emit(children.get(0), next);
+          }
+          int slot = 2 * node.getGroup();
+          int groupEnd = add(SAVE, next, slot + 1, null);
+          return add(SAVE, emit(children.get(0), groupEnd), slot, null);
+        case ALTERNATION:
+          int alternatives = emit(children.get(children.size() - 1), next);
+          for (int i = children.size() - 2; i >= 0; i--) {
+            alternatives = add(SPLIT, emit(children.get(i), next),
+                alternatives, null);
+          }
+          return alternatives;
+        default:
+          return emitRepetition(node, next);
+      }
+    }
+
+    private int emitRepetition(RegexNode node, int next) {
+      RegexNode child = node.getChildren().get(0);
+      int entry;
+      if (node.getMaximum() == RegexNode.UNBOUNDED) {
+        int loop = add(SPLIT, -1, -1, null);
+        setTargets(loop, emit(child, loop), next, node.isGreedy());
+        entry = loop;
+      } else {
+        // the optional repetitions are nested: x{0,2} is (x(x)?)?
+        entry = next;
+        for (int i = node.getMinimum(); i < node.getMaximum(); i++) {
+          int optional = add(SPLIT, -1, -1, null);
+          setTargets(optional, emit(child, entry), next, node.isGreedy());
+          entry = optional;
+        }
+      }
+      for (int i = 0; i < node.getMinimum(); i++) {
+        entry = emit(child, entry);
+      }
+      return entry;
+    }
+
+    private void setTargets(int split, int repeat, int skip, boolean greedy) {
+      firstTargets.set(split, greedy ? repeat : skip);
+      secondTargets.set(split, greedy ? skip : repeat);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.HorspoolSearcher;
+import java.io.ByteArrayOutputStream;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RegexEngine selects how the patterns of the queries are matched.
+ * {@link #JDK} matches them with {@link java.util.regex}, which
+ * can backtrack for a very long time on patterns like
+ * {@code ([^0-9].*\n)*}. {@link #DFA} matches them with lazily built
+ * deterministic automata, similar to RE2, in linear time,
+ * groups included (see {@link DfaRegexMatcher}).
+ * The patterns using features the automata don't support
+ * (see {@link RegexParser}) and the regions which are not valid UTF-8
+ * are matched with {@link java.util.regex} by both engines.
+ */
+public enum RegexEngine {
+
+  JDK {
+    @Override
+    public Supplier<RegexMatcher> compile(Pattern pattern) {
+      return () -> new JdkRegexMatcher(pattern);
+    }
+  },
+  DFA {
+    @Override
+    public Supplier<RegexMatcher> compile(Pattern pattern) {
+      try {
+        RegexNode node = RegexParser.parse(pattern);
+        Program forward = Program.compile(node, false);
+        Program reversed = Program.compile(node, true);
+        ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        node.appendLiteralPrefix(prefix);
+        HorspoolSearcher prefixSearcher = prefix.size() < MIN_PREFIX_LENGTH
+            ? null : new HorspoolSearcher(prefix.toByteArray());
+        return () -> new DfaRegexMatcher(forward, reversed, prefixSearcher,
+            pattern);
+      } catch (RegexParser.UnsupportedRegexException e) {
+        LOG.debug("Matching {} with java.util.regex: {}",
+            pattern, e.getMessage());
+        return JDK.compile(pattern);
+      }
+    }
+  };
+
+  /**
+   * Shorter prefixes are not selective enough to skip the automata.
+   */
+  private static final int MIN_PREFIX_LENGTH = 2;
+  private static final Logger LOG = LoggerFactory.getLogger(RegexEngine.class);
+
+  /**
+   * Compiles the pattern for this engine.
+   * The compiled form can be shared between threads,
+   * but every thread has to create its own matcher.
+   *
+   * @param pattern the pattern to match
+   * @return the factory of the matchers of the pattern
+   */
+  public abstract Supplier<RegexMatcher> compile(Pattern pattern);
+}
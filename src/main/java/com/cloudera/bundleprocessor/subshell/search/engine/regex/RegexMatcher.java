@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.ByteSequence;
+import java.util.function.BooleanSupplier;
+
+/**
+ * RegexMatcher finds the matches of a compiled regular expression
+ * in a sequence of bytes. The indexes of the region and of the matches
+ * are the indexes of the bytes, even if the matcher
+ * matches the UTF-8 decoded text (see {@link JdkRegexMatcher}).
+ * The bounds of the region are transparent and non-anchoring,
+ * the same way as the bounds of a {@link java.util.regex.Matcher}
+ * used by the search engine.
+ * A RegexMatcher is not thread-safe, every thread needs its own one
+ * (see {@link RegexEngine#compile}).
+ */
+public interface RegexMatcher {
+
+  /**
+   * Starts matching a new sequence. The region is the whole sequence.
+   *
+   * @param sequence the sequence to match
+   * @param <T>      the type of the sequence
+   */
+  <T extends CharSequence & ByteSequence> void reset(T sequence);
+
+  /**
+   * Restricts the matches to [start, end) of the sequence,
+   * and restarts the search at start.
+   *
+   * @param start the start of the region (inclusive)
+   * @param end   the end of the region (exclusive)
+   */
+  void region(int start, int end);
+
+  /**
+   * Finds the next match in the region, the same way as
+   * {@link java.util.regex.Matcher#find()} does.
+   *
+   * @return true if a match was found
+   */
+  boolean find();
+
+  /**
+   * Returns the index where the last match starts.
+   *
+   * @return the start of the last match
+   */
+  int start();
+
+  /**
+   * Returns the index after the last match.
+   *
+   * @return the end of the last match
+   */
+  int end();
+
+  /**
+   * Returns the number of the capturing groups of the pattern.
+   *
+   * @return the number of the groups
+   */
+  int groupCount();
+
+  /**
+   * Returns the index where a group of the last match starts.
+   *
+   * @param group the number of the group, 0 for the whole match
+   * @return the start of the group, or -1 if the group
+   *         didn't take part in the match
+   */
+  int start(int group);
+
+  /**
+   * Returns the index after a group of the last match.
+   *
+   * @param group the number of the group, 0 for the whole match
+   * @return the end of the group, or -1 if the group
+   *         didn't take part in the match
+   */
+  int end(int group);
+
+  /**
+   * Lets the matching of the next sequence be stopped: the matcher
+   * checks the condition while it searches for a match, and throws a
+   * {@link java.util.concurrent.CancellationException} once it holds.
+   * It has to be called before {@link #reset}.
+   *
+   * @param stopped the stop condition, null to match without checks
+   */
+  void stopWhen(BooleanSupplier stopped);
+
+  /**
+   * Drops the reference to the sequence and to the stop condition,
+   * so they can be released.
+   */
+  void release();
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RegexNode is a node of the syntax tree of a regular expression
+ * parsed by {@link RegexParser}.
+ */
+final class RegexNode {
+
+  /**
+   * The kinds of the nodes.
+   */
+  enum Kind {
+    /** Matches the empty string. */
+    EMPTY,
+    /** Matches a single byte of a set. */
+    BYTES,
+    /** Matches the children one after the other. */
+    CONCATENATION,
+    /** Matches one of the children, preferring the first ones. */
+    ALTERNATION,
+    /** Matches the only child repeatedly. */
+    REPETITION,
+    /** Matches the only child as a capturing group. */
+    GROUP
+  }
+
+  /**
+   * The maximum of an unbounded repetition.
+   */
+  static final int UNBOUNDED = -1;
+
+  private static final RegexNode EMPTY_NODE = new RegexNode(Kind.EMPTY,
+      null, Collections.emptyList(), 1, 1, true, 0);
+
+  private final Kind kind;
+  private final BitSet bytes;
+  private final List<RegexNode> children;
+  private final int minimum;
+  private final int maximum;
+  private final boolean greedy;
+  private final int group;
+
+  private RegexNode(Kind kind, BitSet bytes, List<RegexNode> children,
+                    int minimum, int maximum, boolean greedy, int group) {
+    this.kind = kind;
+    this.bytes = bytes;
+    this.children = children;
+    this.minimum = minimum;
+    this.maximum = maximum;
+    this.greedy = greedy;
+    this.group = group;
+  }
+
+  static RegexNode empty() {
+    return EMPTY_NODE;
+  }
+
+  static RegexNode bytes(BitSet bytes) {
+    return new RegexNode(Kind.BYTES, bytes, Collections.emptyList(),
+        1, 1, true, 0);
+  }
+
+  static RegexNode concatenation(List<RegexNode> children) {
+    if (children.isEmpty()) {
+      return EMPTY_NODE;
+    }
+    return children.size() == 1 ? children.get(0)
+        : new RegexNode(Kind.CONCATENATION, null, children, 1, 1, true, 0);
+  }
+
+  static RegexNode alternation(List<RegexNode> children) {
+    return children.size() == 1 ? children.get(0)
+        : new RegexNode(Kind.ALTERNATION, null, children, 1, 1, true, 0);
+  }
+
+  static RegexNode repetition(RegexNode child, int minimum, int maximum,
+                              boolean greedy) {
+    return new RegexNode(Kind.REPETITION, null,
+        Collections.singletonList(child), minimum, maximum, greedy, 0);
+  }
+
+  static RegexNode group(RegexNode child, int group) {
+    return new RegexNode(Kind.GROUP, null,
+        Collections.singletonList(child), 1, 1, true, group);
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
+  BitSet getBytes() {
+    return bytes;
+  }
+
+  List<RegexNode> getChildren() {
+    return children;
+  }
+
+  int getMinimum() {
+    return minimum;
+  }
+
+  int getMaximum() {
+    return maximum;
+  }
+
+  boolean isGreedy() {
+    return greedy;
+  }
+
+  int getGroup() {
+    return group;
+  }
+
+  /**
+   * Collects the bytes every match of the node starts with.
+   *
+   * @param prefix the output to append the bytes to
+   * @return true if the node matches only the appended bytes
+   */
+  boolean appendLiteralPrefix(ByteArrayOutputStream prefix) {
+    if (kind == Kind.BYTES && bytes.cardinality() == 1) {
+      prefix.write(bytes.nextSetBit(0));
+      return true;
+    }
+    if (kind == Kind.GROUP) {
+      return children.get(0).appendLiteralPrefix(prefix);
+    }
+    if (kind == Kind.CONCATENATION) {
+      for (RegexNode child : children) {
+        if (!child.appendLiteralPrefix(prefix)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return kind == Kind.EMPTY;
+  }
+
+  /**
+   * Tells whether the node can match the empty string.
+   *
+   * @return true if the node can match the empty string
+   */
+  boolean isNullable() {
+    switch (kind) {
+      case EMPTY:
+        return true;
+      case BYTES:
+        return false;
+      case CONCATENATION:
+        return children.stream().allMatch(RegexNode::isNullable);
+      case ALTERNATION:
+        return children.stream().anyMatch(RegexNode::isNullable);
+      case GROUP:
+        return children.get(0).isNullable();
+      default:
+        return minimum == 0 || children.get(0).isNullable();
+    }
+  }
+}
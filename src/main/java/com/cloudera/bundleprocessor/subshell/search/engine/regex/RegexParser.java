@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * RegexParser parses the subset of the {@link Pattern} syntax
+ * which can be matched by a {@link LazyDfa}:
+ * literals, escapes, character classes, the predefined classes
+ * {@code \d \w \s} and their negations, the dot, capturing
+ * and non-capturing groups, alternations and greedy or lazy quantifiers.
+ * Anything else (e.g. anchors, word boundaries, lookarounds,
+ * backreferences, possessive quantifiers, flags) results in an
+ * {@link UnsupportedRegexException}, and the pattern has to be matched
+ * with {@link java.util.regex}.
+ * The characters are code points, they are matched as their
+ * UTF-8 encoded bytes (see {@link CodePointSet}).
+ */
+final class RegexParser {
+
+  /**
+   * Larger counted repetitions would blow up the program.
+   */
+  private static final int MAX_REPETITIONS = 1000;
+  /**
+   * The dot doesn't match the line terminators.
+   */
+  private static final CodePointSet DOT =
+      CodePointSet.of('\n', '\r', 0x85, 0x2028, 0x2029).complement();
+  private static final CodePointSet DIGITS = CodePointSet.range('0', '9');
+  private static final CodePointSet WORD_CHARACTERS = CodePointSet.union(
+      DIGITS, CodePointSet.range('a', 'z'), CodePointSet.range('A', 'Z'),
+      CodePointSet.of('_'));
+  private static final CodePointSet SPACES =
+      CodePointSet.of(' ', '\t', '\n', 0x0B, '\f', '\r');
+
+  private final String regex;
+  private int position;
+  private int groupCount;
+
+  private RegexParser(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * Parses the pattern.
+   *
+   * @param pattern the compiled pattern
+   * @return the syntax tree of the pattern
+   * @throws UnsupportedRegexException if the pattern uses a feature
+   *                                   which is not supported
+   */
+  static RegexNode parse(Pattern pattern) {
+    if (pattern.flags() != 0) {
+      throw new UnsupportedRegexException("flags");
+    }
+    RegexParser parser = new RegexParser(pattern.pattern());
+    try {
+      RegexNode node = parser.parseAlternation();
+      if (parser.position < parser.regex.length()) {
+        throw new UnsupportedRegexException("unbalanced group");
+      }
+      return node;
+    } catch (IndexOutOfBoundsException e) {
+      throw new UnsupportedRegexException("unexpected end");
+    }
+  }
+
+  private RegexNode parseAlternation() {
+    List<RegexNode> alternatives = new ArrayList<>();
+    alternatives.add(parseSequence());
+    while (position < regex.length() && regex.charAt(position) == '|') {
+      position++;
+      alternatives.add(parseSequence());
+    }
+    return RegexNode.alternation(alternatives);
+  }
+
+  private RegexNode parseSequence() {
+    List<RegexNode> items = new ArrayList<>();
+    while (position < regex.length()) {
+      char c = regex.charAt(position);
+      if (c == '|' || c == ')') {
+        break;
+      }
+      items.add(parseQuantifier(parseAtom()));
+    }
+    return RegexNode.concatenation(items);
+  }
+
+  private RegexNode parseAtom() {
+    char c = regex.charAt(position++);
+    switch (c) {
+      case '(':
+        return parseGroup();
+      case '[':
+        return parseClass().toNode();
+      case '.':
+        return DOT.toNode();
+      case '\\':
+        return parseEscape().toNode();
+      case '^':
+      case '$':
+      case '*':
+      case '+':
+      case '?':
+      case '{':
+        throw new UnsupportedRegexException("'" + c + "'");
+      default:
+        return CodePointSet.of(parseCodePoint()).toNode();
+    }
+  }
+
+  /**
+   * Parses the code point starting with the character before position.
+   */
+  private int parseCodePoint() {
+    int codePoint = checkCodePoint(regex.codePointAt(position - 1));
+    position += Character.charCount(codePoint) - 1;
+    return codePoint;
+  }
+
+  private RegexNode parseGroup() {
+    // the groups are numbered in the order of their opening parentheses,
+    // the named ones included, like in java.util.regex
+    int group = -1;
+    if (regex.startsWith("?:", position)) {
+      position += 2;
+    } else if (regex.startsWith("?<", position)
+        && Character.isLetter(regex.charAt(position + 2))) {
+      position = regex.indexOf('>', position) + 1;
+      group = ++groupCount;
+    } else if (regex.charAt(position) == '?') {
+      throw new UnsupportedRegexException("special group");
+    } else {
+      group = ++groupCount;
+    }
+    RegexNode node = parseAlternation();
+    if (position >= regex.length() || regex.charAt(position) != ')') {
+      throw new UnsupportedRegexException("unclosed group");
+    }
+    position++;
+    return group < 0 ? node : RegexNode.group(node, group);
+  }
+
+  private RegexNode parseQuantifier(RegexNode atom) {
+    if (position >= regex.length()) {
+      return atom;
+    }
+    int minimum;
+    int maximum;
+    switch (regex.charAt(position)) {
+      case '*':
+        minimum = 0;
+        maximum = RegexNode.UNBOUNDED;
+        break;
+      case '+':
+        minimum = 1;
+        maximum = RegexNode.UNBOUNDED;
+        break;
+      case '?':
+        minimum = 0;
+        maximum = 1;
+        break;
+      case '{':
+        return parseCountedRepetition(atom);
+      default:
+        return atom;
+    }
+    position++;
+    return createRepetition(atom, minimum, maximum);
+  }
+
+  private RegexNode parseCountedRepetition(RegexNode atom) {
+    position++;
+    int minimum = parseNumber();
+    int maximum = minimum;
+    if (regex.charAt(position) == ',') {
+      position++;
+      maximum = regex.charAt(position) == '}'
+          ? RegexNode.UNBOUNDED : parseNumber();
+    }
+    if (regex.charAt(position) != '}') {
+      throw new UnsupportedRegexException("repetition");
+    }
+    position++;
+    return createRepetition(atom, minimum, maximum);
+  }
+
+  private int parseNumber() {
+    int start = position;
+    while (Character.isDigit(regex.charAt(position))) {
+      position++;
+    }
+    if (position == start || position - start > 4) {
+      throw new UnsupportedRegexException("repetition count");
+    }
+    int number = Integer.parseInt(regex.substring(start, position));
+    if (number > MAX_REPETITIONS) {
+      throw new UnsupportedRegexException("repetition count");
+    }
+    return number;
+  }
+
+  private RegexNode createRepetition(RegexNode atom, int minimum,
+                                     int maximum) {
+    boolean greedy = true;
+    if (position < regex.length()) {
+      char c = regex.charAt(position);
+      if (c == '?') {
+        greedy = false;
+        position++;
+      } else if (c == '+') {
+        throw new UnsupportedRegexException("possessive quantifier");
+      }
+    }
+    if (position < regex.length()
+        && "*+?{".indexOf(regex.charAt(position)) >= 0) {
+      throw new UnsupportedRegexException("repeated quantifier");
+    }
+    if (minimum == 1 && maximum == 1) {
+      return atom;
+    }
+    if (atom.isNullable()) {
+      // java.util.regex stops the iterations matching the empty string
+      // in its own way
+      throw new UnsupportedRegexException("repeated empty match");
+    }
+    return RegexNode.repetition(atom, minimum, maximum, greedy);
+  }
+
+  private CodePointSet parseClass() {
+    boolean negated = regex.charAt(position) == '^';
+    if (negated) {
+      position++;
+    }
+    if (regex.charAt(position) == ']') {
+      throw new UnsupportedRegexException("empty class");
+    }
+    List<CodePointSet> items = new ArrayList<>();
+    while (regex.charAt(position) != ']') {
+      char c = regex.charAt(position++);
+      if (c == '[' || (c == '&' && regex.charAt(position) == '&')) {
+        throw new UnsupportedRegexException("class operation");
+      }
+      CodePointSet item = c == '\\' ? parseEscape() : null;
+      int first = item == null ? parseCodePoint() : item.getSingle();
+      boolean single = first >= 0;
+      boolean rangeFollows = regex.charAt(position) == '-'
+          && regex.charAt(position + 1) != ']';
+      if (rangeFollows && !single) {
+        throw new UnsupportedRegexException("range");
+      }
+      if (rangeFollows) {
+        position++;
+        char last = regex.charAt(position++);
+        if (last == '[') {
+          throw new UnsupportedRegexException("class operation");
+        }
+        int end = last == '\\' ? parseEscape().getSingle()
+            : parseCodePoint();
+        if (end < 0 || first > end) {
+          throw new UnsupportedRegexException("range");
+        }
+        items.add(CodePointSet.range(first, end));
+        if (regex.charAt(position) == '-'
+            && regex.charAt(position + 1) != ']') {
+          throw new UnsupportedRegexException("range");
+        }
+      } else {
+        items.add(item != null ? item : CodePointSet.of(first));
+      }
+    }
+    position++;
+    CodePointSet set = CodePointSet.union(items.toArray(new CodePointSet[0]));
+    return negated ? set.complement() : set;
+  }
+
+  /**
+   * Parses an escape sequence after the backslash.
+   */
+  private CodePointSet parseEscape() {
+    char c = regex.charAt(position++);
+    switch (c) {
+      case 'd':
+        return DIGITS;
+      case 'D':
+        return DIGITS.complement();
+      case 'w':
+        return WORD_CHARACTERS;
+      case 'W':
+        return WORD_CHARACTERS.complement();
+      case 's':
+        return SPACES;
+      case 'S':
+        return SPACES.complement();
+      case 't':
+        return CodePointSet.of('\t');
+      case 'n':
+        return CodePointSet.of('\n');
+      case 'r':
+        return CodePointSet.of('\r');
+      case 'f':
+        return CodePointSet.of('\f');
+      case 'a':
+        return CodePointSet.of(0x07);
+      case 'e':
+        return CodePointSet.of(0x1B);
+      case 'x':
+        return CodePointSet.of(parseHex(2));
+      case 'u':
+        return CodePointSet.of(parseUnicodeEscape());
+      case 'c':
+        return CodePointSet.of(regex.charAt(position++) ^ 64);
+      case '0':
+        return CodePointSet.of(parseOctal());
+      default:
+        if (Character.isLetterOrDigit(c)) {
+          throw new UnsupportedRegexException("\\" + c);
+        }
+        return CodePointSet.of(parseCodePoint());
+    }
+  }
+
+  /**
+   * Parses the hexadecimal digits of a unicode escape, and the second
+   * escape of a surrogate pair.
+   */
+  private int parseUnicodeEscape() {
+    char high = (char) parseHex(4);
+    if (Character.isHighSurrogate(high)
+        && regex.startsWith("\\u", position)) {
+      position += 2;
+      char low = (char) parseHex(4);
+      if (Character.isLowSurrogate(low)) {
+        return Character.toCodePoint(high, low);
+      }
+    }
+    return checkCodePoint(high);
+  }
+
+  private int parseHex(int digits) {
+    int value = 0;
+    for (int i = 0; i < digits; i++) {
+      int digit = Character.digit(regex.charAt(position++), 16);
+      if (digit < 0) {
+        throw new UnsupportedRegexException("hexadecimal escape");
+      }
+      value = value * 16 + digit;
+    }
+    return value;
+  }
+
+  private int parseOctal() {
+    int value = 0;
+    int digits = 0;
+    while (digits < 3 && position < regex.length()) {
+      int digit = Character.digit(regex.charAt(position), 8);
+      if (digit < 0 || value * 8 + digit > 0377) {
+        break;
+      }
+      value = value * 8 + digit;
+      position++;
+      digits++;
+    }
+    if (digits == 0) {
+      throw new UnsupportedRegexException("octal escape");
+    }
+    return value;
+  }
+
+  /**
+   * The surrogates never appear in the decoded text on their own.
+   */
+  private static int checkCodePoint(int codePoint) {
+    if (Character.isSurrogate((char) codePoint)
+        && Character.isBmpCodePoint(codePoint)) {
+      throw new UnsupportedRegexException("surrogate");
+    }
+    return codePoint;
+  }
+
+  /**
+   * Signals a pattern which can't be matched by a {@link LazyDfa}.
+   */
+  static final class UnsupportedRegexException extends RuntimeException {
+
+    UnsupportedRegexException(String feature) {
+      super("Unsupported by the DFA: " + feature);
+    }
+  }
+}
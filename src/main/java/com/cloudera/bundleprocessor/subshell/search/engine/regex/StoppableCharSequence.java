@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * StoppableCharSequence lets a {@link java.util.regex.Matcher}
+ * be stopped in the middle of a match, e.g. while it backtracks
+ * for a very long time: it checks the stop condition
+ * after every {@link #CHECK_INTERVAL} characters read by the matcher,
+ * and throws a {@link CancellationException} once it holds.
+ */
+final class StoppableCharSequence implements CharSequence {
+
+  static final int CHECK_INTERVAL = 1 << 12;
+
+  private final CharSequence sequence;
+  private final BooleanSupplier stopped;
+  private int reads;
+
+  StoppableCharSequence(CharSequence sequence, BooleanSupplier stopped) {
+    this.sequence = sequence;
+    this.stopped = stopped;
+  }
+
+  @Override
+  public int length() {
+    return sequence.length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    if ((++reads & (CHECK_INTERVAL - 1)) == 0 && stopped.getAsBoolean()) {
+      throw new CancellationException("The matching was stopped");
+    }
+    return sequence.charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return sequence.subSequence(start, end);
+  }
+
+  @Override
+  @NotNull
+  public String toString() {
+    return sequence.toString();
+  }
+}
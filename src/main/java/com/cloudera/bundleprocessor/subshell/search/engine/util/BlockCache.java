@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BlockCache shares the decompressed blocks of the
+ * {@link BlockCompressedLog}s between the sequences reading them,
+ * also across queries. The blocks are decompressed on demand,
+ * outside the lock of the cache, so the threads reading different blocks
+ * decompress them in parallel. The cached blocks are evicted
+ * in least recently used order to keep their size below the limit.
+ * The evicted blocks stay valid while a sequence still reads them,
+ * they are only dropped from the cache.
+ * The compressed logs are kept open until the cache is closed.
+ * The cache is thread-safe.
+ */
+public final class BlockCache implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlockCache.class);
+
+  /**
+   * The default limit of the cached bytes is 256 MB.
+   */
+  public static final long DEFAULT_MAX_CACHED_BYTES = 256L << 20;
+
+  private final long maxCachedBytes;
+  private final Map<File, BlockCompressedLog> logs = new HashMap<>();
+  private final LinkedHashMap<BlockKey, ByteBuffer> blocks =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes;
+  private boolean closed;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxCachedBytes the number of decompressed bytes
+   *                       which can be cached at once
+   */
+  public BlockCache(long maxCachedBytes) {
+    if (maxCachedBytes < 1) {
+      throw new IllegalArgumentException(
+          "The limit of the cached bytes must be positive");
+    }
+    this.maxCachedBytes = maxCachedBytes;
+  }
+
+  /**
+   * Returns the number of decompressed bytes cached at the moment.
+   *
+   * @return the number of cached bytes
+   */
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /**
+   * Returns the open compressed log, opening it if necessary.
+   *
+   * @param file the block-compressed log
+   * @return the open log, which is closed by the cache
+   * @throws IOException if the log couldn't be opened
+   */
+  public synchronized BlockCompressedLog getLog(File file)
+      throws IOException {
+    if (closed) {
+      throw new IllegalStateException("The block cache is closed");
+    }
+    BlockCompressedLog log = logs.get(file);
+    if (log == null) {
+      log = BlockCompressedLog.open(file);
+      logs.put(file, log);
+    }
+    return log;
+  }
+
+  /**
+   * Returns a decompressed block of the log.
+   *
+   * @param file       the block-compressed log
+   * @param blockIndex the index of the block
+   * @return the decompressed bytes of the block
+   * @throws IOException if the block couldn't be read
+   */
+  public ByteBuffer getBlock(File file, long blockIndex) throws IOException {
+    BlockKey key = new BlockKey(file, blockIndex);
+    BlockCompressedLog log;
+    synchronized (this) {
+      ByteBuffer block = blocks.get(key);
+      if (block != null) {
+        return block.duplicate();
+      }
+      log = getLog(file);
+    }
+    ByteBuffer block = log.readBlock(blockIndex);
+    synchronized (this) {
+      if (!closed && !blocks.containsKey(key)) {
+        blocks.put(key, block);
+        cachedBytes += block.capacity();
+        evict();
+      }
+    }
+    return block.duplicate();
+  }
+
+  /**
+   * Drops the cached blocks and closes the compressed logs.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    blocks.clear();
+    cachedBytes = 0;
+    for (BlockCompressedLog log : new ArrayList<>(logs.values())) {
+      try {
+        log.close();
+      } catch (IOException e) {
+        LOG.warn("Couldn't close file " + log.getFile().getName(), e);
+      }
+    }
+    logs.clear();
+  }
+
+  /**
+   * Drops the least recently used blocks
+   * while the cache is over its limit.
+   */
+  private void evict() {
+    Iterator<ByteBuffer> iterator = blocks.values().iterator();
+    while (cachedBytes > maxCachedBytes && iterator.hasNext()) {
+      cachedBytes -= iterator.next().capacity();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Identifies a block of a log.
+   */
+  private static final class BlockKey {
+
+    private final File file;
+    private final long index;
+
+    private BlockKey(File file, long index) {
+      this.file = file;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BlockKey)) {
+        return false;
+      }
+      BlockKey other = (BlockKey) o;
+      return index == other.index && file.equals(other.file);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, index);
+    }
+  }
+}
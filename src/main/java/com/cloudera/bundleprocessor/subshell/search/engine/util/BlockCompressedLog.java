@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * BlockCompressedLog is a log stored in independently deflate-compressed
+ * blocks, so any part of it can be read by decompressing only the blocks
+ * covering that part. Every block holds {@code 1 << blockShift} bytes
+ * of the log (the last one may be shorter), so the block of a position
+ * is found without a search, and the blocks can be read as the windows
+ * of a {@link SegmentedCharSequence}.
+ * The file consists of the compressed blocks, followed by the index
+ * (the positions of the blocks in the file and the end of the last one)
+ * and a fixed-size footer: the block shift, the length of the log,
+ * the position of the index and a magic number.
+ * As a channel, it reads the decompressed log, which is positioned
+ * by the offsets of the original log. The channel is not thread-safe,
+ * but the blocks can be read by multiple threads with
+ * {@link #readBlock(long)}.
+ */
+public final class BlockCompressedLog implements SeekableByteChannel {
+
+  /**
+   * The extension of the block-compressed logs,
+   * appended to the name of the original log.
+   */
+  public static final String EXTENSION = ".blocks";
+  /**
+   * The default size of a block is 1 MB.
+   */
+  public static final int DEFAULT_BLOCK_SHIFT = 20;
+  private static final long MAGIC = 0x594c50424c4f434bL;
+  private static final int FOOTER_LENGTH = 4 + 8 + 8 + 8;
+
+  private final File file;
+  private final FileChannel channel;
+  private final int blockShift;
+  private final long length;
+  private final long[] blockOffsets;
+  private long position;
+  private long currentIndex = -1;
+  private ByteBuffer current;
+
+  private BlockCompressedLog(File file, FileChannel channel, int blockShift,
+                             long length, long[] blockOffsets) {
+    this.file = file;
+    this.channel = channel;
+    this.blockShift = blockShift;
+    this.length = length;
+    this.blockOffsets = blockOffsets;
+  }
+
+  /**
+   * Tells whether the file is a block-compressed log, by its name.
+   *
+   * @param file the log file
+   * @return true if the file has the extension of the compressed logs
+   */
+  public static boolean isCompressed(File file) {
+    return file.getName().endsWith(EXTENSION);
+  }
+
+  /**
+   * Opens a block-compressed log and reads its index.
+   *
+   * @param file the block-compressed log
+   * @return the open log
+   * @throws IOException if the file couldn't be read or it is corrupted
+   */
+  public static BlockCompressedLog open(File file) throws IOException {
+    FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      if (size < FOOTER_LENGTH) {
+        throw new IOException(file.getName() + " is not a compressed log");
+      }
+      ByteBuffer footer = readFully(channel, size - FOOTER_LENGTH,
+          FOOTER_LENGTH);
+      int blockShift = footer.getInt();
+      long length = footer.getLong();
+      long indexOffset = footer.getLong();
+      if (footer.getLong() != MAGIC || blockShift < 1 || blockShift > 30
+          || length < 0 || indexOffset < 0
+          || indexOffset > size - FOOTER_LENGTH) {
+        throw new IOException(file.getName() + " is not a compressed log");
+      }
+      long blockCount = (length + (1L << blockShift) - 1) >>> blockShift;
+      if ((blockCount + 1) * 8 != size - FOOTER_LENGTH - indexOffset) {
+        throw new IOException("The index of " + file.getName()
+            + " is corrupted");
+      }
+      ByteBuffer index =
+          readFully(channel, indexOffset, (int) ((blockCount + 1) * 8));
+      long[] blockOffsets = new long[(int) blockCount + 1];
+      for (int i = 0; i < blockOffsets.length; i++) {
+        blockOffsets[i] = index.getLong();
+      }
+      return new BlockCompressedLog(file, channel, blockShift, length,
+          blockOffsets);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Compresses a log into a block-compressed log.
+   *
+   * @param source the original log
+   * @param target the block-compressed log to write
+   * @throws IOException if the files couldn't be read or written
+   */
+  public static void compress(File source, File target) throws IOException {
+    try (InputStream in = new FileInputStream(source)) {
+      write(in, target, DEFAULT_BLOCK_SHIFT);
+    }
+  }
+
+  /**
+   * Writes the content of the stream into a block-compressed log.
+   *
+   * @param in         the content of the log
+   * @param target     the block-compressed log to write
+   * @param blockShift the size of a block is {@code 1 << blockShift} bytes
+   * @throws IOException if the stream couldn't be read
+   *                     or the file couldn't be written
+   */
+  public static void write(InputStream in, File target, int blockShift)
+      throws IOException {
+    if (blockShift < 1 || blockShift > 30) {
+      throw new IllegalArgumentException("Invalid block size");
+    }
+    byte[] block = new byte[1 << blockShift];
+    byte[] compressed = new byte[block.length + block.length / 8 + 64];
+    long[] blockOffsets = new long[16];
+    int blockCount = 0;
+    long offset = 0;
+    long length = 0;
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(target)))) {
+      int read;
+      while ((read = fill(in, block)) > 0) {
+        if (blockCount + 1 >= blockOffsets.length) {
+          blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+        }
+        blockOffsets[blockCount++] = offset;
+        deflater.reset();
+        deflater.setInput(block, 0, read);
+        deflater.finish();
+        while (!deflater.finished()) {
+          int compressedLength = deflater.deflate(compressed);
+          out.write(compressed, 0, compressedLength);
+          offset += compressedLength;
+        }
+        length += read;
+      }
+      blockOffsets[blockCount] = offset;
+      for (int i = 0; i <= blockCount; i++) {
+        out.writeLong(blockOffsets[i]);
+      }
+      out.writeInt(blockShift);
+      out.writeLong(length);
+      out.writeLong(offset);
+      out.writeLong(MAGIC);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public int getBlockShift() {
+    return blockShift;
+  }
+
+  /**
+   * Returns the number of blocks.
+   *
+   * @return the number of blocks
+   */
+  public long getBlockCount() {
+    return blockOffsets.length - 1;
+  }
+
+  /**
+   * Decompresses a block. It can be called by multiple threads at once.
+   *
+   * @param blockIndex the index of the block
+   * @return the decompressed bytes of the block
+   * @throws IOException if the block couldn't be read or it is corrupted
+   */
+  public ByteBuffer readBlock(long blockIndex) throws IOException {
+    if (blockIndex < 0 || blockIndex >= getBlockCount()) {
+      throw new IndexOutOfBoundsException("Block: " + blockIndex);
+    }
+    int index = (int) blockIndex;
+    long blockStart = blockIndex << blockShift;
+    int blockLength =
+        (int) Math.min(1L << blockShift, length - blockStart);
+    ByteBuffer compressed = readFully(channel, blockOffsets[index],
+        (int) (blockOffsets[index + 1] - blockOffsets[index]));
+    byte[] block = new byte[blockLength];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed.array(), 0, compressed.limit());
+      int inflated = 0;
+      while (inflated < blockLength) {
+        int count = inflater.inflate(block, inflated, blockLength - inflated);
+        if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != blockLength) {
+        throw new IOException("Block " + blockIndex + " of "
+            + file.getName() + " is corrupted");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Block " + blockIndex + " of "
+          + file.getName() + " is corrupted", e);
+    } finally {
+      inflater.end();
+    }
+    return ByteBuffer.wrap(block);
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    if (!isOpen()) {
+      throw new ClosedChannelException();
+    }
+    if (position >= length) {
+      return -1;
+    }
+    int read = 0;
+    while (dst.hasRemaining() && position < length) {
+      long blockIndex = position >>> blockShift;
+      if (blockIndex != currentIndex) {
+        current = readBlock(blockIndex);
+        currentIndex = blockIndex;
+      }
+      int from = (int) (position - (blockIndex << blockShift));
+      int count = Math.min(dst.remaining(), current.limit() - from);
+      ByteBuffer source = current.duplicate();
+      source.position(from).limit(from + count);
+      dst.put(source);
+      position += count;
+      read += count;
+    }
+    return read;
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long position() {
+    return position;
+  }
+
+  @Override
+  public BlockCompressedLog position(long newPosition) {
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Negative position");
+    }
+    position = newPosition;
+    return this;
+  }
+
+  /**
+   * Returns the length of the decompressed log.
+   *
+   * @return the length of the log
+   */
+  @Override
+  public long size() {
+    return length;
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    current = null;
+    channel.close();
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long offset,
+                                      int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Reads the stream until the block is full or the stream ends.
+   */
+  private static int fill(InputStream in, byte[] block)
+      throws IOException {
+    int read = 0;
+    while (read < block.length) {
+      int count = in.read(block, read, block.length - read);
+      if (count < 0) {
+        break;
+      }
+      read += count;
+    }
+    return read;
+  }
+}
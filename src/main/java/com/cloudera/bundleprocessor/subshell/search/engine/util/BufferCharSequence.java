@@ -21,18 +21,15 @@ package com.cloudera.bundleprocessor.subshell.search.engine.util;
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
 
 /**
  * BufferCharSequence is providing a buffered CharSequence from the file.
+ * Every byte is represented by one character, the subsequences are views
+ * of the buffer and the text is decoded as UTF-8 by {@link #toString()}.
  */
-public class BufferCharSequence implements CharSequence {
+public class BufferCharSequence implements CharSequence, ByteSequence {
 
   private final ByteBuffer buffer;
-  private final CharsetDecoder decoder = Charset.forName("8859_1").newDecoder();
 
   /**
    * The constructor saves the ByteBuffer.
@@ -60,38 +57,27 @@ public class BufferCharSequence implements CharSequence {
    */
   @Override
   public char charAt(int index) {
-    return (char) buffer.get(index);
+    return (char) (byteAt(index) & 0xFF);
+  }
+
+  @Override
+  public byte byteAt(int index) {
+    return buffer.get(index);
   }
 
   /**
-   * Returns a CharSequence that is a subsequence of this sequence.
+   * Returns a view of the bytes between start and end.
    *
    * @see java.lang.CharSequence#subSequence(int, int)
    */
   @Override
   public CharSequence subSequence(int start, int end) {
-    int limit = buffer.limit();
-    int position = buffer.position();
-    buffer.limit(end);
-    buffer.position(start);
-    CharBuffer result = null;
-    try {
-      result = decoder.decode(buffer);
-    } catch (CharacterCodingException e) {
-      e.printStackTrace();
-    }
-    buffer.limit(limit);
-    buffer.position(position);
-    return result;
+    return new ByteSequenceView(this, start, end);
   }
 
   @Override
   @NotNull
   public String toString() {
-    try {
-      return decoder.decode(buffer).toString();
-    } catch (CharacterCodingException cce) {
-      throw new RuntimeException("Could not decode ByteBuffer", cce);
-    }
+    return Utf8Decoder.decode(this, 0, length());
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BufferUnmapper releases the memory mapping of a direct buffer immediately,
+ * instead of waiting for the garbage collector to do so.
+ * The buffer mustn't be used after it was unmapped.
+ * If the running JVM doesn't allow unmapping,
+ * releasing the mappings is left to the garbage collector.
+ */
+final class BufferUnmapper {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(BufferUnmapper.class);
+  private static final Unmapper UNMAPPER = createUnmapper();
+
+  private BufferUnmapper() {
+  }
+
+  /**
+   * Unmaps the buffer, if it is a direct buffer.
+   *
+   * @param buffer the buffer to unmap
+   */
+  static void unmap(ByteBuffer buffer) {
+    if (buffer == null || !buffer.isDirect()) {
+      return;
+    }
+    try {
+      UNMAPPER.unmap(buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("Couldn't unmap buffer", e);
+    }
+  }
+
+  private static Unmapper createUnmapper() {
+    try {
+      // Java 9 and later
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner =
+          unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      return buffer -> invokeCleaner.invoke(unsafe, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("Unsafe.invokeCleaner is not available", e);
+    }
+    try {
+      // Java 8
+      Method cleaner =
+          Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      return buffer -> {
+        Object bufferCleaner = cleaner.invoke(buffer);
+        if (bufferCleaner != null) {
+          clean.invoke(bufferCleaner);
+        }
+      };
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("DirectBuffer.cleaner is not available", e);
+    }
+    return buffer -> {
+    };
+  }
+
+  @FunctionalInterface
+  private interface Unmapper {
+    void unmap(ByteBuffer buffer)
+        throws IllegalAccessException, InvocationTargetException;
+  }
+}
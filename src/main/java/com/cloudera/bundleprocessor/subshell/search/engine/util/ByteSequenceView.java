@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * ByteSequenceView is a subsequence of a {@link ByteSequence},
+ * which shares the bytes of the original sequence instead of copying them.
+ * Like the original sequences, it represents every byte by one character,
+ * so the indexes of the view match the positions in the file.
+ * Only {@link #toString()} decodes the UTF-8 encoded text.
+ */
+public final class ByteSequenceView implements CharSequence, ByteSequence {
+
+  private final ByteSequence bytes;
+  private final int start;
+  private final int end;
+
+  /**
+   * Creates a view of the bytes between start and end.
+   *
+   * @param bytes the original sequence
+   * @param start the index of the first byte in the original sequence
+   * @param end   the index after the last byte in the original sequence
+   */
+  public ByteSequenceView(ByteSequence bytes, int start, int end) {
+    if (start < 0 || end > bytes.length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start: " + start + ", end: " + end
+              + ", length: " + bytes.length());
+    }
+    this.bytes = bytes;
+    this.start = start;
+    this.end = end;
+  }
+
+  @Override
+  public int length() {
+    return end - start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) (byteAt(index) & 0xFF);
+  }
+
+  @Override
+  public byte byteAt(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    return bytes.byteAt(start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int subStart, int subEnd) {
+    if (subStart < 0 || subEnd > length() || subStart > subEnd) {
+      throw new IndexOutOfBoundsException(
+          "start: " + subStart + ", end: " + subEnd
+              + ", length: " + length());
+    }
+    return new ByteSequenceView(bytes, start + subStart, start + subEnd);
+  }
+
+  /**
+   * Appends the decoded text of the view to the builder
+   * without creating an intermediate String.
+   *
+   * @param builder the builder to append the text to
+   */
+  public void appendTo(StringBuilder builder) {
+    Utf8Decoder.append(bytes, start, end, builder);
+  }
+
+  @Override
+  @NotNull
+  public String toString() {
+    return Utf8Decoder.decode(bytes, start, end);
+  }
+}
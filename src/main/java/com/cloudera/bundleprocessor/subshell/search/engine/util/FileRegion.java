@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.io.File;
+
+/**
+ * FileRegion is a continuous range of bytes in a file.
+ */
+public final class FileRegion {
+
+  private final File file;
+  private final long offset;
+  private final long length;
+
+  /**
+   * Creates a region of the file.
+   *
+   * @param file   the file containing the region
+   * @param offset the position of the first byte of the region
+   * @param length the number of bytes in the region
+   */
+  public FileRegion(File file, long offset, long length) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException(
+          "Invalid region: offset " + offset + ", length " + length);
+    }
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public long getEnd() {
+    return offset + length;
+  }
+
+  @Override
+  public String toString() {
+    return file.getName() + "[" + offset + ", " + getEnd() + ")";
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.util.Arrays;
+
+/**
+ * HorspoolSearcher finds a fixed sequence of bytes
+ * with the Boyer-Moore-Horspool algorithm.
+ * After a mismatch it skips ahead by up to the length of the searched bytes,
+ * so most of the bytes of the text are never looked at.
+ * HorspoolSearcher is immutable, so it can be shared between threads.
+ */
+public final class HorspoolSearcher {
+
+  private final byte[] needle;
+  private final int[] shifts = new int[256];
+
+  /**
+   * Prepares the skip table for the searched bytes.
+   *
+   * @param needle the bytes to search for
+   */
+  public HorspoolSearcher(byte[] needle) {
+    if (needle.length == 0) {
+      throw new IllegalArgumentException("Nothing to search for");
+    }
+    this.needle = needle.clone();
+    Arrays.fill(shifts, needle.length);
+    for (int i = 0; i < needle.length - 1; i++) {
+      shifts[needle[i] & 0xFF] = needle.length - 1 - i;
+    }
+  }
+
+  public int getLength() {
+    return needle.length;
+  }
+
+  /**
+   * Finds the first occurrence of the searched bytes in [from, to).
+   *
+   * @param text the text to search in
+   * @param from the index to start the search from
+   * @param to   the end of the searched range (exclusive)
+   * @return the index of the first occurrence or -1 if there is none
+   */
+  public int indexOf(ByteSequence text, int from, int to) {
+    int last = needle.length - 1;
+    byte lastByte = needle[last];
+    int position = Math.max(from, 0);
+    int end = Math.min(to, text.length()) - needle.length;
+    while (position <= end) {
+      byte b = text.byteAt(position + last);
+      if (b == lastByte) {
+        int i = last - 1;
+        while (i >= 0 && text.byteAt(position + i) == needle[i]) {
+          i--;
+        }
+        if (i < 0) {
+          return position;
+        }
+      }
+      position += shifts[b & 0xFF];
+    }
+    return -1;
+  }
+}
@@ -19,10 +19,13 @@
 package com.cloudera.bundleprocessor.subshell.search.engine.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,6 +40,11 @@ public final class LogManipulator {
   private static final String NM_REGEX = ".*NODEMANAGER.*";
   private static final Pattern RM_PATTERN = Pattern.compile(RM_REGEX);
   private static final Pattern NM_PATTERN = Pattern.compile(NM_REGEX);
+  /**
+   * The longest region which can be represented by a single CharSequence.
+   */
+  public static final int MAX_REGION_LENGTH = Integer.MAX_VALUE;
+  private static final int LINE_SEARCH_BUFFER_SIZE = 64 * 1024;
 
   private LogManipulator() {
   }
@@ -52,19 +60,251 @@ public final class LogManipulator {
   }
 
   /**
-   * {@code fromFile()} is creating a character sequence from a file
+   * Returns the length of the log, which is the length of the decompressed
+   * log for a {@link BlockCompressedLog}.
+   *
+   * @param file the log file
+   * @return the length of the log
+   * @throws IOException if the compressed log couldn't be opened
+   */
+  public static long getLength(File file) throws IOException {
+    if (!BlockCompressedLog.isCompressed(file)) {
+      return file.length();
+    }
+    try (BlockCompressedLog log = BlockCompressedLog.open(file)) {
+      return log.size();
+    }
+  }
+
+  /**
+   * Opens a channel reading the log, which reads the decompressed log
+   * for a {@link BlockCompressedLog}.
+   *
+   * @param file the log file
+   * @return the channel, which has to be closed by the caller
+   * @throws IOException if the file couldn't be opened
+   */
+  public static SeekableByteChannel openChannel(File file)
+      throws IOException {
+    if (BlockCompressedLog.isCompressed(file)) {
+      return BlockCompressedLog.open(file);
+    }
+    return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+  }
+
+  /**
+   * {@code readFile()} is creating a character sequence from a file
    * to make it easier to search with regexps.
+   * Files longer than {@link #MAX_REGION_LENGTH} have to be read
+   * region by region, see {@link #splitIntoRegions(File, long, boolean)}.
    *
    * @param file the file to process
    * @return CharSequence
+   * @throws IOException if file couldn't be red or it is too long
+   */
+  public static SegmentedCharSequence readFile(File file) throws IOException {
+    long length = getLength(file);
+    if (length > MAX_REGION_LENGTH) {
+      throw new IOException("File " + file.getName() + " is longer than "
+          + MAX_REGION_LENGTH + " bytes, it has to be read by regions");
+    }
+    return readRegion(new FileRegion(file, 0, length));
+  }
+
+  /**
+   * {@code readRegion()} is creating a character sequence
+   * from a region of a file. The caller is responsible for closing it.
+   *
+   * @param region the region to process
+   * @return the mapped region
+   * @throws IOException if the file couldn't be opened
+   */
+  public static SegmentedCharSequence readRegion(FileRegion region)
+      throws IOException {
+    if (region.getLength() > MAX_REGION_LENGTH) {
+      throw new IOException("Region " + region + " is too long");
+    }
+    if (BlockCompressedLog.isCompressed(region.getFile())) {
+      return new SegmentedCharSequence(
+          BlockCompressedLog.open(region.getFile()), region.getOffset(),
+          (int) region.getLength());
+    }
+    FileChannel channel = FileChannel.open(
+        region.getFile().toPath(), StandardOpenOption.READ);
+    return new SegmentedCharSequence(channel, region.getOffset(),
+        (int) region.getLength(), SegmentedCharSequence.DEFAULT_WINDOW_SHIFT);
+  }
+
+  /**
+   * {@code readRegion()} is creating a character sequence
+   * from a region of a file, which borrows the mapped windows of the file
+   * from the pool. The caller is responsible for closing it,
+   * which gives the windows back to the pool.
+   *
+   * @param region the region to process
+   * @param pool   the pool mapping the files
+   * @return the mapped region
+   * @throws IOException if the region is too long
+   */
+  public static SegmentedCharSequence readRegion(FileRegion region,
+                                                 MappedFilePool pool)
+      throws IOException {
+    if (region.getLength() > MAX_REGION_LENGTH) {
+      throw new IOException("Region " + region + " is too long");
+    }
+    return new SegmentedCharSequence(pool, region);
+  }
+
+  /**
+   * {@code readRegion()} is creating a character sequence
+   * from a region of a log, which borrows the mapped windows of the file
+   * from the pool, or if the log is a {@link BlockCompressedLog},
+   * the decompressed blocks from the cache.
+   * The caller is responsible for closing it.
+   *
+   * @param region     the region to process
+   * @param pool       the pool mapping the files
+   * @param blockCache the cache of the decompressed blocks
+   * @return the sequence over the region
+   * @throws IOException if the region is too long
+   *                     or the compressed log couldn't be opened
+   */
+  public static SegmentedCharSequence readRegion(FileRegion region,
+                                                 MappedFilePool pool,
+                                                 BlockCache blockCache)
+      throws IOException {
+    if (!BlockCompressedLog.isCompressed(region.getFile())) {
+      return readRegion(region, pool);
+    }
+    if (region.getLength() > MAX_REGION_LENGTH) {
+      throw new IOException("Region " + region + " is too long");
+    }
+    return new SegmentedCharSequence(blockCache, region);
+  }
+
+  /**
+   * {@code splitIntoRegions()} splits the file into regions
+   * which can be read by {@link #readRegion(FileRegion)}.
+   * The regions end on line boundaries, or if {@code recordAligned} is set,
+   * on the boundaries of timestamp-led records: a record is a line
+   * starting with a digit followed by the lines not starting with one
+   * (e.g. a log message with its stacktrace).
+   * If there is no such boundary in the range, the region is cut
+   * on a line boundary, and if there is no line boundary either,
+   * exactly at the maximal length.
+   *
+   * @param file            the file to split
+   * @param maxRegionLength the maximal length of a region
+   * @param recordAligned   whether the regions end on record boundaries
+   * @return the regions covering the whole file
+   * @throws IOException if file couldn't be red
+   */
+  public static List<FileRegion> splitIntoRegions(
+      File file, long maxRegionLength, boolean recordAligned)
+      throws IOException {
+    return splitIntoRegions(new FileRegion(file, 0, getLength(file)),
+        maxRegionLength, recordAligned);
+  }
+
+  /**
+   * {@code splitIntoRegions()} splits a part of a file into regions
+   * the same way as {@link #splitIntoRegions(File, long, boolean)}
+   * splits the whole file.
+   *
+   * @param part            the part of the file to split
+   * @param maxRegionLength the maximal length of a region
+   * @param recordAligned   whether the regions end on record boundaries
+   * @return the regions covering the part, at least one (maybe empty) region
    * @throws IOException if file couldn't be red
    */
-  public static CharSequence readFile(File file) throws IOException {
-    FileInputStream input = new FileInputStream(file);
-    FileChannel channel = input.getChannel();
-    // Create a read-only CharBuffer on the file
-    ByteBuffer bbuf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
-        (int) channel.size());
-    return new BufferCharSequence(bbuf);
+  public static List<FileRegion> splitIntoRegions(
+      FileRegion part, long maxRegionLength, boolean recordAligned)
+      throws IOException {
+    if (maxRegionLength < 1 || maxRegionLength > MAX_REGION_LENGTH) {
+      throw new IllegalArgumentException(
+          "Invalid maximal region length: " + maxRegionLength);
+    }
+    File file = part.getFile();
+    List<FileRegion> regions = new ArrayList<>();
+    try (SeekableByteChannel channel = openChannel(file)) {
+      long size = Math.min(part.getEnd(), channel.size());
+      long start = Math.min(part.getOffset(), size);
+      while (size - start > maxRegionLength) {
+        long limit = start + maxRegionLength;
+        long end = recordAligned
+            ? findBoundary(channel, start, limit, true) : -1;
+        if (end < 0) {
+          end = findBoundary(channel, start, limit, false);
+        }
+        if (end < 0) {
+          end = limit;
+        }
+        regions.add(new FileRegion(file, start, end - start));
+        start = end;
+      }
+      regions.add(new FileRegion(file, start, size - start));
+    }
+    return regions;
+  }
+
+  /**
+   * {@code findLastBoundary()} finds the end of the last complete line
+   * of the file after the lower bound, or if {@code recordAligned} is set,
+   * the beginning of the last record, which may still be continued
+   * (see {@link #splitIntoRegions(File, long, boolean)}).
+   * It is used to read the lines appended to a log which is being written.
+   *
+   * @param file          the file to read
+   * @param lowerBound    the boundary has to be after this position
+   * @param recordAligned whether the boundary is the beginning of a record
+   * @return the position of the boundary or -1 if there is no such boundary
+   * @throws IOException if file couldn't be red
+   */
+  public static long findLastBoundary(File file, long lowerBound,
+                                      boolean recordAligned)
+      throws IOException {
+    try (SeekableByteChannel channel = openChannel(file)) {
+      return findBoundary(channel, lowerBound, channel.size(), recordAligned);
+    }
+  }
+
+  /**
+   * Finds the position after the last new line in (lowerBound, limit],
+   * which is followed by a digit if {@code recordAligned} is set.
+   * If there is no such position, -1 is returned.
+   */
+  private static long findBoundary(SeekableByteChannel channel,
+                                   long lowerBound, long limit,
+                                   boolean recordAligned)
+      throws IOException {
+    long size = channel.size();
+    // one more byte is read to see the beginning of the next line
+    ByteBuffer buffer = ByteBuffer.allocate(LINE_SEARCH_BUFFER_SIZE + 1);
+    long blockEnd = limit;
+    while (blockEnd > lowerBound) {
+      long blockStart =
+          Math.max(lowerBound, blockEnd - LINE_SEARCH_BUFFER_SIZE);
+      buffer.clear();
+      buffer.limit((int) (Math.min(blockEnd + 1, size) - blockStart));
+      channel.position(blockStart);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          break;
+        }
+      }
+      int read = buffer.position();
+      for (int i = (int) (blockEnd - blockStart) - 1; i >= 0; i--) {
+        boolean nextIsDigit = i + 1 < read && isDigit(buffer.get(i + 1));
+        if (buffer.get(i) == '\n' && (!recordAligned || nextIsDigit)) {
+          return blockStart + i + 1;
+        }
+      }
+      blockEnd = blockStart;
+    }
+    return -1;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
   }
 }
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MappedFilePool shares the memory mappings of the log files
+ * between the sequences reading them, also across queries.
+ * The files are mapped in windows aligned to the multiples
+ * of the window size. A window is in use while a sequence holds it,
+ * the idle windows stay mapped until they have to be evicted
+ * to keep the number of mapped bytes and files below the limits.
+ * The windows are evicted in least recently used order.
+ * A file is kept open while any of its windows is mapped,
+ * and it is closed when its last window is unmapped.
+ * The windows in use are never unmapped,
+ * so the limits may be exceeded while they are held.
+ * The pool is thread-safe.
+ */
+public final class MappedFilePool implements Closeable {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(MappedFilePool.class);
+
+  /**
+   * The default limit of the mapped bytes is 1 GB.
+   */
+  public static final long DEFAULT_MAX_MAPPED_BYTES = 1L << 30;
+  /**
+   * The default limit of the mapped (and open) files.
+   */
+  public static final int DEFAULT_MAX_MAPPED_FILES = 256;
+
+  private final long maxMappedBytes;
+  private final int maxMappedFiles;
+  private final int windowShift;
+  private final Map<File, MappedFile> files = new HashMap<>();
+  private final LinkedHashSet<Window> idleWindows = new LinkedHashSet<>();
+  private long mappedBytes;
+  private boolean closed;
+
+  /**
+   * Creates an empty pool.
+   *
+   * @param maxMappedBytes the number of bytes which can be mapped at once
+   * @param maxMappedFiles the number of files which can be mapped at once
+   * @param windowShift    the size of a window is
+   *                       {@code 1 << windowShift} bytes
+   */
+  public MappedFilePool(long maxMappedBytes, int maxMappedFiles,
+                        int windowShift) {
+    if (maxMappedBytes < 1 || maxMappedFiles < 1) {
+      throw new IllegalArgumentException(
+          "The limits of the mapped bytes and files must be positive");
+    }
+    if (windowShift < 1 || windowShift > 30) {
+      throw new IllegalArgumentException("Invalid window size");
+    }
+    this.maxMappedBytes = maxMappedBytes;
+    this.maxMappedFiles = maxMappedFiles;
+    this.windowShift = windowShift;
+  }
+
+  public int getWindowShift() {
+    return windowShift;
+  }
+
+  /**
+   * Returns the number of bytes mapped at the moment,
+   * including the windows in use.
+   *
+   * @return the number of mapped bytes
+   */
+  public synchronized long getMappedBytes() {
+    return mappedBytes;
+  }
+
+  /**
+   * Returns the number of files mapped (and open) at the moment.
+   *
+   * @return the number of mapped files
+   */
+  public synchronized int getMappedFiles() {
+    return files.size();
+  }
+
+  /**
+   * Returns a window of the file, which covers at least
+   * {@code minLength} bytes from the start of the window.
+   * The window has to be given back with {@link #release(Window)}.
+   *
+   * @param file        the file to map
+   * @param windowIndex the index of the window in the file
+   * @param minLength   the number of bytes needed from the window
+   * @return the window in use
+   * @throws IOException if the file couldn't be mapped
+   *                     or it is shorter than needed
+   */
+  synchronized Window acquire(File file, long windowIndex, int minLength)
+      throws IOException {
+    if (closed) {
+      throw new IllegalStateException("The pool of mapped files is closed");
+    }
+    MappedFile mappedFile = files.get(file);
+    if (mappedFile == null) {
+      mappedFile = new MappedFile(file,
+          FileChannel.open(file.toPath(), StandardOpenOption.READ));
+      files.put(file, mappedFile);
+    }
+    Window window = mappedFile.windows.get(windowIndex);
+    if (window == null || window.buffer.limit() < minLength) {
+      Window shorter = window;
+      try {
+        window = map(mappedFile, windowIndex, minLength);
+      } finally {
+        closeIfUnmapped(mappedFile);
+      }
+      if (shorter != null) {
+        // the file has grown since the shorter window was mapped
+        shorter.stale = true;
+        if (idleWindows.remove(shorter)) {
+          unmap(shorter);
+        }
+      }
+    } else {
+      idleWindows.remove(window);
+    }
+    window.users++;
+    evict();
+    return window;
+  }
+
+  /**
+   * Gives back a window acquired from the pool.
+   * The window stays mapped while the limits of the pool allow it.
+   *
+   * @param window the window which is not used any more
+   */
+  synchronized void release(Window window) {
+    if (window.users <= 0) {
+      throw new IllegalStateException("The window is not in use");
+    }
+    window.users--;
+    if (window.users > 0) {
+      return;
+    }
+    if (closed || window.stale) {
+      unmap(window);
+    } else {
+      idleWindows.add(window);
+      evict();
+    }
+  }
+
+  /**
+   * Unmaps the idle windows and closes the files without windows in use.
+   * The windows in use are unmapped, when they are released.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    for (Window window : new ArrayList<>(idleWindows)) {
+      unmap(window);
+    }
+    idleWindows.clear();
+  }
+
+  private Window map(MappedFile mappedFile, long windowIndex, int minLength)
+      throws IOException {
+    long windowStart = windowIndex << windowShift;
+    long windowLength = Math.min(1L << windowShift,
+        mappedFile.channel.size() - windowStart);
+    if (windowLength < minLength) {
+      throw new IOException("File " + mappedFile.file.getName()
+          + " is shorter than " + (windowStart + minLength) + " bytes");
+    }
+    ByteBuffer buffer = mappedFile.channel.map(
+        FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+    Window window = new Window(mappedFile, windowIndex, buffer);
+    mappedFile.windows.put(windowIndex, window);
+    mappedFile.mappedWindows++;
+    mappedBytes += windowLength;
+    return window;
+  }
+
+  /**
+   * Unmaps the least recently used idle windows
+   * while the pool is over any of its limits.
+   */
+  private void evict() {
+    Iterator<Window> iterator = idleWindows.iterator();
+    while ((mappedBytes > maxMappedBytes || files.size() > maxMappedFiles)
+        && iterator.hasNext()) {
+      Window window = iterator.next();
+      iterator.remove();
+      unmap(window);
+    }
+  }
+
+  private void unmap(Window window) {
+    MappedFile mappedFile = window.file;
+    if (mappedFile.windows.get(window.index) == window) {
+      mappedFile.windows.remove(window.index);
+    }
+    mappedFile.mappedWindows--;
+    mappedBytes -= window.buffer.capacity();
+    BufferUnmapper.unmap(window.buffer);
+    closeIfUnmapped(mappedFile);
+  }
+
+  private void closeIfUnmapped(MappedFile mappedFile) {
+    if (mappedFile.mappedWindows > 0) {
+      return;
+    }
+    files.remove(mappedFile.file, mappedFile);
+    try {
+      mappedFile.channel.close();
+    } catch (IOException e) {
+      LOG.warn("Couldn't close file " + mappedFile.file.getName(), e);
+    }
+  }
+
+  /**
+   * An open file with its mapped windows.
+   */
+  private static final class MappedFile {
+
+    private final File file;
+    private final FileChannel channel;
+    private final Map<Long, Window> windows = new HashMap<>();
+    /**
+     * The number of the mapped windows,
+     * including the stale ones still in use.
+     */
+    private int mappedWindows;
+
+    private MappedFile(File file, FileChannel channel) {
+      this.file = file;
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * A mapped window of a file.
+   */
+  static final class Window {
+
+    private final MappedFile file;
+    private final long index;
+    private final ByteBuffer buffer;
+    private int users;
+    /**
+     * Whether the window was replaced by a longer mapping,
+     * so it has to be unmapped when it isn't used any more.
+     */
+    private boolean stale;
+
+    private Window(MappedFile file, long index, ByteBuffer buffer) {
+      this.file = file;
+      this.index = index;
+      this.buffer = buffer;
+    }
+
+    ByteBuffer getBuffer() {
+      return buffer;
+    }
+  }
+}
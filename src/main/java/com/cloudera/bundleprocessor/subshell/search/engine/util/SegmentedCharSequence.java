@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * SegmentedCharSequence is a CharSequence over a region of a file,
+ * which is mapped into memory in several windows.
+ * The windows are aligned to the multiples of the window size in the file
+ * and they are mapped lazily when they are accessed first,
+ * so a {@link java.util.regex.Matcher} can walk through the whole region
+ * (also across the window boundaries) without copying it onto the heap.
+ * The windows are either mapped by the sequence itself,
+ * or they are borrowed from a {@link MappedFilePool}.
+ * The sequence can be created over a {@link BlockCompressedLog} as well,
+ * then the windows are its decompressed blocks, which are decompressed
+ * by the sequence itself or borrowed from a {@link BlockCache}.
+ * The windows which are behind the matcher can be released
+ * with {@link #releaseBefore(int)}, all of them with {@link #close()}.
+ * Every byte is represented by one character, so the indexes
+ * are the positions in the region and the ASCII text is read directly.
+ * The subsequences are views of the mapped bytes,
+ * the text is decoded as UTF-8 only by their {@link #toString()},
+ * so they must not be used after the sequence is closed.
+ * The sequence is not thread-safe.
+ */
+public class SegmentedCharSequence
+    implements CharSequence, ByteSequence, Closeable {
+
+  /**
+   * The default size of a window is 64 MB.
+   */
+  public static final int DEFAULT_WINDOW_SHIFT = 26;
+
+  private final FileChannel channel;
+  private final MappedFilePool pool;
+  private final BlockCompressedLog blockLog;
+  private final BlockCache blockCache;
+  private final File file;
+  private final long offset;
+  private final int length;
+  private final int windowShift;
+  private final int windowMask;
+  private final long firstWindow;
+  private final ByteBuffer[] windows;
+  private final MappedFilePool.Window[] pooledWindows;
+  private int releasedWindows;
+  private int currentIndex = -1;
+  private ByteBuffer current;
+
+  /**
+   * Creates a sequence over the region of the channel.
+   * The sequence takes over the channel and closes it in {@link #close()}.
+   *
+   * @param channel     the channel of the file
+   * @param offset      the position of the region in the file
+   * @param length      the length of the region
+   * @param windowShift the size of a window is {@code 1 << windowShift} bytes
+   */
+  public SegmentedCharSequence(FileChannel channel, long offset, int length,
+                               int windowShift) {
+    this(channel, null, null, null, null, offset, length, windowShift);
+  }
+
+  /**
+   * Creates a sequence over a region of the compressed log.
+   * The sequence takes over the log and closes it in {@link #close()}.
+   *
+   * @param log    the compressed log
+   * @param offset the position of the region in the decompressed log
+   * @param length the length of the region
+   */
+  public SegmentedCharSequence(BlockCompressedLog log, long offset,
+                               int length) {
+    this(null, null, log, null, log.getFile(), offset, length,
+        log.getBlockShift());
+  }
+
+  /**
+   * Creates a sequence over a region of a compressed log,
+   * which borrows the decompressed blocks from the cache.
+   *
+   * @param cache  the cache of the blocks
+   * @param region the region of the decompressed log
+   * @throws IOException if the log couldn't be opened
+   */
+  public SegmentedCharSequence(BlockCache cache, FileRegion region)
+      throws IOException {
+    this(null, null, null, cache, region.getFile(), region.getOffset(),
+        (int) region.getLength(),
+        cache.getLog(region.getFile()).getBlockShift());
+  }
+
+  /**
+   * Creates a sequence over the region,
+   * which borrows the windows from the pool.
+   *
+   * @param pool   the pool mapping the file
+   * @param region the region of the file
+   */
+  public SegmentedCharSequence(MappedFilePool pool, FileRegion region) {
+    this(null, pool, null, null, region.getFile(), region.getOffset(),
+        (int) region.getLength(), pool.getWindowShift());
+  }
+
+  private SegmentedCharSequence(FileChannel channel, MappedFilePool pool,
+                                BlockCompressedLog blockLog,
+                                BlockCache blockCache, File file,
+                                long offset, int length, int windowShift) {
+    if (offset < 0 || length < 0 || windowShift < 1 || windowShift > 30) {
+      throw new IllegalArgumentException(
+          "Invalid region or window size");
+    }
+    this.channel = channel;
+    this.pool = pool;
+    this.blockLog = blockLog;
+    this.blockCache = blockCache;
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+    this.windowShift = windowShift;
+    this.windowMask = (1 << windowShift) - 1;
+    this.firstWindow = offset >>> windowShift;
+    int windowCount = length == 0 ? 0
+        : (int) (((offset + length - 1) >>> windowShift) - firstWindow + 1);
+    this.windows = new ByteBuffer[windowCount];
+    this.pooledWindows =
+        pool != null ? new MappedFilePool.Window[windowCount] : null;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) (byteAt(index) & 0xFF);
+  }
+
+  @Override
+  public byte byteAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    long position = offset + index;
+    int windowIndex = (int) ((position >>> windowShift) - firstWindow);
+    if (windowIndex != currentIndex) {
+      current = getWindow(windowIndex);
+      currentIndex = windowIndex;
+    }
+    return current.get((int) position & windowMask);
+  }
+
+  /**
+   * Returns a view of the bytes between start and end.
+   *
+   * @see java.lang.CharSequence#subSequence(int, int)
+   */
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return new ByteSequenceView(this, start, end);
+  }
+
+  /**
+   * Releases the windows which are completely before the given index.
+   * They are mapped again, if they are accessed later.
+   *
+   * @param index the first index which is still needed
+   */
+  public void releaseBefore(int index) {
+    long position = offset + Math.min(index, length);
+    int lastReleased = (int) Math.min(windows.length,
+        (position >>> windowShift) - firstWindow);
+    for (int i = releasedWindows; i < lastReleased; i++) {
+      releaseWindow(i);
+    }
+    releasedWindows = Math.max(releasedWindows, lastReleased);
+  }
+
+  /**
+   * Releases every window and closes the channel or the compressed log,
+   * if the sequence owns one.
+   *
+   * @throws IOException if the channel couldn't be closed
+   */
+  @Override
+  public void close() throws IOException {
+    for (int i = 0; i < windows.length; i++) {
+      releaseWindow(i);
+    }
+    if (channel != null) {
+      channel.close();
+    }
+    if (blockLog != null) {
+      blockLog.close();
+    }
+  }
+
+  @Override
+  @NotNull
+  public String toString() {
+    return Utf8Decoder.decode(this, 0, length);
+  }
+
+  private ByteBuffer getWindow(int windowIndex) {
+    if (windowIndex < 0 || windowIndex >= windows.length) {
+      throw new IndexOutOfBoundsException("Window: " + windowIndex);
+    }
+    ByteBuffer window = windows[windowIndex];
+    if (window == null) {
+      long windowStart = (firstWindow + windowIndex) << windowShift;
+      // the bytes of the window needed by the region
+      int windowLength =
+          (int) (Math.min(windowStart + windowMask + 1L, offset + length)
+              - windowStart);
+      try {
+        if (pool != null) {
+          MappedFilePool.Window pooledWindow = pool.acquire(
+              file, firstWindow + windowIndex, windowLength);
+          pooledWindows[windowIndex] = pooledWindow;
+          window = pooledWindow.getBuffer();
+        } else if (blockCache != null) {
+          window = blockCache.getBlock(file, firstWindow + windowIndex);
+        } else if (blockLog != null) {
+          window = blockLog.readBlock(firstWindow + windowIndex);
+        } else {
+          window = channel.map(FileChannel.MapMode.READ_ONLY,
+              windowStart, windowLength);
+        }
+        if (window.limit() < windowLength) {
+          throw new IOException("The log is shorter than "
+              + (windowStart + windowLength) + " bytes");
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(
+            "Couldn't map window " + windowIndex + " of the file", e);
+      }
+      windows[windowIndex] = window;
+    }
+    return window;
+  }
+
+  private void releaseWindow(int windowIndex) {
+    ByteBuffer window = windows[windowIndex];
+    if (window == null) {
+      return;
+    }
+    windows[windowIndex] = null;
+    if (windowIndex == currentIndex) {
+      currentIndex = -1;
+      current = null;
+    }
+    if (pool != null) {
+      pool.release(pooledWindows[windowIndex]);
+      pooledWindows[windowIndex] = null;
+    } else if (channel != null) {
+      BufferUnmapper.unmap(window);
+    }
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Utf8CharSequence is a CharSequence of the UTF-8 decoded text
+ * of a range of a {@link ByteSequence}, so a
+ * {@link java.util.regex.Matcher} sees the same characters
+ * as the decoded text of its matches. The bytes are decoded
+ * the same way as by {@link Utf8Decoder}.
+ * The characters are counted when the sequence is created,
+ * but they are decoded lazily in blocks, and only the last few blocks
+ * are kept, so the sequence needs little memory
+ * even over a large range of a mapped file.
+ * The character indexes are translated to the indexes of the bytes
+ * with {@link #toByteIndex(int)} and back with {@link #toCharIndex(int)}.
+ * The sequence is not thread-safe.
+ */
+public final class Utf8CharSequence implements CharSequence {
+
+  /**
+   * The blocks start at the first character
+   * at or after the multiples of this many bytes.
+   */
+  private static final int BLOCK_SIZE = 4096;
+  private static final int MAX_SEQUENCE_LENGTH = 4;
+  private static final int CACHED_BLOCKS = 2;
+
+  private final ByteSequence bytes;
+  private final int start;
+  private final int end;
+  private final int length;
+  private final int[] blockByteStarts;
+  private final int[] blockCharStarts;
+  private final int blockCount;
+  private final int[] cachedBlocks = new int[CACHED_BLOCKS];
+  private final char[][] cachedChars = new char[CACHED_BLOCKS][];
+  private final int[][] cachedOffsets = new int[CACHED_BLOCKS][];
+  private int lastSlot;
+
+  /**
+   * Creates a sequence of the text between start and end.
+   * Both of them have to be at the start of a character
+   * (or at the end of the bytes), see {@link #alignStart}.
+   *
+   * @param bytes the encoded text
+   * @param start the index of the first byte
+   * @param end   the index after the last byte
+   */
+  public Utf8CharSequence(ByteSequence bytes, int start, int end) {
+    if (start < 0 || end > bytes.length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start: " + start + ", end: " + end
+              + ", length: " + bytes.length());
+    }
+    this.bytes = bytes;
+    this.start = start;
+    this.end = end;
+    int maxBlocks = (end - start) / BLOCK_SIZE + 1;
+    this.blockByteStarts = new int[maxBlocks];
+    this.blockCharStarts = new int[maxBlocks];
+    int blocks = 0;
+    int chars = 0;
+    int index = start;
+    int nextBlock = start;
+    while (index < end) {
+      if (index >= nextBlock) {
+        blockByteStarts[blocks] = index;
+        blockCharStarts[blocks] = chars;
+        blocks++;
+        nextBlock = index + BLOCK_SIZE;
+      }
+      if ((bytes.byteAt(index) & 0x80) == 0) {
+        chars++;
+        index++;
+      } else {
+        int next = Utf8Decoder.decodeNext(bytes, index, end);
+        chars += Character.charCount(Utf8Decoder.getCodePoint(next));
+        index += Utf8Decoder.getByteCount(next);
+      }
+    }
+    this.blockCount = blocks;
+    this.length = chars;
+    Arrays.fill(cachedBlocks, -1);
+  }
+
+  /**
+   * Moves the index back to the start of the character it is in,
+   * so a sequence can be created from there.
+   *
+   * @param bytes the encoded text
+   * @param index the index of a byte
+   * @return the index of the first byte of the character
+   */
+  public static int alignStart(ByteSequence bytes, int index) {
+    if (index >= bytes.length()) {
+      return index;
+    }
+    int aligned = index;
+    while (aligned > 0 && index - aligned < MAX_SEQUENCE_LENGTH - 1
+        && isContinuation(bytes, aligned)) {
+      aligned--;
+    }
+    // a continuation byte without a lead byte is a character itself
+    return isContinuation(bytes, aligned) ? index : aligned;
+  }
+
+  /**
+   * Moves the index forward to the end of the character it is in,
+   * so a sequence can be created until there.
+   *
+   * @param bytes the encoded text
+   * @param index the index after a byte
+   * @return the index after the last byte of the character
+   */
+  public static int alignEnd(ByteSequence bytes, int index) {
+    int aligned = index;
+    while (aligned < bytes.length()
+        && aligned - index < MAX_SEQUENCE_LENGTH - 1
+        && isContinuation(bytes, aligned)) {
+      aligned++;
+    }
+    return aligned;
+  }
+
+  private static boolean isContinuation(ByteSequence bytes, int index) {
+    return (bytes.byteAt(index) & 0xC0) == 0x80;
+  }
+
+  /**
+   * Returns the index of the first byte of the sequence
+   * in the encoded text.
+   *
+   * @return the start of the sequence
+   */
+  public int getStart() {
+    return start;
+  }
+
+  /**
+   * Returns the index after the last byte of the sequence
+   * in the encoded text.
+   *
+   * @return the end of the sequence
+   */
+  public int getEnd() {
+    return end;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    int slot = findSlot(index);
+    int block = cachedBlocks[slot];
+    return cachedChars[slot][index - blockCharStarts[block]];
+  }
+
+  /**
+   * Translates the index of a character to the index of its first byte
+   * in the encoded text. The second character of a surrogate pair
+   * is translated to the first byte of the pair.
+   *
+   * @param charIndex the index of a character, or the length
+   * @return the index of the byte, or -1 if charIndex is -1
+   */
+  public int toByteIndex(int charIndex) {
+    if (charIndex < 0) {
+      return charIndex;
+    }
+    if (charIndex >= length) {
+      return end;
+    }
+    int slot = findSlot(charIndex);
+    int block = cachedBlocks[slot];
+    return cachedOffsets[slot][charIndex - blockCharStarts[block]];
+  }
+
+  /**
+   * Translates the index of a byte in the encoded text to the index
+   * of the character starting there, or of the next character
+   * if the byte is in the middle of one.
+   *
+   * @param byteIndex the index of a byte in [start, end]
+   * @return the index of the character
+   */
+  public int toCharIndex(int byteIndex) {
+    if (byteIndex < start || byteIndex > end) {
+      throw new IndexOutOfBoundsException(
+          "Index: " + byteIndex + ", start: " + start + ", end: " + end);
+    }
+    if (byteIndex == end) {
+      return length;
+    }
+    int block = findBlock(blockByteStarts, blockCount, byteIndex);
+    int slot = loadBlock(block);
+    int[] offsets = cachedOffsets[slot];
+    int count = getBlockLength(block);
+    int found = Arrays.binarySearch(offsets, 0, count, byteIndex);
+    // in the middle of a character the next one is returned
+    int position = found >= 0 ? found : -found - 1;
+    if (position > 0 && offsets[position - 1] == byteIndex) {
+      // both characters of a surrogate pair start at the same byte
+      position--;
+    }
+    return blockCharStarts[block] + position;
+  }
+
+  @Override
+  public CharSequence subSequence(int subStart, int subEnd) {
+    if (subStart < 0 || subEnd > length || subStart > subEnd) {
+      throw new IndexOutOfBoundsException(
+          "start: " + subStart + ", end: " + subEnd
+              + ", length: " + length);
+    }
+    return Utf8Decoder.decode(bytes, toByteIndex(subStart),
+        toByteIndex(subEnd));
+  }
+
+  @Override
+  @NotNull
+  public String toString() {
+    return Utf8Decoder.decode(bytes, start, end);
+  }
+
+  private int findSlot(int charIndex) {
+    int block = cachedBlocks[lastSlot];
+    if (block >= 0 && charIndex >= blockCharStarts[block]
+        && charIndex < blockCharStarts[block] + getBlockLength(block)) {
+      return lastSlot;
+    }
+    return loadBlock(findBlock(blockCharStarts, blockCount, charIndex));
+  }
+
+  private static int findBlock(int[] blockStarts, int count, int index) {
+    int low = 0;
+    int high = count - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (blockStarts[middle] <= index) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  private int getBlockLength(int block) {
+    int next = block + 1 < blockCount ? blockCharStarts[block + 1] : length;
+    return next - blockCharStarts[block];
+  }
+
+  /**
+   * Decodes the block into the least recently used slot
+   * unless it is cached already.
+   *
+   * @return the slot of the block
+   */
+  private int loadBlock(int block) {
+    for (int slot = 0; slot < CACHED_BLOCKS; slot++) {
+      if (cachedBlocks[slot] == block) {
+        lastSlot = slot;
+        return slot;
+      }
+    }
+    int slot = (lastSlot + 1) % CACHED_BLOCKS;
+    int count = getBlockLength(block);
+    if (cachedChars[slot] == null || cachedChars[slot].length < count) {
+      cachedChars[slot] = new char[count];
+      cachedOffsets[slot] = new int[count];
+    }
+    char[] chars = cachedChars[slot];
+    int[] offsets = cachedOffsets[slot];
+    int index = blockByteStarts[block];
+    for (int i = 0; i < count; ) {
+      int next = Utf8Decoder.decodeNext(bytes, index, end);
+      int codePoint = Utf8Decoder.getCodePoint(next);
+      if (Character.isBmpCodePoint(codePoint)) {
+        chars[i] = (char) codePoint;
+        offsets[i++] = index;
+      } else {
+        chars[i] = Character.highSurrogate(codePoint);
+        offsets[i++] = index;
+        chars[i] = Character.lowSurrogate(codePoint);
+        offsets[i++] = index;
+      }
+      index += Utf8Decoder.getByteCount(next);
+    }
+    cachedBlocks[slot] = block;
+    lastSlot = slot;
+    return slot;
+  }
+}
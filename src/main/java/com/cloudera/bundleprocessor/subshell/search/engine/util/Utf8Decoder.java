@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+/**
+ * Utf8Decoder decodes the UTF-8 encoded text of a {@link ByteSequence}.
+ * The ASCII bytes are copied directly, the bytes which are not part of
+ * a valid UTF-8 sequence are decoded as ISO-8859-1,
+ * so the logs written in a single-byte charset remain readable.
+ */
+public final class Utf8Decoder {
+
+  private Utf8Decoder() {
+  }
+
+  /**
+   * Decodes the bytes between start and end into a String.
+   *
+   * @param bytes the encoded text
+   * @param start the index of the first byte
+   * @param end   the index after the last byte
+   * @return the decoded text
+   */
+  public static String decode(ByteSequence bytes, int start, int end) {
+    StringBuilder builder = new StringBuilder(end - start);
+    append(bytes, start, end, builder);
+    return builder.toString();
+  }
+
+  /**
+   * Decodes the bytes between start and end to the end of the builder.
+   *
+   * @param bytes   the encoded text
+   * @param start   the index of the first byte
+   * @param end     the index after the last byte
+   * @param builder the builder to append the characters to
+   */
+  public static void append(ByteSequence bytes, int start, int end,
+                            StringBuilder builder) {
+    if (start < 0 || end > bytes.length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start: " + start + ", end: " + end
+              + ", length: " + bytes.length());
+    }
+    int index = start;
+    while (index < end) {
+      int lead = bytes.byteAt(index) & 0xFF;
+      if (lead < 0x80) {
+        builder.append((char) lead);
+        index++;
+        continue;
+      }
+      int next = decodeNext(bytes, index, end);
+      builder.appendCodePoint(getCodePoint(next));
+      index += getByteCount(next);
+    }
+  }
+
+  /**
+   * Finds the first byte which is not a part of a valid UTF-8 encoded
+   * character, and is decoded as an ISO-8859-1 character by itself.
+   *
+   * @param bytes the encoded text
+   * @param start the index of the first byte
+   * @param end   the index after the last byte
+   * @return the index of the invalid byte, or -1 if the text is valid
+   */
+  public static int findInvalid(ByteSequence bytes, int start, int end) {
+    int index = start;
+    while (index < end) {
+      if (bytes.byteAt(index) >= 0) {
+        index++;
+        continue;
+      }
+      int byteCount = getByteCount(decodeNext(bytes, index, end));
+      if (byteCount == 1) {
+        return index;
+      }
+      index += byteCount;
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the character starting at the given index.
+   * The code point and the number of its bytes are packed into an int,
+   * they are read by {@link #getCodePoint} and {@link #getByteCount}.
+   *
+   * @param bytes the encoded text
+   * @param index the index of the first byte of the character
+   * @param end   the index after the last byte of the text
+   * @return the decoded character
+   */
+  static int decodeNext(ByteSequence bytes, int index, int end) {
+    int lead = bytes.byteAt(index) & 0xFF;
+    if (lead < 0x80) {
+      return lead << 3 | 1;
+    }
+    int length = getSequenceLength(lead);
+    int codePoint = decodeSequence(bytes, index, end, length);
+    return codePoint < 0 ? lead << 3 | 1 : codePoint << 3 | length;
+  }
+
+  static int getCodePoint(int decoded) {
+    return decoded >>> 3;
+  }
+
+  static int getByteCount(int decoded) {
+    return decoded & 7;
+  }
+
+  private static int getSequenceLength(int lead) {
+    if (lead >= 0xC2 && lead <= 0xDF) {
+      return 2;
+    } else if (lead >= 0xE0 && lead <= 0xEF) {
+      return 3;
+    } else if (lead >= 0xF0 && lead <= 0xF4) {
+      return 4;
+    }
+    return 0;
+  }
+
+  /**
+   * Decodes the sequence starting at the given index.
+   *
+   * @return the code point or -1 if the sequence is invalid
+   */
+  private static int decodeSequence(ByteSequence bytes, int index, int end,
+                                    int length) {
+    if (length == 0 || index + length > end) {
+      return -1;
+    }
+    int codePoint = bytes.byteAt(index) & (0xFF >>> (length + 1));
+    for (int i = 1; i < length; i++) {
+      int next = bytes.byteAt(index + i) & 0xFF;
+      if ((next & 0xC0) != 0x80) {
+        return -1;
+      }
+      codePoint = (codePoint << 6) | (next & 0x3F);
+    }
+    boolean overlong = (length == 3 && codePoint < 0x800)
+        || (length == 4 && codePoint < 0x10000);
+    boolean surrogate = codePoint >= 0xD800 && codePoint <= 0xDFFF;
+    if (overlong || surrogate || codePoint > Character.MAX_CODE_POINT) {
+      return -1;
+    }
+    return codePoint;
+  }
+}
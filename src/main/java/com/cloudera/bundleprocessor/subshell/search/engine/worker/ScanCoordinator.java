@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.worker;
+
+import com.cloudera.bundleprocessor.subshell.context.Config;
+import com.cloudera.bundleprocessor.subshell.search.engine.GroupNames;
+import com.cloudera.bundleprocessor.subshell.search.engine.MatchListener;
+import com.cloudera.bundleprocessor.subshell.search.engine.Query;
+import com.cloudera.bundleprocessor.subshell.search.engine.RecordedMatch;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ScanCoordinator splits the scan of very large bundles
+ * across {@link ScanWorker}s, each running in its own JVM.
+ * The logs are split into contiguous shards of about the same size,
+ * every worker scans a shard, and the matches are passed
+ * to the listeners in the order of the logs.
+ * The workers are either started on this host or they are
+ * listening on the configured addresses. A started worker listens
+ * on the loopback interface and gets a random secret,
+ * the workers started by hand share the configured secret.
+ */
+public final class ScanCoordinator implements Closeable {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(ScanCoordinator.class);
+  /**
+   * How often the listeners are asked whether the search can stop,
+   * while no row arrives from the workers.
+   */
+  private static final long POLL_MILLIS = 100;
+  /**
+   * The number of rows received from a worker before they are merged.
+   * The shards are merged one after the other, so the workers of
+   * the later shards are blocked by their full queues, instead of
+   * keeping all their matches in the memory of the coordinator.
+   */
+  static final int QUEUE_CAPACITY = 1024;
+  private static final int SECRET_BYTES = 32;
+
+  private final List<Connection> connections;
+  private final List<Process> processes;
+  private final ExecutorService readers;
+
+  private ScanCoordinator(List<Connection> connections,
+                          List<Process> processes) {
+    this.connections = connections;
+    this.processes = processes;
+    this.readers = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "scan-coordinator");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts workers on this host, with the same classpath
+   * and configuration as this JVM.
+   *
+   * @param logFolder   the folder of the bundle
+   * @param config      the configuration of the workers
+   * @param workerCount the number of workers
+   * @return the coordinator of the started workers
+   */
+  public static ScanCoordinator launch(File logFolder, Config config,
+                                       int workerCount) throws IOException {
+    File configFile = File.createTempFile("scan-worker", ".json");
+    configFile.deleteOnExit();
+    ObjectMapper mapper = ScanWorker.createConfigMapper();
+    ObjectNode configTree = mapper.valueToTree(config);
+    JsonNode search = configTree.get("search");
+    if (search instanceof ObjectNode) {
+      // the started workers listen on the loopback interface,
+      // and their secret is not written to the disk
+      ((ObjectNode) search).remove(
+          Arrays.asList("scanWorkerSecret", "scanWorkerBindAddress"));
+    }
+    mapper.writeValue(configFile, configTree);
+    String secret = createSecret();
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java")
+        .toString();
+    List<Process> processes = new ArrayList<>();
+    List<Connection> connections = new ArrayList<>();
+    try {
+      for (int i = 0; i < workerCount; i++) {
+        ProcessBuilder builder = new ProcessBuilder(java,
+            "-cp", System.getProperty("java.class.path"),
+            ScanWorker.class.getName(),
+            logFolder.getAbsolutePath(), configFile.getAbsolutePath())
+            .redirectError(ProcessBuilder.Redirect.INHERIT);
+        builder.environment().put(ScanWorker.SECRET_VARIABLE, secret);
+        Process process = builder.start();
+        processes.add(process);
+      }
+      for (Process process : processes) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            process.getInputStream(), StandardCharsets.UTF_8));
+        String port = reader.readLine();
+        if (port == null) {
+          throw new IOException("A scan worker couldn't start");
+        }
+        connections.add(new Connection(new Socket(
+            InetAddress.getLoopbackAddress(), Integer.parseInt(port)),
+            secret));
+      }
+    } catch (IOException | RuntimeException e) {
+      connections.forEach(Connection::close);
+      processes.forEach(Process::destroy);
+      throw e;
+    }
+    LOG.info("Started {} scan workers", workerCount);
+    return new ScanCoordinator(connections, processes);
+  }
+
+  private static String createSecret() {
+    byte[] bytes = new byte[SECRET_BYTES];
+    new SecureRandom().nextBytes(bytes);
+    return Base64.getEncoder().encodeToString(bytes);
+  }
+
+  /**
+   * Connects to workers which were started by hand.
+   *
+   * @param addresses the {@code host:port} addresses of the workers
+   * @param secret    the secret shared with the workers
+   * @return the coordinator of the workers
+   */
+  public static ScanCoordinator connect(List<String> addresses,
+                                        String secret) throws IOException {
+    if (secret == null || secret.isEmpty()) {
+      throw new IllegalArgumentException(
+          "The scan workers can't be used without scanWorkerSecret");
+    }
+    List<Connection> connections = new ArrayList<>();
+    try {
+      for (String address : addresses) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+          throw new IllegalArgumentException(
+              "The address of a scan worker has no port: " + address);
+        }
+        connections.add(new Connection(new Socket(
+            address.substring(0, colon).trim(),
+            Integer.parseInt(address.substring(colon + 1).trim())), secret));
+      }
+    } catch (IOException | RuntimeException e) {
+      connections.forEach(Connection::close);
+      throw e;
+    }
+    return new ScanCoordinator(connections, Collections.emptyList());
+  }
+
+  public int getWorkerCount() {
+    return connections.size();
+  }
+
+  /**
+   * Evaluates the queries in the logs with the workers.
+   * Only the logs of the bundle can be searched,
+   * the file names and the last matches of a query are not searched.
+   * A search is sent to the workers once the previous one ended.
+   *
+   * @param queries   the queries without a tail limit
+   * @param listeners the listeners of the queries
+   * @param logFiles  the logs in the order of the matches
+   */
+  public synchronized void search(List<Query> queries,
+                                  List<? extends MatchListener> listeners,
+                                  List<File> logFiles) throws IOException {
+    List<List<File>> shards = splitIntoShards(logFiles, connections.size());
+    List<BlockingQueue<Row>> queues = new ArrayList<>();
+    for (int i = 0; i < shards.size(); i++) {
+      List<String> fileNames = new ArrayList<>();
+      for (File file : shards.get(i)) {
+        fileNames.add(file.getName());
+      }
+      Connection connection = connections.get(i);
+      connection.send(new ScanProtocol.SearchRequest(queries, fileNames));
+      BlockingQueue<Row> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+      readers.execute(() -> connection.readRows(queue));
+      queues.add(queue);
+    }
+    RowMerger merger = new RowMerger(queries, listeners);
+    boolean cancelled = false;
+    String error = null;
+    for (int i = 0; i < queues.size(); i++) {
+      Row row;
+      do {
+        if (!cancelled && (error != null || merger.isSatisfied())) {
+          cancelled = true;
+          for (int j = i; j < queues.size(); j++) {
+            connections.get(j).cancel();
+          }
+        }
+        row = take(queues.get(i));
+        if (row == null) {
+          continue;
+        }
+        if (row.type == ScanProtocol.ERROR) {
+          error = row.text;
+        } else if (error == null) {
+          merger.accept(row);
+        }
+      } while (row == null || !row.isLast());
+    }
+    if (error != null) {
+      throw new IOException("A scan worker failed: " + error);
+    }
+  }
+
+  private static Row take(BlockingQueue<Row> queue) throws IOException {
+    try {
+      return queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("The search was interrupted", e);
+    }
+  }
+
+  /**
+   * Splits the logs into at most {@code count} contiguous shards,
+   * each of them about the same number of bytes.
+   */
+  static List<List<File>> splitIntoShards(List<File> logFiles, int count) {
+    long total = 0;
+    for (File file : logFiles) {
+      total += file.length();
+    }
+    List<List<File>> shards = new ArrayList<>();
+    List<File> shard = new ArrayList<>();
+    long size = 0;
+    for (int i = 0; i < logFiles.size(); i++) {
+      File file = logFiles.get(i);
+      shard.add(file);
+      size += file.length();
+      int remainingShards = count - shards.size() - 1;
+      int remainingFiles = logFiles.size() - i - 1;
+      // a shard ends when it reached its share of the bytes,
+      // or when every following shard needs a file of its own
+      if (remainingShards > 0 && remainingFiles > 0
+          && (size * count >= total * (shards.size() + 1)
+          || remainingFiles <= remainingShards)) {
+        shards.add(shard);
+        shard = new ArrayList<>();
+      }
+    }
+    if (!shard.isEmpty()) {
+      shards.add(shard);
+    }
+    return shards;
+  }
+
+  /**
+   * Closes the connections and stops the started workers.
+   */
+  @Override
+  public void close() {
+    connections.forEach(Connection::close);
+    processes.forEach(Process::destroy);
+    readers.shutdownNow();
+  }
+
+  /**
+   * A row received from a worker.
+   */
+  private static final class Row {
+
+    private final int type;
+    private final int queryIndex;
+    private final String text;
+    private final int[] offsets;
+
+    Row(int type, int queryIndex, String text) {
+      this(type, queryIndex, text, null);
+    }
+
+    Row(int type, int queryIndex, String text, int[] offsets) {
+      this.type = type;
+      this.queryIndex = queryIndex;
+      this.text = text;
+      this.offsets = offsets;
+    }
+
+    boolean isLast() {
+      return type == ScanProtocol.DONE || type == ScanProtocol.ERROR;
+    }
+  }
+
+  /**
+   * Passes the rows of the workers to the listeners,
+   * until they are satisfied.
+   * The groups of the matches are read from the offsets
+   * sent by the workers, the pattern isn't matched again.
+   */
+  private static final class RowMerger {
+
+    private final List<Map<String, Integer>> groupNames;
+    private final List<? extends MatchListener> listeners;
+
+    RowMerger(List<Query> queries, List<? extends MatchListener> listeners) {
+      this.groupNames = new ArrayList<>(queries.size());
+      for (Query query : queries) {
+        groupNames.add(GroupNames.of(query.getPattern()));
+      }
+      this.listeners = listeners;
+    }
+
+    void accept(Row row) throws IOException {
+      if (row.type == ScanProtocol.DONE) {
+        return;
+      }
+      if (row.queryIndex >= listeners.size()) {
+        throw new IOException("Unknown query: " + row.queryIndex);
+      }
+      MatchListener listener = listeners.get(row.queryIndex);
+      if (listener.isSatisfied()) {
+        return;
+      }
+      if (row.type == ScanProtocol.END_OF_SOURCE) {
+        listener.onEndOfSource();
+        return;
+      }
+      listener.onMatch(new RecordedMatch(row.text, row.offsets,
+          groupNames.get(row.queryIndex)));
+      if (listener.isSatisfied()) {
+        // the rest of the log is ignored, as in a scan on this host
+        listener.onEndOfSource();
+      }
+    }
+
+    boolean isSatisfied() {
+      return listeners.stream().allMatch(MatchListener::isSatisfied);
+    }
+  }
+
+  /**
+   * The connection to a worker.
+   */
+  private static final class Connection {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Opens the connection with the secret of the worker.
+     */
+    Connection(Socket socket, String secret) throws IOException {
+      this.socket = socket;
+      try {
+        this.in = new DataInputStream(
+            new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(
+            new BufferedOutputStream(socket.getOutputStream()));
+        socket.setSoTimeout(ScanWorker.HANDSHAKE_TIMEOUT_MILLIS);
+        ScanProtocol.writeHello(out, secret);
+        out.flush();
+        int type = ScanProtocol.readFrameType(in);
+        if (type == ScanProtocol.ERROR) {
+          throw new IOException("The scan worker refused the connection: "
+              + ScanProtocol.readString(in));
+        } else if (type != ScanProtocol.HELLO) {
+          throw new IOException("The scan worker didn't answer");
+        }
+        socket.setSoTimeout(0);
+      } catch (IOException e) {
+        socket.close();
+        throw e;
+      }
+    }
+
+    void send(ScanProtocol.SearchRequest request) throws IOException {
+      ScanProtocol.writeSearch(out, request);
+      out.flush();
+    }
+
+    void cancel() {
+      try {
+        out.writeByte(ScanProtocol.CANCEL);
+        out.flush();
+      } catch (IOException e) {
+        LOG.warn("Couldn't cancel the search of a scan worker", e);
+      }
+    }
+
+    /**
+     * Reads the rows of a search, until its last row.
+     * The reading waits while the queue is full, so the worker
+     * can't send more rows than the queue holds.
+     * A broken connection ends the search with an error.
+     */
+    void readRows(BlockingQueue<Row> queue) {
+      try {
+        while (true) {
+          int type = ScanProtocol.readFrameType(in);
+          Row row;
+          if (type == ScanProtocol.MATCH) {
+            int queryIndex = ScanProtocol.readNumber(in);
+            String text = ScanProtocol.readString(in);
+            row = new Row(type, queryIndex, text,
+                ScanProtocol.readOffsets(in));
+          } else if (type == ScanProtocol.END_OF_SOURCE) {
+            row = new Row(type, ScanProtocol.readNumber(in), null);
+          } else if (type == ScanProtocol.DONE) {
+            row = new Row(type, 0, null);
+          } else if (type == ScanProtocol.ERROR) {
+            row = new Row(type, 0, ScanProtocol.readString(in));
+          } else {
+            throw new IOException(type < 0
+                ? "The connection was closed"
+                : "Unknown frame type: " + type);
+          }
+          queue.put(row);
+          if (row.isLast()) {
+            return;
+          }
+        }
+      } catch (IOException e) {
+        try {
+          queue.put(new Row(ScanProtocol.ERROR, 0, e.getMessage()));
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      } catch (InterruptedException e) {
+        // the coordinator was closed
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        LOG.warn("Couldn't close the connection of a scan worker", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.worker;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.Query;
+import com.cloudera.bundleprocessor.subshell.search.engine.RecordedMatch;
+import com.cloudera.bundleprocessor.subshell.search.engine.TimeRange;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * ScanProtocol is the binary protocol between the {@link ScanCoordinator}
+ * and the {@link ScanWorker}s. Every frame starts with its type,
+ * the numbers are written as variable-length integers
+ * and the strings as UTF-8 bytes prefixed by their length.
+ *
+ * <p>The coordinator opens the connection with a {@link #HELLO} frame
+ * holding the secret shared with the worker, which answers with
+ * {@link #HELLO} if the secret matches, otherwise with {@link #ERROR}
+ * and it closes the connection.
+ * Then the coordinator sends a {@link #SEARCH} frame with the queries and
+ * the names of the logs of the shard, and it may send a {@link #CANCEL}
+ * frame until it receives the end of the search.
+ * The worker answers with a {@link #MATCH} row for every match, holding
+ * the text of its groups and their offsets in the text, and an
+ * {@link #END_OF_SOURCE} row after every log, in the order
+ * {@link com.cloudera.bundleprocessor.subshell.search.engine.MatchListener}
+ * receives them, and it ends the search with {@link #DONE}
+ * or {@link #ERROR}.
+ */
+final class ScanProtocol {
+
+  /** Coordinator to worker: the queries and the logs to search. */
+  static final int SEARCH = 1;
+  /** Coordinator to worker: the running search can stop. */
+  static final int CANCEL = 2;
+  /** Worker to coordinator: the query index and the matched text. */
+  static final int MATCH = 3;
+  /** Worker to coordinator: the query index. */
+  static final int END_OF_SOURCE = 4;
+  /** Worker to coordinator: the search finished. */
+  static final int DONE = 5;
+  /** Worker to coordinator: the search failed, with the message. */
+  static final int ERROR = 6;
+  /** Both ways: the secret of the coordinator, and its acceptance. */
+  static final int HELLO = 7;
+
+  /**
+   * The secret is read before the coordinator is trusted,
+   * so its length is limited.
+   */
+  static final int MAX_SECRET_LENGTH = 1024;
+  private static final int RM_LOGS = 1;
+  private static final int NM_LOGS = 2;
+  private static final int MULTIPLE_LINES = 4;
+  private static final int FROM = 8;
+  private static final int TO = 16;
+
+  private ScanProtocol() {
+  }
+
+  /**
+   * The queries and the logs of a shard.
+   */
+  static final class SearchRequest {
+
+    private final List<Query> queries;
+    private final List<String> fileNames;
+
+    SearchRequest(List<Query> queries, List<String> fileNames) {
+      this.queries = queries;
+      this.fileNames = fileNames;
+    }
+
+    List<Query> getQueries() {
+      return queries;
+    }
+
+    List<String> getFileNames() {
+      return fileNames;
+    }
+  }
+
+  static void writeSearch(DataOutputStream out, SearchRequest request)
+      throws IOException {
+    out.writeByte(SEARCH);
+    writeNumber(out, request.queries.size());
+    for (Query query : request.queries) {
+      writeQuery(out, query);
+    }
+    writeNumber(out, request.fileNames.size());
+    for (String fileName : request.fileNames) {
+      writeString(out, fileName);
+    }
+  }
+
+  /**
+   * Reads the body of a {@link #SEARCH} frame.
+   */
+  static SearchRequest readSearch(DataInputStream in) throws IOException {
+    int queryCount = readNumber(in);
+    List<Query> queries = new ArrayList<>(queryCount);
+    for (int i = 0; i < queryCount; i++) {
+      queries.add(readQuery(in));
+    }
+    int fileCount = readNumber(in);
+    List<String> fileNames = new ArrayList<>(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      fileNames.add(readString(in));
+    }
+    return new SearchRequest(queries, fileNames);
+  }
+
+  /**
+   * Writes the parts of a query a worker needs: the file names
+   * are searched by the coordinator, and a worker can stop
+   * at the first matches, but not at the last ones.
+   */
+  private static void writeQuery(DataOutputStream out, Query query)
+      throws IOException {
+    writeString(out, query.getPattern().pattern());
+    writeNumber(out, query.getPattern().flags());
+    TimeRange timeRange = query.getTimeRange();
+    int options = (query.searchInRmLogs() ? RM_LOGS : 0)
+        | (query.searchInNmLogs() ? NM_LOGS : 0)
+        | (query.spansMultipleLines() ? MULTIPLE_LINES : 0)
+        | (timeRange != null && timeRange.getFrom() != null ? FROM : 0)
+        | (timeRange != null && timeRange.getTo() != null ? TO : 0);
+    writeNumber(out, options);
+    if ((options & FROM) != 0) {
+      writeString(out, timeRange.getFrom());
+    }
+    if ((options & TO) != 0) {
+      writeString(out, timeRange.getTo());
+    }
+    if (timeRange != null) {
+      writeString(out, timeRange.getTimeStamp().pattern());
+    }
+    writeNumber(out, query.getHead());
+  }
+
+  private static Query readQuery(DataInputStream in) throws IOException {
+    String regex = readString(in);
+    int flags = readNumber(in);
+    int options = readNumber(in);
+    String from = (options & FROM) != 0 ? readString(in) : null;
+    String to = (options & TO) != 0 ? readString(in) : null;
+    String timeStamp = from != null || to != null ? readString(in) : null;
+    Query.Builder builder = new Query.Builder()
+        .withPattern(Pattern.compile(regex, flags))
+        .withHead(readNumber(in));
+    if ((options & RM_LOGS) != 0) {
+      builder.isCheckingRmLogs();
+    }
+    if ((options & NM_LOGS) != 0) {
+      builder.isCheckingNmLogs();
+    }
+    if ((options & MULTIPLE_LINES) != 0) {
+      builder.isSpanningMultipleLines();
+    }
+    if (from != null || to != null) {
+      builder.withTimeRange(
+          new TimeRange(from, to, Pattern.compile(timeStamp)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Writes a non-negative number in 7-bit groups,
+   * the lowest group first.
+   */
+  static void writeNumber(DataOutputStream out, int number)
+      throws IOException {
+    if (number < 0) {
+      throw new IllegalArgumentException("Negative number: " + number);
+    }
+    int rest = number;
+    while (rest >= 0x80) {
+      out.writeByte(rest & 0x7F | 0x80);
+      rest >>>= 7;
+    }
+    out.writeByte(rest);
+  }
+
+  static int readNumber(DataInputStream in) throws IOException {
+    int number = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      number |= (b & 0x7F) << shift;
+      if (b < 0x80) {
+        return number;
+      }
+    }
+    throw new IOException("Malformed number");
+  }
+
+  static void writeString(DataOutputStream out, String text)
+      throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    writeNumber(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[readNumber(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes the text of a match and the offsets of its groups.
+   * The offsets are shifted by one, so the -1 of the groups
+   * not taking part in the match is written as 0.
+   */
+  static void writeMatch(DataOutputStream out, RecordedMatch match)
+      throws IOException {
+    writeString(out, match.getText());
+    writeNumber(out, match.groupCount());
+    for (int group = 0; group <= match.groupCount(); group++) {
+      writeNumber(out, match.start(group) + 1);
+      writeNumber(out, match.end(group) + 1);
+    }
+  }
+
+  /**
+   * Reads the offsets written by {@link #writeMatch},
+   * after the text was read with {@link #readString}.
+   */
+  static int[] readOffsets(DataInputStream in) throws IOException {
+    int groupCount = readNumber(in);
+    int[] offsets = new int[2 * (groupCount + 1)];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = readNumber(in) - 1;
+    }
+    return offsets;
+  }
+
+  /**
+   * Writes a {@link #HELLO} frame with the secret.
+   */
+  static void writeHello(DataOutputStream out, String secret)
+      throws IOException {
+    out.writeByte(HELLO);
+    writeString(out, secret);
+  }
+
+  /**
+   * Reads the secret of a {@link #HELLO} frame.
+   *
+   * @return the secret or null if it's longer than any valid secret
+   */
+  static String readSecret(DataInputStream in) throws IOException {
+    int length = readNumber(in);
+    if (length > MAX_SECRET_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Tells whether the secret sent by a coordinator matches the secret
+   * of the worker, in a time not depending on where they differ.
+   */
+  static boolean isMatchingSecret(String expected, String actual) {
+    return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+        actual.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the type of the next frame.
+   *
+   * @return the type of the frame or -1 at the end of the stream
+   */
+  static int readFrameType(DataInputStream in) throws IOException {
+    try {
+      return in.readUnsignedByte();
+    } catch (EOFException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.worker;
+
+import com.cloudera.bundleprocessor.subshell.context.Config;
+import com.cloudera.bundleprocessor.subshell.context.Search;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
+import com.cloudera.bundleprocessor.subshell.search.engine.MatchListener;
+import com.cloudera.bundleprocessor.subshell.search.engine.Query;
+import com.cloudera.bundleprocessor.subshell.search.engine.RecordedMatch;
+import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ScanWorker searches a shard of the logs for a {@link ScanCoordinator}.
+ * It runs in its own JVM, started by the coordinator on the same host
+ * or by hand on another host with access to the same bundle,
+ * and it serves the searches of one coordinator at a time
+ * over the {@link ScanProtocol}.
+ * A worker only serves the coordinators knowing its secret:
+ * a started worker gets a random secret from the coordinator
+ * in the {@value #SECRET_VARIABLE} environment variable,
+ * a worker started by hand needs the {@code scanWorkerSecret} setting.
+ * It listens on the loopback interface, unless another address is set
+ * by {@code scanWorkerBindAddress}.
+ */
+public final class ScanWorker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ScanWorker.class);
+  /**
+   * The environment variable passing the secret to a started worker.
+   */
+  static final String SECRET_VARIABLE = "SCAN_WORKER_SECRET";
+  /**
+   * The time a coordinator has to send its secret after connecting.
+   */
+  static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+  private final SearchEngine searchEngine;
+  private final String secret;
+
+  /**
+   * Creates a worker.
+   *
+   * @param searchEngine the initialized engine searching the shards
+   * @param secret       the secret the coordinators have to send
+   */
+  public ScanWorker(SearchEngine searchEngine, String secret) {
+    if (secret == null || secret.isEmpty()) {
+      throw new IllegalArgumentException("A scan worker needs a secret");
+    }
+    this.searchEngine = searchEngine;
+    this.secret = secret;
+  }
+
+  /**
+   * Starts a worker and prints the port it listens on.
+   *
+   * @param args the log folder, the configuration file
+   *             and optionally the port, by default any free port
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: ScanWorker <log folder> <config file> [port]");
+      System.exit(1);
+    }
+    Config config = readConfig(new File(args[1]));
+    Search search = config.getSearch() == null ? new Search()
+        : config.getSearch();
+    String secret = System.getenv(SECRET_VARIABLE);
+    if (secret == null || secret.isEmpty()) {
+      secret = search.getScanWorkerSecret();
+    }
+    if (secret == null || secret.isEmpty()) {
+      System.err.println("The scan worker needs a secret, "
+          + "see the scanWorkerSecret setting");
+      System.exit(1);
+    }
+    InetAddress bindAddress = findBindAddress(search);
+    // a worker always scans on its own
+    search.setScanWorkers(null);
+    search.setScanWorkerAddresses(null);
+    SearchEngine searchEngine = new SearchEngine(new File(args[0]));
+    searchEngine.init(config, null);
+    int port = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+    try (ServerSocket serverSocket = new ServerSocket(port, 0, bindAddress)) {
+      System.out.println(serverSocket.getLocalPort());
+      // nothing else is written, the coordinator only reads the port
+      System.out.close();
+      ScanWorker worker = new ScanWorker(searchEngine, secret);
+      while (true) {
+        try (Socket socket = serverSocket.accept()) {
+          worker.serve(socket);
+        } catch (IOException e) {
+          LOG.warn("The connection of the coordinator broke", e);
+        }
+      }
+    } finally {
+      searchEngine.close();
+    }
+  }
+
+  private static InetAddress findBindAddress(Search search)
+      throws IOException {
+    String address = search.getScanWorkerBindAddress();
+    if (address == null || address.trim().isEmpty()) {
+      return InetAddress.getLoopbackAddress();
+    }
+    return InetAddress.getByName(address.trim());
+  }
+
+  /**
+   * Creates the mapper of the configuration files shared
+   * with the workers. The fields are mapped directly,
+   * so a configuration written by the coordinator
+   * is read back unchanged.
+   */
+  static ObjectMapper createConfigMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.setVisibility(PropertyAccessor.ALL,
+        JsonAutoDetect.Visibility.NONE);
+    mapper.setVisibility(PropertyAccessor.FIELD,
+        JsonAutoDetect.Visibility.ANY);
+    return mapper;
+  }
+
+  private static Config readConfig(File configFile) throws IOException {
+    return createConfigMapper().readValue(configFile, Config.class);
+  }
+
+  /**
+   * Serves the searches of a coordinator until it closes the connection.
+   * The connection is refused unless the coordinator sends the secret
+   * of the worker first.
+   * The searches run on another thread,
+   * so a {@link ScanProtocol#CANCEL} frame can stop them.
+   */
+  public void serve(Socket socket) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(socket.getOutputStream()));
+    if (!acceptCoordinator(socket, in, out)) {
+      LOG.warn("Refused a coordinator from {} without the secret",
+          socket.getRemoteSocketAddress());
+      return;
+    }
+    ExecutorService searcher = Executors.newSingleThreadExecutor();
+    AtomicBoolean cancelled = new AtomicBoolean();
+    try {
+      int frameType;
+      while ((frameType = ScanProtocol.readFrameType(in)) >= 0) {
+        if (frameType == ScanProtocol.SEARCH) {
+          ScanProtocol.SearchRequest request = ScanProtocol.readSearch(in);
+          // the coordinator sends the next search after the previous one
+          // ended, a late cancel can only stop the previous one
+          AtomicBoolean searchCancelled = new AtomicBoolean();
+          cancelled = searchCancelled;
+          searcher.execute(() -> search(request, out, searchCancelled));
+        } else if (frameType == ScanProtocol.CANCEL) {
+          cancelled.set(true);
+        } else {
+          throw new IOException("Unknown frame type: " + frameType);
+        }
+      }
+    } finally {
+      cancelled.set(true);
+      searcher.shutdown();
+    }
+  }
+
+  private boolean acceptCoordinator(Socket socket, DataInputStream in,
+                                    DataOutputStream out) throws IOException {
+    socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+    try {
+      String sentSecret = ScanProtocol.readFrameType(in) == ScanProtocol.HELLO
+          ? ScanProtocol.readSecret(in) : null;
+      if (sentSecret == null
+          || !ScanProtocol.isMatchingSecret(secret, sentSecret)) {
+        out.writeByte(ScanProtocol.ERROR);
+        ScanProtocol.writeString(out, "The secret doesn't match");
+        out.flush();
+        return false;
+      }
+    } catch (SocketTimeoutException e) {
+      return false;
+    }
+    socket.setSoTimeout(0);
+    out.writeByte(ScanProtocol.HELLO);
+    out.flush();
+    return true;
+  }
+
+  private void search(ScanProtocol.SearchRequest request,
+                      DataOutputStream out, AtomicBoolean cancelled) {
+    List<Query> queries = request.getQueries();
+    List<MatchListener> listeners = new ArrayList<>();
+    for (int i = 0; i < queries.size(); i++) {
+      listeners.add(new RowWriter(out, i, cancelled));
+    }
+    try {
+      try {
+        searchEngine.searchShard(queries, listeners, request.getFileNames());
+        out.writeByte(ScanProtocol.DONE);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      } catch (IOException | RuntimeException e) {
+        LOG.error("The search of the shard failed", e);
+        out.writeByte(ScanProtocol.ERROR);
+        ScanProtocol.writeString(out, String.valueOf(e.getMessage()));
+      }
+      out.flush();
+    } catch (IOException e) {
+      // the coordinator is gone, the loop reading its frames ends too
+      LOG.warn("Couldn't send the matches to the coordinator", e);
+    }
+  }
+
+  /**
+   * Writes the matches of a query as rows.
+   */
+  private static final class RowWriter implements MatchListener {
+
+    private final DataOutputStream out;
+    private final int queryIndex;
+    private final AtomicBoolean cancelled;
+
+    RowWriter(DataOutputStream out, int queryIndex,
+              AtomicBoolean cancelled) {
+      this.out = out;
+      this.queryIndex = queryIndex;
+      this.cancelled = cancelled;
+    }
+
+    @Override
+    public void onMatch(LogMatch match) {
+      try {
+        out.writeByte(ScanProtocol.MATCH);
+        ScanProtocol.writeNumber(out, queryIndex);
+        ScanProtocol.writeMatch(out, match instanceof RecordedMatch
+            ? (RecordedMatch) match : RecordedMatch.copyOf(match));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void onEndOfSource() {
+      try {
+        out.writeByte(ScanProtocol.END_OF_SOURCE);
+        ScanProtocol.writeNumber(out, queryIndex);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public boolean isSatisfied() {
+      return cancelled.get();
+    }
+  }
+}
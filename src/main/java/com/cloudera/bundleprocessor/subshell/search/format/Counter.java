@@ -21,9 +21,11 @@ package com.cloudera.bundleprocessor.subshell.search.format;
 import com.cloudera.bundleprocessor.subshell.format.ComposedPrintable;
 import com.cloudera.bundleprocessor.subshell.format.RowList;
 import com.cloudera.bundleprocessor.subshell.format.RowListFactory;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 
 /**
@@ -51,8 +53,9 @@ public class Counter extends Formatter<CounterFunction> {
   private RowList formatOne(Matcher matcher) {
     Integer[] counterValues = new Integer[100];
     List<String> foundOnes = new ArrayList<>();
+    LogMatch match = LogMatch.of(matcher);
     while (matcher.find()) {
-      counterValues = executeMatch(matcher, counterValues, foundOnes);
+      counterValues = executeMatch(match, counterValues, foundOnes);
     }
     return generateRowList(counterValues);
   }
@@ -62,18 +65,19 @@ public class Counter extends Formatter<CounterFunction> {
     Integer[] counterValues = new Integer[100];
     List<String> foundKeys = new ArrayList<>();
     for (Matcher matcher : matchers) {
+      LogMatch match = LogMatch.of(matcher);
       while (matcher.find()) {
-        counterValues = executeMatch(matcher, counterValues, foundKeys);
+        counterValues = executeMatch(match, counterValues, foundKeys);
       }
     }
     return generateRowList(counterValues);
   }
 
   private Integer[] executeMatch(
-      Matcher matcher, Integer[] counterValues, List<String> foundKeys) {
-    Integer[] newValues = getFormatterFunction().getFilterer().apply(matcher);
+      LogMatch match, Integer[] counterValues, List<String> foundKeys) {
+    Integer[] newValues = getFormatterFunction().getFilterer().apply(match);
     if (keepMatch(getFormatterModifiers().getKeyParameter(),
-        matcher, foundKeys)) {
+        match, foundKeys)) {
       if (counterValues[0] == null) {
         counterValues = newValues;
       } else {
@@ -85,6 +89,53 @@ public class Counter extends Formatter<CounterFunction> {
     return counterValues;
   }
 
+  @Override
+  public FormattingListener createListener(Consumer<String> output) {
+    return new CounterListener(output);
+  }
+
+  /**
+   * CounterListener sums the values of the matches
+   * and writes the result at the end of the source (if the output is
+   * separated by source files) or after the last match.
+   * Only the sums are kept in the memory.
+   */
+  private final class CounterListener implements FormattingListener {
+
+    private final Consumer<String> output;
+    private Integer[] counterValues = new Integer[100];
+    private List<String> foundKeys = new ArrayList<>();
+
+    private CounterListener(Consumer<String> output) {
+      this.output = output;
+    }
+
+    @Override
+    public void onMatch(LogMatch match) {
+      counterValues = executeMatch(match, counterValues, foundKeys);
+    }
+
+    @Override
+    public void onEndOfSource() {
+      if (getFormatterModifiers().isSeparatingBySourceFile()) {
+        writeCounterValues();
+      }
+    }
+
+    @Override
+    public void finish() {
+      if (!getFormatterModifiers().isSeparatingBySourceFile()) {
+        writeCounterValues();
+      }
+    }
+
+    private void writeCounterValues() {
+      output.accept(generateRowList(counterValues).print());
+      counterValues = new Integer[100];
+      foundKeys = new ArrayList<>();
+    }
+  }
+
   private RowList generateRowList(Integer[] summedValues) {
     String[] rows = getFormatterFunction().getFinalizer().apply(summedValues);
     RowList output =
@@ -18,8 +18,9 @@
 
 package com.cloudera.bundleprocessor.subshell.search.format;
 
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
+
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public class CounterFunction extends FormatterFunction<Integer> {
 
@@ -29,12 +30,13 @@ public class CounterFunction extends FormatterFunction<Integer> {
    * CounterFunction contains the Functions of the Counter.
    *
    * @param header    header String
-   * @param filterer  this Function can read a Matcher object and
+   * @param filterer  this Function can read a match and
    *                  count something in it
    * @param finalizer this Function finalizes the output
    *                  (adds extra message for the user)
    */
-  public CounterFunction(String[] header, Function<Matcher, Integer[]> filterer,
+  public CounterFunction(String[] header,
+                         Function<LogMatch, Integer[]> filterer,
                          Function<Integer[], String[]> finalizer) {
     super(header, filterer);
     this.finalizer = finalizer;
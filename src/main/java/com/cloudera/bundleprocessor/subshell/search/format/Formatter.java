@@ -20,8 +20,10 @@ package com.cloudera.bundleprocessor.subshell.search.format;
 
 import com.cloudera.bundleprocessor.subshell.format.ComposedPrintable;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 
 /**
@@ -64,12 +66,23 @@ public abstract class Formatter<T extends FormatterFunction<?>> {
     }
   }
 
+  /**
+   * {@code createListener} is the streaming counterpart of {@code format}.
+   * The returned listener receives the matches from the SearchEngine
+   * one by one and writes the user readable output in batches,
+   * so the rows don't need to be kept in the memory.
+   *
+   * @param output the consumer of the formatted output
+   * @return listener formatting the matches
+   */
+  public abstract FormattingListener createListener(Consumer<String> output);
+
   protected boolean keepMatch(String searchedRegexGroup,
-                              Matcher matcher, List<String> foundOnes) {
+                              LogMatch match, List<String> foundOnes) {
     if (searchedRegexGroup == null) {
       return true;
     } else {
-      String justFound = matcher.group(searchedRegexGroup);
+      String justFound = match.group(searchedRegexGroup);
       if (foundOnes.contains(justFound)) {
         return false;
       } else {
@@ -18,8 +18,9 @@
 
 package com.cloudera.bundleprocessor.subshell.search.format;
 
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
+
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 /**
  * FormatterFunction is defining the methods to generate
@@ -34,10 +35,10 @@ import java.util.regex.Matcher;
 public abstract class FormatterFunction<T> {
 
   private final String[] header;
-  private final Function<Matcher, T[]> filterer;
+  private final Function<LogMatch, T[]> filterer;
 
   protected FormatterFunction(String[] header,
-                              Function<Matcher, T[]> filterer) {
+                              Function<LogMatch, T[]> filterer) {
     this.header = header;
     this.filterer = filterer;
   }
@@ -46,7 +47,7 @@ public abstract class FormatterFunction<T> {
     return header;
   }
 
-  Function<Matcher, T[]> getFilterer() {
+  Function<LogMatch, T[]> getFilterer() {
     return filterer;
   }
 }
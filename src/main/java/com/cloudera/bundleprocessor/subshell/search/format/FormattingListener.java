@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.format;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.MatchListener;
+
+/**
+ * FormattingListener is a {@link MatchListener} created by a
+ * {@link Formatter}, which formats the matches as they arrive
+ * and writes the output in batches.
+ */
+public interface FormattingListener extends MatchListener {
+
+  /**
+   * Writes the output of the matches received so far,
+   * which is still waiting for a full batch.
+   * It is called when no more matches are expected for a while
+   * (e.g. when the logs are followed).
+   * By default the output is written when the listener decides.
+   */
+  default void flush() {
+  }
+
+  /**
+   * Writes the rest of the output after the last match.
+   */
+  void finish();
+}
@@ -21,9 +21,12 @@ package com.cloudera.bundleprocessor.subshell.search.format;
 import com.cloudera.bundleprocessor.subshell.format.ComposedPrintable;
 import com.cloudera.bundleprocessor.subshell.format.RowList;
 import com.cloudera.bundleprocessor.subshell.format.RowListFactory;
+import com.cloudera.bundleprocessor.subshell.format.RowStream;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 
 /**
@@ -43,8 +46,9 @@ public class Grepper extends Formatter<GrepperFunction> {
         RowListFactory.createRowList(getFormatterFunction().getHeader());
     List<String> foundOnes = new ArrayList<>();
     for (Matcher matcher : matchers) {
+      LogMatch match = LogMatch.of(matcher);
       while (matcher.find()) {
-        formatMatch(matcher, output, foundOnes);
+        formatMatch(match, output, foundOnes);
       }
       composedRowList.addPrintable(output);
       output = RowListFactory.createRowList(getFormatterFunction().getHeader());
@@ -58,19 +62,80 @@ public class Grepper extends Formatter<GrepperFunction> {
         createRowList(getFormatterFunction().getHeader());
     List<String> foundOnes = new ArrayList<>();
     for (Matcher matcher : matchers) {
+      LogMatch match = LogMatch.of(matcher);
       while (matcher.find()) {
-        formatMatch(matcher, output, foundOnes);
+        formatMatch(match, output, foundOnes);
       }
     }
     return output;
   }
 
-  private void formatMatch(Matcher matcher,
+  private void formatMatch(LogMatch match,
                            RowList output, List<String> foundOnes) {
-    String[] rowElements = getFormatterFunction().getFilterer().apply(matcher);
+    // the groups are copied only for the rows which are kept
     if (keepMatch(getFormatterModifiers().getKeyParameter(),
-        matcher, foundOnes)) {
-      output.addRow(rowElements);
+        match, foundOnes)) {
+      output.addRow(getFormatterFunction().getFilterer().apply(match));
+    }
+  }
+
+  @Override
+  public FormattingListener createListener(Consumer<String> output) {
+    return new GrepperListener(output);
+  }
+
+  /**
+   * GrepperListener writes a row for every match.
+   * When the output is separated by source files,
+   * a new table is started for every source.
+   */
+  private final class GrepperListener implements FormattingListener {
+
+    private final Consumer<String> output;
+    private final List<String> foundOnes = new ArrayList<>();
+    private RowStream rowStream;
+
+    private GrepperListener(Consumer<String> output) {
+      this.output = output;
+    }
+
+    @Override
+    public void onMatch(LogMatch match) {
+      if (keepMatch(getFormatterModifiers().getKeyParameter(),
+          match, foundOnes)) {
+        getRowStream().addRow(
+            getFormatterFunction().getFilterer().apply(match));
+      }
+    }
+
+    @Override
+    public void onEndOfSource() {
+      if (getFormatterModifiers().isSeparatingBySourceFile()) {
+        getRowStream().finish();
+        rowStream = null;
+      }
+    }
+
+    @Override
+    public void flush() {
+      if (rowStream != null) {
+        rowStream.flush();
+      }
+    }
+
+    @Override
+    public void finish() {
+      if (!getFormatterModifiers().isSeparatingBySourceFile()) {
+        getRowStream().finish();
+      }
+    }
+
+    private RowStream getRowStream() {
+      if (rowStream == null) {
+        rowStream = RowListFactory.createRowStream(
+            output, getFormatterFunction().getHeader());
+      }
+      return rowStream;
     }
   }
 }
@@ -18,8 +18,9 @@
 
 package com.cloudera.bundleprocessor.subshell.search.format;
 
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
+
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public final class GrepperFactory {
 
@@ -77,7 +78,7 @@ public final class GrepperFactory {
       headerNames[i] = columns[i].getHeaderName();
       groupNames[i] = columns[i].getGroupName();
     }
-    Function<Matcher, String[]> filterers = createGroupFilter(groupNames);
+    Function<LogMatch, String[]> filterers = createGroupFilter(groupNames);
     GrepperFunction grepperFunction =
         new GrepperFunction(headerNames, filterers);
     return new Grepper(grepperFunction);
@@ -90,7 +91,7 @@ public final class GrepperFactory {
    */
   public static Grepper createGrepper(Column column) {
     String[] headerNames = new String[]{column.getHeaderName()};
-    Function<Matcher, String[]> filterers = createGroupFilter(
+    Function<LogMatch, String[]> filterers = createGroupFilter(
         new String[]{column.getGroupName()});
     GrepperFunction grepperFunction =
         new GrepperFunction(headerNames, filterers);
@@ -103,15 +104,15 @@ public final class GrepperFactory {
    * @param groupNames identifier of groups in the regular  expression
    * @return Function
    */
-  private static Function<Matcher, String[]> createGroupFilter(
+  private static Function<LogMatch, String[]> createGroupFilter(
       String[] groupNames) {
     if (groupNames.length == 1 && groupNames[0].equals("")) {
       return createWholeLineFilter();
     }
-    return (Matcher matcher) -> {
+    return (LogMatch match) -> {
       String[] rowElements = new String[groupNames.length];
       for (int i = 0; i < groupNames.length; i++) {
-        rowElements[i] = matcher.group(groupNames[i]);
+        rowElements[i] = match.group(groupNames[i]);
       }
       return rowElements;
     };
@@ -123,9 +124,9 @@ public final class GrepperFactory {
    *
    * @return Function
    */
-  private static Function<Matcher, String[]> createWholeLineFilter() {
-    return (Matcher matcher) -> new String[]{
-        matcher.group()
+  private static Function<LogMatch, String[]> createWholeLineFilter() {
+    return (LogMatch match) -> new String[]{
+        match.group()
     };
   }
 
@@ -18,12 +18,13 @@
 
 package com.cloudera.bundleprocessor.subshell.search.format;
 
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
+
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public class GrepperFunction extends FormatterFunction<String> {
 
-  GrepperFunction(String[] header, Function<Matcher, String[]> filterer) {
+  GrepperFunction(String[] header, Function<LogMatch, String[]> filterer) {
     super(header, filterer);
   }
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.request;
+
+import com.cloudera.bundleprocessor.subshell.context.StopSignal;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
+import com.cloudera.bundleprocessor.subshell.search.format.FormattingListener;
+
+import java.util.function.Consumer;
+
+/**
+ * CancellableListener is a {@link FormattingListener} which gets satisfied
+ * when its search request has to stop: when the {@link StopSignal}
+ * is raised (Ctrl-C) or when the time budget of the request runs out.
+ * The {@link com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine}
+ * checks it between the matches and between the slices of the logs,
+ * so the search stops soon after, with the matches found so far.
+ * If the time budget ran out, the output is marked as truncated.
+ */
+final class CancellableListener implements FormattingListener {
+
+  static final String TRUNCATED_MESSAGE =
+      "The search ran out of its time budget, the output is truncated\n";
+
+  private final FormattingListener listener;
+  private final Consumer<String> output;
+  private final StopSignal stopSignal;
+  private final long timeoutNanos;
+  private final long start = System.nanoTime();
+  private volatile boolean stopped;
+  private volatile boolean timedOut;
+
+  /**
+   * Creates a listener, the time budget starts now.
+   *
+   * @param listener      the listener formatting the matches
+   * @param output        the consumer of the formatted output
+   * @param stopSignal    the signal raised by Ctrl-C
+   * @param timeoutMillis the time budget in milliseconds, 0 for no limit
+   */
+  CancellableListener(FormattingListener listener, Consumer<String> output,
+                      StopSignal stopSignal, long timeoutMillis) {
+    this.listener = listener;
+    this.output = output;
+    this.stopSignal = stopSignal;
+    this.timeoutNanos = timeoutMillis * 1_000_000;
+  }
+
+  @Override
+  public void onMatch(LogMatch match) {
+    listener.onMatch(match);
+  }
+
+  @Override
+  public void onEndOfSource() {
+    listener.onEndOfSource();
+  }
+
+  @Override
+  public boolean isSatisfied() {
+    if (!stopped) {
+      if (stopSignal.isRaised()) {
+        stopped = true;
+      } else if (timeoutNanos > 0
+          && System.nanoTime() - start >= timeoutNanos) {
+        timedOut = true;
+        stopped = true;
+      }
+    }
+    return stopped || listener.isSatisfied();
+  }
+
+  @Override
+  public void flush() {
+    listener.flush();
+  }
+
+  @Override
+  public void finish() {
+    listener.finish();
+    if (timedOut) {
+      output.accept(TRUNCATED_MESSAGE);
+    }
+  }
+}
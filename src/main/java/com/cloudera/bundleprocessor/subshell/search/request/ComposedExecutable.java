@@ -19,14 +19,21 @@
 package com.cloudera.bundleprocessor.subshell.search.request;
 
 import com.cloudera.bundleprocessor.subshell.format.ComposedPrintable;
+import com.cloudera.bundleprocessor.subshell.search.engine.Query;
 import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
+import com.cloudera.bundleprocessor.subshell.search.format.FormattingListener;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
 
 /**
  * ComposedExecutable is an aggregation of multiple {@link Executable}s.
+ * The {@link SingleExecutable}s of the aggregation are executed together,
+ * so the logs are read only once however many queries they contain,
+ * and the matches of every query are handed to its own formatter.
  */
 public class ComposedExecutable implements Executable {
 
@@ -38,11 +45,76 @@ public class ComposedExecutable implements Executable {
 
   @Override
   public void execute(SearchEngine searchEngine) throws IOException {
-    for (Executable singleExecutable : executables) {
-      singleExecutable.execute(searchEngine);
+    List<SingleExecutable> singleExecutables = new ArrayList<>();
+    collectSingleExecutables(singleExecutables);
+    if (singleExecutables.isEmpty()) {
+      return;
+    }
+    List<List<Matcher>> matchers =
+        searchEngine.createMatchersOfQueries(getQueries(singleExecutables));
+    for (int i = 0; i < singleExecutables.size(); i++) {
+      singleExecutables.get(i).format(matchers.get(i));
+    }
+  }
+
+  /**
+   * Executes the search requests together and writes their output
+   * in the order of the requests. The output of the first request
+   * is written as soon as it is available, the output of the others
+   * is kept until the previous ones are finished, the long ones
+   * in temporary files (see {@link SpillingBuffer}).
+   *
+   * @param searchEngine the engine executing the search
+   * @param output       the consumer of the output
+   */
+  @Override
+  public void execute(SearchEngine searchEngine, Consumer<String> output)
+      throws IOException {
+    List<SingleExecutable> singleExecutables = new ArrayList<>();
+    collectSingleExecutables(singleExecutables);
+    if (singleExecutables.isEmpty()) {
+      return;
+    }
+    List<SpillingBuffer> buffers = new ArrayList<>();
+    try {
+      List<FormattingListener> listeners = new ArrayList<>();
+      for (int i = 0; i < singleExecutables.size(); i++) {
+        if (i == 0) {
+          buffers.add(null);
+          listeners.add(singleExecutables.get(i).createListener(output));
+        } else {
+          SpillingBuffer buffer =
+              new SpillingBuffer(SpillingBuffer.DEFAULT_MEMORY_LIMIT);
+          buffers.add(buffer);
+          listeners.add(singleExecutables.get(i).createListener(buffer));
+        }
+      }
+      searchEngine.searchQueries(getQueries(singleExecutables), listeners);
+      for (int i = 0; i < listeners.size(); i++) {
+        listeners.get(i).finish();
+        SpillingBuffer buffer = buffers.get(i);
+        if (buffer != null) {
+          buffer.passTo(output);
+        }
+      }
+    } finally {
+      for (SpillingBuffer buffer : buffers) {
+        if (buffer != null) {
+          buffer.close();
+        }
+      }
     }
   }
 
+  private static List<Query> getQueries(
+      List<SingleExecutable> singleExecutables) {
+    List<Query> queries = new ArrayList<>();
+    for (SingleExecutable singleExecutable : singleExecutables) {
+      queries.add(singleExecutable.getQuery());
+    }
+    return queries;
+  }
+
   @Override
   public ComposedPrintable getPrintable() {
     ComposedPrintable composedPrintable = new ComposedPrintable();
@@ -51,4 +123,12 @@ public class ComposedExecutable implements Executable {
     }
     return composedPrintable;
   }
+
+  @Override
+  public void collectSingleExecutables(
+      List<SingleExecutable> singleExecutables) {
+    for (Executable executable : executables) {
+      executable.collectSingleExecutables(singleExecutables);
+    }
+  }
 }
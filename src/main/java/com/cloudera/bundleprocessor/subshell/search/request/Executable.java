@@ -22,6 +22,8 @@ import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Executable is a search request.
@@ -32,5 +34,26 @@ public interface Executable {
 
   void execute(SearchEngine searchEngine) throws IOException;
 
+  /**
+   * Executes the search request and writes its output
+   * as soon as it is available, instead of creating a {@link Printable}.
+   *
+   * @param searchEngine the engine executing the search
+   * @param output       the consumer of the output
+   */
+  default void execute(SearchEngine searchEngine, Consumer<String> output)
+      throws IOException {
+    execute(searchEngine);
+    output.accept(getPrintable().print());
+  }
+
   Printable getPrintable();
+
+  /**
+   * Adds the {@link SingleExecutable}s of the search request to the list,
+   * so they can be executed together in a single pass over the logs.
+   *
+   * @param singleExecutables the list to add the executables to
+   */
+  void collectSingleExecutables(List<SingleExecutable> singleExecutables);
 }
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.request;
+
+import com.cloudera.bundleprocessor.subshell.context.StopSignal;
+import com.cloudera.bundleprocessor.subshell.format.Printable;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogTracker;
+import com.cloudera.bundleprocessor.subshell.search.engine.Query;
+import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
+import com.cloudera.bundleprocessor.subshell.search.format.FormattingListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * FollowingExecutable keeps executing the search requests of an
+ * {@link Executable} over the logs which are still being written,
+ * like {@code tail -f}. It polls the logs for appended lines and writes
+ * their matches until the {@link StopSignal} is raised (Ctrl-C),
+ * which stops the running search of the logs as well.
+ * Without an output to write to, the search request is executed once.
+ */
+public class FollowingExecutable implements Executable {
+
+  public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+
+  private final Executable executable;
+  private final StopSignal stopSignal;
+  private final long pollIntervalMillis;
+
+  public FollowingExecutable(Executable executable, StopSignal stopSignal) {
+    this(executable, stopSignal, DEFAULT_POLL_INTERVAL_MILLIS);
+  }
+
+  public FollowingExecutable(Executable executable, StopSignal stopSignal,
+                             long pollIntervalMillis) {
+    if (pollIntervalMillis <= 0) {
+      throw new IllegalArgumentException(
+          "The poll interval must be positive");
+    }
+    this.executable = executable;
+    this.stopSignal = stopSignal;
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  @Override
+  public void execute(SearchEngine searchEngine) throws IOException {
+    executable.execute(searchEngine);
+  }
+
+  /**
+   * Searches the logs, then the lines appended to them
+   * in every poll interval, until the stop signal is raised.
+   * The output of the search requests is interleaved,
+   * it is written at the end of every poll.
+   *
+   * @param searchEngine the engine executing the search
+   * @param output       the consumer of the output
+   */
+  @Override
+  public void execute(SearchEngine searchEngine, Consumer<String> output)
+      throws IOException {
+    List<SingleExecutable> singleExecutables = new ArrayList<>();
+    collectSingleExecutables(singleExecutables);
+    if (singleExecutables.isEmpty()) {
+      return;
+    }
+    List<Query> queries = new ArrayList<>();
+    List<FormattingListener> listeners = new ArrayList<>();
+    for (SingleExecutable singleExecutable : singleExecutables) {
+      // the logs are followed until Ctrl-C, without a time budget
+      singleExecutable.makeCancellable(stopSignal, 0);
+      queries.add(singleExecutable.getQuery());
+      listeners.add(singleExecutable.createListener(output));
+    }
+    stopSignal.setTimeBudget(0);
+    LogTracker tracker = new LogTracker();
+    stopSignal.enter();
+    try {
+      do {
+        searchEngine.follow(queries, listeners, tracker);
+        for (FormattingListener listener : listeners) {
+          listener.flush();
+        }
+      } while (!stopSignal.await(pollIntervalMillis));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      stopSignal.exit();
+      for (FormattingListener listener : listeners) {
+        listener.finish();
+      }
+    }
+  }
+
+  @Override
+  public Printable getPrintable() {
+    return executable.getPrintable();
+  }
+
+  @Override
+  public void collectSingleExecutables(
+      List<SingleExecutable> singleExecutables) {
+    executable.collectSingleExecutables(singleExecutables);
+  }
+}
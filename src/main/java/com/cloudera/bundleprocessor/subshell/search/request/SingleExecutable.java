@@ -19,15 +19,18 @@
 package com.cloudera.bundleprocessor.subshell.search.request;
 
 import com.cloudera.bundleprocessor.subshell.command.Command;
+import com.cloudera.bundleprocessor.subshell.context.StopSignal;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.search.engine.Query;
 import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
+import com.cloudera.bundleprocessor.subshell.search.engine.TimeRange;
 import com.cloudera.bundleprocessor.subshell.search.format.Formatter;
+import com.cloudera.bundleprocessor.subshell.search.format.FormattingListener;
 import com.cloudera.bundleprocessor.subshell.search.format.FormatterModifiers;
-import com.google.common.annotations.VisibleForTesting;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,9 +43,11 @@ import java.util.regex.Pattern;
  */
 public class SingleExecutable implements Executable {
 
-  private final Query searchQuery;
+  private Query searchQuery;
   private final Formatter<?> formatter;
   private Printable output;
+  private StopSignal stopSignal;
+  private long timeoutMillis;
 
   protected SingleExecutable(Builder builder) {
     this.searchQuery = builder.queryBuilder.build();
@@ -67,19 +72,92 @@ public class SingleExecutable implements Executable {
 
   @Override
   public void execute(SearchEngine searchEngine) throws IOException {
-    List<Matcher> matchers = searchEngine.createMatchers(searchQuery);
+    format(searchEngine.createMatchers(searchQuery));
+  }
+
+  @Override
+  public void execute(SearchEngine searchEngine, Consumer<String> output)
+      throws IOException {
+    FormattingListener listener = createListener(output);
+    searchEngine.search(searchQuery, listener);
+    listener.finish();
+  }
+
+  /**
+   * Formats the matches found by a shared search,
+   * see {@link ComposedExecutable}.
+   *
+   * @param matchers the matches of the query of this executable
+   */
+  void format(List<Matcher> matchers) {
     output = formatter.format(matchers);
   }
 
+  /**
+   * Creates the listener receiving the matches of a shared search,
+   * see {@link ComposedExecutable}.
+   *
+   * @param output the consumer of the formatted output
+   * @return listener formatting the matches
+   */
+  FormattingListener createListener(Consumer<String> output) {
+    FormattingListener listener = formatter.createListener(output);
+    if (stopSignal == null) {
+      return listener;
+    }
+    return new CancellableListener(listener, output, stopSignal,
+        timeoutMillis);
+  }
+
+  @Override
+  public void collectSingleExecutables(
+      List<SingleExecutable> singleExecutables) {
+    singleExecutables.add(this);
+  }
+
+  @Override
   public Printable getPrintable() {
     return output;
   }
 
-  @VisibleForTesting
   public Query getQuery() {
     return searchQuery;
   }
 
+  /**
+   * Restricts the search request to the lines logged in the time range.
+   *
+   * @param timeRange the time range of the matches
+   */
+  public void restrictTo(TimeRange timeRange) {
+    searchQuery = searchQuery.restrictTo(timeRange);
+  }
+
+  /**
+   * Limits the search request to its first or last matches.
+   *
+   * @param head the number of the first matches, 0 for no limit
+   * @param tail the number of the last matches, 0 for no limit
+   */
+  public void limitTo(int head, int tail) {
+    searchQuery = searchQuery.limitTo(head, tail);
+  }
+
+  /**
+   * Lets the search request be stopped while its output is written:
+   * it stops when the stop signal is raised (Ctrl-C),
+   * or when it runs out of its time budget, in which case
+   * the output is marked as truncated.
+   * The time budget starts when the search request is executed.
+   *
+   * @param stopSignal    the signal raised by Ctrl-C
+   * @param timeoutMillis the time budget in milliseconds, 0 for no limit
+   */
+  public void makeCancellable(StopSignal stopSignal, long timeoutMillis) {
+    this.stopSignal = stopSignal;
+    this.timeoutMillis = timeoutMillis;
+  }
+
   /**
    * Builder for the SingleExecutable class.
    */
@@ -118,6 +196,11 @@ public class SingleExecutable implements Executable {
       return this;
     }
 
+    public Builder isSpanningMultipleLines() {
+      queryBuilder.isSpanningMultipleLines();
+      return this;
+    }
+
     public Builder removeDuplicationOfParameter(String param) {
       this.formatterModifiersBuilder.setKeyParameter(param);
       return this;
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.request;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * SpillingBuffer keeps an output until it can be written, e.g. while
+ * the output of a previous request is still being written.
+ * The output is kept in memory up to a limit, then it's moved
+ * to a temporary file, so a long output doesn't fill the heap.
+ * The temporary file is deleted when the buffer is closed.
+ */
+final class SpillingBuffer implements Consumer<String>, Closeable {
+
+  static final int DEFAULT_MEMORY_LIMIT = 1 << 20;
+
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  private final int memoryLimit;
+  private final StringBuilder memory = new StringBuilder();
+  private Path file;
+  private Writer writer;
+
+  /**
+   * Creates a buffer.
+   *
+   * @param memoryLimit the number of characters kept in memory
+   */
+  SpillingBuffer(int memoryLimit) {
+    this.memoryLimit = memoryLimit;
+  }
+
+  @Override
+  public void accept(String text) {
+    try {
+      if (writer == null && memory.length() + text.length() > memoryLimit) {
+        file = Files.createTempFile("composed-output", ".txt");
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.append(memory);
+        memory.setLength(0);
+        memory.trimToSize();
+      }
+      if (writer == null) {
+        memory.append(text);
+      } else {
+        writer.write(text);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  boolean isSpilled() {
+    return file != null;
+  }
+
+  /**
+   * Passes the kept output to the consumer, in parts
+   * if it was moved to the temporary file.
+   *
+   * @param output the consumer of the output
+   * @throws IOException if the temporary file can't be read
+   */
+  void passTo(Consumer<String> output) throws IOException {
+    if (writer == null) {
+      if (memory.length() > 0) {
+        output.accept(memory.toString());
+      }
+      return;
+    }
+    writer.flush();
+    char[] buffer = new char[READ_BUFFER_SIZE];
+    try (BufferedReader reader =
+             Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      int length;
+      while ((length = reader.read(buffer)) > 0) {
+        output.accept(new String(buffer, 0, length));
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (writer != null) {
+      writer.close();
+      Files.deleteIfExists(file);
+    }
+  }
+}
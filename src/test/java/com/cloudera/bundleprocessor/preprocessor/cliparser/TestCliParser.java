@@ -79,6 +79,16 @@ public class TestCliParser {
         params.getSearchIntent().isLaunchingShell());
   }
 
+  @Test
+  public void testParseInPlace() throws ParseException {
+    String[] input = {"-o", "folder1", "-l", "folder2"};
+    assertFalse("isInPlace() should be false by default",
+        parser.read(input).isInPlace());
+    String[] inPlaceInput = {"-o", "folder1", "-l", "folder2", "--inPlace"};
+    assertTrue("isInPlace() should be true, as -i/--inPlace has been set",
+        parser.read(inPlaceInput).isInPlace());
+  }
+
   @Test
   public void testParseWrongUrl() throws ParseException {
     String[] input = {"-o", "folder1", "-u", "not_valid_url", "-k"};
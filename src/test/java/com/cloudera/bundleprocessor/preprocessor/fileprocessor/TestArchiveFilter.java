@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.preprocessor.fileprocessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.cloudera.bundleprocessor.Constants;
+import com.cloudera.bundleprocessor.preprocessor.exception.WrongInputTypeException;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
+import com.cloudera.bundleprocessor.util.FileUtilsForTests;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestArchiveFilter {
+
+  private static final File WORKSPACE =
+      new File(Constants.TEMPORARY_FOLDER, "testarchivefilter");
+  private static final File MAIN_ZIP_FILE = new File(WORKSPACE, "main.zip");
+  private static final File SOURCE_DIR = new File(WORKSPACE, "main");
+  private static final String LOG_REGEX = ".*MANAGER-.*\\.log\\.out";
+  private static final String CONFIG_REGEX = ".*-site\\.xml";
+  private static final String LOGS = "logs";
+  private static final String CONFIGS = "configs";
+  private static final String NM_LOG = "NODEMANAGER-host1.log.out";
+  private static final String RM_LOG = "RESOURCEMANAGER-host2.log.out";
+  private static final String CONFIG = "yarn-site.xml";
+
+  @Before
+  public void setUp() throws IOException {
+    FileUtils.findOrCreateDirectory(WORKSPACE);
+    File nmLog = new File(WORKSPACE, NM_LOG + Constants.GZ_EXTENSION);
+    FileUtilsForTests.compressStringToGzip("nm log", nmLog);
+    File irrelevantGz = new File(WORKSPACE, "irrelevant.txt.gz");
+    FileUtilsForTests.compressStringToGzip("irrelevant", irrelevantGz);
+    File config = writeFile(CONFIG, "<configuration/>");
+    File rmLog = writeFile(RM_LOG, "rm log");
+    File irrelevant = writeFile("irrelevant.txt", "irrelevant");
+    File subZip = new File(WORKSPACE, "sub.zip");
+    FileUtilsForTests.compressFilesToZip(subZip, rmLog, irrelevant);
+    FileUtilsForTests.compressFilesToZip(
+        MAIN_ZIP_FILE, nmLog, irrelevantGz, config, subZip);
+    for (File file : Arrays.asList(
+        nmLog, irrelevantGz, config, rmLog, irrelevant, subZip)) {
+      FileUtils.deleteFile(file);
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(WORKSPACE.getAbsolutePath());
+  }
+
+  @Test
+  public void testOnlyMatchingMembersAreWritten() throws IOException {
+    File filteredDir = new File(WORKSPACE, "filtered");
+    ArchiveFilter archiveFilter = new ArchiveFilter(SOURCE_DIR, filteredDir);
+    archiveFilter.addTarget(LOG_REGEX, LOGS);
+    archiveFilter.addTarget(CONFIG_REGEX, CONFIGS);
+    archiveFilter.filter(MAIN_ZIP_FILE);
+
+    assertFalse("The archive should not be extracted", SOURCE_DIR.exists());
+    File logDir = new File(filteredDir, LOGS);
+    assertArrayEquals(new String[]{NM_LOG, RM_LOG}, sortedList(logDir));
+    assertArrayEquals(new String[]{CONFIG},
+        sortedList(new File(filteredDir, CONFIGS)));
+    assertEquals("nm log",
+        LogManipulator.readFile(new File(logDir, NM_LOG)).toString());
+    assertEquals("rm log",
+        LogManipulator.readFile(new File(logDir, RM_LOG)).toString());
+  }
+
+  @Test
+  public void testSameFilesAsExtracting()
+      throws IOException, WrongInputTypeException {
+    File filteredDir = new File(WORKSPACE, "filtered");
+    ArchiveFilter archiveFilter = new ArchiveFilter(SOURCE_DIR, filteredDir);
+    archiveFilter.addTarget(LOG_REGEX, LOGS);
+    archiveFilter.addTarget(CONFIG_REGEX, CONFIGS);
+    archiveFilter.filter(MAIN_ZIP_FILE);
+
+    File extractedDir =
+        new FileExtractor(WORKSPACE).extract(MAIN_ZIP_FILE, true);
+    File extractedAndFilteredDir = new File(WORKSPACE, "extracted");
+    FileFilter fileFilter =
+        new FileFilter(extractedDir, extractedAndFilteredDir);
+    fileFilter.filter(LOG_REGEX, LOGS);
+    fileFilter.filter(CONFIG_REGEX, CONFIGS);
+    for (String dirName : Arrays.asList(LOGS, CONFIGS)) {
+      assertArrayEquals(
+          sortedList(new File(extractedAndFilteredDir, dirName)),
+          sortedList(new File(filteredDir, dirName)));
+    }
+  }
+
+  private static File writeFile(String name, String content)
+      throws IOException {
+    File file = new File(WORKSPACE, name);
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static String[] sortedList(File dir) {
+    String[] names = dir.list();
+    Arrays.sort(names);
+    return names;
+  }
+}
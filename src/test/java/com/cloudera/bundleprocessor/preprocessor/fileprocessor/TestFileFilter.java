@@ -18,6 +18,8 @@
 
 package com.cloudera.bundleprocessor.preprocessor.fileprocessor;
 
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BlockCompressedLog;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Test;
@@ -27,6 +29,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -98,4 +101,17 @@ public class TestFileFilter {
     assertFalse(listOfFiles.contains(TEST_TEXT));
     assertFalse(listOfFiles.contains(RESOURCEMANAGER));
   }
+
+  @Test
+  public void testFilteringAndCompressing() throws IOException {
+    FILE_FILTER.filter(MATCHING_SOME, TARGET_DIR_NAME, true);
+    List<String> listOfFiles = Arrays.asList(TARGET_DIR.list());
+    String compressed = NODEMANAGER + BlockCompressedLog.EXTENSION;
+    assertTrue(listOfFiles.contains(compressed));
+    assertFalse(listOfFiles.contains(NODEMANAGER));
+    assertEquals(
+        LogManipulator.readFile(new File(SOURCE_DIR, "logs/" + NODEMANAGER))
+            .toString(),
+        LogManipulator.readFile(new File(TARGET_DIR, compressed)).toString());
+  }
 }
@@ -19,16 +19,27 @@
 package com.cloudera.bundleprocessor.subshell;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.cloudera.bundleprocessor.subshell.command.Command;
+import com.cloudera.bundleprocessor.subshell.context.StopSignal;
 import com.cloudera.bundleprocessor.subshell.format.StringPrintable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -91,6 +102,25 @@ public class TestCommandExecutor {
     }
   }
 
+  @Test
+  public void testStreamingCommand() throws UnknownCommandException {
+    Command command = mock(Command.class);
+    when(command.getName()).thenReturn("streaming");
+    when(command.readMore()).thenReturn(true);
+    doAnswer(invocation -> {
+      Consumer<String> output = invocation.getArgument(1);
+      output.accept("first batch\n");
+      output.accept("second batch\n");
+      return null;
+    }).when(command).writeOutput(any(), any());
+    List<String> actualOutput = new ArrayList<>();
+    createExecutor(command).executeCommand(
+        "streaming param1 param2", actualOutput::add);
+    verify(command).writeOutput(eq(PARAMETERS), any());
+    assertEquals(Arrays.asList("first batch\n", "second batch\n"),
+        actualOutput);
+  }
+
   @Test
   public void testSecondCommand() {
     try {
@@ -105,4 +135,195 @@ public class TestCommandExecutor {
       fail("CommandExecutor failed to recognize the second command.");
     }
   }
+
+  @Test
+  public void testCommandIsStopped() throws Throwable {
+    StopSignal stopSignal = new StopSignal();
+    CountDownLatch started = new CountDownLatch(1);
+    Command command = createCommand("stoppable", true);
+    doAnswer(invocation -> {
+      Consumer<String> output = invocation.getArgument(1);
+      started.countDown();
+      while (!stopSignal.isRaised()) {
+        Thread.sleep(1);
+      }
+      output.accept("stopped\n");
+      return null;
+    }).when(command).writeOutput(any(), any());
+    List<String> actualOutput = new ArrayList<>();
+    try (CommandExecutor executor = createExecutor(stopSignal, command)) {
+      raiseWhenStarted(stopSignal, started);
+      executor.executeCommand("stoppable", actualOutput::add);
+    }
+    assertEquals(Arrays.asList("stopped\n"), actualOutput);
+  }
+
+  @Test
+  public void testCommandNotStoppingIsAbandoned() throws Throwable {
+    StopSignal stopSignal = new StopSignal();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch abandoned = new CountDownLatch(1);
+    Command command = createCommand("stuck", true);
+    doAnswer(invocation -> {
+      Consumer<String> output = invocation.getArgument(1);
+      started.countDown();
+      abandoned.await();
+      output.accept("too late\n");
+      return null;
+    }).when(command).writeOutput(any(), any());
+    List<String> actualOutput = new ArrayList<>();
+    try (CommandExecutor executor = createExecutor(stopSignal, command)) {
+      raiseWhenStarted(stopSignal, started);
+      executor.executeCommand("stuck", actualOutput::add);
+      abandoned.countDown();
+      // the next command runs when the abandoned one exits
+      executor.executeCommand("first", actualOutput::add);
+      assertTrue(executor.isReadingMore());
+    }
+    assertTrue(actualOutput.isEmpty());
+  }
+
+  @Test
+  public void testNextCommandWaitsForAbandonedCommand() throws Throwable {
+    StopSignal stopSignal = new StopSignal();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch released = new CountDownLatch(1);
+    AtomicBoolean exited = new AtomicBoolean();
+    Command stuckCommand = createSearchCommand("stuck");
+    doAnswer(invocation -> {
+      started.countDown();
+      released.await();
+      Thread.sleep(20);
+      exited.set(true);
+      return null;
+    }).when(stuckCommand).writeOutput(any(), any());
+    Command nextCommand = createSearchCommand("next");
+    doAnswer(invocation -> {
+      Consumer<String> output = invocation.getArgument(1);
+      output.accept(exited.get() ? "after\n" : "concurrently\n");
+      return null;
+    }).when(nextCommand).writeOutput(any(), any());
+    List<String> actualOutput = new ArrayList<>();
+    try (CommandExecutor executor =
+             createExecutor(stopSignal, stuckCommand, nextCommand)) {
+      raiseWhenStarted(stopSignal, started);
+      executor.executeCommand("stuck", actualOutput::add);
+      released.countDown();
+      executor.executeCommand("next", actualOutput::add);
+    }
+    assertEquals(Arrays.asList("after\n"), actualOutput);
+  }
+
+  @Test
+  public void testWaitingForAbandonedCommandIsCancelled() throws Throwable {
+    StopSignal stopSignal = new StopSignal();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch released = new CountDownLatch(1);
+    Command stuckCommand = createSearchCommand("stuck");
+    doAnswer(invocation -> {
+      started.countDown();
+      released.await();
+      return null;
+    }).when(stuckCommand).writeOutput(any(), any());
+    Command nextCommand = createSearchCommand("next");
+    try (CommandExecutor executor =
+             createExecutor(stopSignal, stuckCommand, nextCommand)) {
+      raiseWhenStarted(stopSignal, started);
+      executor.executeCommand("stuck", part -> { });
+      raiseWhenStarted(stopSignal, new CountDownLatch(0));
+      executor.executeCommand("next", part -> { });
+      verify(nextCommand, never()).writeOutput(any(), any());
+      raiseWhenStarted(stopSignal, new CountDownLatch(0));
+      assertEquals("", executor.executeCommand("next"));
+      verify(nextCommand, never()).generatePrintable(any());
+    } finally {
+      released.countDown();
+    }
+  }
+
+  @Test
+  public void testOtherCommandsRunWhileSearchIsAbandoned() throws Throwable {
+    StopSignal stopSignal = new StopSignal();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch released = new CountDownLatch(1);
+    Command stuckCommand = createSearchCommand("stuck");
+    doAnswer(invocation -> {
+      started.countDown();
+      released.await();
+      return null;
+    }).when(stuckCommand).writeOutput(any(), any());
+    Command otherCommand = createCommand("other", true);
+    doAnswer(invocation -> {
+      Consumer<String> output = invocation.getArgument(1);
+      output.accept("other\n");
+      return null;
+    }).when(otherCommand).writeOutput(any(), any());
+    List<String> actualOutput = new ArrayList<>();
+    try (CommandExecutor executor =
+             createExecutor(stopSignal, stuckCommand, otherCommand)) {
+      raiseWhenStarted(stopSignal, started);
+      executor.executeCommand("stuck", actualOutput::add);
+      // neither the abandoned search nor its thread blocks the command
+      executor.executeCommand("other", actualOutput::add);
+      assertEquals("first", executor.executeCommand("first"));
+    } finally {
+      released.countDown();
+    }
+    assertEquals(Arrays.asList("other\n"), actualOutput);
+  }
+
+  @Test
+  public void testCommandPastDeadlineIsAbandoned() throws Throwable {
+    StopSignal stopSignal = new StopSignal();
+    CountDownLatch released = new CountDownLatch(1);
+    Command command = createSearchCommand("slow");
+    doAnswer(invocation -> {
+      Consumer<String> output = invocation.getArgument(1);
+      stopSignal.setTimeBudget(20);
+      released.await();
+      output.accept("too late\n");
+      return null;
+    }).when(command).writeOutput(any(), any());
+    List<String> actualOutput = new ArrayList<>();
+    try (CommandExecutor executor = createExecutor(stopSignal, command)) {
+      // returns without Ctrl-C, once the deadline and the grace elapsed
+      executor.executeCommand("slow", actualOutput::add);
+    } finally {
+      released.countDown();
+    }
+    assertTrue(actualOutput.isEmpty());
+  }
+
+  private static Command createSearchCommand(String name) {
+    Command command = createCommand(name, true);
+    when(command.isUsingSearchEngine()).thenReturn(true);
+    return command;
+  }
+
+  private static CommandExecutor createExecutor(StopSignal stopSignal,
+                                                Command... commands) {
+    Map<String, Command> commandMap = new HashMap<>();
+    commandMap.put(firstCommand.getName(), firstCommand);
+    for (Command command : commands) {
+      commandMap.put(command.getName(), command);
+    }
+    return new CommandExecutor(commandMap, stopSignal, 50);
+  }
+
+  private static void raiseWhenStarted(StopSignal stopSignal,
+                                       CountDownLatch started) {
+    Thread thread = new Thread(() -> {
+      try {
+        started.await();
+        // the signal can only be raised while a command is running
+        while (!stopSignal.raise()) {
+          Thread.sleep(1);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
 }
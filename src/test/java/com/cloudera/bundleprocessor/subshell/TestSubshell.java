@@ -20,6 +20,7 @@ package com.cloudera.bundleprocessor.subshell;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,6 +31,7 @@ import com.cloudera.bundleprocessor.subshell.context.SearchIntent;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.format.StringPrintable;
 import java.util.HashMap;
+import java.util.function.Consumer;
 import org.apache.log4j.Appender;
 import org.apache.log4j.Logger;
 import org.apache.log4j.spi.LoggingEvent;
@@ -53,6 +55,11 @@ public class TestSubshell {
     Info infoCommand = mock(Info.class);
     Printable output = new StringPrintable(OUTPUT_OF_INFO);
     when(infoCommand.generatePrintable(any())).thenReturn(output);
+    doAnswer(invocation -> {
+      Consumer<String> consumer = invocation.getArgument(1);
+      consumer.accept(output.print());
+      return null;
+    }).when(infoCommand).writeOutput(any(), any());
     CommandExecutor commandExecutor =
         new CommandExecutor(new HashMap<String, Command>() {
           {
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.command;
+
+import com.cloudera.bundleprocessor.Constants;
+import com.cloudera.bundleprocessor.subshell.CommandMapFactory;
+import com.cloudera.bundleprocessor.subshell.context.Context;
+import com.cloudera.bundleprocessor.subshell.context.Search;
+import com.cloudera.bundleprocessor.subshell.context.SearchIntent;
+import com.cloudera.bundleprocessor.util.ExpandableLinesOfLogs;
+import com.cloudera.bundleprocessor.util.LogFolder;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * CommandBenchmark measures the built-in commands on generated logs,
+ * with and without the literal prefilter of the search engine.
+ * The cache is recreated before every invocation,
+ * so every invocation scans the logs.
+ * It is not a unit test, it can be run with its main method
+ * or with {@code org.openjdk.jmh.Main CommandBenchmark}
+ * from the test classpath.
+ * The allocation rates can be measured with the {@code -prof gc} option.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandBenchmark {
+
+  private static final String APP_IDENTIFIER = "1599745644179_0001";
+  private static final String APP_NAME = "application_" + APP_IDENTIFIER;
+  private static final int FILLER_LINES_PER_TARGET = 1000;
+  private static final int TARGETS_PER_FILE = 100;
+  private static final String FILLER_LINE = ExpandableLinesOfLogs.getTIMESTAMP()
+      + ",123 INFO org.apache.hadoop.yarn.server.nodemanager.containermanager"
+      + ".monitor.ContainersMonitorImpl: Memory usage of ProcessTree 4242 for"
+      + " container-id unknown: 1.2 GB of 2 GB physical memory used";
+
+  @Param({"containers", "containers --verbose",
+      "containers --application " + APP_NAME,
+      "appattempts " + APP_NAME, "applications", "resources",
+      "states --application " + APP_NAME, "events --application " + APP_NAME,
+      "exceptions", "grep OPERATION=Start", "info", "roles"})
+  private String commandLine;
+
+  @Param({"true", "false"})
+  private String literalPrefilter;
+
+  private File workspace;
+  private Context context;
+  private Command command;
+  private String[] parameters;
+
+  /**
+   * Generates the logs of a ResourceManager and two NodeManagers.
+   *
+   * @throws IOException if the workspace couldn't be cleaned up
+   */
+  @Setup(Level.Trial)
+  public void setUpWorkspace() throws IOException {
+    workspace = new File(Constants.TEMPORARY_FOLDER, "commandBenchmark");
+    context = new Context();
+    Search search = context.getConfig().getSearch();
+    if (search == null) {
+      search = new Search();
+      context.getConfig().setSearch(search);
+    }
+    search.setLiteralPrefilter(literalPrefilter);
+    context.setSearchIntent(
+        new SearchIntent.Builder().withLaunchingShell(true).build());
+    LogFolder logFolder =
+        new LogFolder(context.getConfig().getLogDir(workspace));
+    logFolder.emptyDir();
+    logFolder.addResourceManager(generateLogs(true));
+    logFolder.addNodeManager("host1", generateLogs(false), null);
+    logFolder.addNodeManager("host2", generateLogs(false), null);
+    String[] words = commandLine.split(" ");
+    parameters = Arrays.copyOfRange(words, 1, words.length);
+    context.setupSearchEngine(workspace);
+    Map<String, Command> commands =
+        CommandMapFactory.createCommandMap(context);
+    command = commands.get(words[0]);
+  }
+
+  private static ExpandableLinesOfLogs generateLogs(boolean resourceManager) {
+    ExpandableLinesOfLogs logs = new ExpandableLinesOfLogs();
+    for (int i = 0; i < TARGETS_PER_FILE; i++) {
+      for (int j = 0; j < FILLER_LINES_PER_TARGET; j++) {
+        logs.addAString(FILLER_LINE);
+      }
+      if (resourceManager) {
+        logs.addLineWithAppliation(APP_NAME)
+            .addLineWithAppAttempt("appattempt_" + APP_IDENTIFIER + "_000001")
+            .addLineWithAppEvent(APP_NAME, "NEW", "SUBMITTED", "START")
+            .addLineWithResources("node" + i, 4096, 4)
+            .addLineWithScheduler("FairScheduler");
+      } else {
+        logs.addLineWithContainer(APP_IDENTIFIER, 1, i + 1)
+            .addAString(ExpandableLinesOfLogs.getTIMESTAMP()
+                + ",456 ERROR java.io.IOException: Disk failure")
+            .addAString("\tat org.apache.hadoop.Test.method(Test.java:1)");
+      }
+    }
+    return logs;
+  }
+
+  /**
+   * Recreates the search engine with an empty cache.
+   */
+  @Setup(Level.Invocation)
+  public void resetCache() {
+    context.setupSearchEngine(workspace);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownWorkspace() throws IOException {
+    new LogFolder(workspace).deleteDir();
+  }
+
+  @Benchmark
+  public String executeCommand() {
+    return command.generatePrintable(parameters).print();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(CommandBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
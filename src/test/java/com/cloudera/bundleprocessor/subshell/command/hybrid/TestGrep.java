@@ -21,6 +21,7 @@ package com.cloudera.bundleprocessor.subshell.command.hybrid;
 
 import com.cloudera.bundleprocessor.subshell.command.TestCommand;
 import com.cloudera.bundleprocessor.subshell.command.util.ColumnChecker;
+import com.cloudera.bundleprocessor.subshell.format.EmptyPrintable;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.util.ExpandableLinesOfLogs;
 import org.junit.After;
@@ -29,6 +30,8 @@ import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertTrue;
+
 public class TestGrep extends TestCommand {
 
   private static final String HEADER_STRING = "MATCHING EXPRESSIONS";
@@ -67,6 +70,24 @@ public class TestGrep extends TestCommand {
     ColumnChecker.check(printable, HEADER_STRING, expectedRows);
   }
 
+  @Test
+  public void testTimeRange() {
+    String stringToGrep = "stringToGrep";
+    logFolder.addResourceManager(new ExpandableLinesOfLogs()
+        .addLineWithAString(stringToGrep));
+    Printable printable = generateOutput(new String[]{stringToGrep,
+        "--short", "--from", "2020-03-02T08:36", "--to", "2020-03-02T08"});
+    ColumnChecker.check(printable, HEADER_STRING,
+        new String[]{stringToGrep});
+    testEmpty(new String[]{stringToGrep, "--short",
+        "--from", "2020-03-02T08:37"});
+    testEmpty(new String[]{stringToGrep, "--short",
+        "--to", "2020-03-02T08:36:17"});
+    // invalid parameters print the help instead of an output
+    assertTrue(generateOutput(new String[]{stringToGrep, "--short",
+        "--from", "yesterday"}) instanceof EmptyPrintable);
+  }
+
   @After
   public void clearUpFiles() throws IOException {
     emptyWorkspace();
@@ -32,6 +32,8 @@ import static org.mockito.Mockito.when;
 import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.Cache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.InMemoryLRUCache;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.TieredCache;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.WeightedLRUCache;
 import java.io.File;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -67,6 +69,37 @@ public class TestContext {
     assertNotNull(context.getSearchEngine());
   }
 
+  @Test
+  public void setupSearchEngineWithWeightedCache() {
+    Context context = spy(Context.class);
+    context.getConfig().getCache().setCacheType("WeightedLRUCache");
+    context.getConfig().getCache().setCacheMaxBytes("1048576");
+    SearchEngine searchEngine = mock(SearchEngine.class);
+    when(context.createSearchEngine(any())).thenReturn(searchEngine);
+    context.setupSearchEngine(new File("./src/test/resources"));
+    ArgumentCaptor<Cache> parameterCaptor = ArgumentCaptor
+        .forClass(Cache.class);
+    verify(searchEngine).init(eq(context.getConfig()),
+        parameterCaptor.capture());
+    Cache actualCache = parameterCaptor.getValue();
+    assertTrue(actualCache instanceof WeightedLRUCache);
+    assertEquals(1048576, ((WeightedLRUCache) actualCache).getMaxWeight());
+  }
+
+  @Test
+  public void setupSearchEngineWithTieredCache() {
+    Context context = spy(Context.class);
+    context.getConfig().getCache().setCacheType("TieredCache");
+    SearchEngine searchEngine = mock(SearchEngine.class);
+    when(context.createSearchEngine(any())).thenReturn(searchEngine);
+    context.setupSearchEngine(new File("./src/test/resources"));
+    ArgumentCaptor<Cache> parameterCaptor = ArgumentCaptor
+        .forClass(Cache.class);
+    verify(searchEngine).init(eq(context.getConfig()),
+        parameterCaptor.capture());
+    assertTrue(parameterCaptor.getValue() instanceof TieredCache);
+  }
+
   @Test
   public void testSearchIntent() {
     Context context = new Context();
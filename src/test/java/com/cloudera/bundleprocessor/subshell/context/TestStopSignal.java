@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.context;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestStopSignal {
+
+  @Test
+  public void testSignalIsKeptUntilNextCommand() {
+    StopSignal stopSignal = new StopSignal();
+    assertFalse(stopSignal.raise());
+    stopSignal.enter();
+    // e.g. following the logs inside the command
+    stopSignal.enter();
+    stopSignal.exit();
+    assertTrue(stopSignal.raise());
+    stopSignal.enter();
+    stopSignal.exit();
+    stopSignal.exit();
+    // the command exiting late still has to stop
+    assertTrue(stopSignal.isRaised());
+    stopSignal.enter();
+    assertFalse(stopSignal.isRaised());
+    stopSignal.exit();
+  }
+
+  @Test
+  public void testDeadline() throws InterruptedException {
+    StopSignal stopSignal = new StopSignal();
+    stopSignal.enter();
+    assertFalse(stopSignal.isPastDeadline());
+    stopSignal.setTimeBudget(1);
+    Thread.sleep(5);
+    assertTrue(stopSignal.isPastDeadline());
+    stopSignal.setTimeBudget(0);
+    assertFalse(stopSignal.isPastDeadline());
+    stopSignal.setTimeBudget(1);
+    stopSignal.exit();
+    stopSignal.enter();
+    assertFalse(stopSignal.isPastDeadline());
+    stopSignal.exit();
+  }
+}
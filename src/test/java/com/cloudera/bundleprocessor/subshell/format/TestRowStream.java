@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.cloudera.bundleprocessor.Constants;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TestRowStream {
+
+  private static final String[] HEADER = new String[]{"header1", "header2"};
+
+  @Test
+  public void testSameOutputAsRowList() {
+    for (int rows : new int[]{0, 1, 5}) {
+      for (String[] header : new String[][]{HEADER, {"header"}}) {
+        RowList rowList = RowListFactory.createRowList(header);
+        StringBuilder output = new StringBuilder();
+        RowStream rowStream =
+            RowListFactory.createRowStream(output::append, header);
+        for (int i = 0; i < rows; i++) {
+          String[] row = createRow(header.length, i);
+          rowList.addRow(row);
+          rowStream.addRow(row);
+        }
+        rowStream.finish();
+        assertEquals(rowList.print(), output.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyColumn() {
+    StringBuilder output = new StringBuilder();
+    RowListFactory.createRowStream(output::append, "header").finish();
+    assertEquals(Constants.EMPTY_OUTPUT_MESSAGE, output.toString());
+  }
+
+  @Test
+  public void testRowsAreWrittenInBatches() {
+    List<String> batches = new ArrayList<>();
+    RowStream rowStream = RowListFactory.createRowStream(batches::add, HEADER);
+    int rows = RowStream.BATCH_SIZE * 2 + 1;
+    for (int i = 0; i < rows; i++) {
+      rowStream.addRow(createRow(HEADER.length, i));
+    }
+    assertTrue("expected at least two batches before finishing",
+        batches.size() >= 2);
+    rowStream.finish();
+    String[] lines = String.join("", batches).split("\n");
+    // separator, header, separator, the rows, separator
+    assertTrue(lines.length >= rows + 4);
+    assertTrue(lines[lines.length - 2].contains("cell_" + (rows - 1)));
+    for (String batch : batches) {
+      assertTrue(batch.endsWith("\n"));
+    }
+  }
+
+  @Test
+  public void testWiderRowsInLaterBatch() {
+    StringBuilder output = new StringBuilder();
+    RowStream rowStream =
+        RowListFactory.createRowStream(output::append, HEADER);
+    for (int i = 0; i < RowStream.BATCH_SIZE; i++) {
+      rowStream.addRow(createRow(HEADER.length, 0));
+    }
+    rowStream.addRow(new String[]{"a much longer cell", "x"});
+    rowStream.finish();
+    assertTrue(output.toString().contains("| a much longer cell | x "));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testAddingNonMatchingRow() {
+    RowListFactory.createRowStream(s -> { }, HEADER)
+        .addRow(new String[]{"element1"});
+  }
+
+  private static String[] createRow(int size, int index) {
+    String[] row = new String[size];
+    for (int i = 0; i < size; i++) {
+      row[i] = "cell_" + index;
+    }
+    return row;
+  }
+}
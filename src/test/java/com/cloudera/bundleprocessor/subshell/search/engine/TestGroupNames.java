@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestGroupNames {
+
+  @Test
+  public void testNamedGroupsAreNumbered() {
+    Map<String, Integer> expected = new HashMap<>();
+    expected.put("first", 1);
+    expected.put("second", 3);
+    assertEquals(expected, GroupNames.of(Pattern.compile(
+        "(?<first>a)(?:b)(c)(?<=c)(?<!d)(?<second>e)")));
+  }
+
+  @Test
+  public void testEscapedAndQuotedParenthesesAreSkipped() {
+    assertEquals(Collections.singletonMap("name", 1),
+        GroupNames.of(Pattern.compile(
+            "\\((?<name>[(\\]]+)\\Q(?<quoted>)\\E[^)[(]]")));
+  }
+
+  @Test
+  public void testLiteralPatternHasNoGroups() {
+    assertEquals(Collections.emptyMap(), GroupNames.of(
+        Pattern.compile("(?<name>a)", Pattern.LITERAL)));
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestParallelScanner {
+
+  private static final File FOLDER = new File("target", "parallelScanner");
+  private static final int[] FILE_SIZES = {10, 0, 100000, 20, 1, 3000, 5};
+  private static final List<File> FILES = new ArrayList<>();
+  private static final List<FileRegion> REGIONS = new ArrayList<>();
+
+  /**
+   * Creates files with very different sizes.
+   */
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    assertTrue(FOLDER.mkdirs() || FOLDER.isDirectory());
+    for (int i = 0; i < FILE_SIZES.length; i++) {
+      File file = new File(FOLDER, "file" + i);
+      try (FileOutputStream fos = new FileOutputStream(file)) {
+        byte[] content = new byte[FILE_SIZES[i]];
+        Arrays.fill(content, (byte) ('a' + i));
+        fos.write(content);
+      }
+      FILES.add(file);
+      REGIONS.add(new FileRegion(file, 0, file.length()));
+    }
+  }
+
+  /**
+   * Removes the test files.
+   */
+  @AfterClass
+  public static void tearDownClass() {
+    for (File file : FILES) {
+      file.delete();
+    }
+    FOLDER.delete();
+  }
+
+  @Test
+  public void testResultsKeepFileOrder() throws IOException {
+    List<String> expected = new ParallelScanner(1)
+        .scan(REGIONS, TestParallelScanner::readContent);
+    for (int parallelism : new int[]{2, 3, 8}) {
+      List<String> actual = new ParallelScanner(parallelism)
+          .scan(REGIONS, TestParallelScanner::readContent);
+      assertEquals(expected, actual);
+    }
+    assertEquals(REGIONS.size(), expected.size());
+    for (int i = 0; i < FILE_SIZES.length; i++) {
+      assertEquals(FILE_SIZES[i], expected.get(i).length());
+    }
+  }
+
+  @Test
+  public void testExceptionIsPropagated() {
+    try {
+      new ParallelScanner(4).scan(REGIONS, region -> {
+        if (region.getLength() == 0) {
+          throw new IOException("empty file");
+        }
+        return region.getFile().getName();
+      });
+      fail("The exception of the worker should have been rethrown");
+    } catch (IOException expected) {
+      assertEquals("empty file", expected.getMessage());
+    }
+  }
+
+  @Test
+  public void testResultsAreConsumedInOrder() throws IOException {
+    List<String> consumed = new ArrayList<>();
+    new ParallelScanner(4).scanInOrder(REGIONS,
+        region -> region.getFile().getName(), consumed::add);
+    List<String> expected = new ArrayList<>();
+    for (File file : FILES) {
+      expected.add(file.getName());
+    }
+    assertEquals(expected, consumed);
+  }
+
+  @Test
+  public void testExceptionOfConsumerIsPropagated() {
+    List<String> consumed = new ArrayList<>();
+    try {
+      new ParallelScanner(4).scanInOrder(REGIONS,
+          region -> region.getFile().getName(), name -> {
+            if (consumed.size() == 2) {
+              throw new IOException("consumer failed");
+            }
+            consumed.add(name);
+          });
+      fail("The exception of the consumer should have been rethrown");
+    } catch (IOException expected) {
+      assertEquals("consumer failed", expected.getMessage());
+      assertEquals(2, consumed.size());
+    }
+  }
+
+  @Test
+  public void testScanStopsWhenConsumerIsDone() throws IOException {
+    for (int parallelism : new int[] {1, 4}) {
+      List<String> consumed = new ArrayList<>();
+      new ParallelScanner(parallelism).scanInOrder(REGIONS,
+          region -> region.getFile().getName(),
+          new ParallelScanner.ResultConsumer<String>() {
+            @Override
+            public void accept(String name) {
+              consumed.add(name);
+            }
+
+            @Override
+            public boolean isDone() {
+              return consumed.size() == 2;
+            }
+          });
+      assertEquals(Arrays.asList(
+          FILES.get(0).getName(), FILES.get(1).getName()), consumed);
+    }
+  }
+
+  @Test
+  public void testRegionsAheadOfConsumerAreBounded() throws IOException {
+    ParallelScanner scanner = new ParallelScanner(2);
+    AtomicInteger started = new AtomicInteger();
+    List<String> consumed = new ArrayList<>();
+    List<FileRegion> regions = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      regions.addAll(REGIONS);
+    }
+    scanner.scanInOrder(regions, region -> {
+      started.incrementAndGet();
+      return region.getFile().getName();
+    }, name -> {
+      // the region of this result and at most 2 per worker ahead of it
+      assertTrue(started.get() <= consumed.size() + 1 + 4);
+      consumed.add(name);
+    });
+    assertEquals(regions.size(), consumed.size());
+    scanner.close();
+  }
+
+  @Test
+  public void testClosedScannerScansOnCallingThread() throws IOException {
+    ParallelScanner scanner = new ParallelScanner(4);
+    scanner.close();
+    Thread caller = Thread.currentThread();
+    List<String> consumed = new ArrayList<>();
+    scanner.scanInOrder(REGIONS, region -> {
+      assertEquals(caller, Thread.currentThread());
+      return region.getFile().getName();
+    }, consumed::add);
+    assertEquals(REGIONS.size(), consumed.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new ParallelScanner(0);
+  }
+
+  private static String readContent(FileRegion region) throws IOException {
+    return new String(Files.readAllBytes(region.getFile().toPath()),
+        StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.cloudera.bundleprocessor.subshell.command.util.RegexElements;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class TestPatternAnalyzer {
+
+  @Test
+  public void testCommandRegex() {
+    PatternAnalysis analysis = analyze(RegexElements.TIME_STAMP + ".*"
+        + RegexElements.USER + ".*"
+        + RegexElements.SUBMIT_CONTAINER_REQUEST + ".*"
+        + RegexElements.CONTAINERID + ".*");
+    assertEquals(Arrays.asList("-", "-", " ", ":", ":", "USER=",
+        "OPERATION=Start Container Request", "container_", "_", "_", "_"),
+        analysis.getRequiredLiterals());
+    assertEquals("OPERATION=Start Container Request",
+        analysis.getLongestLiteral());
+    assertFalse(analysis.isMatchingLineBreaks());
+  }
+
+  @Test
+  public void testEscapedCharacters() {
+    PatternAnalysis analysis = analyze(RegexElements.SCHEDULER_REGEX);
+    // the dots of the package name are not escaped
+    assertEquals("ResourceManager: Using Scheduler:",
+        analysis.getLongestLiteral());
+    assertEquals("a.b\tc", analyze("\\Qa.b\\E\\tc").getLongestLiteral());
+  }
+
+  @Test
+  public void testOptionalParts() {
+    assertEquals(Arrays.asList("abc", "de"),
+        analyze("abcx?(ghi)?de").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab", "cd", "ef"),
+        analyze("ab{2,}cd+(?:ef)+").getRequiredLiterals());
+    assertEquals(Collections.singletonList("ab"),
+        analyze("ab(?=cd)(?<!ef)").getRequiredLiterals());
+  }
+
+  @Test
+  public void testAlternation() {
+    assertNull(analyze("abc|def").getLongestLiteral());
+    assertEquals(Arrays.asList("x", "y"),
+        analyze("x(abc|def)y").getRequiredLiterals());
+  }
+
+  @Test
+  public void testRequiredAlternatives() {
+    assertEquals(Arrays.asList(Arrays.asList("abc"), Arrays.asList("def")),
+        analyze("abc|def").getRequiredAlternatives());
+    assertEquals(Arrays.asList(Arrays.asList("x", "ab", "y"),
+        Arrays.asList("x", "cd", "y")),
+        analyze("x(ab|cd)y").getRequiredAlternatives());
+    assertEquals(Collections.singletonList(Arrays.asList("x", "y")),
+        analyze("x(ab|cd)?y").getRequiredAlternatives());
+    assertEquals(Collections.singletonList(Collections.emptyList()),
+        analyze("abc|.*").getRequiredAlternatives());
+    assertEquals(Collections.singletonList(Collections.emptyList()),
+        analyze("(a|b)(c|d)(e|f)(g|h)(i|j)|k").getRequiredAlternatives());
+  }
+
+  @Test
+  public void testLineBreaks() {
+    assertTrue(analyze(RegexElements.ANY_LINE).isMatchingLineBreaks());
+    assertTrue(analyze(RegexElements.EXCEPTION_WITH_STACKTRACE)
+        .isMatchingLineBreaks());
+    assertTrue(analyze("a[^b]c").isMatchingLineBreaks());
+    assertTrue(analyze("a\\sc").isMatchingLineBreaks());
+    assertTrue(analyze("(a)\\1").isMatchingLineBreaks());
+    assertFalse(analyze(RegexElements.RESOURCE_REGEX).isMatchingLineBreaks());
+    assertFalse(analyze("a[^\\n]b[\\w-]c.*").isMatchingLineBreaks());
+  }
+
+  @Test
+  public void testUnsupportedPatterns() {
+    assertUnknown(Pattern.compile("(?i)abc"));
+    assertUnknown(Pattern.compile("abc", Pattern.CASE_INSENSITIVE));
+    assertUnknown(Pattern.compile("a.c", Pattern.DOTALL));
+    assertUnknown(Pattern.compile("[a-z&&[^b]]\\p{L}"));
+  }
+
+  private static PatternAnalysis analyze(String regex) {
+    return PatternAnalyzer.analyze(Pattern.compile(regex));
+  }
+
+  private static void assertUnknown(Pattern pattern) {
+    PatternAnalysis analysis = PatternAnalyzer.analyze(pattern);
+    assertTrue(analysis.getRequiredLiterals().isEmpty());
+    assertEquals(Collections.singletonList(Collections.emptyList()),
+        analysis.getRequiredAlternatives());
+    assertTrue(analysis.isMatchingLineBreaks());
+  }
+}
@@ -20,8 +20,10 @@ package com.cloudera.bundleprocessor.subshell.search.engine;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.regex.Pattern;
 import org.junit.Test;
@@ -74,4 +76,88 @@ public class TestQuery {
     assertFalse(query.searchInNmLogs());
     assertTrue(query.searchInRmLogs());
   }
+
+  @Test
+  public void testRestrictingToTimeRange() {
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isSpanningMultipleLines()
+        .withPattern(Pattern.compile(".*"))
+        .build();
+    TimeRange timeRange = new TimeRange("2020-03-24T10:00", null);
+    Query restrictedQuery = query.restrictTo(timeRange);
+    assertNull(query.getTimeRange());
+    assertEquals(timeRange, restrictedQuery.getTimeRange());
+    assertTrue(restrictedQuery.searchInRmLogs());
+    assertFalse(restrictedQuery.searchInNmLogs());
+    assertTrue(restrictedQuery.spansMultipleLines());
+    assertNotEquals(query, restrictedQuery);
+    assertEquals(restrictedQuery,
+        query.restrictTo(new TimeRange("2020-03-24 10:00", null)));
+  }
+
+  @Test
+  public void testLimitingMatches() {
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .withPattern(Pattern.compile(".*"))
+        .build();
+    Query headQuery = query.limitTo(10, 0);
+    Query tailQuery = query.limitTo(0, 10);
+    assertFalse(query.isLimited());
+    assertEquals(10, headQuery.getHead());
+    assertEquals(0, headQuery.getTail());
+    assertEquals(10, tailQuery.getTail());
+    assertTrue(tailQuery.searchInRmLogs());
+    assertNotEquals(query, headQuery);
+    assertNotEquals(headQuery, tailQuery);
+    assertEquals(query, headQuery.withoutLimits());
+    assertEquals(query, tailQuery.withoutLimits());
+    assertEquals(query.hashCode(), tailQuery.withoutLimits().hashCode());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLimitingBothEnds() {
+    new Query.Builder().withHead(1).withTail(1).build();
+  }
+
+  @Test
+  public void testTimeRange() {
+    TimeRange timeRange = new TimeRange("2020-03-24T10:00", "2020-03-24T10");
+    assertFalse(timeRange.contains("2020-03-24 09:59:59"));
+    assertTrue(timeRange.contains("2020-03-24 10:00:00"));
+    assertTrue(timeRange.contains("2020-03-24 10:59:59"));
+    assertFalse(timeRange.contains("2020-03-24 11:00:00"));
+    assertTrue(new TimeRange(null, "2020").contains("2020-12-31 23:59:59"));
+    assertFalse(new TimeRange("2020-03-25", null)
+        .contains("2020-03-24 23:59:59"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTimeStamp() {
+    new TimeRange("yesterday", null);
+  }
+
+  @Test
+  public void testTimeRangeOfConfiguredFormat() {
+    Pattern isoFormat =
+        Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}");
+    TimeRange timeRange = new TimeRange("2020-03-24T10", null, isoFormat);
+    assertEquals("2020-03-24T10", timeRange.getFrom());
+    assertTrue(timeRange.contains("2020-03-24T10:00:00"));
+    Pattern slashFormat = Pattern.compile("\\d{4}/\\d{2}/\\d{2}");
+    assertEquals("2020/03",
+        new TimeRange(null, "2020/03", slashFormat).getTo());
+    try {
+      new TimeRange("2020-03-24", null, slashFormat);
+      fail("A bound of another format should have been rejected");
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains(slashFormat.pattern()));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyTimeRange() {
+    new TimeRange("2020-03-24T11", "2020-03-24T10:59");
+  }
 }
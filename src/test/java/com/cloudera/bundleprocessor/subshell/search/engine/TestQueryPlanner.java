@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class TestQueryPlanner {
+
+  private final List<Query> compiledQueries = new ArrayList<>();
+  private final QueryPlanner planner = new QueryPlanner(2, this::compile);
+
+  @Test
+  public void testPlansAreReused() {
+    Query query = createQuery("a.*b");
+    QueryPlan plan = planner.plan(query);
+    assertSame(plan, planner.plan(createQuery("a.*b")));
+    // the limits don't change the plan
+    assertSame(plan, planner.plan(query.limitTo(10, 0)));
+    assertEquals(Collections.singletonList(query), compiledQueries);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedPlanIsDropped() {
+    QueryPlan first = planner.plan(createQuery("first"));
+    QueryPlan second = planner.plan(createQuery("second"));
+    planner.plan(createQuery("first"));
+    planner.plan(createQuery("third"));
+    assertSame(first, planner.plan(createQuery("first")));
+    assertNotSame(second, planner.plan(createQuery("second")));
+    assertEquals(4, compiledQueries.size());
+  }
+
+  @Test
+  public void testClear() {
+    QueryPlan plan = planner.plan(createQuery("a.*b"));
+    planner.clear();
+    assertNotSame(plan, planner.plan(createQuery("a.*b")));
+  }
+
+  private QueryPlan compile(Query query) {
+    compiledQueries.add(query);
+    return new QueryPlan(query, Collections.emptyList(),
+        PatternAnalyzer.analyze(query.getPattern()), true,
+        QueryPlan.ServingIndex.NONE, null, null);
+  }
+
+  private static Query createQuery(String regex) {
+    return new Query.Builder()
+        .withPattern(Pattern.compile(regex))
+        .isCheckingNmLogs()
+        .build();
+  }
+}
@@ -18,25 +18,50 @@
 
 package com.cloudera.bundleprocessor.subshell.search.engine;
 
+import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
+import com.cloudera.bundleprocessor.subshell.command.util.RegexElements;
 import com.cloudera.bundleprocessor.subshell.context.Config;
+import com.cloudera.bundleprocessor.subshell.context.Search;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.Cache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.CacheForTest;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.ConcurrentLRUCache;
 import com.cloudera.bundleprocessor.subshell.search.engine.cache.LinesOfLogs;
+import com.cloudera.bundleprocessor.subshell.search.engine.cache.MatchSpans;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.EntityIndexBuilder;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TimeIndexBuilder;
+import com.cloudera.bundleprocessor.subshell.search.engine.index.TrigramIndexBuilder;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BlockCompressedLog;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.LogManipulator;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TestSearchEngine {
   private static final String PATTERN_STR = "TEST.*TEXT";
@@ -84,7 +109,8 @@ public class TestSearchEngine {
     assertNotNull(cache.get(query));
     List<String> expectedOutput =
         Arrays.asList("TEST_22_TEXT\nTESTTEXT\n", "TEST_SOME_TEXT\n");
-    List<String> actualOutput = cache.get(query).getLines();
+    // read from the cache
+    List<String> actualOutput = createLines(engine.createMatchers(query));
     assertListEquals(expectedOutput, actualOutput);
   }
 
@@ -110,7 +136,8 @@ public class TestSearchEngine {
     assertNotNull(cache.get(query));
     List<String> expectedOutput =
         Collections.singletonList("TEST_11_TEXT\nTESTTEXT\n");
-    List<String> actualOutput = cache.get(query).getLines();
+    // read from the cache
+    List<String> actualOutput = createLines(engine.createMatchers(query));
     assertListEquals(expectedOutput, actualOutput);
   }
 
@@ -135,10 +162,754 @@ public class TestSearchEngine {
     assertEquals("expected one match among the file names", 1, counter);
     assertNotNull(cache.get(query));
     List<String> expectedOutput = Collections.singletonList("TEST_TEXT\n");
-    List<String> actualOutput = cache.get(query).getLines();
+    // read from the cache
+    List<String> actualOutput = createLines(engine.createMatchers(query));
     assertListEquals(expectedOutput, actualOutput);
   }
 
+  @Test
+  public void testParallelSearch() throws IOException {
+    Config config = Config.createConfig(
+        new File("src/test/resources", "configForTest.json"));
+    Search search = new Search();
+    search.setParallelism("4");
+    config.setSearch(search);
+    SearchEngine parallelEngine =
+        new SearchEngine(new File("src/test/resources"));
+    parallelEngine.init(config, new CacheForTest<>());
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .withPattern(PATTERN)
+        .build();
+
+    List<String> expectedOutput = createLines(engine.createMatchers(query));
+    List<String> actualOutput =
+        createLines(parallelEngine.createMatchers(query));
+    assertEquals(Arrays.asList("TEST_11_TEXT\nTESTTEXT\n",
+        "TEST_22_TEXT\nTESTTEXT\n", "TEST_SOME_TEXT\n"), expectedOutput);
+    assertListEquals(expectedOutput, actualOutput);
+  }
+
+  @Test
+  public void testMappedFilesAreSharedAndLimited() throws IOException {
+    Config config = Config.createConfig(
+        new File("src/test/resources", "configForTest.json"));
+    Search search = new Search();
+    search.setMaxMappedFiles("2");
+    config.setSearch(search);
+    SearchEngine limitedEngine =
+        new SearchEngine(new File("src/test/resources"));
+    limitedEngine.init(config, new CacheForTest<>());
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .withPattern(PATTERN)
+        .build();
+
+    List<String> expectedOutput = createLines(engine.createMatchers(query));
+    assertListEquals(expectedOutput,
+        createLines(limitedEngine.createMatchers(query)));
+    // the three logs were mapped, only two of them stay mapped
+    assertEquals(2, limitedEngine.getMappedFilePool().getMappedFiles());
+    limitedEngine.close();
+    assertEquals(0, limitedEngine.getMappedFilePool().getMappedFiles());
+    assertEquals(0, limitedEngine.getMappedFilePool().getMappedBytes());
+  }
+
+  @Test
+  public void testChunkedSearch() throws IOException {
+    checkChunkedSearch(new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .withPattern(PATTERN)
+        .build());
+  }
+
+  @Test
+  public void testChunkedMultiLineSearch() throws IOException {
+    checkChunkedSearch(new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .isSpanningMultipleLines()
+        .withPattern(Pattern.compile("TE[A-Z_0-9]*\\n[A-Z]+\\n"))
+        .build());
+  }
+
+  @Test
+  public void testStreamingSearch() throws IOException {
+    Config config = Config.createConfig(
+        new File("src/test/resources", "configForTest.json"));
+    Search search = new Search();
+    search.setParallelism("4");
+    config.setSearch(search);
+    SearchEngine streamingEngine =
+        new SearchEngine(new File("src/test/resources"));
+    Cache<Query, LinesOfLogs> streamingCache = new CacheForTest<>();
+    streamingEngine.init(config, streamingCache);
+    streamingEngine.setChunkSize(5);
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .isCheckingFileNames()
+        .withPattern(PATTERN)
+        .build();
+
+    List<String> expectedOutput = createLines(engine.createMatchers(query));
+    assertEquals(Arrays.asList("TEST_11_TEXT\nTESTTEXT\n",
+        "TEST_22_TEXT\nTESTTEXT\n", "TEST_SOME_TEXT\n", "TEST_TEXT\n"),
+        expectedOutput);
+    // the first search fills the cache, the second one reads it
+    for (int i = 0; i < 2; i++) {
+      List<String> actualOutput = new ArrayList<>();
+      streamingEngine.search(query, new MatchListener() {
+        private final StringBuilder matchedLines = new StringBuilder();
+
+        @Override
+        public void onMatch(LogMatch match) {
+          matchedLines.append(match.group()).append("\n");
+        }
+
+        @Override
+        public void onEndOfSource() {
+          if (matchedLines.length() != 0) {
+            actualOutput.add(matchedLines.toString());
+          }
+          matchedLines.setLength(0);
+        }
+      });
+      assertListEquals(expectedOutput, actualOutput);
+      assertNotNull(streamingCache.get(query));
+    }
+  }
+
+  @Test
+  public void testLineScopedSearch() throws IOException {
+    Query lineScopedQuery = new Query.Builder()
+        .isCheckingRmLogs()
+        .withPattern(Pattern.compile("TEXT.*TEST"))
+        .build();
+    Query multiLineQuery = new Query.Builder()
+        .isCheckingRmLogs()
+        .isSpanningMultipleLines()
+        .withPattern(Pattern.compile("TEXT\\s+TEST"))
+        .build();
+
+    assertTrue(engine.plan(lineScopedQuery).isLineScoped());
+    assertEquals(Collections.singletonList("TEXTBTEST\n"),
+        createLines(engine.createMatchers(lineScopedQuery)));
+    assertFalse(engine.plan(multiLineQuery).isLineScoped());
+    assertEquals(Collections.singletonList("TEXT\nTEST\n"),
+        createLines(engine.createMatchers(multiLineQuery)));
+  }
+
+  @Test
+  public void testPatternsMatchingLineBreaks() throws IOException {
+    // e.g. the pattern of a grep, which doesn't declare multiple lines
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .withPattern(Pattern.compile("TEXT\\s+TEST"))
+        .build();
+    QueryPlan plan = engine.plan(query);
+    assertFalse(plan.isLineScoped());
+    assertEquals(QueryPlan.ServingIndex.NONE, plan.getServingIndex());
+    assertEquals(Collections.singletonList("TEXT\nTEST\n"),
+        createLines(engine.createMatchers(query)));
+  }
+
+  @Test
+  public void testQueryPlans() throws IOException {
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .withPattern(Pattern.compile("TEXT.*TEST"))
+        .build();
+    QueryPlan plan = engine.plan(query);
+    assertTrue(plan.isLineScoped());
+    assertEquals(Arrays.asList("TEXT", "TEST"), plan.getRequiredLiterals());
+    assertEquals(QueryPlan.ServingIndex.NONE, plan.getServingIndex());
+    assertTrue(plan.getTargetFiles().stream()
+        .allMatch(LogManipulator::isRMlog));
+    assertFalse(plan.getTargetFiles().isEmpty());
+    engine.createMatchers(query.limitTo(1, 0));
+    assertSame(plan, engine.plan(query));
+    try {
+      // the plans depend on the settings of the engine
+      engine.setUsingLiteralPrefilter(false);
+      assertNotSame(plan, engine.plan(query));
+    } finally {
+      engine.setUsingLiteralPrefilter(true);
+    }
+  }
+
+  @Test
+  public void testChunkedLineScopedSearch() throws IOException {
+    // the literals are too short for the prefilter
+    checkChunkedSearch(new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .withPattern(Pattern.compile("[A-Z]+_\\w+_[A-Z]+|^T[A-Z]$"))
+        .build());
+  }
+
+  @Test
+  public void testLiteralPrefilter() throws IOException {
+    String[] regexes = {PATTERN_STR, "TEST_\\d+_TEXT", "(?<=TEST_)[A-Z]+",
+        "^TEST.*$", "XT\\b", "TEXT|TEST"};
+    for (String regex : regexes) {
+      Query query = new Query.Builder()
+          .isCheckingRmLogs()
+          .isCheckingNmLogs()
+          .withPattern(Pattern.compile(regex, Pattern.MULTILINE))
+          .build();
+      SearchEngine scanningEngine =
+          new SearchEngine(new File("src/test/resources"));
+      scanningEngine.init(CONFIG, null);
+      scanningEngine.setUsingLiteralPrefilter(false);
+      List<String> expectedOutput =
+          createLines(scanningEngine.createMatchers(query));
+      for (int chunkSize = 1; chunkSize < 30; chunkSize++) {
+        SearchEngine prefilteringEngine =
+            new SearchEngine(new File("src/test/resources"));
+        prefilteringEngine.init(CONFIG, null);
+        prefilteringEngine.setChunkSize(chunkSize);
+        List<String> actualOutput =
+            createLines(prefilteringEngine.createMatchers(query));
+        assertEquals(regex + " with chunk size: " + chunkSize,
+            expectedOutput, actualOutput);
+      }
+    }
+  }
+
+  /**
+   * Checks that the query finds the same matches
+   * whatever the size of the chunks is.
+   */
+  private void checkChunkedSearch(Query query) throws IOException {
+    List<String> expectedOutput = createLines(engine.createMatchers(query));
+    for (int chunkSize = 1; chunkSize < 30; chunkSize++) {
+      SearchEngine chunkingEngine =
+          new SearchEngine(new File("src/test/resources"));
+      chunkingEngine.init(CONFIG, null);
+      chunkingEngine.setChunkSize(chunkSize);
+      List<String> actualOutput =
+          createLines(chunkingEngine.createMatchers(query));
+      assertEquals("Chunk size: " + chunkSize, expectedOutput, actualOutput);
+    }
+  }
+
+  @Test
+  public void testSharedSearch() throws IOException {
+    List<Query> queries = Arrays.asList(
+        new Query.Builder()
+            .isCheckingRmLogs()
+            .withPattern(PATTERN)
+            .build(),
+        new Query.Builder()
+            .isCheckingNmLogs()
+            .isCheckingFileNames()
+            .withPattern(Pattern.compile("TEST_\\d+_TEXT|TEST"))
+            .build(),
+        new Query.Builder()
+            .isCheckingRmLogs()
+            .isCheckingNmLogs()
+            .isSpanningMultipleLines()
+            .withPattern(Pattern.compile("TEXT\\s+TEST"))
+            .build());
+    List<List<String>> expectedOutputs = new ArrayList<>();
+    for (Query query : queries) {
+      expectedOutputs.add(createLines(engine.createMatchers(query)));
+    }
+    for (int sliceLength = 1; sliceLength < 30; sliceLength++) {
+      SearchEngine sharingEngine =
+          new SearchEngine(new File("src/test/resources"));
+      sharingEngine.init(CONFIG, null);
+      sharingEngine.setChunkSize(20);
+      sharingEngine.setSliceLength(sliceLength);
+      List<List<Matcher>> matchers =
+          sharingEngine.createMatchersOfQueries(queries);
+      for (int i = 0; i < queries.size(); i++) {
+        assertEquals("Query " + i + " with slice length: " + sliceLength,
+            expectedOutputs.get(i), createLines(matchers.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testEntityIndex() throws IOException {
+    File bundle = new File("./src/test/resources/testindexedsearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      StringBuilder rmLog = new StringBuilder();
+      StringBuilder nmLog = new StringBuilder();
+      for (int i = 0; i < 20; i++) {
+        String app = String.format("1585041342561_%04d", i % 4);
+        rmLog.append("2020-03-24 10:00:").append(i).append(" application_")
+            .append(app).append(" moved from NEW to RUNNING\n");
+        nmLog.append("2020-03-24 10:00:").append(i).append(" container_e05_")
+            .append(app).append("_01_00000").append(i % 3)
+            .append(" transitioned from NEW to RUNNING\n")
+            .append("Exception in application_").append(app).append("\n");
+      }
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          rmLog.toString().getBytes(StandardCharsets.UTF_8));
+      Files.write(new File(logDir, "NODEMANAGER.log").toPath(),
+          nmLog.toString().getBytes(StandardCharsets.UTF_8));
+      SearchEngine scanningEngine = new SearchEngine(bundle);
+      scanningEngine.init(CONFIG, null);
+      EntityIndexBuilder.build(logDir, CONFIG.getEntityIndexFile(bundle));
+      String[] regexes = {"application_1585041342561_0001.*RUNNING",
+          "container_(e\\d+_)?1585041342561_0002_\\d*_\\d*",
+          "^\\S+ \\S+ .*1585041342561_0003(?=_01)",
+          "1585041342561_0009", "application_\\d+_0001"};
+      for (String regex : regexes) {
+        Query query = new Query.Builder()
+            .isCheckingRmLogs()
+            .isCheckingNmLogs()
+            .withPattern(Pattern.compile(regex, Pattern.MULTILINE))
+            .build();
+        List<String> expectedOutput =
+            createLines(scanningEngine.createMatchers(query));
+        if (regex.startsWith("application_1585041342561")) {
+          SearchEngine plannedEngine = new SearchEngine(bundle);
+          plannedEngine.init(CONFIG, null);
+          assertEquals(QueryPlan.ServingIndex.ENTITY,
+              plannedEngine.plan(query).getServingIndex());
+        }
+        for (int chunkSize = 1; chunkSize < 200; chunkSize += 7) {
+          SearchEngine indexedEngine = new SearchEngine(bundle);
+          indexedEngine.init(CONFIG, null);
+          indexedEngine.setChunkSize(chunkSize);
+          List<String> actualOutput =
+              createLines(indexedEngine.createMatchers(query));
+          assertEquals(regex + " with chunk size: " + chunkSize,
+              expectedOutput, actualOutput);
+        }
+      }
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testTrigramIndex() throws IOException {
+    File bundle = new File("./src/test/resources/testtrigramsearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      StringBuilder rmLog = new StringBuilder();
+      StringBuilder nmLog = new StringBuilder();
+      String[] states = {"NEW", "ACCEPTED", "RUNNING", "FAILED", "FINISHED"};
+      for (int i = 0; i < 40; i++) {
+        String app = String.format("1585041342561_%04d", i % 7);
+        rmLog.append("2020-03-24 10:00:").append(i).append(" application_")
+            .append(app).append(" moved from ").append(states[i % 5])
+            .append(" to ").append(states[(i + 1) % 5]).append("\n");
+        nmLog.append("2020-03-24 10:00:").append(i).append(" container_e05_")
+            .append(app).append("_01_00000").append(i % 3)
+            .append(i % 11 == 0 ? " hit an Exception\n" : " is alive\n");
+      }
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          rmLog.toString().getBytes(StandardCharsets.UTF_8));
+      Files.write(new File(logDir, "NODEMANAGER.log").toPath(),
+          nmLog.toString().getBytes(StandardCharsets.UTF_8));
+      SearchEngine scanningEngine = new SearchEngine(bundle);
+      scanningEngine.init(CONFIG, null);
+      String[] regexes = {"moved from (NEW|ACCEPTED) to RUNNING",
+          "Exception|FAILED to", "container_\\w+_0002_01",
+          "(?<line>\\d{4}-\\d{2}-\\d{2}.*(?<expression>FINISHED).*)",
+          "not in the logs", "RUN"};
+      for (int blockLength : new int[]{1, 100, 1000}) {
+        TrigramIndexBuilder.build(logDir, CONFIG.getTrigramIndexFile(bundle),
+            blockLength);
+        for (String regex : regexes) {
+          Query query = new Query.Builder()
+              .isCheckingRmLogs()
+              .isCheckingNmLogs()
+              .withPattern(Pattern.compile(regex, Pattern.MULTILINE))
+              .build();
+          List<String> expectedOutput =
+              createLines(scanningEngine.createMatchers(query));
+          for (int chunkSize = 1; chunkSize < 400; chunkSize += 13) {
+            SearchEngine indexedEngine = new SearchEngine(bundle);
+            indexedEngine.init(CONFIG, null);
+            indexedEngine.setChunkSize(chunkSize);
+            List<String> actualOutput =
+                createLines(indexedEngine.createMatchers(query));
+            assertEquals(regex + " with block length: " + blockLength
+                    + " and chunk size: " + chunkSize,
+                expectedOutput, actualOutput);
+          }
+        }
+      }
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testTimeRange() throws IOException {
+    File bundle = new File("./src/test/resources/testtimerangesearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      StringBuilder rmLog = new StringBuilder();
+      for (int i = 0; i < 60; i++) {
+        rmLog.append(String.format("2020-03-24 10:%02d:00 INFO event %d\n",
+            i, i));
+        if (i % 7 == 0) {
+          rmLog.append("2020-03-24 10:").append(String.format("%02d", i))
+              .append(":30 ERROR java.io.IOException: failure ").append(i)
+              .append("\n\tat Foo.bar(Foo.java:1)")
+              .append("\n\tat Foo.main(Foo.java:2)\n");
+        }
+      }
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          rmLog.toString().getBytes(StandardCharsets.UTF_8));
+      TimeRange timeRange =
+          new TimeRange("2020-03-24T10:10", "2020-03-24T10:19");
+      Query lineQuery = new Query.Builder()
+          .isCheckingRmLogs()
+          .withPattern(Pattern.compile(CONFIG.getRegexes().getTimeStamp()
+              + ".*(?<expression>event \\d+).*"))
+          .withTimeRange(timeRange)
+          .build();
+      Query exceptionQuery = new Query.Builder()
+          .isCheckingRmLogs()
+          .isSpanningMultipleLines()
+          .withPattern(Pattern.compile(RegexElements.ANY_LINE
+              + RegexElements.EXCEPTION_WITH_STACKTRACE))
+          .withTimeRange(timeRange)
+          .build();
+      SearchEngine scanningEngine = new SearchEngine(bundle);
+      scanningEngine.init(CONFIG, null);
+      List<String> expectedLines =
+          createLines(scanningEngine.createMatchers(lineQuery));
+      List<String> expectedExceptions =
+          createLines(scanningEngine.createMatchers(exceptionQuery));
+      assertEquals(10, expectedLines.get(0).split("\n").length);
+      assertTrue(expectedLines.get(0).startsWith("2020-03-24 10:10:00"));
+      // the matches start at the line before the exception
+      assertEquals(1, expectedExceptions.size());
+      assertTrue(expectedExceptions.get(0).startsWith("2020-03-24 10:14:00"));
+      assertTrue(expectedExceptions.get(0).contains("failure 14"));
+
+      TimeIndexBuilder.build(logDir, CONFIG.getTimeIndexFile(bundle),
+          Pattern.compile(CONFIG.getRegexes().getTimeStamp()), 100);
+      for (int chunkSize = 1; chunkSize < 500; chunkSize += 23) {
+        SearchEngine indexedEngine = new SearchEngine(bundle);
+        indexedEngine.init(CONFIG, null);
+        indexedEngine.setChunkSize(chunkSize);
+        assertEquals("chunk size: " + chunkSize, expectedLines,
+            createLines(indexedEngine.createMatchers(lineQuery)));
+        assertEquals("chunk size: " + chunkSize, expectedExceptions,
+            createLines(indexedEngine.createMatchers(exceptionQuery)));
+      }
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testLinesWithoutTimeStampInTimeRange() throws IOException {
+    File bundle = new File("./src/test/resources/testinheritedtimesearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          ("2020-03-24 10:00:00 INFO start\n"
+              + "\tat Foo.early(Foo.java:1)\n"
+              + "2020-03-24 10:10:00 ERROR failure\n"
+              + "\tat Foo.inRange(Foo.java:2)\n"
+              + "\tat Foo.inRange(Foo.java:3)\n"
+              + "2020-03-24 10:20:00 INFO end\n"
+              + "\tat Foo.late(Foo.java:4)\n")
+              .getBytes(StandardCharsets.UTF_8));
+      Query query = new Query.Builder()
+          .isCheckingRmLogs()
+          .withPattern(Pattern.compile("at Foo\\.\\w+"))
+          .withTimeRange(
+              new TimeRange("2020-03-24T10:05", "2020-03-24T10:15"))
+          .build();
+      List<String> expectedLines =
+          Collections.singletonList("at Foo.inRange\nat Foo.inRange\n");
+      for (boolean indexed : new boolean[]{false, true}) {
+        if (indexed) {
+          // every line is a block of its own
+          TimeIndexBuilder.build(logDir, CONFIG.getTimeIndexFile(bundle),
+              Pattern.compile(CONFIG.getRegexes().getTimeStamp()), 1);
+        }
+        // the chunks start in the middle of the stack traces too
+        for (int chunkSize = 1; chunkSize < 250; chunkSize += 7) {
+          SearchEngine timedEngine = new SearchEngine(bundle);
+          timedEngine.init(CONFIG, null);
+          timedEngine.setChunkSize(chunkSize);
+          assertEquals("chunk size: " + chunkSize + ", indexed: " + indexed,
+              expectedLines, createLines(timedEngine.createMatchers(query)));
+        }
+      }
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testFollow() throws IOException {
+    File bundle = new File("./src/test/resources/testfollowingsearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      File rmLog = new File(logDir, "RESOURCEMANAGER.log");
+      append(rmLog, "TEST_1_TEXT\nOTHER\nTEST_2");
+      SearchEngine followingEngine = new SearchEngine(bundle);
+      followingEngine.init(CONFIG, null);
+      followingEngine.setChunkSize(7);
+      Query query = new Query.Builder()
+          .isCheckingRmLogs()
+          .isCheckingNmLogs()
+          .withPattern(PATTERN)
+          .build();
+      List<String> matches = new ArrayList<>();
+      MatchListener listener = new MatchListener() {
+        @Override
+        public void onMatch(LogMatch match) {
+          matches.add(match.group());
+        }
+
+        @Override
+        public void onEndOfSource() {
+        }
+      };
+      LogTracker tracker = new LogTracker();
+      List<Query> queries = Collections.singletonList(query);
+      List<MatchListener> listeners = Collections.singletonList(listener);
+
+      // the last line is not searched until its line break is written
+      followingEngine.follow(queries, listeners, tracker);
+      assertEquals(Collections.singletonList("TEST_1_TEXT"), matches);
+      assertEquals(18, tracker.getOffset(rmLog));
+      matches.clear();
+      followingEngine.follow(queries, listeners, tracker);
+      assertTrue(matches.isEmpty());
+
+      append(rmLog, "_TEXT\nTEST_3_TEXT\n");
+      File nmLog = new File(logDir, "NODEMANAGER.log");
+      append(nmLog, "TEST_4_TEXT\n");
+      followingEngine.follow(queries, listeners, tracker);
+      Collections.sort(matches);
+      assertEquals(Arrays.asList("TEST_2_TEXT", "TEST_3_TEXT", "TEST_4_TEXT"),
+          matches);
+      assertEquals(rmLog.length(), tracker.getOffset(rmLog));
+      assertEquals(nmLog.length(), tracker.getOffset(nmLog));
+
+      // a truncated log is searched again from the beginning
+      matches.clear();
+      Files.write(rmLog.toPath(),
+          "TEST_5_TEXT\n".getBytes(StandardCharsets.UTF_8));
+      followingEngine.follow(queries, listeners, tracker);
+      assertEquals(Collections.singletonList("TEST_5_TEXT"), matches);
+      followingEngine.close();
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  private static void append(File file, String text) throws IOException {
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  @Test
+  public void testCompressedLogs() throws IOException {
+    File rawBundle = new File("./src/test/resources/testrawsearch");
+    File compressedBundle =
+        new File("./src/test/resources/testcompressedsearch");
+    File rawLogDir = CONFIG.getLogDir(rawBundle);
+    File compressedLogDir = CONFIG.getLogDir(compressedBundle);
+    try {
+      FileUtils.findOrCreateDirectory(rawLogDir);
+      FileUtils.findOrCreateDirectory(compressedLogDir);
+      StringBuilder rmLog = new StringBuilder();
+      for (int i = 0; i < 40; i++) {
+        rmLog.append(String.format("2020-03-24 10:%02d:00 application_"
+            + "1585041342561_%04d TEST_%d_TEXT\n", i, i % 4, i));
+        if (i % 9 == 0) {
+          rmLog.append("2020-03-24 10:").append(String.format("%02d", i))
+              .append(":30 ERROR java.io.IOException: failure ").append(i)
+              .append("\n\tat Foo.bar(Foo.java:1)\n");
+        }
+      }
+      byte[] content = rmLog.toString().getBytes(StandardCharsets.UTF_8);
+      Files.write(new File(rawLogDir, "RESOURCEMANAGER.log").toPath(),
+          content);
+      // small blocks, so the lines and the chunks cross their boundaries
+      BlockCompressedLog.write(new ByteArrayInputStream(content),
+          new File(compressedLogDir,
+              "RESOURCEMANAGER.log" + BlockCompressedLog.EXTENSION), 6);
+      EntityIndexBuilder.build(compressedLogDir,
+          CONFIG.getEntityIndexFile(compressedBundle));
+      Query lineQuery = new Query.Builder()
+          .isCheckingRmLogs()
+          .withPattern(PATTERN)
+          .build();
+      Query entityQuery = new Query.Builder()
+          .isCheckingRmLogs()
+          .withPattern(Pattern.compile("^.*1585041342561_0002.*$",
+              Pattern.MULTILINE))
+          .build();
+      Query exceptionQuery = new Query.Builder()
+          .isCheckingRmLogs()
+          .isSpanningMultipleLines()
+          .withPattern(Pattern.compile(RegexElements.ANY_LINE
+              + RegexElements.EXCEPTION_WITH_STACKTRACE))
+          .build();
+      SearchEngine rawEngine = new SearchEngine(rawBundle);
+      rawEngine.init(CONFIG, null);
+      for (Query query : Arrays.asList(
+          lineQuery, entityQuery, exceptionQuery)) {
+        List<String> expectedOutput =
+            createLines(rawEngine.createMatchers(query));
+        assertFalse(expectedOutput.isEmpty());
+        for (int chunkSize = 1; chunkSize < 300; chunkSize += 37) {
+          SearchEngine compressedEngine = new SearchEngine(compressedBundle);
+          compressedEngine.init(CONFIG, null);
+          compressedEngine.setChunkSize(chunkSize);
+          assertEquals("chunk size: " + chunkSize, expectedOutput,
+              createLines(compressedEngine.createMatchers(query)));
+          assertTrue(compressedEngine.getBlockCache().getCachedBytes() > 0);
+          compressedEngine.close();
+        }
+      }
+      rawEngine.close();
+    } finally {
+      FileUtils.deleteDirectory(rawBundle.getAbsolutePath());
+      FileUtils.deleteDirectory(compressedBundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testLimitedSearch() throws IOException {
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .isCheckingFileNames()
+        .withPattern(PATTERN)
+        .build();
+    List<String> matches = Arrays.asList("TEST_11_TEXT", "TESTTEXT",
+        "TEST_22_TEXT", "TESTTEXT", "TEST_SOME_TEXT", "TEST_TEXT");
+    Config config = Config.createConfig(
+        new File("src/test/resources", "configForTest.json"));
+    for (String parallelism : new String[] {"1", "4"}) {
+      Search search = new Search();
+      search.setParallelism(parallelism);
+      config.setSearch(search);
+      for (int chunkSize = 1; chunkSize < 30; chunkSize += 7) {
+        SearchEngine limitingEngine =
+            new SearchEngine(new File("src/test/resources"));
+        Cache<Query, LinesOfLogs> limitingCache = new CacheForTest<>();
+        limitingEngine.init(config, limitingCache);
+        limitingEngine.setChunkSize(chunkSize);
+        for (int limit = 1; limit <= matches.size() + 1; limit++) {
+          String message = "Chunk size: " + chunkSize + ", limit: " + limit;
+          int end = Math.min(limit, matches.size());
+          assertEquals(message, matches.subList(0, end), splitLines(
+              limitingEngine.createMatchers(query.limitTo(limit, 0))));
+          assertEquals(message, limit > matches.size(),
+              limitingCache.get(query) != null);
+          limitingCache.reset();
+          int start = Math.max(0, matches.size() - limit);
+          assertEquals(message, matches.subList(start, matches.size()),
+              splitLines(
+                  limitingEngine.createMatchers(query.limitTo(0, limit))));
+          if (limit < matches.size()) {
+            assertEquals(message, null, limitingCache.get(query));
+          }
+          limitingCache.reset();
+        }
+        limitingEngine.close();
+      }
+    }
+  }
+
+  @Test
+  public void testLimitedStreamingSearch() throws IOException {
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .withPattern(PATTERN)
+        .build();
+    // the first search doesn't fill the cache, the second one fills it,
+    // and the last one reads it
+    List<Query> queries = Arrays.asList(query.limitTo(3, 0),
+        query.limitTo(6, 0), query.limitTo(3, 0));
+    List<List<String>> expectedOutputs = Arrays.asList(
+        Arrays.asList("TEST_11_TEXT\nTESTTEXT\n", "TEST_22_TEXT\n"),
+        Arrays.asList("TEST_11_TEXT\nTESTTEXT\n",
+            "TEST_22_TEXT\nTESTTEXT\n", "TEST_SOME_TEXT\n"),
+        Arrays.asList("TEST_11_TEXT\nTESTTEXT\n", "TEST_22_TEXT\n"));
+    for (int i = 0; i < queries.size(); i++) {
+      List<String> actualOutput = new ArrayList<>();
+      engine.search(queries.get(i), new MatchListener() {
+        private final StringBuilder matchedLines = new StringBuilder();
+
+        @Override
+        public void onMatch(LogMatch match) {
+          matchedLines.append(match.group()).append("\n");
+        }
+
+        @Override
+        public void onEndOfSource() {
+          actualOutput.add(matchedLines.toString());
+          matchedLines.setLength(0);
+        }
+      });
+      assertEquals(expectedOutputs.get(i), actualOutput);
+      assertEquals(i > 0, cache.get(query) != null);
+    }
+  }
+
+  @Test
+  public void testCancelledSearchIsNotCached() throws IOException {
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .withPattern(PATTERN)
+        .build();
+    List<String> matches = new ArrayList<>();
+    engine.search(query, new MatchListener() {
+      @Override
+      public void onMatch(LogMatch match) {
+        matches.add(match.group());
+      }
+
+      @Override
+      public void onEndOfSource() {
+      }
+
+      @Override
+      public boolean isSatisfied() {
+        // cancelled after the first match
+        return !matches.isEmpty();
+      }
+    });
+    assertEquals(Collections.singletonList("TEST_11_TEXT"), matches);
+    assertEquals(null, cache.get(query));
+  }
+
+  @Test
+  public void testLimitedSearchReadingCache() throws IOException {
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .withPattern(PATTERN)
+        .build();
+    cache.set(query, new LinesOfLogs(
+        Arrays.asList("TEST_READING_TEXT\nTEST__TEXT\n", "TEST_CACHE_TEXT\n")));
+    assertEquals(Arrays.asList("TEST_READING_TEXT"),
+        splitLines(engine.createMatchers(query.limitTo(1, 0))));
+    assertEquals(Arrays.asList("TEST__TEXT", "TEST_CACHE_TEXT"),
+        splitLines(engine.createMatchers(query.limitTo(0, 2))));
+  }
+
   @Test
   public void testReadingCache() throws IOException {
     Query query = new Query.Builder()
@@ -154,6 +925,300 @@ public class TestSearchEngine {
     assertListEquals(expectedOutput, actualOutput);
   }
 
+  @Test
+  public void testMatchSpansAreCached() throws IOException {
+    Query query = new Query.Builder()
+        .isCheckingNmLogs()
+        .withPattern(PATTERN)
+        .build();
+    List<String> firstMatches = collectMatches(query);
+
+    MatchSpans spans = (MatchSpans) cache.get(query);
+    assertEquals(2, spans.getSourceCount());
+    assertEquals(3, spans.getMatchCount());
+    // the matches are cached by their positions in the logs
+    assertTrue(spans.getLines().isEmpty());
+    assertEquals("NODEMANAGER.log", spans.getFileName(0));
+    assertNull(spans.getText(0));
+    assertEquals(31, spans.getStart(0, 1));
+    assertEquals(8, spans.getLength(0, 1));
+    assertArrayEquals(new int[]{0, 8}, spans.getOffsets(0, 1));
+    assertEquals(firstMatches, collectMatches(query));
+    assertEquals(Arrays.asList("TESTTEXT", "end of source",
+        "TEST_SOME_TEXT", "end of source"),
+        collectMatches(query.limitTo(0, 2)));
+    assertEquals(Arrays.asList("TEST_22_TEXT", "end of source"),
+        collectMatches(query.limitTo(1, 0)));
+  }
+
+  @Test
+  public void testCachedMatchesSpanningLines() throws IOException {
+    // the matches contain the separators of the cached matches,
+    // so only their spans tell where they are
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .isSpanningMultipleLines()
+        .withPattern(Pattern.compile("(?s)TEST.{0,20}"))
+        .build();
+    List<String> firstMatches = collectMatches(query);
+    assertTrue(cache.get(query) instanceof MatchSpans);
+    assertEquals(firstMatches, collectMatches(query));
+  }
+
+  @Test
+  public void testMatchesAreNotJoined() throws IOException {
+    // a pattern matching across the separator of two matches
+    // must still receive them one by one
+    File bundle = new File("./src/test/resources/testseparatorsearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          "x-y\n".getBytes(StandardCharsets.UTF_8));
+      SearchEngine separatingEngine = new SearchEngine(bundle);
+      separatingEngine.init(CONFIG, new ConcurrentLRUCache<>(4));
+      Query query = new Query.Builder()
+          .isCheckingRmLogs()
+          .isSpanningMultipleLines()
+          .withPattern(Pattern.compile("x\\s+y|x|(?<last>y)"))
+          .build();
+      for (int i = 0; i < 2; i++) {
+        List<String> matches = new ArrayList<>();
+        separatingEngine.search(query, new MatchListener() {
+          @Override
+          public void onMatch(LogMatch match) {
+            matches.add(match.group() + ":" + match.group("last"));
+          }
+
+          @Override
+          public void onEndOfSource() {
+          }
+        });
+        // the second search reads the cached matches
+        assertEquals(Arrays.asList("x:null", "y:y"), matches);
+      }
+      separatingEngine.close();
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testCachedGroupsAreReadFromLogs() throws IOException {
+    File bundle = new File("./src/test/resources/testcachedgroupsearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          "caf\u00e9 id=42 done\nid=7 \u4e2d\u6587\nid=8\n"
+              .getBytes(StandardCharsets.UTF_8));
+      Cache<Query, LinesOfLogs> groupCache = new ConcurrentLRUCache<>(4);
+      SearchEngine groupEngine = new SearchEngine(bundle);
+      groupEngine.init(CONFIG, groupCache);
+      Query query = new Query.Builder()
+          .isCheckingRmLogs()
+          .withPattern(Pattern.compile(
+              "id=(?<id>\\d+)(?= (?<next>\\S+))?"))
+          .build();
+      for (int i = 0; i < 2; i++) {
+        List<String> matches = new ArrayList<>();
+        groupEngine.search(query, new MatchListener() {
+          @Override
+          public void onMatch(LogMatch match) {
+            matches.add(match.group() + ":" + match.group("id") + ":"
+                + match.group("next"));
+          }
+
+          @Override
+          public void onEndOfSource() {
+          }
+        });
+        // the second search reads the texts from the log
+        // and the groups from the cached offsets
+        assertEquals(Arrays.asList("id=42:42:done",
+            "id=7:7:\u4e2d\u6587", "id=8:8:null"), matches);
+        assertTrue(groupCache.get(query) instanceof MatchSpans);
+      }
+      groupEngine.close();
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testBacktrackingMatchIsStopped() throws IOException {
+    File bundle = new File("./src/test/resources/testbacktrackingsearch");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      StringBuilder line = new StringBuilder();
+      for (int i = 0; i < 64; i++) {
+        line.append('a');
+      }
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          (line + "\n").getBytes(StandardCharsets.UTF_8));
+      SearchEngine backtrackingEngine = new SearchEngine(bundle);
+      backtrackingEngine.init(CONFIG, new ConcurrentLRUCache<>(4));
+      // the match can't be found before the end of the universe
+      Query query = new Query.Builder()
+          .isCheckingRmLogs()
+          .withPattern(Pattern.compile("(.*a){12}b"))
+          .build();
+      long deadline = System.nanoTime() + 200_000_000L;
+      List<String> matches = new ArrayList<>();
+      backtrackingEngine.search(query, new MatchListener() {
+        @Override
+        public void onMatch(LogMatch match) {
+          matches.add(match.group());
+        }
+
+        @Override
+        public void onEndOfSource() {
+        }
+
+        @Override
+        public boolean isSatisfied() {
+          return System.nanoTime() - deadline >= 0;
+        }
+      });
+      assertTrue(matches.isEmpty());
+      backtrackingEngine.close();
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testUtf8Logs() throws IOException {
+    // the second byte of the A with ring is a line break in ISO-8859-1
+    File bundle = new File("./src/test/resources/testutf8search");
+    File logDir = CONFIG.getLogDir(bundle);
+    try {
+      FileUtils.findOrCreateDirectory(logDir);
+      Files.write(new File(logDir, "RESOURCEMANAGER.log").toPath(),
+          "node \u00c5s\u00e9 started\nnode b\u00e9ta started\n"
+              .getBytes(StandardCharsets.UTF_8));
+      SearchEngine utf8Engine = new SearchEngine(bundle);
+      utf8Engine.init(CONFIG, new ConcurrentLRUCache<>(4));
+      List<Query> queries = Arrays.asList(
+          new Query.Builder().isCheckingRmLogs()
+              .withPattern(Pattern.compile("node (?<name>.+) started"))
+              .build(),
+          new Query.Builder().isCheckingRmLogs().isSpanningMultipleLines()
+              .withPattern(Pattern.compile("node (?<name>.+) started"))
+              .build(),
+          new Query.Builder().isCheckingRmLogs()
+              .withPattern(Pattern.compile("(?<name>\\S*\u00e9\\S*)"))
+              .build());
+      for (Query query : queries) {
+        List<String> names = new ArrayList<>();
+        utf8Engine.search(query, new MatchListener() {
+          @Override
+          public void onMatch(LogMatch match) {
+            names.add(match.group("name"));
+          }
+
+          @Override
+          public void onEndOfSource() {
+          }
+        });
+        assertEquals(query.getPattern().pattern(),
+            Arrays.asList("\u00c5s\u00e9", "b\u00e9ta"), names);
+      }
+      utf8Engine.close();
+    } finally {
+      FileUtils.deleteDirectory(bundle.getAbsolutePath());
+    }
+  }
+
+  @Test
+  public void testIdenticalSearchesRunOnce() throws Exception {
+    SearchEngine sharedEngine =
+        new SearchEngine(new File("src/test/resources"));
+    sharedEngine.init(CONFIG, new ConcurrentLRUCache<>(4));
+    Query query = new Query.Builder()
+        .isCheckingRmLogs()
+        .isCheckingNmLogs()
+        .withPattern(PATTERN)
+        .build();
+    CountDownLatch firstMatch = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<String>> first = executor.submit(() -> {
+        List<String> matches = new ArrayList<>();
+        sharedEngine.search(query, new MatchListener() {
+          @Override
+          public void onMatch(LogMatch match) {
+            firstMatch.countDown();
+            try {
+              release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            matches.add(match.group());
+          }
+
+          @Override
+          public void onEndOfSource() {
+          }
+        });
+        return matches;
+      });
+      assertTrue(firstMatch.await(10, TimeUnit.SECONDS));
+      Future<List<String>> second = executor.submit(() -> {
+        List<String> matches = new ArrayList<>();
+        sharedEngine.search(query, new MatchListener() {
+          @Override
+          public void onMatch(LogMatch match) {
+            matches.add(match.group());
+          }
+
+          @Override
+          public void onEndOfSource() {
+          }
+        });
+        return matches;
+      });
+      // the second search waits for the first one instead of scanning
+      Thread.sleep(200);
+      assertFalse(second.isDone());
+      release.countDown();
+      assertEquals(Arrays.asList("TEST_11_TEXT", "TESTTEXT", "TEST_22_TEXT",
+          "TESTTEXT", "TEST_SOME_TEXT"), first.get());
+      assertEquals(first.get(), second.get());
+    } finally {
+      release.countDown();
+      executor.shutdown();
+      sharedEngine.close();
+    }
+  }
+
+  private static List<String> collectMatches(Query query) throws IOException {
+    List<String> matches = new ArrayList<>();
+    engine.search(query, new MatchListener() {
+      @Override
+      public void onMatch(LogMatch match) {
+        matches.add(match.group());
+      }
+
+      @Override
+      public void onEndOfSource() {
+        matches.add("end of source");
+      }
+    });
+    return matches;
+  }
+
+  private List<String> splitLines(List<Matcher> matchers) {
+    List<String> lines = new ArrayList<>();
+    for (String matchedLines : createLines(matchers)) {
+      lines.addAll(Arrays.asList(matchedLines.split("\n")));
+    }
+    return lines;
+  }
+
   private List<String> createLines(List<Matcher> matchers) {
     List<String> matchedLines = new ArrayList<>();
     for (Matcher matcher : matchers) {
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * CacheBenchmark measures the throughput of the in-memory caches
+ * shared by concurrent searches: mostly hits, and a miss
+ * writing its value now and then. The caches which are not safe
+ * to share are synchronized, as they would have to be.
+ * It is not a unit test, it can be run with its main method
+ * or with {@code org.openjdk.jmh.Main CacheBenchmark}
+ * from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(8)
+@Fork(1)
+public class CacheBenchmark {
+
+  private static final int CAPACITY = 64;
+  private static final int KEYS = 80;
+  /**
+   * One access of this many is a write.
+   */
+  private static final int WRITE_RATIO = 20;
+
+  @Param({"InMemoryLRUCache", "WeightedLRUCache", "ConcurrentLRUCache"})
+  private String cacheType;
+
+  private Cache<String, LinesOfLogs> cache;
+  private final List<String> keys = new ArrayList<>();
+  private final LinesOfLogs value =
+      new LinesOfLogs(Collections.singletonList("matched line\n"));
+
+  /**
+   * Creates the cache, and fills it with most of the keys.
+   */
+  @Setup
+  public void setUp() {
+    if (cacheType.equals("InMemoryLRUCache")) {
+      cache = new SynchronizedCache<>(new InMemoryLRUCache<>(CAPACITY));
+    } else if (cacheType.equals("WeightedLRUCache")) {
+      cache = new WeightedLRUCache<>(
+          CAPACITY * (WeightedLRUCache.ENTRY_OVERHEAD
+              + value.estimateRetainedSize()),
+          LinesOfLogs::estimateRetainedSize);
+    } else {
+      cache = new ConcurrentLRUCache<>(CAPACITY);
+    }
+    for (int i = 0; i < KEYS; i++) {
+      keys.add("query " + i);
+      cache.set(keys.get(i), value);
+    }
+  }
+
+  @Benchmark
+  public LinesOfLogs access() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    // the lower keys are more popular
+    String key = keys.get(
+        Math.min(random.nextInt(KEYS), random.nextInt(KEYS)));
+    LinesOfLogs cached = cache.get(key);
+    if (cached == null && random.nextInt(WRITE_RATIO) == 0) {
+      cache.set(key, value);
+    }
+    return cached;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(CacheBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+  /**
+   * Makes a cache safe to share by locking it for every access.
+   */
+  private static final class SynchronizedCache<K, V> implements Cache<K, V> {
+
+    private final Cache<K, V> cache;
+
+    SynchronizedCache(Cache<K, V> cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    public synchronized V get(K key) {
+      return cache.get(key);
+    }
+
+    @Override
+    public synchronized void set(K key, V value) {
+      cache.set(key, value);
+    }
+
+    @Override
+    public synchronized void remove(K key) {
+      cache.remove(key);
+    }
+
+    @Override
+    public synchronized void reset() {
+      cache.reset();
+    }
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestCacheValueCodec {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final String KEY = "Query{pattern: caf\u00e9}";
+
+  private static final List<String> LINES = Arrays.asList(
+      "2021-03-05 10:00:00,000 INFO first line\nsecond line",
+      "",
+      "caf\u00e9 \u4e2d\u6587 \ud83d\ude00");
+
+  @Test
+  public void testLinesOfLogs() throws Exception {
+    checkRoundTrip(new LinesOfLogs(LINES), false);
+    checkRoundTrip(new LinesOfLogs(LINES), true);
+    checkRoundTrip(new LinesOfLogs(Collections.emptyList()), false);
+  }
+
+  @Test
+  public void testMatchSpans() throws Exception {
+    MatchSpans spans = new MatchSpans.Builder(1)
+        .addMatch("NODEMANAGER.log", 1L << 40, 5, new int[]{0, 5, 1, 2})
+        .addMatch("NODEMANAGER.log", 7, 300, new int[]{0, 290, -1, -1})
+        .endSource()
+        .addMatch(LINES.get(2), new int[]{0, 4, 5, 7})
+        .endSource()
+        .addMatch("RESOURCEMANAGER.log", 0, 0, new int[]{0, 0, 0, 0})
+        .endSource()
+        .build();
+    checkRoundTrip(spans, false);
+    checkRoundTrip(spans, true);
+  }
+
+  @Test
+  public void testReadingVersion2() throws Exception {
+    // the lines of version 2 followed by the spans of its matches
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    byte[] key = KEY.getBytes(StandardCharsets.UTF_8);
+    out.writeByte(key.length);
+    out.write(key);
+    out.writeByte(1);
+    out.writeByte(7);
+    out.write("TEST\nX\n".getBytes(StandardCharsets.UTF_8));
+    out.write(new byte[]{1, 0, 4});
+    byte[] payload = bytes.toByteArray();
+    CRC32 checksum = new CRC32();
+    checksum.update(payload);
+    ByteBuffer file = ByteBuffer.allocate(
+        CacheValueCodec.HEADER_LENGTH + payload.length);
+    file.putInt(CacheValueCodec.MAGIC).put((byte) 2).put((byte) 2)
+        .put((byte) 0).put((byte) 0).putInt(payload.length)
+        .putInt(payload.length).putInt((int) checksum.getValue())
+        .put(payload);
+    File written = folder.newFile();
+    Files.write(written.toPath(), file.array());
+    // its matches are searched again in the matched texts
+    assertEquals(new LinesOfLogs(Collections.singletonList("TEST\nX\n")),
+        CacheValueCodec.read(written, KEY));
+  }
+
+  @Test
+  public void testDecodingLinesWhenNeeded() throws Exception {
+    File file = folder.newFile();
+    CacheValueCodec.write(file, new LinesOfLogs(LINES), KEY, false);
+    LinesOfLogs read = (LinesOfLogs) CacheValueCodec.read(file, KEY);
+    assertTrue(read.getLines() instanceof EncodedLines);
+    String[] decoded = getDecoded((EncodedLines) read.getLines());
+    assertNull(decoded[2]);
+    assertEquals(LINES.get(2), read.getLines().get(2));
+    assertEquals(LINES.get(2), decoded[2]);
+    assertNull(decoded[0]);
+    // the lines are not decoded to be weighed either
+    assertTrue(read.estimateRetainedSize()
+        >= new LinesOfLogs(LINES).estimateRetainedSize());
+    assertNull(decoded[0]);
+  }
+
+  @Test
+  public void testMappingLargeFiles() throws Exception {
+    List<String> lines = new ArrayList<>();
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      line.append("line ").append(i).append('\n');
+      lines.add(line.toString());
+    }
+    LinesOfLogs value = new LinesOfLogs(lines);
+    File file = folder.newFile();
+    CacheValueCodec.write(file, value, KEY, false);
+    assertTrue(file.length() > CacheValueCodec.MAPPING_THRESHOLD);
+    LinesOfLogs read = (LinesOfLogs) CacheValueCodec.read(file, KEY);
+    // the mapped value is still readable after the file is replaced
+    CacheValueCodec.write(file, new LinesOfLogs(LINES), KEY, false);
+    assertEquals(value, read);
+    assertEquals(new LinesOfLogs(LINES), CacheValueCodec.read(file, KEY));
+    // compression makes the file smaller
+    CacheValueCodec.write(file, value, KEY, true);
+    assertTrue(file.length() < CacheValueCodec.MAPPING_THRESHOLD);
+    assertEquals(value, CacheValueCodec.read(file, KEY));
+  }
+
+  @Test
+  public void testOtherValues() throws Exception {
+    File file = folder.newFile();
+    CacheValueCodec.write(file, "text", KEY, false);
+    assertEquals("text", CacheValueCodec.read(file, KEY));
+    CacheValueCodec.write(file, new ArrayList<>(LINES), KEY, true);
+    assertEquals(LINES, CacheValueCodec.read(file, KEY));
+  }
+
+  @Test
+  public void testReadingForOtherKeys() throws Exception {
+    File file = folder.newFile();
+    CacheValueCodec.write(file, new LinesOfLogs(LINES), KEY, false);
+    assertNull(CacheValueCodec.read(file, KEY + " "));
+    assertNull(CacheValueCodec.read(file, ""));
+    CacheValueCodec.write(file, "text", KEY, true);
+    assertNull(CacheValueCodec.read(file, "other"));
+    assertEquals("text", CacheValueCodec.read(file, KEY));
+  }
+
+  @Test
+  public void testSerializingReadValues() throws Exception {
+    File file = folder.newFile();
+    CacheValueCodec.write(file, new LinesOfLogs(LINES), KEY, false);
+    Serializable read = CacheValueCodec.read(file, KEY);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(read);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertEquals(new LinesOfLogs(LINES), in.readObject());
+    }
+  }
+
+  @Test
+  public void testCorruptFiles() throws Exception {
+    File file = folder.newFile();
+    CacheValueCodec.write(file, new LinesOfLogs(LINES), KEY, false);
+    try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+      access.seek(CacheValueCodec.HEADER_LENGTH + 10);
+      access.write('X');
+    }
+    checkRejected(file, "Corrupt");
+    CacheValueCodec.write(file, new LinesOfLogs(LINES), KEY, false);
+    try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+      access.setLength(file.length() - 1);
+    }
+    checkRejected(file, "Truncated");
+    CacheValueCodec.write(file, new LinesOfLogs(LINES), KEY, false);
+    try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+      access.seek(4);
+      access.write(CacheValueCodec.VERSION + 1);
+    }
+    checkRejected(file, "Unsupported version");
+  }
+
+  private void checkRoundTrip(LinesOfLogs value, boolean compress)
+      throws Exception {
+    File file = folder.newFile();
+    CacheValueCodec.write(file, value, KEY, compress);
+    Serializable read = CacheValueCodec.read(file, KEY);
+    assertEquals(value.getClass(), read.getClass());
+    assertEquals(value, read);
+  }
+
+  private static void checkRejected(File file, String message)
+      throws ClassNotFoundException {
+    try {
+      CacheValueCodec.read(file, KEY);
+      fail("The file should be rejected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+    }
+  }
+
+  private static String[] getDecoded(EncodedLines lines) throws Exception {
+    Field field = EncodedLines.class.getDeclaredField("decoded");
+    field.setAccessible(true);
+    return (String[]) field.get(lines);
+  }
+}
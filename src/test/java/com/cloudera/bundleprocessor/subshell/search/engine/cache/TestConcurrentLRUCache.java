@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestConcurrentLRUCache {
+
+  @Test
+  public void testSettingValues() {
+    ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(10);
+    assertNull(cache.get(1));
+    cache.set(1, 10);
+    assertEquals(10, (int) cache.get(1));
+    cache.set(1, 11);
+    assertEquals(11, (int) cache.get(1));
+    assertEquals(1, cache.size());
+    cache.remove(1);
+    assertNull(cache.get(1));
+    cache.set(2, 20);
+    cache.reset();
+    assertNull(cache.get(2));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testReferencedValuesAreKept() {
+    ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(3);
+    cache.set(1, 10);
+    cache.set(2, 20);
+    cache.set(3, 30);
+    cache.get(1);
+    cache.set(4, 40);
+    // the second chance of the first one evicts the second one
+    assertNotNull(cache.get(1));
+    assertNull(cache.get(2));
+    assertNotNull(cache.get(3));
+    assertNotNull(cache.get(4));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(16);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < 8; thread++) {
+      int seed = thread;
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 10000; i++) {
+          int key = (seed * 31 + i) % 64;
+          Integer value = cache.get(key);
+          if (value == null) {
+            cache.set(key, key * 10);
+          } else {
+            assertEquals(key * 10, (int) value);
+          }
+          if (i % 1000 == 0) {
+            cache.remove(key);
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertTrue(cache.size() <= 16);
+  }
+
+  @Test
+  public void testConcurrentLoadsAreDeduplicated() throws Exception {
+    ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<>(4);
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CacheLoader<String, String> loader = key -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return key + " loaded";
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<String>> futures = new ArrayList<>();
+    futures.add(executor.submit(() -> cache.load("query", loader)));
+    assertTrue(loading.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 3; i++) {
+      futures.add(executor.submit(() -> cache.load("query", loader)));
+    }
+    // let the waiting loads arrive
+    Thread.sleep(100);
+    release.countDown();
+    for (Future<String> future : futures) {
+      assertEquals("query loaded", future.get());
+    }
+    executor.shutdown();
+    assertEquals(1, loads.get());
+    assertEquals("query loaded", cache.get("query"));
+  }
+
+  @Test
+  public void testFailedLoadIsNotCached() throws IOException {
+    ConcurrentLRUCache<String, String> cache = new ConcurrentLRUCache<>(4);
+    assertNull(cache.load("query", key -> null));
+    assertNull(cache.get("query"));
+    try {
+      cache.load("query", key -> {
+        throw new IOException("failed");
+      });
+      fail("The failure of the load was hidden");
+    } catch (IOException e) {
+      assertEquals("failed", e.getMessage());
+    }
+    assertEquals("query loaded", cache.load("query", key -> key + " loaded"));
+  }
+}
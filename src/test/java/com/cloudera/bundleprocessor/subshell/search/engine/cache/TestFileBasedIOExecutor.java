@@ -20,16 +20,25 @@ package com.cloudera.bundleprocessor.subshell.search.engine.cache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class TestFileBasedIOExecutor {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private static final String TARGET_DIRECTORY_PATH = "src/test/cachebinaries";
   private static FileBasedCacheIOExecutor fileExecutor;
 
@@ -78,6 +87,55 @@ public class TestFileBasedIOExecutor {
     checkNonExistentKey(CacheTestItems.KEY_3);
   }
 
+  @Test
+  public void testKeysOfTheSameFile() throws IOException {
+    // the hash codes of the keys are the same
+    fileExecutor.writeItem("Aa", CacheTestItems.VALUE_1);
+    assertNull(fileExecutor.readItem("BB"));
+    checkKey("Aa", CacheTestItems.VALUE_1);
+    fileExecutor.writeItem("BB", CacheTestItems.VALUE_2);
+    assertNull(fileExecutor.readItem("Aa"));
+    checkKey("BB", CacheTestItems.VALUE_2);
+  }
+
+  @Test
+  public void testBundles() throws IOException {
+    File cache = folder.newFolder("cache");
+    File bundle = folder.newFolder("bundle");
+    File log = new File(bundle, "RESOURCEMANAGER.log");
+    Files.write(log.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+    File otherBundle = folder.newFolder("other");
+    Files.write(new File(otherBundle, "NODEMANAGER.log").toPath(),
+        "first".getBytes(StandardCharsets.UTF_8));
+    FileBasedCacheIOExecutor executor =
+        FileBasedCacheIOExecutor.forBundle(cache.getPath(), bundle, false);
+    executor.writeItem(CacheTestItems.KEY_1, CacheTestItems.VALUE_1);
+    // the same bundle uses the same files
+    checkKey(FileBasedCacheIOExecutor.forBundle(cache.getPath(), bundle, true),
+        CacheTestItems.KEY_1, CacheTestItems.VALUE_1);
+    checkNonExistentKey(
+        FileBasedCacheIOExecutor.forBundle(cache.getPath(), otherBundle, false),
+        CacheTestItems.KEY_1);
+    // the changed bundle doesn't use the files of the earlier one
+    Files.write(log.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+    checkNonExistentKey(
+        FileBasedCacheIOExecutor.forBundle(cache.getPath(), bundle, false),
+        CacheTestItems.KEY_1);
+  }
+
+  @Test
+  public void testCacheInTheBundle() throws IOException {
+    File bundle = folder.newFolder("bundle");
+    Files.write(new File(bundle, "RESOURCEMANAGER.log").toPath(),
+        "first".getBytes(StandardCharsets.UTF_8));
+    String cache = new File(bundle, "cache").getPath();
+    FileBasedCacheIOExecutor.forBundle(cache, bundle, false)
+        .writeItem(CacheTestItems.KEY_1, CacheTestItems.VALUE_1);
+    // the cache files don't change the bundle
+    checkKey(FileBasedCacheIOExecutor.forBundle(cache, bundle, false),
+        CacheTestItems.KEY_1, CacheTestItems.VALUE_1);
+  }
+
   private void setAndCheck(Object key, Serializable value) throws IOException {
     checkNonExistentKey(key);
     fileExecutor.writeItem(key, value);
@@ -90,15 +148,25 @@ public class TestFileBasedIOExecutor {
   }
 
   private void checkNonExistentKey(Object key) {
+    checkNonExistentKey(fileExecutor, key);
+  }
+
+  private static void checkNonExistentKey(CacheIOExecutor executor,
+                                          Object key) {
     try {
-      fileExecutor.readItem(key);
+      executor.readItem(key);
       fail("Found unexpected file saving value for the specified key");
     } catch (IOException expected) {
     }
   }
 
   private void checkKey(Object key, Serializable value) throws IOException {
-    Serializable cachedValue = fileExecutor.readItem(key);
+    checkKey(fileExecutor, key, value);
+  }
+
+  private static void checkKey(CacheIOExecutor executor, Object key,
+                               Serializable value) throws IOException {
+    Serializable cachedValue = executor.readItem(key);
     assertNotNull("Null value red from the file", cachedValue);
     assertEquals("Unexpected value red from the file", value, cachedValue);
   }
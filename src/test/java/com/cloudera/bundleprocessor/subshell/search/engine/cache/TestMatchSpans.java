@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestMatchSpans {
+
+  private static final MatchSpans SPANS = createSpans(11);
+
+  private static MatchSpans createSpans(int secondPosition) {
+    return new MatchSpans.Builder(1)
+        .addMatch("first.log", 0, 5, new int[]{0, 5, 1, 3})
+        .addMatch("first.log", secondPosition, 6, new int[]{0, 6, -1, -1})
+        .endSource()
+        .endSource()
+        .addMatch("file.log", new int[]{0, 4, 0, 4})
+        .endSource()
+        .build();
+  }
+
+  @Test
+  public void testCounts() {
+    assertEquals(2, SPANS.getSourceCount());
+    assertEquals(2, SPANS.getMatchCount(0));
+    assertEquals(1, SPANS.getMatchCount(1));
+    assertEquals(3, SPANS.getMatchCount());
+    assertEquals(1, SPANS.getGroupCount());
+  }
+
+  @Test
+  public void testSources() {
+    assertEquals("first.log", SPANS.getFileName(0));
+    assertNull(SPANS.getText(0));
+    assertEquals(11, SPANS.getStart(0, 1));
+    assertEquals(6, SPANS.getLength(0, 1));
+    assertArrayEquals(new int[]{0, 5, 1, 3}, SPANS.getOffsets(0, 0));
+    assertArrayEquals(new int[]{0, 6, -1, -1}, SPANS.getOffsets(0, 1));
+    // only the texts of the sources not found in a log are kept
+    assertNull(SPANS.getFileName(1));
+    assertEquals("file.log\n", SPANS.getText(1));
+    assertEquals(Collections.singletonList("file.log\n"), SPANS.getLines());
+    assertEquals(0, SPANS.getStart(1, 0));
+    assertEquals(8, SPANS.getLength(1, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEverySourceNeedsSpans() {
+    new MatchSpans(Collections.emptyList(), 0, new String[0],
+        new int[]{-1}, new long[0][], new int[0][]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEveryMatchNeedsItsGroups() {
+    new MatchSpans.Builder(1).addMatch("first.log", 0, 5, new int[]{0, 5});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSourceIsInOnePlace() {
+    new MatchSpans.Builder(0)
+        .addMatch("first.log", 0, 5, new int[]{0, 5})
+        .addMatch("second.log", 0, 5, new int[]{0, 5});
+  }
+
+  @Test
+  public void testEquality() {
+    assertEquals(SPANS, createSpans(11));
+    assertEquals(SPANS.hashCode(), createSpans(11).hashCode());
+    assertNotEquals(SPANS, createSpans(12));
+    assertNotEquals(SPANS, new LinesOfLogs(SPANS.getLines()));
+  }
+
+  @Test
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(SPANS);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertEquals(SPANS, in.readObject());
+    }
+  }
+
+  @Test
+  public void testSmallerThanLinesOfLogs() {
+    String line = "2021-03-05 10:00:00,000 INFO org.apache.hadoop.yarn.server"
+        + ".nodemanager.NodeManager: Container launched";
+    MatchSpans.Builder builder = new MatchSpans.Builder(0);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      builder.addMatch("NODEMANAGER.log", (line.length() + 1L) * i,
+          line.length(), new int[]{0, line.length()});
+      text.append(line).append('\n');
+    }
+    MatchSpans spans = builder.endSource().build();
+    List<String> lines = Collections.singletonList(text.toString());
+    // the matches found in the logs are kept by their positions only,
+    // which takes an order of magnitude less memory than their texts
+    assertTrue(10 * spans.estimateRetainedSize()
+        < new LinesOfLogs(lines).estimateRetainedSize());
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TestTieredCache extends TestCase {
+
+  private static final long OVERHEAD = WeightedLRUCache.ENTRY_OVERHEAD;
+
+  private final DummyIOExecutor disk = new DummyIOExecutor();
+
+  private TieredCache<Integer, Long> createCache(long maxMemoryWeight) {
+    return new TieredCache<>(maxMemoryWeight, Long::longValue,
+        new GeneralCache<>(disk));
+  }
+
+  @Test
+  public void testWritingThrough() throws Exception {
+    try (TieredCache<Integer, Long> cache = createCache(10 * OVERHEAD)) {
+      assertNull(cache.get(1));
+      cache.set(1, 10L);
+      assertEquals(10L, (long) cache.get(1));
+      cache.flush();
+      assertEquals(10L, disk.readItem(1));
+      assertEquals(1, cache.getMemoryHits());
+      assertEquals(1, cache.getMemoryMisses());
+      assertEquals(0, cache.getDiskHits());
+      assertEquals(1, cache.getDiskMisses());
+    }
+  }
+
+  @Test
+  public void testPromotingFromDisk() throws Exception {
+    try (TieredCache<Integer, Long> cache =
+             createCache(2 * OVERHEAD + 100)) {
+      cache.set(1, 10L);
+      cache.set(2, 10L);
+      cache.set(3, 10L);
+      cache.flush();
+      // the first one was evicted from the memory
+      assertEquals(10L, (long) cache.get(1));
+      assertEquals(1, cache.getDiskHits());
+      // it's served from the memory again
+      assertEquals(10L, (long) cache.get(1));
+      assertEquals(1, cache.getDiskHits());
+      assertEquals(1, cache.getMemoryHits());
+    }
+  }
+
+  @Test
+  public void testKeepingTooLargeValuesOnDisk() throws Exception {
+    try (TieredCache<Integer, Long> cache = createCache(OVERHEAD + 100)) {
+      cache.set(1, 1000L);
+      cache.flush();
+      assertEquals(1000L, disk.readItem(1));
+      assertEquals(1000L, (long) cache.get(1));
+      assertEquals(1000L, (long) cache.get(1));
+      assertEquals(0, cache.getMemoryHits());
+      assertEquals(2, cache.getDiskHits());
+    }
+  }
+
+  @Test
+  public void testSurvivingRestart() throws Exception {
+    TieredCache<Integer, Long> cache = createCache(10 * OVERHEAD);
+    cache.set(1, 10L);
+    cache.set(2, 20L);
+    cache.close();
+    assertEquals(10L, disk.readItem(1));
+    assertEquals(20L, disk.readItem(2));
+    try (TieredCache<Integer, Long> restarted = createCache(10 * OVERHEAD)) {
+      assertEquals(20L, (long) restarted.get(2));
+      assertEquals(1, restarted.getDiskHits());
+    }
+  }
+
+  @Test
+  public void testRemovingFromBothTiers() throws Exception {
+    try (TieredCache<Integer, Long> cache =
+             createCache(2 * OVERHEAD + 100)) {
+      cache.set(1, 10L);
+      cache.set(2, 10L);
+      cache.set(3, 10L);
+      // the removals are written after the values
+      cache.remove(1);
+      cache.remove(3);
+      assertNull(cache.get(3));
+      cache.flush();
+      assertNull(cache.get(1));
+      assertNull(disk.readItem(1));
+      assertNull(disk.readItem(3));
+      cache.reset();
+      assertNull(cache.get(2));
+      cache.flush();
+      assertNull(disk.readItem(2));
+    }
+  }
+
+  @Test
+  public void testNotReadingChangedValuesFromDisk() throws Exception {
+    CountDownLatch removing = new CountDownLatch(1);
+    CountDownLatch released = new CountDownLatch(1);
+    DummyIOExecutor slowDisk = new DummyIOExecutor() {
+      @Override
+      public void remove(Object key) {
+        removing.countDown();
+        try {
+          released.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.remove(key);
+      }
+    };
+    try (TieredCache<Integer, Long> cache = new TieredCache<>(
+        10 * OVERHEAD, Long::longValue, new GeneralCache<>(slowDisk))) {
+      cache.set(1, 10L);
+      cache.set(2, 20L);
+      cache.remove(1);
+      assertTrue(removing.await(10, TimeUnit.SECONDS));
+      // the values are still on the disk, but they are not read
+      assertEquals(10L, slowDisk.readItem(1));
+      assertNull(cache.get(1));
+      cache.reset();
+      assertEquals(20L, slowDisk.readItem(2));
+      assertNull(cache.get(2));
+      released.countDown();
+      cache.flush();
+      assertNull(slowDisk.readItem(2));
+      assertEquals(0, cache.getDiskHits());
+    } finally {
+      released.countDown();
+    }
+  }
+
+  @Test
+  public void testReadingDiskWithoutLock() throws Exception {
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch released = new CountDownLatch(1);
+    DummyIOExecutor slowDisk = new DummyIOExecutor() {
+      @Override
+      public Serializable readItem(Object key) {
+        if (key.equals(1)) {
+          reading.countDown();
+          try {
+            released.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.readItem(key);
+      }
+    };
+    ExecutorService reader = Executors.newSingleThreadExecutor();
+    try (TieredCache<Integer, Long> cache = new TieredCache<>(
+        10 * OVERHEAD, Long::longValue, new GeneralCache<>(slowDisk))) {
+      Future<Long> slowRead = reader.submit(() -> cache.get(1));
+      assertTrue(reading.await(10, TimeUnit.SECONDS));
+      // the other keys are served while the disk is read
+      cache.set(2, 20L);
+      assertEquals(20L, (long) cache.get(2));
+      assertNull(cache.get(3));
+      released.countDown();
+      assertNull(slowRead.get(10, TimeUnit.SECONDS));
+    } finally {
+      released.countDown();
+      reader.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.cache;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TestWeightedLRUCache extends TestCase {
+
+  private static final long OVERHEAD = WeightedLRUCache.ENTRY_OVERHEAD;
+
+  @Test
+  public void testSettingValues() {
+    WeightedLRUCache<Integer, String> cache =
+        new WeightedLRUCache<>(10 * OVERHEAD, String::length);
+    assertNull(cache.get(1));
+    cache.set(1, "first");
+    assertEquals("first", cache.get(1));
+    assertEquals(OVERHEAD + 5, cache.getWeight());
+    cache.set(1, "replaced");
+    assertEquals("replaced", cache.get(1));
+    assertEquals(OVERHEAD + 8, cache.getWeight());
+    cache.remove(1);
+    assertNull(cache.get(1));
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void testEvictingByWeight() {
+    WeightedLRUCache<Integer, Long> cache =
+        new WeightedLRUCache<>(3 * OVERHEAD + 100, Long::longValue);
+    cache.set(1, 10L);
+    cache.set(2, 10L);
+    cache.set(3, 10L);
+    // the first one is used, so the second one is evicted
+    cache.get(1);
+    cache.set(4, 50L);
+    assertNull(cache.get(2));
+    assertEquals(3, cache.size());
+    // the heavy value evicts the least recently used ones
+    cache.set(5, 100L);
+    assertEquals(2, cache.size());
+    assertEquals(50L, (long) cache.get(4));
+    assertEquals(100L, (long) cache.get(5));
+    assertEquals(2 * OVERHEAD + 150, cache.getWeight());
+  }
+
+  @Test
+  public void testRejectingTooLargeValues() {
+    WeightedLRUCache<Integer, Long> cache =
+        new WeightedLRUCache<>(OVERHEAD + 100, Long::longValue);
+    cache.set(1, 10L);
+    cache.set(2, 101L);
+    assertNull(cache.get(2));
+    assertEquals(10L, (long) cache.get(1));
+    // a stale value is not kept either
+    cache.set(1, 101L);
+    assertNull(cache.get(1));
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void testReset() {
+    WeightedLRUCache<Integer, String> cache =
+        new WeightedLRUCache<>(10 * OVERHEAD, String::length);
+    cache.set(1, "first");
+    cache.set(2, "second");
+    cache.reset();
+    assertNull(cache.get(1));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void testInvalidBudget() {
+    try {
+      new WeightedLRUCache<Integer, String>(0, String::length);
+      fail("A cache without a budget was created");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testWeighingLinesOfLogs() {
+    LinesOfLogs small = new LinesOfLogs(Collections.singletonList("a\n"));
+    LinesOfLogs large = new LinesOfLogs(
+        Arrays.asList(new String(new char[1000]), "a\n"));
+    assertTrue(large.estimateRetainedSize()
+        >= small.estimateRetainedSize() + 2000);
+    MatchSpans spans = new MatchSpans.Builder(0)
+        .addMatch("a", new int[]{0, 1}).endSource().build();
+    assertTrue(spans.estimateRetainedSize() > small.estimateRetainedSize());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestEntityIndex {
+
+  private static final File TEST_DIR =
+      new File("./src/test/resources/testentityindex");
+  private static final File LOG_DIR = new File(TEST_DIR, "logs");
+  private static final File INDEX_FILE = new File(TEST_DIR, "entities.idx");
+  private static final String APP_TOKEN = "1585041342561_0001";
+  private static final String OTHER_APP_TOKEN = "1585041342561_0002";
+  private static final String FIRST_LOG =
+      "2020-03-24 10:00:00 application_1585041342561_0001 submitted\n"
+          + "2020-03-24 10:00:01 nothing to see\n"
+          + "2020-03-24 10:00:02 container_e05_1585041342561_0001_01_000001"
+          + " of appattempt_1585041342561_0001_000001\n"
+          + "2020-03-24 10:00:03 application_1585041342561_0002 submitted\n";
+  private static final String SECOND_LOG =
+      "2020-03-24 10:00:04 container_1585041342561_0001_01_000002 done\n"
+          + "2020-03-24 10:00:05 5041342561_0001 is not a token\n";
+
+  @Before
+  public void createLogs() throws IOException {
+    FileUtils.findOrCreateDirectory(LOG_DIR);
+    writeLog("first.log", FIRST_LOG);
+    writeLog("second.log", SECOND_LOG);
+    EntityIndexBuilder.build(LOG_DIR, INDEX_FILE);
+  }
+
+  @After
+  public void deleteLogs() throws IOException {
+    FileUtils.deleteDirectory(TEST_DIR.getAbsolutePath());
+  }
+
+  private static void writeLog(String name, String content)
+      throws IOException {
+    Files.write(new File(LOG_DIR, name).toPath(),
+        content.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  public void testFindingEntityToken() {
+    assertEquals(APP_TOKEN,
+        EntityIndex.findEntityToken("application_1585041342561_0001"));
+    assertEquals(APP_TOKEN, EntityIndex.findEntityToken(
+        "container_e05_1585041342561_0001_01_000001"));
+    assertEquals(APP_TOKEN, EntityIndex.findEntityToken(
+        "appattempt_1585041342561_00012_000001"));
+    assertNull(EntityIndex.findEntityToken("application_5041342561_0001"));
+    assertNull(EntityIndex.findEntityToken("application_1585041342561_001"));
+    assertNull(EntityIndex.findEntityToken("OPERATION=Start Container"));
+  }
+
+  @Test
+  public void testFindingLines() throws IOException {
+    EntityIndex index = EntityIndex.open(INDEX_FILE);
+    Map<String, long[]> lines = index.findLines(APP_TOKEN);
+    assertEquals(2, lines.size());
+    // the line mentioning the container and the attempt is listed once
+    assertArrayEquals(new long[]{0, FIRST_LOG.indexOf("2020-03-24 10:00:02")},
+        lines.get("first.log"));
+    assertArrayEquals(new long[]{0}, lines.get("second.log"));
+
+    Map<String, long[]> otherLines = index.findLines(OTHER_APP_TOKEN);
+    assertEquals(1, otherLines.size());
+    assertArrayEquals(new long[]{FIRST_LOG.indexOf("2020-03-24 10:00:03")},
+        otherLines.get("first.log"));
+
+    assertTrue(index.findLines("1585041342561_0003").isEmpty());
+    assertTrue(index.findLines("not a token").isEmpty());
+  }
+
+  @Test
+  public void testChangedFilesAreNotIndexed() throws IOException {
+    EntityIndex index = EntityIndex.open(INDEX_FILE);
+    File firstLog = new File(LOG_DIR, "first.log");
+    File secondLog = new File(LOG_DIR, "second.log");
+    assertTrue(index.isIndexed(firstLog));
+    assertTrue(index.isIndexed(secondLog));
+    assertFalse(index.isIndexed(new File(LOG_DIR, "third.log")));
+
+    Files.write(secondLog.toPath(),
+        "application_1585041342561_0003\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    assertTrue(index.isIndexed(firstLog));
+    assertFalse(index.isIndexed(secondLog));
+  }
+
+  @Test(expected = IOException.class)
+  public void testOpeningInvalidIndex() throws IOException {
+    EntityIndex.open(new File(LOG_DIR, "first.log"));
+  }
+}
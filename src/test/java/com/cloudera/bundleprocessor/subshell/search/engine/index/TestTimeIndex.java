@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
+import com.cloudera.bundleprocessor.subshell.search.engine.TimeRange;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.FileRegion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestTimeIndex {
+
+  private static final File TEST_DIR =
+      new File("./src/test/resources/testtimeindex");
+  private static final File LOG_DIR = new File(TEST_DIR, "logs");
+  private static final File INDEX_FILE = new File(TEST_DIR, "times.idx");
+  private static final Pattern TIME_STAMP =
+      Pattern.compile("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}");
+  private static final String LOG = "2020-03-24 10:00:00 first\n"
+      + "2020-03-24 10:05:00 second\n"
+      + "\tat a stacktrace\n"
+      + "2020-03-24 10:10:00 third\n"
+      + "2020-03-24 10:15:00 fourth\n";
+
+  private File log;
+
+  @Before
+  public void createLogs() throws IOException {
+    FileUtils.findOrCreateDirectory(LOG_DIR);
+    log = new File(LOG_DIR, "first.log");
+    Files.write(log.toPath(), LOG.getBytes(StandardCharsets.ISO_8859_1));
+    // every line is a block of its own
+    TimeIndexBuilder.build(LOG_DIR, INDEX_FILE, TIME_STAMP, 1);
+  }
+
+  @After
+  public void deleteLogs() throws IOException {
+    FileUtils.deleteDirectory(TEST_DIR.getAbsolutePath());
+  }
+
+  @Test
+  public void testFindingRegion() throws IOException {
+    TimeIndex index = TimeIndex.open(INDEX_FILE);
+    assertRegion(index.findRegion(log,
+        new TimeRange("2020-03-24T10:05", "2020-03-24T10:10")),
+        "2020-03-24 10:05:00", "2020-03-24 10:15:00");
+    assertRegion(index.findRegion(log,
+        new TimeRange("2020-03-24T10:01", null)),
+        "2020-03-24 10:05:00", null);
+    assertRegion(index.findRegion(log,
+        new TimeRange(null, "2020-03-24T10:00")),
+        "2020-03-24 10:00:00", "2020-03-24 10:05:00");
+    assertEquals(0, index.findRegion(log,
+        new TimeRange("2020-03-25", null)).getLength());
+    assertEquals(0, index.findRegion(log,
+        new TimeRange(null, "2020-03-23")).getLength());
+  }
+
+  @Test
+  public void testLinesWithoutTimeStampInheritIt() throws IOException {
+    TimeIndex index = TimeIndex.open(INDEX_FILE);
+    // the stack trace in a block of its own belongs to 10:05:00
+    assertRegion(index.findRegion(log,
+        new TimeRange(null, "2020-03-24T10:05")),
+        "2020-03-24 10:00:00", "2020-03-24 10:10:00");
+  }
+
+  @Test
+  public void testUnorderedTimeStamps() throws IOException {
+    Files.write(log.toPath(), ("2020-03-24 10:00:00 first\n"
+        + "2020-03-24 10:20:00 second\n"
+        + "2020-03-24 10:10:00 third\n"
+        + "2020-03-24 10:30:00 fourth\n")
+        .getBytes(StandardCharsets.ISO_8859_1));
+    TimeIndexBuilder.build(LOG_DIR, INDEX_FILE, TIME_STAMP, 1);
+    TimeIndex index = TimeIndex.open(INDEX_FILE);
+    // the block of 10:20:00 is searched too,
+    // since it is followed by the block of 10:10:00
+    assertRegion(index.findRegion(log,
+        new TimeRange("2020-03-24T10:10", "2020-03-24T10:10")),
+        "2020-03-24 10:20:00", "2020-03-24 10:30:00");
+  }
+
+  @Test
+  public void testChangedFilesAreNotIndexed() throws IOException {
+    TimeIndex index = TimeIndex.open(INDEX_FILE);
+    TimeRange timeRange = new TimeRange("2020-03-24T10:05", null);
+    assertTrue(index.isIndexed(log));
+    assertFalse(index.isIndexed(new File(LOG_DIR, "second.log")));
+    assertNull(index.findRegion(new File(LOG_DIR, "second.log"), timeRange));
+
+    Files.write(log.toPath(),
+        "2020-03-24 10:20:00 fifth\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    assertFalse(index.isIndexed(log));
+    assertNull(index.findRegion(log, timeRange));
+  }
+
+  @Test(expected = IOException.class)
+  public void testOpeningInvalidIndex() throws IOException {
+    TimeIndex.open(log);
+  }
+
+  /**
+   * Checks that the region starts at the line of the first timestamp,
+   * and it ends at the line of the second one or at the end of the log.
+   */
+  private void assertRegion(FileRegion region, String start, String end)
+      throws IOException {
+    String content = new String(Files.readAllBytes(log.toPath()),
+        StandardCharsets.ISO_8859_1);
+    assertEquals(content.indexOf(start), region.getOffset());
+    assertEquals(end == null ? content.length() : content.indexOf(end),
+        region.getEnd());
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.bundleprocessor.subshell.search.engine.index;
+
+import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestTrigramIndex {
+
+  private static final File TEST_DIR =
+      new File("./src/test/resources/testtrigramindex");
+  private static final File LOG_DIR = new File(TEST_DIR, "logs");
+  private static final File INDEX_FILE = new File(TEST_DIR, "trigrams.idx");
+  private static final String FIRST_LOG = "2020 alpha beta\n"
+      + "2020 gamma delta\n"
+      + "2020 alpha gamma\n"
+      + "2020 epsilon\n";
+  private static final String SECOND_LOG = "delta only\n"
+      + "beta gamma\n";
+
+  @Before
+  public void createLogs() throws IOException {
+    FileUtils.findOrCreateDirectory(LOG_DIR);
+    writeLog("first.log", FIRST_LOG);
+    writeLog("second.log", SECOND_LOG);
+    // every line is a block of its own
+    TrigramIndexBuilder.build(LOG_DIR, INDEX_FILE, 1);
+  }
+
+  @After
+  public void deleteLogs() throws IOException {
+    FileUtils.deleteDirectory(TEST_DIR.getAbsolutePath());
+  }
+
+  private static void writeLog(String name, String content)
+      throws IOException {
+    Files.write(new File(LOG_DIR, name).toPath(),
+        content.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  public void testFindingBlocks() throws IOException {
+    TrigramIndex index = TrigramIndex.open(INDEX_FILE);
+    Map<String, LineRanges> blocks = index.findBlocks(
+        Collections.singletonList(Collections.singletonList("alpha")));
+    assertRanges(blocks.get("first.log"), line(FIRST_LOG, 0),
+        line(FIRST_LOG, 2));
+    assertEquals(0, blocks.get("second.log").size());
+
+    blocks = index.findBlocks(
+        Collections.singletonList(Arrays.asList("alpha", "gamma")));
+    assertRanges(blocks.get("first.log"), line(FIRST_LOG, 2));
+    assertEquals(0, blocks.get("second.log").size());
+
+    blocks = index.findBlocks(
+        Collections.singletonList(Collections.singletonList("zzz")));
+    assertEquals(0, blocks.get("first.log").size());
+    assertEquals(0, blocks.get("second.log").size());
+  }
+
+  @Test
+  public void testFindingAlternatives() throws IOException {
+    TrigramIndex index = TrigramIndex.open(INDEX_FILE);
+    Map<String, LineRanges> blocks = index.findBlocks(Arrays.asList(
+        Collections.singletonList("alpha"),
+        Collections.singletonList("delta")));
+    // the adjacent blocks are merged
+    assertRanges(blocks.get("first.log"),
+        new long[]{line(FIRST_LOG, 0)[0], line(FIRST_LOG, 2)[1]});
+    assertRanges(blocks.get("second.log"), line(SECOND_LOG, 0));
+  }
+
+  @Test
+  public void testUnselectiveLiterals() throws IOException {
+    TrigramIndex index = TrigramIndex.open(INDEX_FILE);
+    // 202 is found in most of the blocks
+    assertNull(index.findBlocks(
+        Collections.singletonList(Collections.singletonList("2020"))));
+    assertNull(index.findBlocks(
+        Collections.singletonList(Collections.singletonList("ph"))));
+    assertNull(index.findBlocks(
+        Collections.singletonList(Collections.emptyList())));
+    assertNull(index.findBlocks(Arrays.asList(
+        Collections.singletonList("alpha"), Collections.emptyList())));
+  }
+
+  @Test
+  public void testChangedFilesAreNotIndexed() throws IOException {
+    TrigramIndex index = TrigramIndex.open(INDEX_FILE);
+    File firstLog = new File(LOG_DIR, "first.log");
+    File secondLog = new File(LOG_DIR, "second.log");
+    assertTrue(index.isIndexed(firstLog));
+    assertTrue(index.isIndexed(secondLog));
+    assertFalse(index.isIndexed(new File(LOG_DIR, "third.log")));
+
+    Files.write(secondLog.toPath(),
+        "alpha\n".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+    assertTrue(index.isIndexed(firstLog));
+    assertFalse(index.isIndexed(secondLog));
+  }
+
+  @Test(expected = IOException.class)
+  public void testOpeningInvalidIndex() throws IOException {
+    TrigramIndex.open(new File(LOG_DIR, "first.log"));
+  }
+
+  /**
+   * Returns the start and the end of a line of the log.
+   */
+  private static long[] line(String log, int index) {
+    List<String> lines = Arrays.asList(log.split("(?<=\n)"));
+    long start = 0;
+    for (int i = 0; i < index; i++) {
+      start += lines.get(i).length();
+    }
+    return new long[]{start, start + lines.get(index).length()};
+  }
+
+  private static void assertRanges(LineRanges ranges, long[]... expected) {
+    assertEquals(expected.length, ranges.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertArrayEquals(expected[i],
+          new long[]{ranges.getStart(i), ranges.getEnd(i)});
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import com.cloudera.bundleprocessor.subshell.command.util.RegexElements;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BufferCharSequence;
+import com.cloudera.bundleprocessor.util.ExpandableLinesOfLogs;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * RegexBenchmark compares the {@link RegexEngine}s on the patterns
+ * of {@link RegexElements}, finding every match in generated
+ * NodeManager logs, like a query spanning multiple lines does.
+ * It is not a unit test, it can be run with its main method
+ * or with {@code org.openjdk.jmh.Main RegexBenchmark}
+ * from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegexBenchmark {
+
+  private static final int FILLER_LINES_PER_TARGET = 100;
+  private static final int TARGETS = 100;
+  private static final String FILLER_LINE = ExpandableLinesOfLogs.getTIMESTAMP()
+      + ",123 INFO org.apache.hadoop.yarn.server.nodemanager.containermanager"
+      + ".monitor.ContainersMonitorImpl: Memory usage of ProcessTree 4242 for"
+      + " container-id unknown: 1.2 GB of 2 GB physical memory used";
+  private static final String KILLED_CONTAINER =
+      RegexElements.START_OF_CONTAINER_ERROR_LOG
+          + RegexElements.LINES_WITHOUT_TIMESTAMP
+          + RegexElements.COMMAND_ARRAY
+          + RegexElements.END_OF_CONTAINER_ERROR_LOG;
+
+  @Param({"RESOURCE_REGEX", "EXCEPTION_WITH_STACKTRACE", "ANY_LINE",
+      "PREEMPTED_CONTAINER", "RM_EVENT_REGEX", "SCHEDULER_REGEX",
+      "KILLED_CONTAINER"})
+  private String patternName;
+
+  @Param({"JDK", "DFA"})
+  private String engine;
+
+  private BufferCharSequence logs;
+  private Supplier<RegexMatcher> matchers;
+
+  /**
+   * Generates the logs and compiles the pattern.
+   *
+   * @throws ReflectiveOperationException if the pattern doesn't exist
+   */
+  @Setup
+  public void setUp() throws ReflectiveOperationException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < TARGETS; i++) {
+      for (int j = 0; j < FILLER_LINES_PER_TARGET; j++) {
+        text.append(FILLER_LINE).append('\n');
+      }
+      text.append(ExpandableLinesOfLogs.getTIMESTAMP())
+          .append(",456 WARN Shell execution returned exit code: 137.")
+          .append(" Privileged Execution Operation Stderr: \n")
+          .append("Stack trace: ExitCodeException exitCode=137\n")
+          .append("\tat org.apache.hadoop.util.Shell.run(Shell.java:901)\n")
+          .append("[/bin/container-executor, container_1599745644179_0001_01_")
+          .append(String.format("%06d", i + 1)).append("]\n")
+          .append(ExpandableLinesOfLogs.getTIMESTAMP())
+          .append(",789 ERROR java.io.IOException: Disk failure\n");
+    }
+    logs = new BufferCharSequence(ByteBuffer.wrap(
+        text.toString().getBytes(StandardCharsets.ISO_8859_1)));
+    String regex = patternName.equals("KILLED_CONTAINER") ? KILLED_CONTAINER
+        : (String) RegexElements.class.getField(patternName).get(null);
+    matchers = RegexEngine.valueOf(engine).compile(Pattern.compile(regex));
+  }
+
+  @Benchmark
+  public int findMatches() {
+    RegexMatcher matcher = matchers.get();
+    matcher.reset(logs);
+    int count = 0;
+    while (matcher.find()) {
+      count++;
+    }
+    return count;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(RegexBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.cloudera.bundleprocessor.subshell.command.util.RegexElements;
+import com.cloudera.bundleprocessor.subshell.search.engine.util.BufferCharSequence;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class TestRegexEngine {
+
+  private static final String LOGS = "2020-09-10 14:07:24,123 INFO "
+      + "ContainerImpl: Container container_e01_1599745644179_0001_01_000002"
+      + " transitioned from RUNNING to KILLING\n"
+      + "2020-09-10 14:07:25,456 WARN Shell execution returned exit code: 1."
+      + " Privileged Execution Operation Stderr: \n"
+      + "Stack trace: ExitCodeException exitCode=1\n"
+      + "\tat org.apache.hadoop.util.Shell.runCommand(Shell.java:1008)\n"
+      + "\tat org.apache.hadoop.util.Shell.run(Shell.java:901)\n"
+      + "[/bin/container-executor, container_1599745644179_0001_01_000002]\n"
+      + "2020-09-10 14:07:26,789 ERROR java.io.IOException: Disk failure\n"
+      + "\tat org.apache.hadoop.Test.method(Test.java:1)\n"
+      + "USER=hadoop OPERATION=Start Container Request RESULT=SUCCESS"
+      + " APPID=application_1599745644179_0001\n";
+
+  @Test
+  public void testCommandPatterns() {
+    List<String> patterns = Arrays.asList(RegexElements.RESOURCE_REGEX,
+        RegexElements.TIME_STAMP + ".*" + RegexElements.USER + ".*"
+            + RegexElements.SUBMIT_CONTAINER_REQUEST + ".*",
+        RegexElements.EXCEPTION_WITH_STACKTRACE,
+        RegexElements.CONTAINERID + RegexElements.TRANSITIONED_TO_KILLING,
+        RegexElements.START_OF_CONTAINER_ERROR_LOG
+            + RegexElements.LINES_WITHOUT_TIMESTAMP
+            + RegexElements.COMMAND_ARRAY
+            + RegexElements.END_OF_CONTAINER_ERROR_LOG,
+        RegexElements.ANY_LINE, RegexElements.PREEMPTED_CONTAINER,
+        RegexElements.RM_EVENT_REGEX, RegexElements.APPID,
+        RegexElements.STATE_TRANSITION, RegexElements.STATE);
+    for (String regex : patterns) {
+      assertTrue(regex, isMatchedByAutomata(regex));
+      assertSameMatches(regex, LOGS);
+    }
+  }
+
+  @Test
+  public void testUnsupportedPatternsFallBack() {
+    for (String regex : Arrays.asList("^abc", "abc$", "\\bword", "a(?=b)",
+        "(a)\\1", "a*+", "(?i)abc", "(a*)*", "\\p{Alpha}", "[a-z&&[^b]]",
+        "\\ud800")) {
+      assertFalse(regex, isMatchedByAutomata(regex));
+      assertSameMatches(regex, "abc word aab\n" + LOGS);
+    }
+  }
+
+  @Test
+  public void testPriorities() {
+    assertMatches("a|ab", "abab", "a", "a");
+    assertMatches("ab|a", "abab", "ab", "ab");
+    assertMatches("a+?b?", "aab", "a", "ab");
+    assertMatches("x*", "axx", "", "xx", "");
+    assertMatches("(a|b)*c", "ababdc", "c");
+    assertMatches("[^\\s(]*", "ab(c d", "ab", "", "c", "", "d", "");
+  }
+
+  @Test
+  public void testGroups() {
+    assertSameMatches("(a|ab)(c|bcd)(d*)", "abcd");
+    // a group keeps its match from an earlier iteration
+    assertSameMatches("(?:(a)|b)+", "ab ba");
+    assertSameMatches("(?<key>\\w+)=(\\d+)?", "x=1 y= z=23");
+    assertSameMatches("((a)|(b))*?c", "abac bc");
+    assertSameMatches("(a{1,2}?)(a*)", "aaa");
+  }
+
+  @Test
+  public void testEscapesAndClasses() {
+    assertMatches("\\d{2,3}", "1 12 1234", "12", "123");
+    assertMatches("[\\w.-]+", "a.b-c d_e", "a.b-c", "d_e");
+    assertMatches("\\x41\\u0042\\0103\\t", "ABC\t", "ABC\t");
+    assertMatches("[^a-y]", "az\n", "z", "\n");
+    // the dot doesn't match line breaks
+    assertMatches(".+", "ab\r\ncd", "ab", "cd");
+  }
+
+  @Test
+  public void testRegions() {
+    String regex = "b+";
+    RegexMatcher matcher = RegexEngine.DFA.compile(Pattern.compile(regex))
+        .get();
+    matcher.reset(toSequence("abbbcbb"));
+    matcher.region(2, 6);
+    assertTrue(matcher.find());
+    assertEquals(2, matcher.start());
+    assertEquals(4, matcher.end());
+    assertTrue(matcher.find());
+    assertEquals(5, matcher.start());
+    assertEquals(6, matcher.end());
+    assertFalse(matcher.find());
+  }
+
+  @Test
+  public void testUtf8Text() {
+    // the second byte of the A with ring is a line break in ISO-8859-1
+    String text = "x\u00c5y\n\u00e9\ud83d\ude00z";
+    BufferCharSequence sequence = toUtf8Sequence(text);
+    for (RegexEngine engine : RegexEngine.values()) {
+      assertEquals(Arrays.asList("0-4", "5-12"),
+          findByteMatches(engine, ".+", sequence, 0, sequence.length()));
+      assertEquals(Arrays.asList("1-3"), findByteMatches(engine,
+          "\u00c5", sequence, 0, sequence.length()));
+      assertEquals(Arrays.asList(), findByteMatches(engine,
+          "\\u0085", sequence, 0, sequence.length()));
+      assertEquals(Arrays.asList("5-7", "7-11"), findByteMatches(engine,
+          "[^\\x00-\u00c5]", sequence, 5, sequence.length()));
+      assertEquals(Arrays.asList("7-11"), findByteMatches(engine,
+          "\ud83d\ude00", sequence, 5, sequence.length()));
+      // the lookbehind sees the decoded text before the region
+      assertEquals(Arrays.asList("3-4"),
+          findByteMatches(engine, "(?<=\u00c5)y", sequence, 3, 4));
+      // a region starting inside a character starts at the next one
+      assertEquals(Arrays.asList("3-4"),
+          findByteMatches(engine, ".", sequence, 2, 4));
+    }
+    assertTrue(isMatchedByAutomata("[\u00e0-\u00ff].\\u2028"));
+  }
+
+  @Test
+  public void testInvalidUtf8() {
+    // the lone bytes are decoded as ISO-8859-1 characters
+    byte[] bytes = {'a', (byte) 0xE9, 'b', (byte) 0xC3, (byte) 0xA9,
+        (byte) 0xC3, 'c', (byte) 0x85, '\n'};
+    BufferCharSequence sequence = new BufferCharSequence(
+        ByteBuffer.wrap(bytes));
+    for (String regex : Arrays.asList(".", "[^a]+", "\u00e9", "\u00c3.",
+        "\\u0085", "(\\S)\n")) {
+      assertEquals(regex, findMatches(RegexEngine.JDK, regex, sequence, true),
+          findMatches(RegexEngine.DFA, regex, sequence, true));
+    }
+    assertEquals(Arrays.asList("1-2", "3-5"), findByteMatches(RegexEngine.DFA,
+        "\u00e9", sequence, 0, sequence.length()));
+  }
+
+  @Test
+  public void testMatchingIsStopped() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 64; i++) {
+      text.append('a');
+    }
+    for (RegexEngine engine : RegexEngine.values()) {
+      // backtracks for ages with java.util.regex
+      RegexMatcher matcher =
+          engine.compile(Pattern.compile("(?:.*a){12}b")).get();
+      matcher.stopWhen(() -> true);
+      matcher.reset(toSequence(text.toString()));
+      try {
+        matcher.find();
+        fail(engine + " should have stopped");
+      } catch (CancellationException expected) {
+      } finally {
+        matcher.release();
+      }
+    }
+  }
+
+  @Test
+  public void testRandomPatterns() {
+    Random random = new Random(42);
+    String[] atoms = {"a", "b", "\\n", ".", "[ab]", "[^a]", "(a|b)",
+        "(ab|a)", "(?:ba)", "\\s", "\\w"};
+    String[] quantifiers = {"", "", "*", "+", "?", "*?", "+?", "??",
+        "{2}", "{1,3}", "{0,2}?"};
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder regex = new StringBuilder();
+      int length = 1 + random.nextInt(4);
+      for (int j = 0; j < length; j++) {
+        if (j > 0 && random.nextInt(6) == 0) {
+          regex.append('|');
+        }
+        regex.append(atoms[random.nextInt(atoms.length)])
+            .append(quantifiers[random.nextInt(quantifiers.length)]);
+      }
+      StringBuilder text = new StringBuilder();
+      for (int j = random.nextInt(20); j > 0; j--) {
+        text.append("ab\n ".charAt(random.nextInt(4)));
+      }
+      assertSameMatches(regex.toString(), text.toString());
+    }
+  }
+
+  @Test
+  public void testRandomUtf8Patterns() {
+    Random random = new Random(42);
+    String[] atoms = {"a", "\u00e9", "\\u0085", ".", "[^a]", "[^\u00e9]",
+        "[\u00e0-\u00ff]", "(\u00e9|a)", "\\S", "\\W", "\ud83d\ude00"};
+    String[] quantifiers = {"", "", "*", "+", "?", "+?", "{1,2}"};
+    byte[][] characters = {{'a'}, {'\n'}, {(byte) 0xC3, (byte) 0xA9},
+        {(byte) 0xC2, (byte) 0x85}, {(byte) 0xE2, (byte) 0x80, (byte) 0xA8},
+        {(byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80},
+        {(byte) 0xE9}, {(byte) 0xC3}};
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder regex = new StringBuilder();
+      for (int j = 1 + random.nextInt(3); j > 0; j--) {
+        regex.append(atoms[random.nextInt(atoms.length)])
+            .append(quantifiers[random.nextInt(quantifiers.length)]);
+      }
+      // the last two are not valid UTF-8, they are picked less often
+      ByteArrayOutputStream text = new ByteArrayOutputStream();
+      for (int j = random.nextInt(12); j > 0; j--) {
+        int character = random.nextInt(random.nextInt(4) == 0
+            ? characters.length : characters.length - 2);
+        text.write(characters[character], 0, characters[character].length);
+      }
+      BufferCharSequence sequence = new BufferCharSequence(
+          ByteBuffer.wrap(text.toByteArray()));
+      assertEquals(regex.toString(),
+          findMatches(RegexEngine.JDK, regex.toString(), sequence, true),
+          findMatches(RegexEngine.DFA, regex.toString(), sequence, true));
+    }
+  }
+
+  @Test
+  public void testStatesAreRebuilt() {
+    // every byte of the last 12 is remembered by a different state
+    Pattern pattern = Pattern.compile("a[ab]{12}c");
+    Program forward = Program.compile(RegexParser.parse(pattern), false);
+    LazyDfa dfa = new LazyDfa(forward, true);
+    StringBuilder text = new StringBuilder();
+    Random random = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      text.append(random.nextBoolean() ? 'a' : 'b');
+    }
+    text.append("aababababababc");
+    BufferCharSequence sequence = toSequence(text.toString());
+    assertEquals(text.length(), dfa.findEnd(sequence, 0, text.length()));
+    assertTrue(dfa.getStateCount() <= 4096);
+    assertSameMatches(pattern.pattern(), text.toString());
+  }
+
+  private static boolean isMatchedByAutomata(String regex) {
+    return RegexEngine.DFA.compile(Pattern.compile(regex)).get()
+        instanceof DfaRegexMatcher;
+  }
+
+  private static void assertMatches(String regex, String text,
+                                    String... expected) {
+    assertEquals(regex, Arrays.asList(expected),
+        findMatches(RegexEngine.DFA, regex, text, false));
+    assertSameMatches(regex, text);
+  }
+
+  private static void assertSameMatches(String regex, String text) {
+    assertEquals(regex + " in " + text,
+        findMatches(RegexEngine.JDK, regex, text, true),
+        findMatches(RegexEngine.DFA, regex, text, true));
+  }
+
+  private static List<String> findMatches(RegexEngine engine, String regex,
+                                          String text, boolean positions) {
+    return findMatches(engine, regex, toSequence(text), positions);
+  }
+
+  /**
+   * Finds the matches, with their positions and the bounds
+   * of their groups if positions is set.
+   */
+  private static List<String> findMatches(RegexEngine engine, String regex,
+                                          BufferCharSequence sequence,
+                                          boolean positions) {
+    RegexMatcher matcher = engine.compile(Pattern.compile(regex)).get();
+    matcher.reset(sequence);
+    List<String> matches = new ArrayList<>();
+    while (matcher.find()) {
+      StringBuilder match = new StringBuilder();
+      if (positions) {
+        match.append(matcher.start()).append(':');
+      }
+      match.append(sequence, matcher.start(), matcher.end());
+      for (int group = 1; positions && group <= matcher.groupCount();
+           group++) {
+        match.append(' ').append(matcher.start(group))
+            .append('-').append(matcher.end(group));
+      }
+      matches.add(match.toString());
+    }
+    matcher.release();
+    return matches;
+  }
+
+  private static List<String> findByteMatches(RegexEngine engine,
+                                              String regex,
+                                              BufferCharSequence sequence,
+                                              int start, int end) {
+    RegexMatcher matcher = engine.compile(Pattern.compile(regex)).get();
+    matcher.reset(sequence);
+    matcher.region(start, end);
+    List<String> matches = new ArrayList<>();
+    while (matcher.find()) {
+      matches.add(matcher.start() + "-" + matcher.end());
+    }
+    matcher.release();
+    return matches;
+  }
+
+  private static BufferCharSequence toUtf8Sequence(String text) {
+    return new BufferCharSequence(
+        ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static BufferCharSequence toSequence(String text) {
+    return new BufferCharSequence(
+        ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1)));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBlockCache {
+
+  private static final File DIR = new File("target", "blockCache");
+  // every block is 8 bytes long
+  private static final int BLOCK_SHIFT = 3;
+  private static final String CONTENT = "0123456789abcdefghij";
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    DIR.mkdirs();
+    file = new File(DIR, "first.log" + BlockCompressedLog.EXTENSION);
+    BlockCompressedLog.write(new ByteArrayInputStream(
+        CONTENT.getBytes(StandardCharsets.UTF_8)), file, BLOCK_SHIFT);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+    DIR.delete();
+  }
+
+  @Test
+  public void testLogsAreShared() throws IOException {
+    BlockCache cache = new BlockCache(1024);
+    assertSame(cache.getLog(file), cache.getLog(file));
+    cache.close();
+  }
+
+  @Test
+  public void testBlocksAreEvictedOverTheLimit() throws IOException {
+    BlockCache cache = new BlockCache(16);
+    assertEquals('0', cache.getBlock(file, 0).get(0));
+    assertEquals('8', cache.getBlock(file, 1).get(0));
+    assertEquals(16, cache.getCachedBytes());
+    // the least recently used block is dropped
+    cache.getBlock(file, 0);
+    assertEquals('g', cache.getBlock(file, 2).get(0));
+    assertEquals(12, cache.getCachedBytes());
+    cache.close();
+    assertEquals(0, cache.getCachedBytes());
+  }
+
+  @Test
+  public void testSequenceOverCachedBlocks() throws IOException {
+    BlockCache cache = new BlockCache(1024);
+    try (SegmentedCharSequence sequence = LogManipulator.readRegion(
+        new FileRegion(file, 6, 10), null, cache)) {
+      assertEquals("6789abcdef", sequence.toString());
+      sequence.releaseBefore(4);
+      assertEquals('a', sequence.charAt(4));
+    }
+    assertEquals(16, cache.getCachedBytes());
+    cache.close();
+  }
+}
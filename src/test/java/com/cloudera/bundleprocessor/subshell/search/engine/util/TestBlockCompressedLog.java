@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBlockCompressedLog {
+
+  private static final File DIR = new File("target", "blockCompressedLog");
+  // every block is 8 bytes long
+  private static final int BLOCK_SHIFT = 3;
+  private static final String CONTENT = "0123456789abcdefghij\n\u00e1rv\u00edz";
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    DIR.mkdirs();
+    file = new File(DIR, "NODEMANAGER.log" + BlockCompressedLog.EXTENSION);
+    write(CONTENT, file);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+    DIR.delete();
+  }
+
+  @Test
+  public void testIsCompressed() {
+    assertTrue(BlockCompressedLog.isCompressed(file));
+    assertFalse(BlockCompressedLog.isCompressed(new File("NODEMANAGER.log")));
+  }
+
+  @Test
+  public void testBlocks() throws IOException {
+    byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+    try (BlockCompressedLog log = BlockCompressedLog.open(file)) {
+      assertEquals(bytes.length, log.size());
+      assertEquals(BLOCK_SHIFT, log.getBlockShift());
+      assertEquals(4, log.getBlockCount());
+      ByteBuffer block = log.readBlock(1);
+      assertEquals(8, block.limit());
+      assertEquals('8', block.get(0));
+      // the last block is shorter than the others
+      assertEquals(bytes.length - 24, log.readBlock(3).limit());
+      try {
+        log.readBlock(4);
+        fail("IndexOutOfBoundsException is supposed to be thrown");
+      } catch (IndexOutOfBoundsException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testReadingAsChannel() throws IOException {
+    byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+    try (BlockCompressedLog log = BlockCompressedLog.open(file)) {
+      // the read crosses the block boundaries
+      ByteBuffer buffer = ByteBuffer.allocate(12);
+      assertEquals(12, log.position(5).read(buffer));
+      assertEquals(new String(bytes, 5, 12, StandardCharsets.UTF_8),
+          new String(buffer.array(), StandardCharsets.UTF_8));
+      assertEquals(17, log.position());
+      buffer.clear();
+      assertEquals(bytes.length - 17, log.read(buffer));
+      assertEquals(-1, log.read(buffer));
+    }
+  }
+
+  @Test
+  public void testEmptyLog() throws IOException {
+    write("", file);
+    try (BlockCompressedLog log = BlockCompressedLog.open(file)) {
+      assertEquals(0, log.size());
+      assertEquals(0, log.getBlockCount());
+      assertEquals(-1, log.read(ByteBuffer.allocate(1)));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotCompressedLog() throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+    BlockCompressedLog.open(file);
+  }
+
+  @Test
+  public void testReadingRegions() throws IOException {
+    try (SegmentedCharSequence sequence = LogManipulator.readFile(file)) {
+      assertEquals(CONTENT, sequence.toString());
+    }
+    assertEquals(CONTENT.getBytes(StandardCharsets.UTF_8).length,
+        LogManipulator.getLength(file));
+    // the regions end on line boundaries in the decompressed log
+    assertEquals(21, LogManipulator.splitIntoRegions(file, 24, false)
+        .get(0).getLength());
+  }
+
+  private static void write(String content, File target) throws IOException {
+    BlockCompressedLog.write(new ByteArrayInputStream(
+        content.getBytes(StandardCharsets.UTF_8)), target, BLOCK_SHIFT);
+  }
+}
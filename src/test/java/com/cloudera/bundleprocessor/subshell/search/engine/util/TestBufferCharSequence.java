@@ -21,6 +21,7 @@ package com.cloudera.bundleprocessor.subshell.search.engine.util;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
 
@@ -34,6 +35,21 @@ public class TestBufferCharSequence {
     testBufferCharSequence("&8()=/*-+.!@$;./,");
   }
 
+  @Test
+  public void testMultibyteCharacters() {
+    String str = "node=h\u00f6st-\u00e9t\u00e9 msg=\u65e5\u672c";
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    BufferCharSequence seq = new BufferCharSequence(ByteBuffer.wrap(bytes));
+    assertEquals(bytes.length, seq.length());
+    // every byte is a character, so the multibyte ones are above 0x7f
+    assertEquals(0xc3, seq.charAt(6));
+    assertEquals(str, seq.toString());
+    // the last two characters are encoded in three bytes each
+    CharSequence sub = seq.subSequence(bytes.length - 6, bytes.length);
+    assertEquals(6, sub.length());
+    assertEquals("\u65e5\u672c", sub.toString());
+  }
+
   private void testBufferCharSequence(String str) {
     ByteBuffer b = ByteBuffer.wrap(str.getBytes());
     BufferCharSequence seq = new BufferCharSequence(b);
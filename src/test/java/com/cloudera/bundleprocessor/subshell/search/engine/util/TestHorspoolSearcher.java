@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class TestHorspoolSearcher {
+
+  private static final String TEXT =
+      "2020-01-01 INFO container_01 started, container_02 started";
+
+  @Test
+  public void testIndexOf() {
+    checkIndexOf("container_", 0, TEXT.length());
+    checkIndexOf("container_", 17, TEXT.length());
+    checkIndexOf("started", 0, TEXT.length());
+    checkIndexOf("2020", 0, TEXT.length());
+    checkIndexOf("d", 0, TEXT.length());
+    checkIndexOf("missing", 0, TEXT.length());
+  }
+
+  @Test
+  public void testRange() {
+    assertEquals(-1, search("started").indexOf(sequence(TEXT), 0, 35));
+    assertEquals(29, search("started").indexOf(sequence(TEXT), 0, 36));
+    assertEquals(-1, search("2020").indexOf(sequence(TEXT), 1, 100));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyNeedle() {
+    new HorspoolSearcher(new byte[0]);
+  }
+
+  private static void checkIndexOf(String needle, int from, int to) {
+    assertEquals(needle, TEXT.indexOf(needle, from),
+        search(needle).indexOf(sequence(TEXT), from, to));
+  }
+
+  private static HorspoolSearcher search(String needle) {
+    return new HorspoolSearcher(needle.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static ByteSequence sequence(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+    return new ByteSequence() {
+      @Override
+      public int length() {
+        return bytes.length;
+      }
+
+      @Override
+      public byte byteAt(int index) {
+        return bytes[index];
+      }
+    };
+  }
+}
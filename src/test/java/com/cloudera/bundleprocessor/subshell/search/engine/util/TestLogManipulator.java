@@ -25,6 +25,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
 import org.junit.Test;
 
 public class TestLogManipulator {
@@ -64,4 +65,66 @@ public class TestLogManipulator {
       }
     }
   }
+
+  @Test
+  public void testSplitIntoRegions() throws IOException {
+    String testString = "first line\nsecond line\n"
+        + "a line longer than the maximal region\nlast";
+    File file = new File("target", "logmanipulatorregions.txt");
+    try {
+      try (FileOutputStream fos = new FileOutputStream(file)) {
+        fos.write(testString.getBytes());
+      }
+      List<FileRegion> regions =
+          LogManipulator.splitIntoRegions(file, 25, false);
+      String[] expected = {"first line\nsecond line\n",
+          "a line longer than the ma", "ximal region\nlast"};
+      assertEquals(expected.length, regions.size());
+      long offset = 0;
+      for (int i = 0; i < expected.length; i++) {
+        FileRegion region = regions.get(i);
+        assertEquals(offset, region.getOffset());
+        try (SegmentedCharSequence seq = LogManipulator.readRegion(region)) {
+          assertEquals(expected[i], seq.toString());
+        }
+        offset = region.getEnd();
+      }
+      assertEquals(file.length(), offset);
+    } finally {
+      if (file.exists()) {
+        file.delete();
+      }
+    }
+  }
+
+  @Test
+  public void testSplitIntoRecords() throws IOException {
+    String testString = "2020-01-01 00:00:00 exception\n"
+        + "\tat stack trace\n"
+        + "2020-01-01 00:00:01 next record\n"
+        + "\tat no record boundary in this region\n";
+    File file = new File("target", "logmanipulatorrecords.txt");
+    try {
+      try (FileOutputStream fos = new FileOutputStream(file)) {
+        fos.write(testString.getBytes());
+      }
+      List<FileRegion> regions =
+          LogManipulator.splitIntoRegions(file, 60, true);
+      String[] expected = {
+          "2020-01-01 00:00:00 exception\n\tat stack trace\n",
+          "2020-01-01 00:00:01 next record\n",
+          "\tat no record boundary in this region\n"};
+      assertEquals(expected.length, regions.size());
+      for (int i = 0; i < expected.length; i++) {
+        try (SegmentedCharSequence seq =
+                 LogManipulator.readRegion(regions.get(i))) {
+          assertEquals(expected[i], seq.toString());
+        }
+      }
+    } finally {
+      if (file.exists()) {
+        file.delete();
+      }
+    }
+  }
 }
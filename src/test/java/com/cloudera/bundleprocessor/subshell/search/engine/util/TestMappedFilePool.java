@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMappedFilePool {
+
+  private static final File DIR = new File("target", "mappedFilePool");
+  // every window is 8 bytes long
+  private static final int WINDOW_SHIFT = 3;
+  private static final String CONTENT = "0123456789abcdefghij";
+
+  private File first;
+  private File second;
+
+  @Before
+  public void setUp() throws IOException {
+    DIR.mkdirs();
+    first = writeFile("first.log", CONTENT);
+    second = writeFile("second.log", CONTENT);
+  }
+
+  @After
+  public void tearDown() {
+    first.delete();
+    second.delete();
+    DIR.delete();
+  }
+
+  @Test
+  public void testWindowsAreReused() throws IOException {
+    MappedFilePool pool = new MappedFilePool(1024, 10, WINDOW_SHIFT);
+    MappedFilePool.Window window = pool.acquire(first, 1, 8);
+    assertEquals('8', window.getBuffer().get(0));
+    pool.release(window);
+    assertSame(window, pool.acquire(first, 1, 8));
+    // the last window is shorter than the others
+    assertEquals(4, pool.acquire(first, 2, 4).getBuffer().limit());
+    assertEquals(12, pool.getMappedBytes());
+    assertEquals(1, pool.getMappedFiles());
+    pool.close();
+  }
+
+  @Test
+  public void testIdleWindowsAreEvictedOverTheByteLimit()
+      throws IOException {
+    MappedFilePool pool = new MappedFilePool(16, 10, WINDOW_SHIFT);
+    MappedFilePool.Window window0 = pool.acquire(first, 0, 8);
+    MappedFilePool.Window window1 = pool.acquire(first, 1, 8);
+    pool.release(window0);
+    pool.release(window1);
+    // the least recently used window is evicted
+    MappedFilePool.Window window2 = pool.acquire(first, 2, 4);
+    assertEquals(12, pool.getMappedBytes());
+    assertSame(window1, pool.acquire(first, 1, 8));
+    assertNotSame(window0, pool.acquire(first, 0, 8));
+    // the windows in use are not evicted
+    assertEquals(20, pool.getMappedBytes());
+    pool.release(window2);
+    assertEquals(16, pool.getMappedBytes());
+    pool.close();
+  }
+
+  @Test
+  public void testFilesAreClosedOverTheFileLimit() throws IOException {
+    MappedFilePool pool = new MappedFilePool(1024, 1, WINDOW_SHIFT);
+    pool.release(pool.acquire(first, 0, 8));
+    assertEquals(1, pool.getMappedFiles());
+    MappedFilePool.Window window = pool.acquire(second, 0, 8);
+    assertEquals(1, pool.getMappedFiles());
+    assertEquals(8, pool.getMappedBytes());
+    pool.release(window);
+    pool.close();
+    assertEquals(0, pool.getMappedFiles());
+  }
+
+  @Test
+  public void testClosingThePool() throws IOException {
+    MappedFilePool pool = new MappedFilePool(1024, 10, WINDOW_SHIFT);
+    pool.release(pool.acquire(first, 0, 8));
+    MappedFilePool.Window window = pool.acquire(second, 0, 8);
+    pool.close();
+    // the window in use is unmapped when it is released
+    assertEquals(1, pool.getMappedFiles());
+    assertEquals(8, pool.getMappedBytes());
+    pool.release(window);
+    assertEquals(0, pool.getMappedFiles());
+    assertEquals(0, pool.getMappedBytes());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAcquiringFromClosedPool() throws IOException {
+    MappedFilePool pool = new MappedFilePool(1024, 10, WINDOW_SHIFT);
+    pool.close();
+    pool.acquire(first, 0, 8);
+  }
+
+  @Test
+  public void testGrownFileIsMappedAgain() throws IOException {
+    MappedFilePool pool = new MappedFilePool(1024, 10, WINDOW_SHIFT);
+    MappedFilePool.Window window = pool.acquire(first, 2, 4);
+    pool.release(window);
+    try (FileOutputStream fos = new FileOutputStream(first, true)) {
+      fos.write("klm".getBytes(StandardCharsets.ISO_8859_1));
+    }
+    MappedFilePool.Window grown = pool.acquire(first, 2, 7);
+    assertNotSame(window, grown);
+    assertEquals('m', grown.getBuffer().get(6));
+    assertEquals(7, pool.getMappedBytes());
+    pool.release(grown);
+    pool.close();
+  }
+
+  @Test(expected = IOException.class)
+  public void testMappingBeyondTheEndOfFile() throws IOException {
+    MappedFilePool pool = new MappedFilePool(1024, 10, WINDOW_SHIFT);
+    try {
+      pool.acquire(first, 2, 8);
+    } finally {
+      assertEquals(0, pool.getMappedFiles());
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testPooledSequence() throws IOException {
+    MappedFilePool pool = new MappedFilePool(1024, 10, WINDOW_SHIFT);
+    FileRegion region = new FileRegion(first, 5, 10);
+    try (SegmentedCharSequence seq = LogManipulator.readRegion(region, pool)) {
+      assertEquals(CONTENT.substring(5, 15), seq.toString());
+      seq.releaseBefore(6);
+      assertEquals(CONTENT.charAt(5), seq.charAt(0));
+    }
+    // the windows stay mapped for the next sequences
+    assertEquals(16, pool.getMappedBytes());
+    pool.close();
+    assertEquals(0, pool.getMappedBytes());
+  }
+
+  private static File writeFile(String name, String content)
+      throws IOException {
+    File file = new File(DIR, name);
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      fos.write(content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+    return file;
+  }
+}
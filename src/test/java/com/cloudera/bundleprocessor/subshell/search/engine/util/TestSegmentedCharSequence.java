@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestSegmentedCharSequence {
+
+  private static final File FILE = new File("target", "segmented.txt");
+  private static final String CONTENT = "first line of the file\n"
+      + "2020-01-01 00:00:00 ERROR the error spans the windows\n"
+      + "2020-01-01 00:00:01 INFO last line\n";
+  // every window is 8 bytes long
+  private static final int WINDOW_SHIFT = 3;
+
+  /**
+   * Writes the content into the test file.
+   */
+  @BeforeClass
+  public static void setUpClass() throws IOException {
+    try (FileOutputStream fos = new FileOutputStream(FILE)) {
+      fos.write(CONTENT.getBytes(StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    FILE.delete();
+  }
+
+  @Test
+  public void testWholeFile() throws IOException {
+    try (SegmentedCharSequence seq = createSequence(0, CONTENT.length())) {
+      assertEquals(CONTENT.length(), seq.length());
+      for (int i = 0; i < CONTENT.length(); i++) {
+        assertEquals(CONTENT.charAt(i), seq.charAt(i));
+      }
+      assertEquals(CONTENT, seq.toString());
+      assertEquals(CONTENT.substring(5, 30),
+          seq.subSequence(5, 30).toString());
+      assertEquals("", seq.subSequence(8, 8).toString());
+      assertEquals(CONTENT.substring(7, 12),
+          seq.subSequence(5, 30).subSequence(2, 7).toString());
+    }
+  }
+
+  @Test
+  public void testRegionOfFile() throws IOException {
+    int offset = CONTENT.indexOf('\n') + 1;
+    int length = CONTENT.length() - offset;
+    try (SegmentedCharSequence seq = createSequence(offset, length)) {
+      assertEquals(CONTENT.substring(offset), seq.toString());
+    }
+  }
+
+  @Test
+  public void testMatchingAcrossWindows() throws IOException {
+    Pattern pattern = Pattern.compile("(?<time>\\d{4}-\\d{2}-\\d{2} "
+        + "\\d{2}:\\d{2}:\\d{2}) (?<level>[A-Z]+) (?<message>.*)");
+    try (SegmentedCharSequence seq = createSequence(0, CONTENT.length())) {
+      Matcher matcher = pattern.matcher(seq);
+      assertTrue(matcher.find());
+      assertEquals("ERROR", matcher.group("level"));
+      assertEquals("the error spans the windows", matcher.group("message"));
+      seq.releaseBefore(matcher.start());
+      assertTrue(matcher.find());
+      assertEquals("2020-01-01 00:00:01", matcher.group("time"));
+      assertEquals("last line", matcher.group("message"));
+      assertFalse(matcher.find());
+    }
+  }
+
+  @Test
+  public void testReleasedWindowsAreMappedAgain() throws IOException {
+    try (SegmentedCharSequence seq = createSequence(0, CONTENT.length())) {
+      assertEquals(CONTENT.charAt(3), seq.charAt(3));
+      seq.releaseBefore(CONTENT.length());
+      assertEquals(CONTENT.charAt(3), seq.charAt(3));
+      assertEquals(CONTENT.charAt(50), seq.charAt(50));
+    }
+  }
+
+  @Test
+  public void testUtf8Text() throws IOException {
+    File file = new File("target", "segmented-utf8.txt");
+    String content = "host=n\u00f3de-\u6771\u4eac.example.com "
+        + "user=\ud83d\ude00\n";
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      fos.write(bytes);
+    }
+    FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try (SegmentedCharSequence seq =
+             new SegmentedCharSequence(channel, 0, bytes.length,
+                 WINDOW_SHIFT)) {
+      // the indexes are the positions of the bytes
+      assertEquals(bytes.length, seq.length());
+      assertEquals(content, seq.toString());
+      Matcher matcher = Pattern.compile("host=(?<host>\\S+) user=(\\S+)")
+          .matcher(seq);
+      assertTrue(matcher.find());
+      assertEquals("n\u00f3de-\u6771\u4eac.example.com",
+          matcher.group("host"));
+      assertEquals("\ud83d\ude00", matcher.group(2));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testIndexOutOfBounds() throws IOException {
+    try (SegmentedCharSequence seq = createSequence(0, 10)) {
+      seq.charAt(10);
+    }
+  }
+
+  private SegmentedCharSequence createSequence(long offset, int length)
+      throws IOException {
+    FileChannel channel =
+        FileChannel.open(FILE.toPath(), StandardOpenOption.READ);
+    return new SegmentedCharSequence(channel, offset, length, WINDOW_SHIFT);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestUtf8CharSequence {
+
+  @Test
+  public void testCharactersAndIndexes() {
+    String text = "a\u00c5\ud83d\ude00b";
+    BufferCharSequence bytes = toSequence(text);
+    Utf8CharSequence sequence =
+        new Utf8CharSequence(bytes, 0, bytes.length());
+    assertEquals(text.length(), sequence.length());
+    assertEquals(text, sequence.toString());
+    for (int i = 0; i < text.length(); i++) {
+      assertEquals(text.charAt(i), sequence.charAt(i));
+    }
+    int[] byteIndexes = {0, 1, 3, 3, 7, 8};
+    for (int i = 0; i <= text.length(); i++) {
+      assertEquals(byteIndexes[i], sequence.toByteIndex(i));
+    }
+    assertEquals(-1, sequence.toByteIndex(-1));
+    assertEquals(1, sequence.toCharIndex(1));
+    // in the middle of a character the next one is returned
+    assertEquals(2, sequence.toCharIndex(2));
+    assertEquals(2, sequence.toCharIndex(3));
+    assertEquals(4, sequence.toCharIndex(5));
+    assertEquals(5, sequence.toCharIndex(8));
+    assertEquals("\u00c5\ud83d\ude00", sequence.subSequence(1, 4));
+  }
+
+  @Test
+  public void testInvalidBytesAreDecodedAsLatin1() {
+    byte[] bytes = {'a', (byte) 0xe9, (byte) 0x85, 'b'};
+    Utf8CharSequence sequence = new Utf8CharSequence(
+        new BufferCharSequence(ByteBuffer.wrap(bytes)), 0, bytes.length);
+    assertEquals("a\u00e9\u0085b", sequence.toString());
+    assertEquals(4, sequence.length());
+    assertEquals('\u0085', sequence.charAt(2));
+    assertEquals(2, sequence.toByteIndex(2));
+  }
+
+  @Test
+  public void testBlocks() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      builder.append(i % 3 == 0 ? '\u00e9' : (char) ('a' + i % 26));
+    }
+    String text = builder.toString();
+    BufferCharSequence bytes = toSequence(text);
+    Utf8CharSequence sequence =
+        new Utf8CharSequence(bytes, 0, bytes.length());
+    assertEquals(text.length(), sequence.length());
+    // jumping between the blocks
+    for (int i = text.length() - 1; i >= 0; i -= 997) {
+      assertEquals(text.charAt(i), sequence.charAt(i));
+      int byteIndex = sequence.toByteIndex(i);
+      assertEquals(i, sequence.toCharIndex(byteIndex));
+      assertEquals(text.substring(0, i),
+          Utf8Decoder.decode(bytes, 0, byteIndex));
+    }
+  }
+
+  @Test
+  public void testPartOfBytes() {
+    BufferCharSequence bytes = toSequence("x\u00e9y\u00e9z");
+    // aligned to the start and to the end of the characters
+    int start = Utf8CharSequence.alignStart(bytes, 2);
+    int end = Utf8CharSequence.alignEnd(bytes, 5);
+    assertEquals(1, start);
+    assertEquals(6, end);
+    Utf8CharSequence sequence = new Utf8CharSequence(bytes, start, end);
+    assertEquals("\u00e9y\u00e9", sequence.toString());
+    assertEquals(4, sequence.toByteIndex(2));
+    assertEquals(1, sequence.toCharIndex(3));
+    assertEquals(3, sequence.toCharIndex(6));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testInvalidIndex() {
+    BufferCharSequence bytes = toSequence("\u00e9");
+    new Utf8CharSequence(bytes, 0, bytes.length()).charAt(1);
+  }
+
+  private static BufferCharSequence toSequence(String text) {
+    return new BufferCharSequence(
+        ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestUtf8Decoder {
+
+  @Test
+  public void testValidText() {
+    testDecoding("");
+    testDecoding("plain ascii");
+    testDecoding("caf\u00e9");
+    testDecoding("\u6771\u4eac-node1");
+    testDecoding("emoji \ud83d\ude00 in the message");
+  }
+
+  @Test
+  public void testInvalidBytesAreDecodedAsLatin1() {
+    // a Latin-1 encoded text
+    assertEquals("caf\u00e9", decode(new byte[]{'c', 'a', 'f', (byte) 0xe9}));
+    // a truncated sequence
+    assertEquals("\u00e6\u009d", decode(new byte[]{(byte) 0xe6, (byte) 0x9d}));
+    // an overlong encoding of '/'
+    assertEquals("\u00c0\u00af", decode(new byte[]{(byte) 0xc0, (byte) 0xaf}));
+    // an encoded surrogate
+    assertEquals("\u00ed\u00a0\u0080",
+        decode(new byte[]{(byte) 0xed, (byte) 0xa0, (byte) 0x80}));
+  }
+
+  @Test
+  public void testAppendingPartOfSequence() {
+    byte[] bytes = "id=\u00e9\u00e9".getBytes(StandardCharsets.UTF_8);
+    StringBuilder builder = new StringBuilder("prefix ");
+    Utf8Decoder.append(new BufferCharSequence(ByteBuffer.wrap(bytes)), 3,
+        bytes.length, builder);
+    assertEquals("prefix \u00e9\u00e9", builder.toString());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testInvalidRange() {
+    byte[] bytes = "text".getBytes(StandardCharsets.UTF_8);
+    Utf8Decoder.decode(new BufferCharSequence(ByteBuffer.wrap(bytes)), 2, 5);
+  }
+
+  private static void testDecoding(String text) {
+    assertEquals(text, decode(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String decode(byte[] bytes) {
+    return Utf8Decoder.decode(new BufferCharSequence(ByteBuffer.wrap(bytes)),
+        0, bytes.length);
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.worker;
+
+import com.cloudera.bundleprocessor.preprocessor.fileprocessor.FileUtils;
+import com.cloudera.bundleprocessor.subshell.context.Config;
+import com.cloudera.bundleprocessor.subshell.context.Search;
+import com.cloudera.bundleprocessor.subshell.search.engine.Query;
+import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestScanCoordinator {
+  private static final File LOG_FOLDER = new File("src/test/resources");
+  private static final File CONFIG_FILE =
+      new File("src/test/resources", "configForTest.json");
+  private static final String SECRET = "secret of the test";
+
+  private final List<ServerSocket> serverSockets = new ArrayList<>();
+  private SearchEngine workerEngine;
+  private SearchEngine localEngine;
+  private SearchEngine coordinatedEngine;
+
+  /**
+   * Starts two workers on this JVM, and an engine using them.
+   */
+  @Before
+  public void setUp() throws IOException {
+    workerEngine = new SearchEngine(LOG_FOLDER);
+    workerEngine.init(Config.createConfig(CONFIG_FILE), null);
+    ScanWorker worker = new ScanWorker(workerEngine, SECRET);
+    List<String> addresses = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      addresses.add(startWorker(worker));
+    }
+    localEngine = new SearchEngine(LOG_FOLDER);
+    localEngine.init(Config.createConfig(CONFIG_FILE), null);
+    Config config = Config.createConfig(CONFIG_FILE);
+    Search search = new Search();
+    search.setScanWorkerAddresses(String.join(",", addresses));
+    search.setScanWorkerSecret(SECRET);
+    config.setSearch(search);
+    coordinatedEngine = new SearchEngine(LOG_FOLDER);
+    coordinatedEngine.init(config, null);
+  }
+
+  /**
+   * Starts serving a coordinator on a thread of this JVM.
+   *
+   * @return the address of the worker
+   */
+  private String startWorker(ScanWorker worker) throws IOException {
+    ServerSocket serverSocket = new ServerSocket(0, 0,
+        InetAddress.getLoopbackAddress());
+    serverSockets.add(serverSocket);
+    Thread thread = new Thread(() -> {
+      while (!serverSocket.isClosed()) {
+        try (Socket socket = serverSocket.accept()) {
+          worker.serve(socket);
+        } catch (IOException e) {
+          // the test closed the worker
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return "localhost:" + serverSocket.getLocalPort();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    coordinatedEngine.close();
+    localEngine.close();
+    workerEngine.close();
+    for (ServerSocket serverSocket : serverSockets) {
+      serverSocket.close();
+    }
+  }
+
+  @Test
+  public void testSameMatchesAsLocalScan() throws IOException {
+    List<Query> queries = Arrays.asList(
+        createQuery("TEST.*TEXT").build(),
+        createQuery("TEST.*TEXT").withHead(2).build(),
+        createQuery("(?s)TEST.{0,20}").isSpanningMultipleLines().build(),
+        createQuery("NODEMANAGER").isCheckingFileNames().build(),
+        createQuery("no such text").build());
+    for (Query query : queries) {
+      assertEquals(query.getPattern().pattern(),
+          collectMatches(localEngine, query),
+          collectMatches(coordinatedEngine, query));
+    }
+    assertFalse(collectMatches(localEngine, queries.get(0)).isEmpty());
+  }
+
+  @Test
+  public void testLaunchedWorkers() throws IOException {
+    Config config = Config.createConfig(CONFIG_FILE);
+    Search search = new Search();
+    search.setScanWorkers("2");
+    config.setSearch(search);
+    SearchEngine engine = new SearchEngine(LOG_FOLDER);
+    try {
+      engine.init(config, null);
+      Query query = createQuery("TEST.*TEXT").build();
+      assertEquals(collectMatches(localEngine, query),
+          collectMatches(engine, query));
+    } finally {
+      engine.close();
+    }
+  }
+
+  @Test
+  public void testMoreRowsThanQueueCapacity() throws IOException {
+    File folder = Files.createTempDirectory("bundle").toFile();
+    File logs = new File(folder, "workspace/logs");
+    assertTrue(logs.mkdirs());
+    for (String name : Arrays.asList("RESOURCEMANAGER.log",
+        "NODEMANAGER.log", "NODEMANAGER2.log")) {
+      StringBuilder log = new StringBuilder();
+      for (int i = 0; i < 3 * ScanCoordinator.QUEUE_CAPACITY; i++) {
+        log.append("TEST ").append(i).append(" TEXT\n");
+      }
+      Files.write(new File(logs, name).toPath(),
+          log.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    SearchEngine bundleWorkerEngine = new SearchEngine(folder);
+    SearchEngine bundleLocalEngine = new SearchEngine(folder);
+    SearchEngine bundleCoordinatedEngine = new SearchEngine(folder);
+    try {
+      bundleWorkerEngine.init(Config.createConfig(CONFIG_FILE), null);
+      bundleLocalEngine.init(Config.createConfig(CONFIG_FILE), null);
+      ScanWorker worker = new ScanWorker(bundleWorkerEngine, SECRET);
+      Config config = Config.createConfig(CONFIG_FILE);
+      Search search = new Search();
+      search.setScanWorkerAddresses(
+          startWorker(worker) + "," + startWorker(worker));
+      search.setScanWorkerSecret(SECRET);
+      config.setSearch(search);
+      bundleCoordinatedEngine.init(config, null);
+      // the later shard waits while the first one is merged
+      Query query = createQuery("TEST.*TEXT").build();
+      List<String> matches = collectMatches(bundleLocalEngine, query);
+      assertEquals(9 * ScanCoordinator.QUEUE_CAPACITY + 3, matches.size());
+      assertEquals(matches, collectMatches(bundleCoordinatedEngine, query));
+    } finally {
+      bundleCoordinatedEngine.close();
+      bundleLocalEngine.close();
+      bundleWorkerEngine.close();
+      FileUtils.deleteDirectory(folder.getPath());
+    }
+  }
+
+  @Test
+  public void testWorkerRefusesWrongSecret() throws IOException {
+    String address = startWorker(new ScanWorker(workerEngine, SECRET));
+    try {
+      ScanCoordinator.connect(Collections.singletonList(address), "wrong");
+      fail("The worker should refuse the connection");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("refused"));
+    }
+    // the worker still serves the coordinators knowing the secret
+    try (ScanCoordinator coordinator = ScanCoordinator.connect(
+        Collections.singletonList(address), SECRET)) {
+      assertEquals(1, coordinator.getWorkerCount());
+    }
+  }
+
+  @Test
+  public void testSecretIsRequired() throws IOException {
+    try {
+      ScanCoordinator.connect(Collections.singletonList("localhost:1"), "");
+      fail("The workers can't be used without a secret");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new ScanWorker(workerEngine, null);
+      fail("A worker can't be started without a secret");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSplitIntoShards() throws IOException {
+    File folder = Files.createTempDirectory("shards").toFile();
+    List<File> files = new ArrayList<>();
+    long[] sizes = {100, 10, 10, 10, 60, 10};
+    for (int i = 0; i < sizes.length; i++) {
+      File file = new File(folder, "log" + i);
+      try (RandomAccessFile randomAccessFile =
+               new RandomAccessFile(file, "rw")) {
+        randomAccessFile.setLength(sizes[i]);
+      }
+      file.deleteOnExit();
+      files.add(file);
+    }
+    folder.deleteOnExit();
+
+    assertEquals(Collections.singletonList(files),
+        ScanCoordinator.splitIntoShards(files, 1));
+    assertEquals(Arrays.asList(files.subList(0, 1), files.subList(1, 6)),
+        ScanCoordinator.splitIntoShards(files, 2));
+    assertEquals(Arrays.asList(files.subList(0, 1), files.subList(1, 5),
+        files.subList(5, 6)), ScanCoordinator.splitIntoShards(files, 3));
+    // every shard gets at least one file
+    assertEquals(6, ScanCoordinator.splitIntoShards(files, 6).size());
+    assertEquals(6, ScanCoordinator.splitIntoShards(files, 10).size());
+    assertEquals(Collections.emptyList(),
+        ScanCoordinator.splitIntoShards(Collections.emptyList(), 2));
+  }
+
+  private static Query.Builder createQuery(String regex) {
+    return new Query.Builder()
+        .withPattern(Pattern.compile(regex))
+        .isCheckingRmLogs()
+        .isCheckingNmLogs();
+  }
+
+  private static List<String> collectMatches(SearchEngine engine,
+                                             Query query) throws IOException {
+    List<String> matches = new ArrayList<>();
+    for (Matcher matcher : engine.createMatchers(query)) {
+      while (matcher.find()) {
+        matches.add(matcher.group());
+      }
+      matches.add("end of source");
+    }
+    return matches;
+  }
+}
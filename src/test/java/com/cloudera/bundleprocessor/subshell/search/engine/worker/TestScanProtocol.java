@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.engine.worker;
+
+import com.cloudera.bundleprocessor.subshell.search.engine.Query;
+import com.cloudera.bundleprocessor.subshell.search.engine.TimeRange;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestScanProtocol {
+
+  @Test
+  public void testNumbers() throws IOException {
+    int[] numbers = {0, 1, 127, 128, 300, 16384, Integer.MAX_VALUE};
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (int number : numbers) {
+      ScanProtocol.writeNumber(out, number);
+    }
+    // one byte per 7 bits
+    assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 5, bytes.size());
+    DataInputStream in = read(bytes);
+    for (int number : numbers) {
+      assertEquals(number, ScanProtocol.readNumber(in));
+    }
+  }
+
+  @Test
+  public void testStrings() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    ScanProtocol.writeString(out, "");
+    ScanProtocol.writeString(out, "line\nnext line \u00e9\u4e2d");
+    DataInputStream in = read(bytes);
+    assertEquals("", ScanProtocol.readString(in));
+    assertEquals("line\nnext line \u00e9\u4e2d", ScanProtocol.readString(in));
+  }
+
+  @Test
+  public void testHello() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    ScanProtocol.writeHello(out, "secret");
+    char[] longSecret = new char[ScanProtocol.MAX_SECRET_LENGTH + 1];
+    Arrays.fill(longSecret, 'x');
+    ScanProtocol.writeHello(out, new String(longSecret));
+    DataInputStream in = read(bytes);
+    assertEquals(ScanProtocol.HELLO, ScanProtocol.readFrameType(in));
+    String secret = ScanProtocol.readSecret(in);
+    assertTrue(ScanProtocol.isMatchingSecret("secret", secret));
+    assertFalse(ScanProtocol.isMatchingSecret("secreT", secret));
+    assertFalse(ScanProtocol.isMatchingSecret("secret2", secret));
+    assertEquals(ScanProtocol.HELLO, ScanProtocol.readFrameType(in));
+    // a long secret is not read into the memory
+    assertNull(ScanProtocol.readSecret(in));
+  }
+
+  @Test
+  public void testSearchRequest() throws IOException {
+    Query rmQuery = new Query.Builder()
+        .withPattern(Pattern.compile("container_\\d+", Pattern.DOTALL))
+        .isCheckingRmLogs()
+        .withHead(5)
+        .build();
+    Query nmQuery = new Query.Builder()
+        .withPattern(Pattern.compile("Exception"))
+        .isCheckingNmLogs()
+        .isSpanningMultipleLines()
+        .withTimeRange(new TimeRange("2020-03-24 10:00:00", null))
+        .build();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ScanProtocol.writeSearch(new DataOutputStream(bytes),
+        new ScanProtocol.SearchRequest(Arrays.asList(rmQuery, nmQuery),
+            Collections.singletonList("NODEMANAGER.log.out")));
+    DataInputStream in = read(bytes);
+    assertEquals(ScanProtocol.SEARCH, ScanProtocol.readFrameType(in));
+    ScanProtocol.SearchRequest request = ScanProtocol.readSearch(in);
+    assertEquals(Arrays.asList(rmQuery, nmQuery), request.getQueries());
+    assertEquals(Pattern.DOTALL,
+        request.getQueries().get(0).getPattern().flags());
+    assertEquals(Collections.singletonList("NODEMANAGER.log.out"),
+        request.getFileNames());
+    assertEquals(-1, ScanProtocol.readFrameType(in));
+  }
+
+  private static DataInputStream read(ByteArrayOutputStream bytes) {
+    return new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray()));
+  }
+}
@@ -21,6 +21,7 @@ package com.cloudera.bundleprocessor.subshell.search.format;
 import com.cloudera.bundleprocessor.subshell.format.Column;
 import com.cloudera.bundleprocessor.subshell.format.ComposedPrintable;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -54,8 +55,8 @@ public class TestCounter {
       PATTERN.matcher(SAMPLE_TEXTS[0]), PATTERN.matcher(SAMPLE_TEXTS[1])));
   private Counter counter;
 
-  private static Integer[] filterer(Matcher matcher) {
-    int numberOfMatches = Integer.parseInt(matcher.group("number"));
+  private static Integer[] filterer(LogMatch match) {
+    int numberOfMatches = Integer.parseInt(match.group("number"));
     return new Integer[]{numberOfMatches, 2 * numberOfMatches};
   }
 
@@ -18,10 +18,10 @@
 
 package com.cloudera.bundleprocessor.subshell.search.format;
 
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 import org.junit.Test;
 
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -30,7 +30,7 @@ public class TestCounterFunction {
   @Test
   public void testCounterFunctionFields() {
     String[] header = {"column", "test"};
-    Function<Matcher, Integer[]> filterer =
+    Function<LogMatch, Integer[]> filterer =
         (m) -> new Integer[]{2, 3};
     Function<Integer[], String[]> finalizer =
         (m) -> new String[]{"some", "string"};
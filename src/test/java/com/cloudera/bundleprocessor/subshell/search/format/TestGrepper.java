@@ -22,6 +22,7 @@ import com.cloudera.bundleprocessor.subshell.format.ComposedPrintable;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.format.RowList;
 import com.cloudera.bundleprocessor.subshell.format.RowListFactory;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -55,8 +56,8 @@ public class TestGrepper {
       PATTERN.matcher(SAMPLE_TEXTS[0]), PATTERN.matcher(SAMPLE_TEXTS[1])));
   private Grepper grepper;
 
-  private static String[] filterer(Matcher matcher) {
-    return new String[]{matcher.group("fruit"), matcher.group("number")};
+  private static String[] filterer(LogMatch match) {
+    return new String[]{match.group("fruit"), match.group("number")};
   }
 
   @Before
@@ -125,6 +126,35 @@ public class TestGrepper {
     assertSamePrintable(actualPrintable, expectedPrintable);
   }
 
+  @Test
+  public void testStreamingMatchesFormatting() {
+    for (boolean separating : new boolean[]{false, true}) {
+      grepper.init(new FormatterModifiers.Builder()
+          .setSeparatingBySourceFile(separating)
+          .build());
+      resetMatchers();
+      String expectedOutput = grepper.format(matchers).print();
+      resetMatchers();
+      StringBuilder actualOutput = new StringBuilder();
+      FormattingListener listener =
+          grepper.createListener(actualOutput::append);
+      for (Matcher matcher : matchers) {
+        while (matcher.find()) {
+          listener.onMatch(LogMatch.of(matcher));
+        }
+        listener.onEndOfSource();
+      }
+      listener.finish();
+      assertEquals(expectedOutput, actualOutput.toString());
+    }
+  }
+
+  private void resetMatchers() {
+    for (Matcher matcher : matchers) {
+      matcher.reset();
+    }
+  }
+
   private void assertSamePrintable(Printable actual, Printable expected) {
     String actualOutput = actual.print();
     String expectedOutput = expected.print();
@@ -19,6 +19,7 @@
 package com.cloudera.bundleprocessor.subshell.search.format;
 
 import com.cloudera.bundleprocessor.subshell.format.Printable;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -43,12 +44,12 @@ public class TestGrepperFactory {
       + NUMBER + ">([a-z]+))";
   private static final Pattern PATTERN = Pattern.compile(PATTERN_STRING);
 
-  private static String[] fruitFilterer(Matcher matcher) {
-    return new String[]{matcher.group(FRUIT), matcher.group(NUMBER)};
+  private static String[] fruitFilterer(LogMatch match) {
+    return new String[]{match.group(FRUIT), match.group(NUMBER)};
   }
 
-  private static String[] rawFilterer(Matcher matcher) {
-    return new String[]{matcher.group()};
+  private static String[] rawFilterer(LogMatch match) {
+    return new String[]{match.group()};
   }
 
   @Test
@@ -18,10 +18,10 @@
 
 package com.cloudera.bundleprocessor.subshell.search.format;
 
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
 import org.junit.Test;
 
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -30,7 +30,8 @@ public class TestGrepperFunction {
   @Test
   public void testCounterFunctionFields() {
     String[] header = {"column", "test"};
-    Function<Matcher, String[]> filterer = (m) -> new String[]{"test_filterer"};
+    Function<LogMatch, String[]> filterer =
+        (m) -> new String[]{"test_filterer"};
 
     GrepperFunction cf = new GrepperFunction(header, filterer);
     assertArrayEquals(header, cf.getHeader());
@@ -18,10 +18,17 @@
 
 package com.cloudera.bundleprocessor.subshell.search.request;
 
+import com.cloudera.bundleprocessor.subshell.context.Config;
 import com.cloudera.bundleprocessor.subshell.format.StringPrintable;
+import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
+import com.cloudera.bundleprocessor.subshell.search.format.GrepperFactory;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -66,4 +73,53 @@ public class TestComposedExecutable {
         "The actual output is not the concatenation of individual outputs",
         expectedOutput, actualOutput);
   }
+
+  @Test
+  public void testSharedExecution() throws IOException {
+    SearchEngine engine = new SearchEngine(new File("src/test/resources"));
+    engine.init(Config.createConfig(
+        new File("src/test/resources", "configForTest.json")), null);
+    ComposedExecutable composedExecutable = new ComposedExecutable();
+    composedExecutable.addExecutable(createGrepExecutable("TEST.*TEXT")
+        .isCheckingRmLogs()
+        .build());
+    ComposedExecutable nestedExecutable = new ComposedExecutable();
+    nestedExecutable.addExecutable(createGrepExecutable("TEST_\\d+_TEXT")
+        .isCheckingNmLogs()
+        .separateBySourceFile()
+        .build());
+    nestedExecutable.addExecutable(createGrepExecutable("TEXT\\s+TEST")
+        .isCheckingRmLogs()
+        .isSpanningMultipleLines()
+        .build());
+    composedExecutable.addExecutable(nestedExecutable);
+
+    List<SingleExecutable> singleExecutables = new ArrayList<>();
+    composedExecutable.collectSingleExecutables(singleExecutables);
+    assertEquals(3, singleExecutables.size());
+    StringBuilder expectedOutput = new StringBuilder();
+    for (SingleExecutable singleExecutable : singleExecutables) {
+      singleExecutable.execute(engine);
+      expectedOutput.append(singleExecutable.getPrintable().print());
+    }
+    composedExecutable.execute(engine);
+    assertEquals("The shared execution has a different output",
+        expectedOutput.toString(), composedExecutable.getPrintable().print());
+
+    StringBuilder expectedStream = new StringBuilder();
+    for (SingleExecutable singleExecutable : singleExecutables) {
+      singleExecutable.execute(engine, expectedStream::append);
+    }
+    StringBuilder actualStream = new StringBuilder();
+    composedExecutable.execute(engine, actualStream::append);
+    assertEquals("The shared streaming has a different output",
+        expectedStream.toString(), actualStream.toString());
+  }
+
+  private static SingleExecutable.Builder createGrepExecutable(String regex) {
+    return new SingleExecutable.Builder()
+        .withPattern(Pattern.compile(regex))
+        .withFormatter(
+            GrepperFactory.createGrepper(GrepperFactory.RAW_COLUMN));
+  }
 }
@@ -19,18 +19,25 @@
 package com.cloudera.bundleprocessor.subshell.search.request;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.cloudera.bundleprocessor.subshell.context.StopSignal;
 import com.cloudera.bundleprocessor.subshell.format.Printable;
 import com.cloudera.bundleprocessor.subshell.format.StringPrintable;
+import com.cloudera.bundleprocessor.subshell.search.engine.LogMatch;
+import com.cloudera.bundleprocessor.subshell.search.engine.MatchListener;
 import com.cloudera.bundleprocessor.subshell.search.engine.Query;
 import com.cloudera.bundleprocessor.subshell.search.engine.SearchEngine;
 import com.cloudera.bundleprocessor.subshell.search.format.Formatter;
 import com.cloudera.bundleprocessor.subshell.search.format.GrepperFactory;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -43,6 +50,8 @@ public class TestSingleExecutable {
   private static final Formatter<?> FORMATTER = GrepperFactory.createGrepper(
       new GrepperFactory.Column("HEADER", "content"));
   private static final String RANDOM_STRING = "randomString";
+  private static final Pattern CONTENT_PATTERN =
+      Pattern.compile("(?<content>.+)");
 
   @Test(expected = IllegalStateException.class)
   public void testEmptyBuilder() {
@@ -98,4 +107,53 @@ public class TestSingleExecutable {
     verify(formatterMock).format(matchers);
     assertEquals(printable, singleExecutable.getPrintable());
   }
+
+  @Test
+  public void testSearchRunningOutOfTimeBudget() throws IOException {
+    StopSignal stopSignal = new StopSignal();
+    List<String> output = executeCancellable(stopSignal, 1);
+    assertEquals(CancellableListener.TRUNCATED_MESSAGE,
+        output.get(output.size() - 1));
+  }
+
+  @Test
+  public void testStoppedSearch() throws IOException {
+    StopSignal stopSignal = new StopSignal();
+    stopSignal.enter();
+    assertTrue(stopSignal.raise());
+    List<String> output = executeCancellable(stopSignal, 0);
+    assertFalse(output.contains(CancellableListener.TRUNCATED_MESSAGE));
+    stopSignal.exit();
+  }
+
+  /**
+   * Executes a cancellable search request with an engine
+   * which keeps searching until its listener is satisfied.
+   */
+  private static List<String> executeCancellable(StopSignal stopSignal,
+                                                 long timeoutMillis)
+      throws IOException {
+    SearchEngine searchEngineMock = mock(SearchEngine.class);
+    doAnswer(invocation -> {
+      MatchListener listener = invocation.getArgument(1);
+      Matcher matcher = CONTENT_PATTERN.matcher(RANDOM_STRING);
+      while (!listener.isSatisfied()) {
+        matcher.reset();
+        matcher.find();
+        listener.onMatch(LogMatch.of(matcher));
+        Thread.sleep(1);
+      }
+      listener.onEndOfSource();
+      return null;
+    }).when(searchEngineMock).search(any(), any());
+    SingleExecutable singleExecutable = new SingleExecutable.Builder()
+        .withFormatter(FORMATTER)
+        .withPattern(CONTENT_PATTERN)
+        .isCheckingRmLogs()
+        .build();
+    singleExecutable.makeCancellable(stopSignal, timeoutMillis);
+    List<String> output = new ArrayList<>();
+    singleExecutable.execute(searchEngineMock, output::add);
+    return output;
+  }
 }
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cloudera.bundleprocessor.subshell.search.request;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSpillingBuffer {
+
+  @Test
+  public void testShortOutputIsKeptInMemory() throws IOException {
+    try (SpillingBuffer buffer = new SpillingBuffer(10)) {
+      buffer.accept("abc");
+      buffer.accept("def");
+      StringBuilder output = new StringBuilder();
+      buffer.passTo(output::append);
+      assertFalse(buffer.isSpilled());
+      assertEquals("abcdef", output.toString());
+    }
+  }
+
+  @Test
+  public void testLongOutputIsSpilled() throws IOException {
+    StringBuilder expected = new StringBuilder();
+    try (SpillingBuffer buffer = new SpillingBuffer(10)) {
+      for (int i = 0; i < 5000; i++) {
+        String line = "line " + i + " \u00e1\n";
+        expected.append(line);
+        buffer.accept(line);
+      }
+      assertTrue(buffer.isSpilled());
+      StringBuilder output = new StringBuilder();
+      buffer.passTo(output::append);
+      assertEquals(expected.toString(), output.toString());
+    }
+  }
+}